@@ -0,0 +1,46 @@
+/*
+ * Copyright 2013 Adrien Favre-Bully, Florian Froese, Adrian Schmidmeister
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * 		http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+*/
+package ch.ethz.student.dejavu;
+
+/**
+ * Distance metric that can stop early once the distance is known to exceed a bound. Searches that
+ * only need to know whether two strings are within a radius, e.g. index traversals, use the bound
+ * to skip most of the work for distant strings.
+ *
+ * @author Adrien Favre-Bully
+ * @author Florian Froese
+ * @author Adrian Schmidmeister
+ * @since 1.1
+ */
+public interface BoundedDistanceMetric extends DistanceMetric {
+
+  /**
+   * @param s1          first string
+   * @param s2          second string
+   * @param maxDistance bound of the distance
+   * @return computeDistance(s1, s2) if it is at most maxDistance, otherwise a value greater than
+   * maxDistance which may be smaller than the distance
+   */
+  public double computeDistance(String s1, String s2, double maxDistance);
+
+  /**
+   * Computes the bounded distance.
+   */
+  @Override
+  public default boolean isWithin(String s1, String s2, double maxDistance) {
+    return computeDistance(s1, s2, maxDistance) <= maxDistance;
+  }
+
+}
@@ -0,0 +1,46 @@
+/*
+ * Copyright 2013 Adrien Favre-Bully, Florian Froese, Adrian Schmidmeister
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * 		http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+*/
+package ch.ethz.student.dejavu;
+
+/**
+ * Similarity metric that can stop early once the similarity is known to stay below a bound. A top-k
+ * search passes the score of its current k-th best candidate, hopeless candidates are abandoned
+ * after a cheap upper bound or part of the computation.
+ *
+ * @author Adrien Favre-Bully
+ * @author Florian Froese
+ * @author Adrian Schmidmeister
+ * @since 1.1
+ */
+public interface BoundedSimilarityMetric extends SimilarityMetric {
+
+  /**
+   * @param s1            first string
+   * @param s2            second string
+   * @param minSimilarity bound of the similarity
+   * @return computeSimilarity(s1, s2) if it is at least minSimilarity, otherwise a value smaller
+   * than minSimilarity which may be greater than the similarity
+   */
+  public double computeSimilarity(String s1, String s2, double minSimilarity);
+
+  /**
+   * Computes the bounded similarity.
+   */
+  @Override
+  public default boolean isAtLeast(String s1, String s2, double minSimilarity) {
+    return computeSimilarity(s1, s2, minSimilarity) >= minSimilarity;
+  }
+
+}
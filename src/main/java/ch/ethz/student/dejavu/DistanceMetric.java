@@ -15,8 +15,43 @@
 
 package ch.ethz.student.dejavu;
 
+import ch.ethz.student.dejavu.utilities.Utilities;
+
 public interface DistanceMetric {
 
   public double computeDistance(String s1, String s2);
 
+  /**
+   * Decides whether the distance of two strings is within a bound. The default implementation
+   * computes the distance, metrics override it to reject most pairs with cheap tests first.
+   *
+   * @param s1 first string
+   * @param s2 second string
+   * @param maxDistance bound of the distance
+   * @return true iff computeDistance(s1, s2) &lt;= maxDistance
+   */
+  public default boolean isWithin(String s1, String s2, double maxDistance) {
+    return computeDistance(s1, s2) <= maxDistance;
+  }
+
+  /**
+   * Computes the distances of one query to a block of candidates. The default implementation
+   * calls {@link #computeDistance(String, String)} for every candidate. Metrics override it to
+   * prepare the query once and to reuse their buffers across the block.
+   *
+   * @param query      query string
+   * @param candidates candidate strings
+   * @param out        out[i] is set to computeDistance(query, candidates[i]), must be at least
+   *                   as long as candidates
+   */
+  public default void computeDistances(CharSequence query, CharSequence[] candidates,
+                                       double[] out) {
+    Utilities.checkBatch(query, candidates, out);
+
+    String q = query.toString();
+    for (int i = 0; i < candidates.length; i++) {
+      out[i] = computeDistance(q, Utilities.toString(candidates[i]));
+    }
+  }
+
 }
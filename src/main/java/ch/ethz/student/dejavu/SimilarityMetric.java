@@ -15,8 +15,43 @@
 
 package ch.ethz.student.dejavu;
 
+import ch.ethz.student.dejavu.utilities.Utilities;
+
 public interface SimilarityMetric {
 
   public double computeSimilarity(String s1, String s2);
 
+  /**
+   * Decides whether the similarity of two strings is at least a bound. The default implementation
+   * computes the similarity, metrics override it to reject most pairs with cheap tests first.
+   *
+   * @param s1 first string
+   * @param s2 second string
+   * @param minSimilarity bound of the similarity
+   * @return true iff computeSimilarity(s1, s2) &gt;= minSimilarity
+   */
+  public default boolean isAtLeast(String s1, String s2, double minSimilarity) {
+    return computeSimilarity(s1, s2) >= minSimilarity;
+  }
+
+  /**
+   * Computes the similarities of one query to a block of candidates. The default implementation
+   * calls {@link #computeSimilarity(String, String)} for every candidate. Metrics override it to
+   * prepare the query once and to reuse their buffers across the block.
+   *
+   * @param query      query string
+   * @param candidates candidate strings
+   * @param out        out[i] is set to computeSimilarity(query, candidates[i]), must be at least
+   *                   as long as candidates
+   */
+  public default void computeSimilarities(CharSequence query, CharSequence[] candidates,
+                                          double[] out) {
+    Utilities.checkBatch(query, candidates, out);
+
+    String q = query.toString();
+    for (int i = 0; i < candidates.length; i++) {
+      out[i] = computeSimilarity(q, Utilities.toString(candidates[i]));
+    }
+  }
+
 }
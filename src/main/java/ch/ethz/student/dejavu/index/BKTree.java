@@ -0,0 +1,360 @@
+/*
+ * Copyright 2013 Adrien Favre-Bully, Florian Froese, Adrian Schmidmeister
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * 		http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+*/
+package ch.ethz.student.dejavu.index;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.IntBuffer;
+import java.util.Arrays;
+
+import ch.ethz.student.dejavu.BoundedDistanceMetric;
+import ch.ethz.student.dejavu.strings.DamerauLevenshteinDistance;
+import ch.ethz.student.dejavu.strings.HammingMetric;
+import ch.ethz.student.dejavu.strings.LevenshteinDistance;
+import ch.ethz.student.dejavu.strings.OptimalStringAlignmentDistance;
+
+/**
+ * Burkhard-Keller tree for metrics with integral distances, e.g. {@link LevenshteinDistance},
+ * {@link DamerauLevenshteinDistance} with the default weights or {@link HammingMetric} (all strings
+ * of the same length). {@link OptimalStringAlignmentDistance} is rejected, it violates the triangle
+ * inequality: OSA("ca", "abc") = 3 but OSA("ca", "ac") + OSA("ac", "abc") = 2.
+ *
+ * <p>Every child of a node is stored under its distance to the node. By the triangle inequality a
+ * string within radius r of a query q can only be below the child edge e of a node n with
+ * |d(q, n) - e| &lt;= r. The distance to a node is evaluated with the bound r + the largest edge of
+ * its children, see {@link BoundedDistanceMetric#computeDistance(String, String, double)}, beyond
+ * which no child can qualify. Top-k queries shrink the radius to the distance of the k-th best
+ * string found so far. As in {@link PStableLsh} a radius is passed as a double and a number of
+ * neighbors as an int.</p>
+ *
+ * <p>The children of a node form a linked list in primitive arrays (first child, next sibling,
+ * edge), no maps are used. The tree is not thread-safe.</p>
+ *
+ * <p>{@link #write(File)} stores these arrays in an {@link IndexFile}, {@link #open(File,
+ * BoundedDistanceMetric)} maps them and queries the tree in place without a single distance
+ * computation. An opened tree is read-only and thread-safe.</p>
+ *
+ * @author Adrien Favre-Bully
+ * @author Florian Froese
+ * @author Adrian Schmidmeister
+ * @since 1.1
+ */
+public class BKTree {
+
+  private static final int INITIAL_CAPACITY = 16;
+  private static final int NONE = -1;
+  private static final String TYPE = "BKTree";
+
+  private BoundedDistanceMetric metric;
+
+  private StringTable strings = new StringTable();
+  private IntBuffer firstChild = IntBuffer.allocate(INITIAL_CAPACITY);
+  private IntBuffer nextSibling = IntBuffer.allocate(INITIAL_CAPACITY);
+  // distance to the parent
+  private IntBuffer edge = IntBuffer.allocate(INITIAL_CAPACITY);
+  // largest edge of the children, NONE for a leaf
+  private IntBuffer maxEdge = IntBuffer.allocate(INITIAL_CAPACITY);
+
+  private BKTree(Builder b) {
+    this.metric = b.metric;
+  }
+
+  private BKTree(IndexFile file, BoundedDistanceMetric metric) throws IOException {
+    file.checkType(TYPE);
+    file.checkMetric(metric);
+    this.metric = metric;
+
+    this.strings = new StringTable(file, "strings");
+    int size = strings.size();
+    this.firstChild = file.getInts("firstChild", size);
+    this.nextSibling = file.getInts("nextSibling", size);
+    this.edge = file.getInts("edge", size);
+    this.maxEdge = file.getInts("maxEdge", size);
+  }
+
+  /**
+   * Maps a tree written with {@link #write(File)}. No distance is computed, the strings and the
+   * nodes are read in place. The opened tree is read-only.
+   *
+   * @param file   tree file
+   * @param metric metric the tree was built with, its class and weights are checked
+   * @return the tree
+   * @throws IOException if the file cannot be read or is not a tree
+   */
+  public static BKTree open(File file, BoundedDistanceMetric metric) throws IOException {
+    return new BKTree(IndexFile.open(file), metric);
+  }
+
+  /**
+   * Writes the tree in the {@link IndexFile} format.
+   *
+   * @param file file to write, an existing file is replaced
+   * @throws IOException if the file cannot be written
+   */
+  public void write(File file) throws IOException {
+    int size = strings.size();
+    IndexFile.Writer writer = new IndexFile.Writer(TYPE).metric(metric);
+    strings.write(writer, "strings");
+    writer.ints("firstChild", firstChild, size)
+        .ints("nextSibling", nextSibling, size)
+        .ints("edge", edge, size)
+        .ints("maxEdge", maxEdge, size)
+        .write(file);
+  }
+
+  /**
+   * @param s string
+   * @return id of the new entry
+   * @throws UnsupportedOperationException if the tree is opened from a file
+   */
+  public int add(String s) {
+    if (s == null) {
+      throw new IllegalArgumentException("Input string cannot be null!");
+    }
+    if (strings.isReadOnly()) {
+      throw new UnsupportedOperationException("An opened tree is read-only.");
+    }
+
+    // compute the path first, the tree stays unchanged if the metric fails
+    int parent = NONE;
+    int d = 0;
+    if (strings.size() > 0) {
+      int node = 0;
+      while (node != NONE) {
+        parent = node;
+        d = distance(s, strings.get(node));
+        node = findChild(node, d);
+      }
+    }
+
+    if (strings.size() == firstChild.capacity()) {
+      int capacity = strings.size() * 2;
+      firstChild = IntBuffer.wrap(Arrays.copyOf(firstChild.array(), capacity));
+      nextSibling = IntBuffer.wrap(Arrays.copyOf(nextSibling.array(), capacity));
+      edge = IntBuffer.wrap(Arrays.copyOf(edge.array(), capacity));
+      maxEdge = IntBuffer.wrap(Arrays.copyOf(maxEdge.array(), capacity));
+    }
+
+    int id = strings.add(s);
+    firstChild.put(id, NONE);
+    maxEdge.put(id, NONE);
+    nextSibling.put(id, NONE);
+    if (parent != NONE) {
+      nextSibling.put(id, firstChild.get(parent));
+      firstChild.put(parent, id);
+      edge.put(id, d);
+      maxEdge.put(parent, Math.max(maxEdge.get(parent), d));
+    }
+    return id;
+  }
+
+  /**
+   * @param s           query string
+   * @param maxDistance maximal distance
+   * @return ids of all entries within maxDistance of s, in ascending order
+   */
+  public int[] query(String s, double maxDistance) {
+    if (s == null) {
+      throw new IllegalArgumentException("Input string cannot be null!");
+    }
+    if (!(maxDistance >= 0)) {
+      throw new IllegalArgumentException("maxDistance must be greater or equal to 0!");
+    }
+
+    int[] result = new int[INITIAL_CAPACITY];
+    int found = 0;
+    Stack stack = new Stack();
+    if (strings.size() > 0) {
+      stack.push(0, 0);
+    }
+    while (stack.top > 0) {
+      int node = stack.nodes[--stack.top];
+      int max = maxEdge.get(node);
+      double d = metric.computeDistance(s, strings.get(node), maxDistance + Math.max(0, max));
+      if (d <= maxDistance) {
+        if (found == result.length) {
+          result = Arrays.copyOf(result, found * 2);
+        }
+        result[found++] = node;
+      }
+      if (d <= maxDistance + max) {
+        for (int c = firstChild.get(node); c != NONE; c = nextSibling.get(c)) {
+          if (Math.abs(edge.get(c) - d) <= maxDistance) {
+            stack.push(c, 0);
+          }
+        }
+      }
+    }
+
+    result = Arrays.copyOf(result, found);
+    Arrays.sort(result);
+    return result;
+  }
+
+  /**
+   * @param s query string
+   * @param k number of neighbors
+   * @return ids of the k nearest entries, the nearest first; ties are broken arbitrarily
+   */
+  public int[] query(String s, int k) {
+    if (s == null) {
+      throw new IllegalArgumentException("Input string cannot be null!");
+    }
+    if (k < 1) {
+      throw new IllegalArgumentException("k must be greater than 0!");
+    }
+
+    NodeHeap heap = new NodeHeap(true, k + 1);
+    Stack stack = new Stack();
+    if (strings.size() > 0) {
+      stack.push(0, 0);
+    }
+    while (stack.top > 0) {
+      stack.top--;
+      int node = stack.nodes[stack.top];
+      // lower bound of the distance of the node
+      int lowerBound = stack.bounds[stack.top];
+      double radius = heap.size() < k ? Double.POSITIVE_INFINITY : heap.peekKey();
+      if (lowerBound >= radius) {
+        continue;
+      }
+
+      int max = maxEdge.get(node);
+      double d = metric.computeDistance(s, strings.get(node), radius + Math.max(0, max));
+      if (d < radius) {
+        heap.push(d, node);
+        if (heap.size() > k) {
+          heap.pop();
+        }
+        radius = heap.size() < k ? Double.POSITIVE_INFINITY : heap.peekKey();
+      }
+      if (d <= radius + max) {
+        for (int c = firstChild.get(node); c != NONE; c = nextSibling.get(c)) {
+          int bound = (int) Math.abs(edge.get(c) - d);
+          if (bound < radius) {
+            stack.push(c, bound);
+          }
+        }
+      }
+    }
+
+    int[] result = new int[heap.size()];
+    for (int i = result.length - 1; i >= 0; i--) {
+      result[i] = heap.pop();
+    }
+    return result;
+  }
+
+  public String getString(int id) {
+    return strings.get(id);
+  }
+
+  public int size() {
+    return strings.size();
+  }
+
+  private int distance(String s1, String s2) {
+    double d = metric.computeDistance(s1, s2);
+    if (d != Math.rint(d) || d < 0) {
+      throw new IllegalArgumentException("metric must return integral distances!");
+    }
+    return (int) d;
+  }
+
+  private int findChild(int node, int d) {
+    for (int c = firstChild.get(node); c != NONE; c = nextSibling.get(c)) {
+      if (edge.get(c) == d) {
+        return c;
+      }
+    }
+    return NONE;
+  }
+
+  /**
+   * Nodes still to be visited by a query with a lower bound of their distances.
+   */
+  private static final class Stack {
+
+    private int[] nodes = new int[INITIAL_CAPACITY];
+    private int[] bounds = new int[INITIAL_CAPACITY];
+    private int top;
+
+    private void push(int node, int bound) {
+      if (top == nodes.length) {
+        nodes = Arrays.copyOf(nodes, top * 2);
+        bounds = Arrays.copyOf(bounds, top * 2);
+      }
+      nodes[top] = node;
+      bounds[top] = bound;
+      top++;
+    }
+  }
+
+  // ===== Builder Pattern Methods =====
+
+  /**
+   * @return        {@link Builder}
+   * @see Builder
+   * @see BKTree
+   */
+  public static Builder getBuilder() {
+    return new Builder();
+  }
+
+  /**
+   * @return BK-tree for the LevenshteinDistance
+   * @see BKTree
+   */
+  public static BKTree getInstance() {
+    return new Builder().build();
+  }
+
+  // ===== Builder Class =====
+
+  /**
+   * BKTree Builder Restriction: metric must be set, return integral distances and satisfy the
+   * triangle inequality, thus it must not be an OptimalStringAlignmentDistance.
+   *
+   * <p>Usage:</br> BKTree tree = BKTree.getBuilder()</br>
+   * .metric(DamerauLevenshteinDistance.getInstance()).build();</p>
+   *
+   * @param metric metric with integral distances (default: LevenshteinDistance)
+   * @author Adrien Favre-Bully
+   * @author Florian Froese
+   * @author Adrian Schmidmeister
+   * @since 1.1
+   */
+  public static class Builder {
+
+    private BoundedDistanceMetric metric = LevenshteinDistance.getInstance();
+
+    public BKTree build() {
+      // check constraints
+      if (metric == null) {
+        throw new IllegalArgumentException("metric must be set!");
+      }
+      if (metric instanceof OptimalStringAlignmentDistance) {
+        throw new IllegalArgumentException("metric must satisfy the triangle inequality!");
+      }
+
+      return new BKTree(this);
+    }
+
+    public Builder metric(BoundedDistanceMetric m) {
+      metric = m;
+      return this;
+    }
+  }
+}
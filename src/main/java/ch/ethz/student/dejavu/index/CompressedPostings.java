@@ -0,0 +1,547 @@
+/*
+ * Copyright 2013 Adrien Favre-Bully, Florian Froese, Adrian Schmidmeister
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * 		http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+*/
+package ch.ethz.student.dejavu.index;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+import java.util.Arrays;
+
+/**
+ * Compressed, immutable posting list of strictly increasing non-negative ids with optional
+ * non-negative payloads (e.g. token frequencies or positions).
+ *
+ * <p>The ids are split into blocks of {@link #BLOCK_SIZE}. Within a block every id is stored as
+ * the gap to its predecessor minus one. The gaps of a full block are bit-packed with the width of
+ * the largest gap of the block, the payloads of the block follow with their own width. The gaps
+ * and payloads of the last, partial block are stored as varints. Thus dense lists take little more
+ * than one bit per id and a single large gap only inflates its own block. Outliers are not patched
+ * as in PForDelta, a block is always packed with the width of its largest value.</p>
+ *
+ * <p>The last id and the byte offset of every block are kept uncompressed as skip pointers. A
+ * {@link Cursor} decodes one block at a time into reusable buffers and skips whole blocks by
+ * binary search over the skip pointers, which makes intersections of a short with a long list
+ * cheap. The lists are thread-safe, a cursor is not.</p>
+ *
+ * <p>The data and the skip pointers are kept in buffers, thus lists written to an
+ * {@link IndexFile} are read as views of the mapped sections, see {@link Table}.</p>
+ *
+ * @author Adrien Favre-Bully
+ * @author Florian Froese
+ * @author Adrian Schmidmeister
+ * @since 1.1
+ */
+public class CompressedPostings {
+
+  public static final int BLOCK_SIZE = 128;
+
+  /**
+   * Returned by a cursor after the last id.
+   */
+  public static final int END = -1;
+
+  private static final CompressedPostings EMPTY = new CompressedPostings(ByteBuffer.allocate(0),
+                                                                         IntBuffer.allocate(0),
+                                                                         IntBuffer.allocate(0), 0,
+                                                                         false);
+
+  private final ByteBuffer data;
+  // skip pointers: last id and byte offset of every block
+  private final IntBuffer blockLast;
+  private final IntBuffer blockOffset;
+  private final int size;
+  private final boolean payloads;
+
+  private CompressedPostings(ByteBuffer data, IntBuffer blockLast, IntBuffer blockOffset, int size,
+                             boolean payloads) {
+    this.data = data;
+    this.blockLast = blockLast;
+    this.blockOffset = blockOffset;
+    this.size = size;
+    this.payloads = payloads;
+  }
+
+  /**
+   * @param ids strictly increasing non-negative ids
+   * @return compressed list of the ids
+   */
+  public static CompressedPostings encode(int[] ids) {
+    return encode(ids, null, ids.length);
+  }
+
+  /**
+   * @param ids      strictly increasing non-negative ids
+   * @param payloads non-negative payload of every id, may be null
+   * @param count    number of ids to encode
+   * @return compressed list of the first count ids
+   */
+  public static CompressedPostings encode(int[] ids, int[] payloads, int count) {
+    if (ids == null || count < 0 || count > ids.length
+        || payloads != null && payloads.length < count) {
+      throw new IllegalArgumentException("ids must contain count entries!");
+    }
+    if (count == 0) {
+      return payloads == null ? EMPTY
+                              : new CompressedPostings(ByteBuffer.allocate(0),
+                                                       IntBuffer.allocate(0),
+                                                       IntBuffer.allocate(0), 0, true);
+    }
+
+    int blocks = (count + BLOCK_SIZE - 1) / BLOCK_SIZE;
+    int[] blockLast = new int[blocks];
+    int[] blockOffset = new int[blocks];
+    Writer out = new Writer(count);
+    int[] gaps = new int[BLOCK_SIZE];
+    int previous = -1;
+
+    for (int block = 0; block < blocks; block++) {
+      int from = block * BLOCK_SIZE;
+      int length = Math.min(BLOCK_SIZE, count - from);
+      int maxGap = 0;
+      int maxPayload = 0;
+      for (int i = 0; i < length; i++) {
+        int id = ids[from + i];
+        if (id <= previous) {
+          throw new IllegalArgumentException("ids must be strictly increasing and non-negative!");
+        }
+        gaps[i] = id - previous - 1;
+        maxGap |= gaps[i];
+        previous = id;
+        if (payloads != null) {
+          if (payloads[from + i] < 0) {
+            throw new IllegalArgumentException("payloads must be non-negative!");
+          }
+          maxPayload |= payloads[from + i];
+        }
+      }
+      blockLast[block] = previous;
+      blockOffset[block] = out.position;
+
+      if (length == BLOCK_SIZE) {
+        int width = bitWidth(maxGap);
+        int payloadWidth = bitWidth(maxPayload);
+        out.writeByte(width);
+        out.pack(gaps, 0, width);
+        if (payloads != null) {
+          out.writeByte(payloadWidth);
+          out.pack(payloads, from, payloadWidth);
+        }
+      } else {
+        for (int i = 0; i < length; i++) {
+          out.writeVarint(gaps[i]);
+        }
+        if (payloads != null) {
+          for (int i = 0; i < length; i++) {
+            out.writeVarint(payloads[from + i]);
+          }
+        }
+      }
+    }
+
+    return new CompressedPostings(ByteBuffer.wrap(Arrays.copyOf(out.data, out.position)),
+                                  IntBuffer.wrap(blockLast), IntBuffer.wrap(blockOffset), count,
+                                  payloads != null);
+  }
+
+  /**
+   * Intersects two lists by leapfrogging their cursors.
+   *
+   * @param a   first list
+   * @param b   second list
+   * @param out receives the common ids in ascending order, must hold min(a.size(), b.size())
+   * @return number of common ids
+   */
+  public static int intersect(CompressedPostings a, CompressedPostings b, int[] out) {
+    // the shorter list drives the skips of the longer one
+    Cursor shortCursor = (a.size <= b.size ? a : b).cursor();
+    Cursor longCursor = (a.size <= b.size ? b : a).cursor();
+
+    int count = 0;
+    int id = shortCursor.next();
+    while (id != END) {
+      int other = longCursor.advance(id);
+      if (other == END) {
+        break;
+      }
+      if (other == id) {
+        out[count++] = id;
+        id = shortCursor.next();
+      } else {
+        id = shortCursor.advance(other);
+      }
+    }
+    return count;
+  }
+
+  /**
+   * Writes count lists to the sections nameLists (size, payload flag, first byte and first block of
+   * every list), nameBlockLast and nameBlockOffsets (the skip pointers) and nameData (the
+   * compressed data), which a {@link Table} reads in place.
+   */
+  static void write(IndexFile.Writer writer, String name, CompressedPostings[] lists, int count) {
+    long dataLength = 0;
+    int blocks = 0;
+    for (int i = 0; i < count; i++) {
+      dataLength += lists[i].data.capacity();
+      blocks += lists[i].blockLast.capacity();
+    }
+    if (dataLength > Integer.MAX_VALUE) {
+      throw new IllegalArgumentException("A section is limited to 2 GB.");
+    }
+
+    IntBuffer meta = IntBuffer.allocate(4 * count);
+    IntBuffer blockLast = IntBuffer.allocate(blocks);
+    IntBuffer blockOffset = IntBuffer.allocate(blocks);
+    ByteBuffer data = ByteBuffer.allocate((int) dataLength);
+    for (int i = 0; i < count; i++) {
+      CompressedPostings list = lists[i];
+      meta.put(list.size).put(list.payloads ? 1 : 0).put(data.position())
+          .put(blockLast.position());
+      blockLast.put(list.blockLast.duplicate());
+      blockOffset.put(list.blockOffset.duplicate());
+      data.put(list.data.duplicate());
+    }
+    writer.ints(name + "Lists", meta, meta.capacity());
+    writer.ints(name + "BlockLast", blockLast, blocks);
+    writer.ints(name + "BlockOffsets", blockOffset, blocks);
+    writer.bytes(name + "Data", data, data.capacity());
+  }
+
+  public int size() {
+    return size;
+  }
+
+  public boolean hasPayloads() {
+    return payloads;
+  }
+
+  /**
+   * @return compressed size including the skip pointers
+   */
+  public long getSizeInBytes() {
+    return data.capacity() + 8L * blockLast.capacity();
+  }
+
+  public int getBlockCount() {
+    return blockLast.capacity();
+  }
+
+  /**
+   * Decodes a single block, allows random access without a cursor.
+   *
+   * @param block    block index
+   * @param ids      receives the ids of the block, must hold {@link #BLOCK_SIZE} entries
+   * @param payloads receives the payloads of the block, may be null
+   * @return number of ids in the block
+   */
+  public int decodeBlock(int block, int[] ids, int[] payloads) {
+    if (block < 0 || block >= blockLast.capacity()) {
+      throw new IndexOutOfBoundsException("Invalid block " + block);
+    }
+
+    int length = Math.min(BLOCK_SIZE, size - block * BLOCK_SIZE);
+    int previous = block == 0 ? -1 : blockLast.get(block - 1);
+    int offset = blockOffset.get(block);
+
+    if (length == BLOCK_SIZE) {
+      int width = data.get(offset++);
+      offset = unpack(data, offset, width, ids);
+      if (this.payloads && payloads != null) {
+        int payloadWidth = data.get(offset++);
+        unpack(data, offset, payloadWidth, payloads);
+      }
+    } else {
+      offset = readVarints(data, offset, ids, length);
+      if (this.payloads && payloads != null) {
+        readVarints(data, offset, payloads, length);
+      }
+    }
+
+    // prefix sum of the gaps
+    for (int i = 0; i < length; i++) {
+      previous += ids[i] + 1;
+      ids[i] = previous;
+    }
+    return length;
+  }
+
+  /**
+   * @return new cursor positioned before the first id
+   */
+  public Cursor cursor() {
+    return new Cursor();
+  }
+
+  private static int bitWidth(int value) {
+    return 32 - Integer.numberOfLeadingZeros(value);
+  }
+
+  /**
+   * Reads count varints starting at offset.
+   *
+   * @return offset after the varints
+   */
+  private static int readVarints(ByteBuffer data, int offset, int[] out, int count) {
+    for (int i = 0; i < count; i++) {
+      int value = 0;
+      int shift = 0;
+      byte b;
+      do {
+        b = data.get(offset++);
+        value |= (b & 0x7F) << shift;
+        shift += 7;
+      } while (b < 0);
+      out[i] = value;
+    }
+    return offset;
+  }
+
+  /**
+   * Unpacks {@link #BLOCK_SIZE} values of the given width starting at offset.
+   *
+   * @return offset after the packed values
+   */
+  private static int unpack(ByteBuffer data, int offset, int width, int[] out) {
+    long mask = (1L << width) - 1;
+    long buffer = 0;
+    int bits = 0;
+    for (int i = 0; i < BLOCK_SIZE; i++) {
+      while (bits < width) {
+        buffer |= (data.get(offset++) & 0xFFL) << bits;
+        bits += 8;
+      }
+      out[i] = (int) (buffer & mask);
+      buffer >>>= width;
+      bits -= width;
+    }
+    return offset;
+  }
+
+  /**
+   * Forward iterator over the ids and payloads of a list.
+   */
+  public class Cursor {
+
+    private final int[] ids = new int[BLOCK_SIZE];
+    private final int[] blockPayloads = payloads ? new int[BLOCK_SIZE] : null;
+    private int block = -1;
+    private int length;
+    private int index;
+    private int id = END;
+
+    private Cursor() {
+    }
+
+    /**
+     * @return next id or {@link #END}
+     */
+    public int next() {
+      if (++index >= length) {
+        if (block + 1 >= blockLast.capacity()) {
+          return exhaust();
+        }
+        load(block + 1);
+      }
+      id = ids[index];
+      return id;
+    }
+
+    /**
+     * Moves to the first id of at least target, never moves backwards.
+     *
+     * @param target id to advance to
+     * @return current id if it is at least target, otherwise the first following id of at least
+     * target or {@link #END}
+     */
+    public int advance(int target) {
+      if (id >= target) {
+        return id;
+      }
+      int blocks = blockLast.capacity();
+      if (block >= blocks || blocks == 0 || target > blockLast.get(blocks - 1)) {
+        return exhaust();
+      }
+
+      if (block < 0 || target > blockLast.get(block)) {
+        // skip whole blocks, the target is within the first block with a last id >= target
+        int lo = block + 1;
+        int hi = blocks - 1;
+        while (lo < hi) {
+          int mid = (lo + hi) >>> 1;
+          if (blockLast.get(mid) < target) {
+            lo = mid + 1;
+          } else {
+            hi = mid;
+          }
+        }
+        load(lo);
+      }
+      while (ids[index] < target) {
+        index++;
+      }
+      id = ids[index];
+      return id;
+    }
+
+    /**
+     * @return current id, {@link #END} before the first call of next or advance and after the
+     * last id
+     */
+    public int id() {
+      return id;
+    }
+
+    /**
+     * @return payload of the current id
+     */
+    public int payload() {
+      if (blockPayloads == null) {
+        throw new IllegalStateException("The list has no payloads.");
+      }
+      return blockPayloads[index];
+    }
+
+    private void load(int b) {
+      block = b;
+      length = decodeBlock(b, ids, blockPayloads);
+      index = 0;
+    }
+
+    private int exhaust() {
+      block = blockLast.capacity();
+      index = length;
+      id = END;
+      return END;
+    }
+  }
+
+  /**
+   * Lists written by {@link #write(IndexFile.Writer, String, CompressedPostings[], int)}, read in
+   * place. A list is a view of the mapped sections, created when it is requested.
+   */
+  static final class Table {
+
+    private final String name;
+    private final IntBuffer lists;
+    private final IntBuffer blockLast;
+    private final IntBuffer blockOffset;
+    private final ByteBuffer data;
+
+    Table(IndexFile file, String name) throws IOException {
+      this.name = name;
+      this.lists = file.getInts(name + "Lists");
+      this.blockLast = file.getInts(name + "BlockLast");
+      this.blockOffset = file.getInts(name + "BlockOffsets");
+      this.data = file.getBytes(name + "Data");
+      if (lists.capacity() % 4 != 0 || blockLast.capacity() != blockOffset.capacity()) {
+        throw new IOException("Corrupt section " + name + "Lists");
+      }
+    }
+
+    int size() {
+      return lists.capacity() / 4;
+    }
+
+    /**
+     * @throws IllegalStateException if the sections are corrupt
+     */
+    CompressedPostings get(int list) {
+      int size = lists.get(4 * list);
+      boolean payloads = lists.get(4 * list + 1) != 0;
+      int dataStart = lists.get(4 * list + 2);
+      int dataEnd = list + 1 < size() ? lists.get(4 * list + 6) : data.capacity();
+      int blockStart = lists.get(4 * list + 3);
+      int blocks = (int) ((size + (long) BLOCK_SIZE - 1) / BLOCK_SIZE);
+      if (size < 0 || dataStart < 0 || dataStart > dataEnd || dataEnd > data.capacity()
+          || blockStart < 0 || blockStart > blockLast.capacity() - blocks) {
+        throw new IllegalStateException("Corrupt section " + name + "Lists");
+      }
+
+      ByteBuffer listData = data.duplicate();
+      listData.position(dataStart);
+      listData.limit(dataEnd);
+      return new CompressedPostings(listData.slice(), slice(blockLast, blockStart, blocks),
+                                    slice(blockOffset, blockStart, blocks), size, payloads);
+    }
+
+    /**
+     * Writes the sections again under the given name.
+     */
+    void write(IndexFile.Writer writer, String name) {
+      writer.ints(name + "Lists", lists, lists.capacity());
+      writer.ints(name + "BlockLast", blockLast, blockLast.capacity());
+      writer.ints(name + "BlockOffsets", blockOffset, blockOffset.capacity());
+      writer.bytes(name + "Data", data, data.capacity());
+    }
+
+    private static IntBuffer slice(IntBuffer buffer, int from, int length) {
+      IntBuffer view = buffer.duplicate();
+      view.position(from);
+      view.limit(from + length);
+      return view.slice();
+    }
+  }
+
+  /**
+   * Growable byte buffer of the encoder.
+   */
+  private static final class Writer {
+
+    private byte[] data;
+    private int position;
+
+    private Writer(int count) {
+      data = new byte[Math.max(16, count)];
+    }
+
+    private void ensure(int bytes) {
+      if (position + bytes > data.length) {
+        data = Arrays.copyOf(data, Math.max(position + bytes, data.length * 2));
+      }
+    }
+
+    private void writeByte(int b) {
+      ensure(1);
+      data[position++] = (byte) b;
+    }
+
+    private void writeVarint(int value) {
+      ensure(5);
+      while ((value & ~0x7F) != 0) {
+        data[position++] = (byte) ((value & 0x7F) | 0x80);
+        value >>>= 7;
+      }
+      data[position++] = (byte) value;
+    }
+
+    /**
+     * Packs {@link #BLOCK_SIZE} values starting at from with the given width.
+     */
+    private void pack(int[] values, int from, int width) {
+      ensure(BLOCK_SIZE / 8 * width);
+      long buffer = 0;
+      int bits = 0;
+      for (int i = 0; i < BLOCK_SIZE; i++) {
+        buffer |= (long) values[from + i] << bits;
+        bits += width;
+        while (bits >= 8) {
+          data[position++] = (byte) buffer;
+          buffer >>>= 8;
+          bits -= 8;
+        }
+      }
+    }
+  }
+}
@@ -0,0 +1,423 @@
+/*
+ * Copyright 2013 Adrien Favre-Bully, Florian Froese, Adrian Schmidmeister
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * 		http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+*/
+package ch.ethz.student.dejavu.index;
+
+import java.util.Arrays;
+import java.util.HashSet;
+
+import ch.ethz.student.dejavu.utilities.PrimitiveSort;
+import ch.ethz.student.dejavu.vectors.OverlapCoefficient;
+import ch.ethz.student.dejavu.vectors.TverskyIndex;
+import ch.ethz.student.dejavu.vectors.VectorSimilarity;
+
+/**
+ * Threshold search for containment-like set similarities. Returns all stored strings R with
+ * sim(Q, R) &gt;= threshold for a query Q, where sim is an {@link OverlapCoefficient} or a (possibly
+ * asymmetric) {@link TverskyIndex} with the query as first argument. For example a TverskyIndex
+ * with alpha = 1 and beta = 0 finds the strings containing a given fraction of the query tokens.
+ *
+ * <p>Both similarities only depend on the sizes of the token sets and the size I of their
+ * intersection, thus a threshold translates into a required overlap T(|R|):</p>
+ * <ul>
+ * <li>Overlap: T = ceil(threshold * min(|Q|, |R|))</li>
+ * <li>Tversky: T = ceil(threshold * (alpha * |Q| + beta * |R|) / (1 - threshold + threshold *
+ * alpha + threshold * beta))</li>
+ * </ul>
+ *
+ * <p>As I &lt;= min(|Q|, |R|), only strings with T(|R|) &lt;= min(|Q|, |R|) can qualify (size
+ * filtering). The posting lists are sorted by the size of the strings, thus the valid sizes are a
+ * contiguous range of every list. Within this range the overlaps are counted by ScanCount (a
+ * counter per string) or by MergeSkip (Li et al., Efficient Merging and Filtering Algorithms for
+ * Approximate String Searches), which merges the lists in a heap and skips ids that occur in less
+ * than the minimal required overlap of the lists. The counted overlaps are exact, thus no
+ * verification is needed. Strings without tokens are never reported.</p>
+ *
+ * <p>A new entry changes the ranks of all larger entries, thus the size ranges and the posting
+ * lists of ranks are rebuilt by the next query after {@link #add(String)}.</p>
+ *
+ * @author Adrien Favre-Bully
+ * @author Florian Froese
+ * @author Adrian Schmidmeister
+ * @since 1.1
+ */
+public class ContainmentIndex {
+
+  /**
+   * Algorithm used to count the overlaps of a query.
+   */
+  public enum Algorithm {
+    /**
+     * Increments a counter per string for every posting in the size range.
+     */
+    SCAN_COUNT,
+    /**
+     * Merges the posting lists in a heap and skips ids below the minimal required overlap.
+     */
+    MERGE_SKIP
+  }
+
+  public static final Algorithm DEFAULT_ALGORITHM = Algorithm.MERGE_SKIP;
+
+  // tolerance for rounding errors of the bounds, a smaller bound is always safe
+  private static final double EPSILON = 1e-9;
+
+  private static final int INITIAL_CAPACITY = 16;
+
+  private VectorSimilarity metric;
+  private boolean tversky;
+  private double alpha;
+  private double beta;
+  private Algorithm algorithm;
+
+  private TokenDictionary dictionary = new TokenDictionary();
+
+  // token ids of entry i at [entryStart[i], entryStart[i + 1])
+  private int[] entryStart = new int[INITIAL_CAPACITY + 1];
+  private int[] entryTokens = new int[INITIAL_CAPACITY];
+  private int size;
+
+  // entries ordered by (size, id), sizeStart[s] is the first rank of an entry of size >= s
+  private int[] rankToId;
+  private int[] sizeStart;
+  private int maxSize;
+
+  // posting list of token t at [postingStart[t], postingStart[t + 1]), ranks in ascending order
+  private int[] postingStart;
+  private int[] postingRanks;
+  private boolean dirty;
+
+  // buffers of a single query
+  private int[] counts = new int[0];
+  private int[] touched = new int[0];
+  private int[] required = new int[0];
+
+  private ContainmentIndex(Builder b) {
+    this.metric = b.metric;
+    this.tversky = b.metric instanceof TverskyIndex;
+    if (tversky) {
+      this.alpha = ((TverskyIndex) b.metric).getAlpha();
+      this.beta = ((TverskyIndex) b.metric).getBeta();
+    }
+    this.algorithm = b.algorithm;
+  }
+
+  /**
+   * @param s string
+   * @return id of the new entry
+   */
+  public int add(String s) {
+    int[] tokens = dictionary.addDocument(metric.getTokenSet(s));
+
+    int start = entryStart[size];
+    int end = start + tokens.length;
+    if (end > entryTokens.length) {
+      entryTokens = Arrays.copyOf(entryTokens, Math.max(end, entryTokens.length * 2));
+    }
+    System.arraycopy(tokens, 0, entryTokens, start, tokens.length);
+
+    if (size + 2 > entryStart.length) {
+      entryStart = Arrays.copyOf(entryStart, entryStart.length * 2);
+    }
+    entryStart[++size] = end;
+    dirty = true;
+    return size - 1;
+  }
+
+  /**
+   * @param s         query string
+   * @param threshold minimal similarity, within (0, 1]
+   * @return ids of all entries R with sim(s, R) &gt;= threshold, in ascending order
+   */
+  public int[] query(String s, double threshold) {
+    if (!(threshold > 0 && threshold <= 1)) {
+      throw new IllegalArgumentException("threshold must lie within (0, 1]!");
+    }
+    if (dirty) {
+      buildPostings();
+    }
+
+    HashSet<Object> tokens = metric.getTokenSet(s);
+    int querySize = tokens.size();
+    if (querySize == 0 || size == 0) {
+      return new int[0];
+    }
+
+    // size filtering, the valid sizes form a range
+    int minSize = -1;
+    int maxValidSize = -1;
+    int minRequired = Integer.MAX_VALUE;
+    for (int r = 1; r <= maxSize; r++) {
+      required[r] = requiredOverlap(querySize, r, threshold);
+      if (required[r] <= Math.min(querySize, r)) {
+        if (minSize < 0) {
+          minSize = r;
+        }
+        maxValidSize = r;
+        minRequired = Math.min(minRequired, required[r]);
+      }
+    }
+    if (minSize < 0) {
+      return new int[0];
+    }
+    int rankFrom = sizeStart[minSize];
+    int rankTo = sizeStart[maxValidSize + 1];
+
+    // one cursor per known query token, restricted to the rank range
+    int[] position = new int[querySize];
+    int[] end = new int[querySize];
+    int cursors = 0;
+    for (Object token : tokens) {
+      int t = dictionary.getId(token);
+      if (t >= 0) {
+        int from = lowerBound(postingRanks, postingStart[t], postingStart[t + 1], rankFrom);
+        int to = lowerBound(postingRanks, from, postingStart[t + 1], rankTo);
+        if (from < to) {
+          position[cursors] = from;
+          end[cursors] = to;
+          cursors++;
+        }
+      }
+    }
+    if (cursors < minRequired) {
+      return new int[0];
+    }
+
+    int found = algorithm == Algorithm.SCAN_COUNT ? scanCount(position, end, cursors)
+                                                  : mergeSkip(position, end, cursors,
+                                                              minRequired);
+
+    int[] result = new int[found];
+    for (int i = 0; i < found; i++) {
+      result[i] = rankToId[touched[i]];
+    }
+    Arrays.sort(result);
+    return result;
+  }
+
+  public int size() {
+    return size;
+  }
+
+  private int requiredOverlap(int querySize, int size, double threshold) {
+    double value;
+    if (tversky) {
+      double denominator = 1 - threshold + threshold * alpha + threshold * beta;
+      // alpha = beta = 0 and threshold = 1: every common token suffices
+      value = denominator <= 0 ? 1
+                               : threshold * (alpha * querySize + beta * size) / denominator;
+    } else {
+      value = threshold * Math.min(querySize, size);
+    }
+    return Math.max(1, (int) Math.ceil(value - EPSILON));
+  }
+
+  private int entrySize(int rank) {
+    int id = rankToId[rank];
+    return entryStart[id + 1] - entryStart[id];
+  }
+
+  /**
+   * Counts the overlap of every entry in the lists.
+   *
+   * @return number of results, their ranks are stored in touched
+   */
+  private int scanCount(int[] position, int[] end, int cursors) {
+    int count = 0;
+    for (int c = 0; c < cursors; c++) {
+      for (int p = position[c]; p < end[c]; p++) {
+        int rank = postingRanks[p];
+        if (counts[rank]++ == 0) {
+          touched[count++] = rank;
+        }
+      }
+    }
+
+    int found = 0;
+    for (int i = 0; i < count; i++) {
+      int rank = touched[i];
+      if (counts[rank] >= required[entrySize(rank)]) {
+        touched[found++] = rank;
+      }
+      counts[rank] = 0;
+    }
+    return found;
+  }
+
+  /**
+   * Merges the lists, ranks contained in less than minRequired lists are skipped.
+   *
+   * @return number of results, their ranks are stored in touched
+   */
+  private int mergeSkip(int[] position, int[] end, int cursors, int minRequired) {
+    NodeHeap heap = new NodeHeap(false, cursors);
+    for (int c = 0; c < cursors; c++) {
+      heap.push(postingRanks[position[c]], c);
+    }
+    int[] popped = new int[cursors];
+
+    int found = 0;
+    while (heap.size() >= minRequired) {
+      int rank = (int) heap.peekKey();
+      int n = 0;
+      while (!heap.isEmpty() && (int) heap.peekKey() == rank) {
+        popped[n++] = heap.pop();
+      }
+
+      int target;
+      if (n >= minRequired) {
+        if (n >= required[entrySize(rank)]) {
+          touched[found++] = rank;
+        }
+        target = rank + 1;
+      } else {
+        // any rank below the next top is contained in less than minRequired lists
+        while (n < minRequired - 1) {
+          popped[n++] = heap.pop();
+        }
+        target = (int) heap.peekKey();
+      }
+
+      for (int i = 0; i < n; i++) {
+        int c = popped[i];
+        position[c] = InvertedIndex.advance(postingRanks, position[c], end[c], target);
+        if (position[c] < end[c]) {
+          heap.push(postingRanks[position[c]], c);
+        }
+      }
+    }
+    return found;
+  }
+
+  /**
+   * @return first position in [from, to) with a value of at least key, to if there is none
+   */
+  private static int lowerBound(int[] values, int from, int to, int key) {
+    while (from < to) {
+      int mid = (from + to) >>> 1;
+      if (values[mid] < key) {
+        from = mid + 1;
+      } else {
+        to = mid;
+      }
+    }
+    return from;
+  }
+
+  private void buildPostings() {
+    maxSize = 0;
+    long[] keys = new long[size];
+    rankToId = new int[size];
+    for (int id = 0; id < size; id++) {
+      int entrySize = entryStart[id + 1] - entryStart[id];
+      maxSize = Math.max(maxSize, entrySize);
+      keys[id] = ((long) entrySize << 32) | id;
+      rankToId[id] = id;
+    }
+    PrimitiveSort.sort(keys, rankToId, 0, size);
+
+    // sizeStart[s] is the number of entries smaller than s
+    sizeStart = new int[maxSize + 2];
+    for (int id = 0; id < size; id++) {
+      sizeStart[entryStart[id + 1] - entryStart[id] + 1]++;
+    }
+    for (int s = 1; s < sizeStart.length; s++) {
+      sizeStart[s] += sizeStart[s - 1];
+    }
+
+    int tokens = dictionary.size();
+    postingStart = new int[tokens + 1];
+    for (int t = 0; t < tokens; t++) {
+      postingStart[t + 1] = postingStart[t] + dictionary.getDocumentFrequency(t);
+    }
+    postingRanks = new int[postingStart[tokens]];
+    int[] fill = Arrays.copyOf(postingStart, tokens);
+    for (int rank = 0; rank < size; rank++) {
+      int id = rankToId[rank];
+      for (int i = entryStart[id]; i < entryStart[id + 1]; i++) {
+        postingRanks[fill[entryTokens[i]]++] = rank;
+      }
+    }
+
+    counts = new int[size];
+    touched = new int[size];
+    required = new int[maxSize + 1];
+    dirty = false;
+  }
+
+  // ===== Builder Pattern Methods =====
+
+  /**
+   * @return        {@link Builder}
+   * @see Builder
+   * @see ContainmentIndex
+   */
+  public static Builder getBuilder() {
+    return new Builder();
+  }
+
+  // ===== Builder Class =====
+
+  /**
+   * ContainmentIndex Builder Restriction: metric must be an OverlapCoefficient or a TverskyIndex
+   * that takes the keyset and has 0 dimensions, the index compares exact token sets.
+   *
+   * <p>Usage:</br> ContainmentIndex index = ContainmentIndex.getBuilder()</br>
+   * .metric(TverskyIndex.getBuilder().alpha(1).beta(0).build()).build();</p>
+   *
+   * @param metric    OverlapCoefficient or TverskyIndex, used for the tokenization and the
+   *                  thresholds
+   * @param algorithm algorithm counting the overlaps (default: MERGE_SKIP)
+   * @author Adrien Favre-Bully
+   * @author Florian Froese
+   * @author Adrian Schmidmeister
+   * @since 1.1
+   */
+  public static class Builder {
+
+    private VectorSimilarity metric = null;
+    private Algorithm algorithm = DEFAULT_ALGORITHM;
+
+    public ContainmentIndex build() {
+      // check constraints
+      if (!(metric instanceof OverlapCoefficient) && !(metric instanceof TverskyIndex)) {
+        throw new IllegalArgumentException(
+            "metric must be an OverlapCoefficient or a TverskyIndex!");
+      }
+      if (!metric.isTakeKeyset()) {
+        throw new IllegalArgumentException(
+            "metric must compare token sets, takeKeyset must be true!");
+      }
+      if (metric.getDimensions() != 0) {
+        throw new IllegalArgumentException(
+            "metric must compare exact tokens, dimensions must be 0!");
+      }
+      if (algorithm == null) {
+        throw new IllegalArgumentException("algorithm must be set!");
+      }
+
+      return new ContainmentIndex(this);
+    }
+
+    public Builder metric(VectorSimilarity m) {
+      metric = m;
+      return this;
+    }
+
+    public Builder algorithm(Algorithm a) {
+      algorithm = a;
+      return this;
+    }
+  }
+}
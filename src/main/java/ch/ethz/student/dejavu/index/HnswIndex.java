@@ -0,0 +1,692 @@
+/*
+ * Copyright 2013 Adrien Favre-Bully, Florian Froese, Adrian Schmidmeister
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * 		http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+*/
+package ch.ethz.student.dejavu.index;
+
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReentrantLock;
+
+import ch.ethz.student.dejavu.vectors.VectorSimilarity;
+
+/**
+ * Approximate nearest neighbor index over dense float vectors, e.g. the hashed vectors of
+ * {@link VectorSimilarity#getHashedVector(String, float[])}. The vectors are compared by cosine or
+ * euclidean distance, see {@link Space}.
+ *
+ * <p>The index is a hierarchical navigable small world graph (Malkov and Yashunin). Every vector is
+ * a node on a random number of layers, upper layers are exponentially sparser. A query descends
+ * greedily through the upper layers and searches the bottom layer with a candidate list of ef
+ * nodes, larger ef gives better recall at higher cost.</p>
+ *
+ * <p>Vectors and neighbor lists are stored in flat primitive arrays sized by the capacity of the
+ * index. {@link #add(float[])} and {@link #query(float[], int)} can be called concurrently from
+ * several threads: neighbor lists are guarded by striped locks and ids are assigned atomically.</p>
+ *
+ * @author Adrien Favre-Bully
+ * @author Florian Froese
+ * @author Adrian Schmidmeister
+ * @since 1.1
+ */
+public class HnswIndex {
+
+  /**
+   * COSINE: 1 - cosine similarity, the vectors are normalized on insertion</br> L2: euclidean
+   * distance
+   */
+  public enum Space {
+    COSINE, L2
+  }
+
+  public static final int DEFAULT_DIMENSIONS = 256;
+  public static final int DEFAULT_CAPACITY = 1024;
+  public static final Space DEFAULT_SPACE = Space.COSINE;
+  public static final int DEFAULT_M = 16;
+  public static final int DEFAULT_EF_CONSTRUCTION = 200;
+  public static final int DEFAULT_EF = 50;
+  public static final long DEFAULT_SEED = 42;
+
+  private static final int LOCK_STRIPES = 1024;
+  private static final int MAX_LEVEL = 16;
+
+  private final int dimensions;
+  private final int capacity;
+  private final Space space;
+  private final int m;
+  private final int m0;
+  private final int efConstruction;
+  private final int ef;
+  private final double levelMultiplier;
+  private final Random random;
+
+  // vector of node i at [i * dimensions, (i + 1) * dimensions)
+  private final float[] vectors;
+  private final int[] levels;
+  // bottom layer: [count, neighbors...] with m0 + 1 entries per node
+  private final int[] links0;
+  // upper layers of node i: [count, neighbors...] with m + 1 entries per layer 1..levels[i]
+  private final int[][] upperLinks;
+
+  private final Object[] locks;
+  private final ReentrantLock entryLock = new ReentrantLock();
+  private volatile int entryPoint = -1;
+
+  private final AtomicInteger nextId = new AtomicInteger();
+  private final AtomicInteger size = new AtomicInteger();
+
+  private final ThreadLocal<SearchState> searchStates = new ThreadLocal<SearchState>() {
+    @Override
+    protected SearchState initialValue() {
+      return new SearchState();
+    }
+  };
+
+  private HnswIndex(Builder b) {
+    this.dimensions = b.dimensions;
+    this.capacity = b.capacity;
+    this.space = b.space;
+    this.m = b.m;
+    this.m0 = 2 * b.m;
+    this.efConstruction = b.efConstruction;
+    this.ef = b.ef;
+    this.levelMultiplier = 1 / Math.log(b.m);
+    this.random = new Random(b.seed);
+
+    this.vectors = new float[capacity * dimensions];
+    this.levels = new int[capacity];
+    this.links0 = new int[capacity * (m0 + 1)];
+    this.upperLinks = new int[capacity][];
+
+    this.locks = new Object[Math.min(LOCK_STRIPES, capacity)];
+    for (int i = 0; i < locks.length; i++) {
+      locks[i] = new Object();
+    }
+  }
+
+  /**
+   * Inserts a vector. Can be called concurrently with other insertions and queries.
+   *
+   * @param vector vector of dimensions entries, it is copied
+   * @return id of the new entry
+   * @throws IllegalStateException if the index is full
+   */
+  public int add(float[] vector) {
+    checkVector(vector);
+
+    int id = nextId.getAndIncrement();
+    if (id >= capacity) {
+      throw new IllegalStateException("Index is full, capacity is " + capacity);
+    }
+
+    System.arraycopy(vector, 0, vectors, id * dimensions, dimensions);
+    if (space == Space.COSINE) {
+      normalize(vectors, id * dimensions);
+    }
+
+    int level = randomLevel();
+    levels[id] = level;
+    if (level > 0) {
+      upperLinks[id] = new int[level * (m + 1)];
+    }
+
+    SearchState state = searchStates.get();
+    int offset = id * dimensions;
+
+    // a node on a new top layer becomes the entry point, thus it is inserted exclusively
+    entryLock.lock();
+    boolean locked = true;
+    try {
+      int ep = entryPoint;
+      if (ep == -1) {
+        entryPoint = id;
+        return id;
+      }
+      int top = levels[ep];
+      if (level <= top) {
+        entryLock.unlock();
+        locked = false;
+      }
+
+      float epDistance = distance(vectors, offset, ep);
+      for (int layer = top; layer > level; layer--) {
+        ep = greedySearch(state, vectors, offset, ep, epDistance, layer);
+        epDistance = distance(vectors, offset, ep);
+      }
+
+      for (int layer = Math.min(level, top); layer >= 0; layer--) {
+        searchLayer(state, vectors, offset, ep, epDistance, efConstruction, layer);
+        int count = state.drainResults();
+
+        int selected = selectNeighbors(state.resultIds, state.resultDistances, count, m,
+                                       state.selected);
+        synchronized (lock(id)) {
+          int[] links = layer == 0 ? links0 : upperLinks[id];
+          int start = linkOffset(id, layer);
+          System.arraycopy(state.selected, 0, links, start + 1, selected);
+          links[start] = selected;
+        }
+        for (int i = 0; i < selected; i++) {
+          connect(state, state.selected[i], id, layer);
+        }
+
+        ep = state.resultIds[0];
+        epDistance = state.resultDistances[0];
+      }
+
+      if (level > top) {
+        entryPoint = id;
+      }
+    } finally {
+      if (locked) {
+        entryLock.unlock();
+      }
+      size.incrementAndGet();
+    }
+
+    return id;
+  }
+
+  /**
+   * @param vector query vector of dimensions entries
+   * @param k      number of neighbors
+   * @return ids of the approximately k nearest entries, the nearest first
+   */
+  public int[] query(float[] vector, int k) {
+    return query(vector, k, ef);
+  }
+
+  /**
+   * @param vector query vector of dimensions entries
+   * @param k      number of neighbors
+   * @param ef     size of the candidate list, values below k are raised to k
+   * @return ids of the approximately k nearest entries, the nearest first
+   */
+  public int[] query(float[] vector, int k, int ef) {
+    checkVector(vector);
+    if (k < 1) {
+      throw new IllegalArgumentException("k must be greater than 0!");
+    }
+
+    int ep = entryPoint;
+    if (ep == -1) {
+      return new int[0];
+    }
+
+    float[] query = vector;
+    if (space == Space.COSINE) {
+      query = Arrays.copyOf(vector, dimensions);
+      normalize(query, 0);
+    }
+
+    SearchState state = searchStates.get();
+    float epDistance = distance(query, 0, ep);
+    for (int layer = levels[ep]; layer > 0; layer--) {
+      ep = greedySearch(state, query, 0, ep, epDistance, layer);
+      epDistance = distance(query, 0, ep);
+    }
+
+    searchLayer(state, query, 0, ep, epDistance, Math.max(ef, k), 0);
+    int count = state.drainResults();
+
+    return Arrays.copyOf(state.resultIds, Math.min(k, count));
+  }
+
+  /**
+   * @param vector vector of dimensions entries
+   * @param id     entry id
+   * @return distance of the vector to the entry in the space of the index
+   */
+  public double distance(float[] vector, int id) {
+    checkVector(vector);
+    checkId(id);
+
+    if (space == Space.COSINE) {
+      float[] query = Arrays.copyOf(vector, dimensions);
+      normalize(query, 0);
+      return distance(query, 0, id);
+    }
+    return Math.sqrt(distance(vector, 0, id));
+  }
+
+  /**
+   * @param id entry id
+   * @return copy of the stored vector, normalized in the cosine space
+   */
+  public float[] getVector(int id) {
+    checkId(id);
+    return Arrays.copyOfRange(vectors, id * dimensions, (id + 1) * dimensions);
+  }
+
+  /**
+   * @return number of inserted entries
+   */
+  public int size() {
+    return size.get();
+  }
+
+  public int getDimensions() {
+    return dimensions;
+  }
+
+  public int getCapacity() {
+    return capacity;
+  }
+
+  public Space getSpace() {
+    return space;
+  }
+
+  /**
+   * Moves from ep to the closest neighbor on the layer as long as the distance decreases.
+   */
+  private int greedySearch(SearchState state, float[] q, int offset, int ep, float epDistance,
+                           int layer) {
+    boolean changed = true;
+    while (changed) {
+      changed = false;
+      int count = copyNeighbors(ep, layer, state.neighbors);
+      for (int i = 0; i < count; i++) {
+        int n = state.neighbors[i];
+        float d = distance(q, offset, n);
+        if (d < epDistance) {
+          ep = n;
+          epDistance = d;
+          changed = true;
+        }
+      }
+    }
+    return ep;
+  }
+
+  /**
+   * Best first search on a layer, leaves the ef closest nodes found in state.results.
+   */
+  private void searchLayer(SearchState state, float[] q, int offset, int ep, float epDistance,
+                           int ef, int layer) {
+    NodeHeap candidates = state.candidates;
+    NodeHeap results = state.results;
+    candidates.clear();
+    results.clear();
+
+    state.startVisit();
+    state.visit(ep);
+    candidates.push(epDistance, ep);
+    results.push(epDistance, ep);
+
+    while (!candidates.isEmpty()) {
+      if (candidates.peekKey() > results.peekKey() && results.size() >= ef) {
+        break;
+      }
+      int c = candidates.pop();
+
+      int count = copyNeighbors(c, layer, state.neighbors);
+      for (int i = 0; i < count; i++) {
+        int n = state.neighbors[i];
+        if (!state.visit(n)) {
+          continue;
+        }
+
+        float d = distance(q, offset, n);
+        if (results.size() < ef || d < results.peekKey()) {
+          candidates.push(d, n);
+          results.push(d, n);
+          if (results.size() > ef) {
+            results.pop();
+          }
+        }
+      }
+    }
+  }
+
+  /**
+   * Adds id to the neighbors of node on the layer, a full list is pruned by the heuristic.
+   */
+  private void connect(SearchState state, int node, int id, int layer) {
+    int max = layer == 0 ? m0 : m;
+
+    synchronized (lock(node)) {
+      int[] links = layer == 0 ? links0 : upperLinks[node];
+      int start = linkOffset(node, layer);
+      int count = links[start];
+      if (count < max) {
+        links[start + 1 + count] = id;
+        links[start] = count + 1;
+        return;
+      }
+
+      // sort the old neighbors and id by their distance to node
+      int[] ids = state.pruneIds;
+      float[] distances = state.pruneDistances;
+      for (int i = 0; i <= count; i++) {
+        int n = i < count ? links[start + 1 + i] : id;
+        float d = distance(vectors, node * dimensions, n);
+        int j = i;
+        while (j > 0 && distances[j - 1] > d) {
+          ids[j] = ids[j - 1];
+          distances[j] = distances[j - 1];
+          j--;
+        }
+        ids[j] = n;
+        distances[j] = d;
+      }
+
+      int selected = selectNeighbors(ids, distances, count + 1, max, state.pruned);
+      System.arraycopy(state.pruned, 0, links, start + 1, selected);
+      links[start] = selected;
+    }
+  }
+
+  /**
+   * Heuristic of Malkov and Yashunin: a candidate is kept if it is closer to the base node than to
+   * every kept candidate, thus the neighbors point in different directions.
+   *
+   * @param ids       candidates sorted by their distance to the base node
+   * @param distances distances of the candidates to the base node
+   * @param count     number of candidates
+   * @param max       maximal number of selected candidates
+   * @param out       receives the selected candidates
+   * @return number of selected candidates
+   */
+  private int selectNeighbors(int[] ids, float[] distances, int count, int max, int[] out) {
+    int selected = 0;
+    for (int i = 0; i < count && selected < max; i++) {
+      int c = ids[i];
+      boolean keep = true;
+      for (int j = 0; j < selected; j++) {
+        if (distance(vectors, c * dimensions, out[j]) < distances[i]) {
+          keep = false;
+          break;
+        }
+      }
+      if (keep) {
+        out[selected++] = c;
+      }
+    }
+    return selected;
+  }
+
+  private int copyNeighbors(int node, int layer, int[] out) {
+    synchronized (lock(node)) {
+      int[] links = layer == 0 ? links0 : upperLinks[node];
+      int start = linkOffset(node, layer);
+      int count = links[start];
+      System.arraycopy(links, start + 1, out, 0, count);
+      return count;
+    }
+  }
+
+  private int linkOffset(int node, int layer) {
+    return layer == 0 ? node * (m0 + 1) : (layer - 1) * (m + 1);
+  }
+
+  private Object lock(int node) {
+    return locks[node % locks.length];
+  }
+
+  private int randomLevel() {
+    double r = random.nextDouble();
+    return Math.min((int) (-Math.log(1 - r) * levelMultiplier), MAX_LEVEL);
+  }
+
+  /**
+   * @return distance of q[offset, offset + dimensions) to node, squared in the L2 space
+   */
+  private float distance(float[] q, int offset, int node) {
+    float[] v = vectors;
+    int nodeOffset = node * dimensions;
+    float s0 = 0, s1 = 0, s2 = 0, s3 = 0;
+    int i = 0;
+    if (space == Space.COSINE) {
+      for (; i + 3 < dimensions; i += 4) {
+        s0 += q[offset + i] * v[nodeOffset + i];
+        s1 += q[offset + i + 1] * v[nodeOffset + i + 1];
+        s2 += q[offset + i + 2] * v[nodeOffset + i + 2];
+        s3 += q[offset + i + 3] * v[nodeOffset + i + 3];
+      }
+      for (; i < dimensions; i++) {
+        s0 += q[offset + i] * v[nodeOffset + i];
+      }
+      return 1 - (s0 + s1 + s2 + s3);
+    } else {
+      for (; i + 3 < dimensions; i += 4) {
+        float d0 = q[offset + i] - v[nodeOffset + i];
+        float d1 = q[offset + i + 1] - v[nodeOffset + i + 1];
+        float d2 = q[offset + i + 2] - v[nodeOffset + i + 2];
+        float d3 = q[offset + i + 3] - v[nodeOffset + i + 3];
+        s0 += d0 * d0;
+        s1 += d1 * d1;
+        s2 += d2 * d2;
+        s3 += d3 * d3;
+      }
+      for (; i < dimensions; i++) {
+        float d = q[offset + i] - v[nodeOffset + i];
+        s0 += d * d;
+      }
+      return s0 + s1 + s2 + s3;
+    }
+  }
+
+  private void normalize(float[] v, int offset) {
+    double norm = 0;
+    for (int i = offset; i < offset + dimensions; i++) {
+      norm += v[i] * v[i];
+    }
+    if (norm > 0) {
+      float scale = (float) (1 / Math.sqrt(norm));
+      for (int i = offset; i < offset + dimensions; i++) {
+        v[i] *= scale;
+      }
+    }
+  }
+
+  private void checkVector(float[] vector) {
+    if (vector == null) {
+      throw new IllegalArgumentException("Vector cannot be null!");
+    }
+    if (vector.length != dimensions) {
+      throw new IllegalArgumentException("Vector must have " + dimensions + " dimensions");
+    }
+  }
+
+  private void checkId(int id) {
+    if (id < 0 || id >= Math.min(nextId.get(), capacity)) {
+      throw new IndexOutOfBoundsException("Invalid id " + id);
+    }
+  }
+
+  /**
+   * Buffers of one thread.
+   */
+  private class SearchState {
+
+    final NodeHeap candidates = new NodeHeap(false, efConstruction);
+    final NodeHeap results = new NodeHeap(true, efConstruction);
+    final int[] neighbors = new int[m0];
+    final int[] selected = new int[m0];
+    final int[] pruneIds = new int[m0 + 1];
+    final float[] pruneDistances = new float[m0 + 1];
+    final int[] pruned = new int[m0];
+
+    int[] resultIds = new int[efConstruction];
+    float[] resultDistances = new float[efConstruction];
+
+    // node i is visited iff visited[i] == tag
+    final int[] visited = new int[capacity];
+    int tag;
+
+    void startVisit() {
+      tag++;
+      if (tag == 0) {
+        Arrays.fill(visited, 0);
+        tag = 1;
+      }
+    }
+
+    /**
+     * @return true iff node was not visited before
+     */
+    boolean visit(int node) {
+      if (visited[node] == tag) {
+        return false;
+      }
+      visited[node] = tag;
+      return true;
+    }
+
+    /**
+     * Moves the results into resultIds and resultDistances, the closest first.
+     *
+     * @return number of results
+     */
+    int drainResults() {
+      int count = results.size();
+      if (resultIds.length < count) {
+        resultIds = new int[count];
+        resultDistances = new float[count];
+      }
+      for (int i = count - 1; i >= 0; i--) {
+        resultDistances[i] = (float) results.peekKey();
+        resultIds[i] = results.pop();
+      }
+      return count;
+    }
+  }
+
+  // ===== Builder Pattern Methods =====
+
+  /**
+   * @return        {@link Builder}
+   * @see Builder
+   * @see HnswIndex
+   */
+  public static Builder getBuilder() {
+    return new Builder();
+  }
+
+  /**
+   * @return empty cosine index for 1024 vectors of 256 dimensions
+   * @see HnswIndex
+   */
+  public static HnswIndex getInstance() {
+    return new Builder().build();
+  }
+
+  // ===== Builder Class =====
+
+  /**
+   * HnswIndex Builder Restriction: dimensions and capacity must be greater than 0, m must be at
+   * least 2, ef and efConstruction must be greater than 0.
+   *
+   * @param dimensions     number of entries of every vector (default: 256)
+   * @param capacity       maximal number of vectors (default: 1024)
+   * @param space          distance of the vectors (default: COSINE)
+   * @param m              number of neighbors per node and layer, twice as many on the bottom
+   *                       layer (default: 16)
+   * @param efConstruction size of the candidate list during insertion (default: 200)
+   * @param ef             default size of the candidate list of a query (default: 50)
+   * @param seed           seed of the random layer assignment (default: 42)
+   * @author Adrien Favre-Bully
+   * @author Florian Froese
+   * @author Adrian Schmidmeister
+   * @since 1.1
+   */
+  public static class Builder {
+
+    private int dimensions = DEFAULT_DIMENSIONS;
+    private int capacity = DEFAULT_CAPACITY;
+    private Space space = DEFAULT_SPACE;
+    private int m = DEFAULT_M;
+    private int efConstruction = DEFAULT_EF_CONSTRUCTION;
+    private int ef = DEFAULT_EF;
+    private long seed = DEFAULT_SEED;
+
+    public HnswIndex build() {
+      // check constraints
+      if (dimensions < 1) {
+        throw new IllegalArgumentException("dimensions must be greater than 0!");
+      }
+      if (capacity < 1) {
+        throw new IllegalArgumentException("capacity must be greater than 0!");
+      }
+      if (space == null) {
+        throw new IllegalArgumentException("space cannot be null!");
+      }
+      if (m < 2) {
+        throw new IllegalArgumentException("m must be at least 2!");
+      }
+      if (efConstruction < 1 || ef < 1) {
+        throw new IllegalArgumentException("ef and efConstruction must be greater than 0!");
+      }
+
+      return new HnswIndex(this);
+    }
+
+    public Builder dimensions(int d) {
+      dimensions = d;
+      return this;
+    }
+
+    /**
+     * Sets the maximal number of vectors. The arrays of the index are allocated in full by
+     * {@link #build()}.
+     *
+     * @param c capacity
+     * @return this builder object
+     */
+    public Builder capacity(int c) {
+      capacity = c;
+      return this;
+    }
+
+    public Builder space(Space s) {
+      space = s;
+      return this;
+    }
+
+    /**
+     * Sets the number of neighbors per node and layer. Larger values improve the recall for high
+     * dimensional data but cost memory and insertion time.
+     *
+     * @param m number of neighbors
+     * @return this builder object
+     */
+    public Builder m(int m) {
+      this.m = m;
+      return this;
+    }
+
+    public Builder efConstruction(int ef) {
+      efConstruction = ef;
+      return this;
+    }
+
+    /**
+     * Sets the default size of the candidate list of a query, see
+     * {@link HnswIndex#query(float[], int, int)}.
+     *
+     * @param ef size of the candidate list
+     * @return this builder object
+     */
+    public Builder ef(int ef) {
+      this.ef = ef;
+      return this;
+    }
+
+    public Builder seed(long s) {
+      seed = s;
+      return this;
+    }
+  }
+}
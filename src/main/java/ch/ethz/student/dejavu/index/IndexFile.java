@@ -0,0 +1,490 @@
+/*
+ * Copyright 2013 Adrien Favre-Bully, Florian Froese, Adrian Schmidmeister
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * 		http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+*/
+package ch.ethz.student.dejavu.index;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.CharBuffer;
+import java.nio.DoubleBuffer;
+import java.nio.IntBuffer;
+import java.nio.LongBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+
+import ch.ethz.student.dejavu.strings.LevenshteinDistance;
+import ch.ethz.student.dejavu.strings.OptimalStringAlignmentDistance;
+
+/**
+ * Versioned container of named primitive arrays, written once and mapped read-only into memory
+ * with {@link FileChannel#map}. The sections are returned as buffer views of their mappings, thus
+ * an index opened from a file is queried in place without deserialization and its pages are
+ * loaded lazily by the operating system.
+ *
+ * <p>Layout, all values little endian:</p>
+ * <ul>
+ * <li>header: magic, version, type of the stored structure, number of sections</li>
+ * <li>section table: name, element type, byte offset and byte length of every section</li>
+ * <li>section data, every section aligned to 8 bytes</li>
+ * </ul>
+ *
+ * <p>Every section is mapped on its own, a mapping and thus a section is limited to 2 GB but the
+ * file is not. An opened file is thread-safe.</p>
+ *
+ * @author Adrien Favre-Bully
+ * @author Florian Froese
+ * @author Adrian Schmidmeister
+ * @since 1.1
+ */
+public class IndexFile {
+
+  public static final int MAGIC = 0x444A5655;
+  public static final int VERSION = 1;
+
+  private static final int INTS = 1;
+  private static final int LONGS = 2;
+  private static final int DOUBLES = 3;
+  private static final int CHARS = 4;
+  private static final int BYTES = 5;
+
+  private final String type;
+  private final HashMap<String, ByteBuffer> sections = new HashMap<String, ByteBuffer>();
+  private final HashMap<String, Integer> sectionTypes = new HashMap<String, Integer>();
+
+  private IndexFile(String type) {
+    this.type = type;
+  }
+
+  /**
+   * Reads the section table of a file written by a {@link Writer} and maps every section.
+   *
+   * @param file index file
+   * @return opened index file
+   * @throws IOException if the file cannot be read or has an unknown format
+   */
+  public static IndexFile open(File file) throws IOException {
+    RandomAccessFile raf = new RandomAccessFile(file, "r");
+    try {
+      FileChannel channel = raf.getChannel();
+      HeaderReader header = new HeaderReader(channel);
+      if (header.readInt() != MAGIC) {
+        throw new IOException("Not an index file.");
+      }
+      int version = header.readInt();
+      if (version != VERSION) {
+        throw new IOException("Unsupported index file version " + version);
+      }
+      IndexFile indexFile = new IndexFile(header.readString());
+
+      int count = header.readInt();
+      for (int i = 0; i < count; i++) {
+        String name = header.readString();
+        int elementType = header.readInt();
+        long offset = header.readLong();
+        long length = header.readLong();
+        if (offset < 0 || length < 0 || length > Integer.MAX_VALUE
+            || offset + length > channel.size()) {
+          throw new IOException("Corrupt section " + name);
+        }
+
+        // a mapping per section, the mappings stay valid after the channel is closed
+        ByteBuffer section = length == 0
+                             ? ByteBuffer.allocate(0).asReadOnlyBuffer()
+                             : channel.map(FileChannel.MapMode.READ_ONLY, offset, length);
+        indexFile.sections.put(name, section);
+        indexFile.sectionTypes.put(name, elementType);
+      }
+      return indexFile;
+    } finally {
+      raf.close();
+    }
+  }
+
+  /**
+   * @return type of the stored structure
+   */
+  public String getType() {
+    return type;
+  }
+
+  public boolean hasSection(String name) {
+    return sections.containsKey(name);
+  }
+
+  public IntBuffer getInts(String name) throws IOException {
+    return section(name, INTS).asIntBuffer();
+  }
+
+  public LongBuffer getLongs(String name) throws IOException {
+    return section(name, LONGS).asLongBuffer();
+  }
+
+  public DoubleBuffer getDoubles(String name) throws IOException {
+    return section(name, DOUBLES).asDoubleBuffer();
+  }
+
+  public CharBuffer getChars(String name) throws IOException {
+    return section(name, CHARS).asCharBuffer();
+  }
+
+  public ByteBuffer getBytes(String name) throws IOException {
+    return section(name, BYTES);
+  }
+
+  /**
+   * @param name name of a section written by {@link Writer#string(String, String)}
+   * @return the string
+   */
+  public String getString(String name) throws IOException {
+    return getChars(name).toString();
+  }
+
+  /**
+   * @return section of exactly count ints, e.g. one per node of a tree
+   */
+  IntBuffer getInts(String name, int count) throws IOException {
+    IntBuffer buffer = getInts(name);
+    if (buffer.capacity() != count) {
+      throw new IOException("Corrupt section " + name);
+    }
+    return buffer;
+  }
+
+  DoubleBuffer getDoubles(String name, int count) throws IOException {
+    DoubleBuffer buffer = getDoubles(name);
+    if (buffer.capacity() != count) {
+      throw new IOException("Corrupt section " + name);
+    }
+    return buffer;
+  }
+
+  /**
+   * @throws IOException if the file does not store a structure of the given type
+   */
+  void checkType(String expected) throws IOException {
+    if (!expected.equals(type)) {
+      throw new IOException("Not a " + expected + " file.");
+    }
+  }
+
+  /**
+   * Checks a metric passed to an opened structure against the class and the weights written by
+   * {@link Writer#metric(Object)}. Other parameters of a metric, e.g. the tokenizer of a vector
+   * similarity, are not stored and must match the ones the structure was built with.
+   */
+  void checkMetric(Object metric) throws IOException {
+    if (metric == null) {
+      throw new IllegalArgumentException("metric must be set!");
+    }
+    String written = getString("metric");
+    if (!written.equals(metric.getClass().getName())) {
+      throw new IllegalArgumentException("metric must be a " + written + "!");
+    }
+    if (!DoubleBuffer.wrap(weightsOf(metric)).equals(getDoubles("metricWeights"))) {
+      throw new IllegalArgumentException("metric must have the weights it was written with!");
+    }
+  }
+
+  /**
+   * @return edit weights of a LevenshteinDistance or an OptimalStringAlignmentDistance, no weights
+   * for other metrics
+   */
+  static double[] weightsOf(Object metric) {
+    if (metric instanceof LevenshteinDistance) {
+      LevenshteinDistance m = (LevenshteinDistance) metric;
+      return new double[]{m.getInsertionWeight(), m.getDeletionWeight(),
+                          m.getSubstitutionWeight()};
+    }
+    if (metric instanceof OptimalStringAlignmentDistance) {
+      OptimalStringAlignmentDistance m = (OptimalStringAlignmentDistance) metric;
+      return new double[]{m.getInsertionWeight(), m.getDeletionWeight(),
+                          m.getSubstitutionWeight(), m.getTranspositionWeight()};
+    }
+    return new double[0];
+  }
+
+  /**
+   * Binary search in a section of ascending longs, e.g. the sorted hashes of an opened index.
+   *
+   * @return index of the key or -1 if it is missing
+   */
+  static int search(LongBuffer sorted, long key) {
+    int lo = 0;
+    int hi = sorted.capacity() - 1;
+    while (lo <= hi) {
+      int mid = (lo + hi) >>> 1;
+      long value = sorted.get(mid);
+      if (value < key) {
+        lo = mid + 1;
+      } else if (value > key) {
+        hi = mid - 1;
+      } else {
+        return mid;
+      }
+    }
+    return -1;
+  }
+
+  private ByteBuffer section(String name, int elementType) throws IOException {
+    ByteBuffer section = sections.get(name);
+    if (section == null || sectionTypes.get(name) != elementType) {
+      throw new IOException("Missing section " + name);
+    }
+    return section.duplicate().order(ByteOrder.LITTLE_ENDIAN);
+  }
+
+  /**
+   * Reads the header and the section table with positional reads of the channel, which is not
+   * mapped as a whole.
+   */
+  private static final class HeaderReader {
+
+    private final FileChannel channel;
+    private final ByteBuffer buffer = ByteBuffer.allocate(8).order(ByteOrder.LITTLE_ENDIAN);
+    private long position;
+
+    private HeaderReader(FileChannel channel) {
+      this.channel = channel;
+    }
+
+    private int readInt() throws IOException {
+      return read(4).getInt();
+    }
+
+    private long readLong() throws IOException {
+      return read(8).getLong();
+    }
+
+    private String readString() throws IOException {
+      int length = readInt();
+      if (length < 0 || position + 2L * length > channel.size()) {
+        throw new IOException("Corrupt index file.");
+      }
+      ByteBuffer bytes = ByteBuffer.allocate(2 * length).order(ByteOrder.LITTLE_ENDIAN);
+      readFully(bytes);
+      bytes.flip();
+      char[] chars = new char[length];
+      for (int i = 0; i < length; i++) {
+        chars[i] = bytes.getChar();
+      }
+      return new String(chars);
+    }
+
+    private ByteBuffer read(int bytes) throws IOException {
+      buffer.clear();
+      buffer.limit(bytes);
+      readFully(buffer);
+      buffer.flip();
+      return buffer;
+    }
+
+    private void readFully(ByteBuffer bytes) throws IOException {
+      while (bytes.hasRemaining()) {
+        int read = channel.read(bytes, position);
+        if (read < 0) {
+          // truncated file
+          throw new IOException("Corrupt index file.");
+        }
+        position += read;
+      }
+    }
+  }
+
+  // ===== Writer Class =====
+
+  /**
+   * Collects the sections of a structure and writes them to a file.
+   *
+   * @author Adrien Favre-Bully
+   * @author Florian Froese
+   * @author Adrian Schmidmeister
+   * @since 1.1
+   */
+  public static class Writer {
+
+    private final String type;
+    private final List<String> names = new ArrayList<String>();
+    private final List<Integer> types = new ArrayList<Integer>();
+    private final List<ByteBuffer> data = new ArrayList<ByteBuffer>();
+
+    /**
+     * @param type type of the stored structure, checked when the file is opened
+     */
+    public Writer(String type) {
+      this.type = type;
+    }
+
+    public Writer ints(String name, IntBuffer values, int count) {
+      ByteBuffer bytes = allocate(4L * count);
+      for (int i = 0; i < count; i++) {
+        bytes.putInt(values.get(i));
+      }
+      return add(name, INTS, bytes);
+    }
+
+    public Writer longs(String name, LongBuffer values, int count) {
+      ByteBuffer bytes = allocate(8L * count);
+      for (int i = 0; i < count; i++) {
+        bytes.putLong(values.get(i));
+      }
+      return add(name, LONGS, bytes);
+    }
+
+    public Writer doubles(String name, DoubleBuffer values, int count) {
+      ByteBuffer bytes = allocate(8L * count);
+      for (int i = 0; i < count; i++) {
+        bytes.putDouble(values.get(i));
+      }
+      return add(name, DOUBLES, bytes);
+    }
+
+    public Writer chars(String name, CharBuffer values, int count) {
+      ByteBuffer bytes = allocate(2L * count);
+      for (int i = 0; i < count; i++) {
+        bytes.putChar(values.get(i));
+      }
+      return add(name, CHARS, bytes);
+    }
+
+    public Writer bytes(String name, ByteBuffer values, int count) {
+      ByteBuffer bytes = allocate(count);
+      for (int i = 0; i < count; i++) {
+        bytes.put(values.get(i));
+      }
+      return add(name, BYTES, bytes);
+    }
+
+    /**
+     * Writes a single string, e.g. the class of a metric, see {@link IndexFile#getString(String)}.
+     */
+    public Writer string(String name, String value) {
+      return chars(name, CharBuffer.wrap(value), value.length());
+    }
+
+    /**
+     * Writes the class of a metric to the section metric and its weights to metricWeights, see
+     * {@link IndexFile#checkMetric(Object)}.
+     */
+    Writer metric(Object metric) {
+      double[] weights = weightsOf(metric);
+      string("metric", metric.getClass().getName());
+      return doubles("metricWeights", DoubleBuffer.wrap(weights), weights.length);
+    }
+
+    /**
+     * Writes the concatenated characters of the strings to the section nameChars and the offset of
+     * every string and the end offset to nameOffsets, which a {@link StringTable} reads in place.
+     */
+    public Writer strings(String name, String[] strings, int count) {
+      long length = 0;
+      for (int i = 0; i < count; i++) {
+        length += strings[i].length();
+      }
+      if (length > Integer.MAX_VALUE) {
+        throw new IllegalArgumentException("A section is limited to 2 GB.");
+      }
+
+      CharBuffer chars = CharBuffer.allocate((int) length);
+      IntBuffer offsets = IntBuffer.allocate(count + 1);
+      for (int i = 0; i < count; i++) {
+        offsets.put(i, chars.position());
+        chars.put(strings[i]);
+      }
+      offsets.put(count, chars.position());
+      chars(name + "Chars", chars, chars.capacity());
+      return ints(name + "Offsets", offsets, count + 1);
+    }
+
+    /**
+     * @param file file to write, an existing file is replaced
+     * @throws IOException if the file cannot be written
+     */
+    public void write(File file) throws IOException {
+      int headerSize = 12 + 2 * type.length() + 4;
+      for (String name : names) {
+        headerSize += 4 + 2 * name.length() + 4 + 8 + 8;
+      }
+      ByteBuffer header = ByteBuffer.allocate(headerSize).order(ByteOrder.LITTLE_ENDIAN);
+      header.putInt(MAGIC).putInt(VERSION);
+      writeString(header, type);
+      header.putInt(names.size());
+
+      long offset = align(headerSize);
+      for (int i = 0; i < names.size(); i++) {
+        writeString(header, names.get(i));
+        header.putInt(types.get(i));
+        header.putLong(offset);
+        header.putLong(data.get(i).capacity());
+        offset = align(offset + data.get(i).capacity());
+      }
+
+      RandomAccessFile raf = new RandomAccessFile(file, "rw");
+      try {
+        raf.setLength(0);
+        FileChannel channel = raf.getChannel();
+        header.flip();
+        writeFully(channel, header, 0);
+        offset = align(headerSize);
+        for (ByteBuffer bytes : data) {
+          bytes.flip();
+          writeFully(channel, bytes, offset);
+          offset = align(offset + bytes.limit());
+        }
+        raf.setLength(offset);
+      } finally {
+        raf.close();
+      }
+    }
+
+    private Writer add(String name, int elementType, ByteBuffer bytes) {
+      if (names.contains(name)) {
+        throw new IllegalArgumentException("name must be unique!");
+      }
+      names.add(name);
+      types.add(elementType);
+      data.add(bytes);
+      return this;
+    }
+
+    private static ByteBuffer allocate(long bytes) {
+      if (bytes > Integer.MAX_VALUE) {
+        throw new IllegalArgumentException("A section is limited to 2 GB.");
+      }
+      return ByteBuffer.allocate((int) bytes).order(ByteOrder.LITTLE_ENDIAN);
+    }
+
+    private static long align(long offset) {
+      return (offset + 7) & ~7L;
+    }
+
+    private static void writeString(ByteBuffer buffer, String s) {
+      buffer.putInt(s.length());
+      for (int i = 0; i < s.length(); i++) {
+        buffer.putChar(s.charAt(i));
+      }
+    }
+
+    private static void writeFully(FileChannel channel, ByteBuffer bytes, long position)
+        throws IOException {
+      while (bytes.hasRemaining()) {
+        position += channel.write(bytes, position);
+      }
+    }
+  }
+}
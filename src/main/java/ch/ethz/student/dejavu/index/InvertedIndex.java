@@ -0,0 +1,396 @@
+/*
+ * Copyright 2013 Adrien Favre-Bully, Florian Froese, Adrian Schmidmeister
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * 		http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+*/
+package ch.ethz.student.dejavu.index;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+import ch.ethz.student.dejavu.vectors.CosineDistance;
+import ch.ethz.student.dejavu.vectors.MatchingCoefficient;
+import ch.ethz.student.dejavu.vectors.VectorSimilarity;
+
+/**
+ * Inverted index for top-k retrieval with {@link CosineDistance} (TF-IDF weighted) or the
+ * normalized {@link MatchingCoefficient}. The tokens are interned in a {@link TokenDictionary} and
+ * every token keeps a posting list of (id, weight) pairs sorted by id together with the maximal
+ * weight of the list.
+ *
+ * <p>A query uses WAND (Broder et al.): the score of an entry is a sum of contributions of the
+ * shared tokens, each bounded by the contribution of the maximal weight of its list. The cursors
+ * are ordered by their current id, the first id at which the bounds of the preceding cursors
+ * exceed the k-th best score so far is the pivot, and all cursors before the pivot skip ahead to
+ * it without scoring the entries in between. Thus the work of a query is dominated by its rare
+ * tokens once k good results are found, and not by the number of entries.</p>
+ *
+ * <ul>
+ * <li>Cosine: the weight of a token is tf * idf, idf = ln((n + 1) / (df + 1)) + 1, divided by the
+ * norm of the entry. The score is the scalar product with the equally weighted query. Without idf
+ * the score equals {@link CosineDistance#computeUnnormalizedSimilarity(String, String)}.</li>
+ * <li>Matching: the weight of a token is 1 / |entry|, the contribution to a query Q is
+ * min(1 / |Q|, 1 / |entry|), thus the score equals
+ * {@link MatchingCoefficient#computeSimilarity(String, String)}.</li>
+ * </ul>
+ *
+ * <p>All posting lists share one array and the idf weights of the cosine depend on the whole
+ * collection, thus a call to {@link #add(String)} invalidates every posting list and its maximal
+ * weight, the upper bound of WAND. Both are recomputed by the next query.</p>
+ *
+ * @author Adrien Favre-Bully
+ * @author Florian Froese
+ * @author Adrian Schmidmeister
+ * @since 1.1
+ */
+public class InvertedIndex {
+
+  public static final boolean DEFAULT_IDF = true;
+
+  private static final int INITIAL_CAPACITY = 16;
+
+  private VectorSimilarity metric;
+  private boolean cosine;
+  private boolean idf;
+
+  private TokenDictionary dictionary = new TokenDictionary();
+
+  // token ids and frequencies of entry i at [entryStart[i], entryStart[i + 1])
+  private int[] entryStart = new int[INITIAL_CAPACITY + 1];
+  private int[] entryTokens = new int[INITIAL_CAPACITY];
+  private int[] entryCounts = new int[INITIAL_CAPACITY];
+  private int size;
+
+  // posting list of token t at [postingStart[t], postingStart[t + 1])
+  private int[] postingStart;
+  private int[] postingIds;
+  private float[] postingWeights;
+  private float[] maxWeights;
+  private boolean dirty;
+
+  private InvertedIndex(Builder b) {
+    this.metric = b.metric;
+    this.cosine = b.metric instanceof CosineDistance;
+    this.idf = b.idf;
+  }
+
+  /**
+   * @param s string
+   * @return id of the new entry
+   */
+  public int add(String s) {
+    HashMap<Object, Integer> counts = metric.getTokenCounts(s);
+    int[] tokens = dictionary.addDocument(counts.keySet());
+
+    int start = entryStart[size];
+    int end = start + tokens.length;
+    if (end > entryTokens.length) {
+      int capacity = Math.max(end, entryTokens.length * 2);
+      entryTokens = Arrays.copyOf(entryTokens, capacity);
+      entryCounts = Arrays.copyOf(entryCounts, capacity);
+    }
+    for (int i = 0; i < tokens.length; i++) {
+      entryTokens[start + i] = tokens[i];
+      entryCounts[start + i] = counts.get(dictionary.getToken(tokens[i]));
+    }
+
+    if (size + 2 > entryStart.length) {
+      entryStart = Arrays.copyOf(entryStart, entryStart.length * 2);
+    }
+    entryStart[++size] = end;
+    dirty = true;
+    return size - 1;
+  }
+
+  /**
+   * @param s query string
+   * @param k number of results
+   * @return ids of the k best entries, the best first; fewer if less entries share a token with s
+   */
+  public int[] query(String s, int k) {
+    return query(s, k, null);
+  }
+
+  /**
+   * @param s      query string
+   * @param k      number of results
+   * @param scores receives the score of the i-th result at index i, may be null
+   * @return ids of the k best entries, the best first; fewer if less entries share a token with s
+   */
+  public int[] query(String s, int k, double[] scores) {
+    if (k < 1) {
+      throw new IllegalArgumentException("k must be greater than 0!");
+    }
+    if (dirty) {
+      buildPostings();
+    }
+
+    // one cursor per known query token
+    HashMap<Object, Integer> counts = metric.getTokenCounts(s);
+    int terms = counts.size();
+    int[] position = new int[terms];
+    int[] end = new int[terms];
+    double[] queryWeights = new double[terms];
+    double[] bounds = new double[terms];
+
+    int cursors = 0;
+    double norm = 0;
+    for (Map.Entry<Object, Integer> e : counts.entrySet()) {
+      int token = dictionary.getId(e.getKey());
+      int df = token < 0 ? 0 : dictionary.getDocumentFrequency(token);
+      double w = cosine ? e.getValue() * idf(df) : 1.0 / terms;
+      norm += w * w;
+      if (token >= 0) {
+        position[cursors] = postingStart[token];
+        end[cursors] = postingStart[token + 1];
+        queryWeights[cursors] = w;
+        bounds[cursors] = maxWeights[token];
+        cursors++;
+      }
+    }
+    norm = cosine ? Math.sqrt(norm) : 1;
+    for (int c = 0; c < cursors; c++) {
+      queryWeights[c] /= norm;
+      bounds[c] = contribution(queryWeights[c], bounds[c]);
+    }
+
+    NodeHeap heap = new NodeHeap(false, k + 1);
+    int[] order = new int[cursors];
+    for (int c = 0; c < cursors; c++) {
+      order[c] = c;
+    }
+
+    int active = cursors;
+    while (active > 0) {
+      sortByCurrentId(order, active, position);
+      double threshold = heap.size() < k ? 0 : heap.peekKey();
+
+      // find the pivot, the first cursor at which the summed bounds exceed the threshold
+      double bound = 0;
+      int pivot = -1;
+      for (int i = 0; i < active; i++) {
+        bound += bounds[order[i]];
+        if (bound > threshold) {
+          pivot = i;
+          break;
+        }
+      }
+      if (pivot < 0) {
+        break;
+      }
+      int pivotId = postingIds[position[order[pivot]]];
+
+      if (postingIds[position[order[0]]] == pivotId) {
+        // all cursors up to the pivot are on the pivot id, score it
+        double score = 0;
+        for (int i = 0; i < active && postingIds[position[order[i]]] == pivotId; i++) {
+          int c = order[i];
+          score += contribution(queryWeights[c], postingWeights[position[c]]);
+          position[c]++;
+        }
+        if (heap.size() < k) {
+          heap.push(score, pivotId);
+        } else if (score > threshold) {
+          heap.push(score, pivotId);
+          heap.pop();
+        }
+      } else {
+        // no id before the pivot id can beat the threshold
+        for (int i = 0; i < pivot; i++) {
+          int c = order[i];
+          position[c] = advance(postingIds, position[c], end[c], pivotId);
+        }
+      }
+
+      // drop exhausted cursors
+      int kept = 0;
+      for (int i = 0; i < active; i++) {
+        if (position[order[i]] < end[order[i]]) {
+          order[kept++] = order[i];
+        }
+      }
+      active = kept;
+    }
+
+    int[] result = new int[heap.size()];
+    for (int i = result.length - 1; i >= 0; i--) {
+      if (scores != null) {
+        scores[i] = heap.peekKey();
+      }
+      result[i] = heap.pop();
+    }
+    return result;
+  }
+
+  public int size() {
+    return size;
+  }
+
+  public TokenDictionary getDictionary() {
+    return dictionary;
+  }
+
+  private double idf(int df) {
+    return idf ? Math.log((size + 1.0) / (df + 1.0)) + 1 : 1;
+  }
+
+  private double contribution(double queryWeight, double weight) {
+    return cosine ? queryWeight * weight : Math.min(queryWeight, weight);
+  }
+
+  /**
+   * @return first position in [from, to) of the sorted ids with an id of at least target, to if
+   * there is none
+   */
+  static int advance(int[] postingIds, int from, int to, int target) {
+    // galloping search, skips are usually short
+    int step = 1;
+    int lo = from;
+    int hi = from;
+    while (hi < to && postingIds[hi] < target) {
+      lo = hi + 1;
+      hi += step;
+      step <<= 1;
+    }
+    hi = Math.min(hi, to);
+    while (lo < hi) {
+      int mid = (lo + hi) >>> 1;
+      if (postingIds[mid] < target) {
+        lo = mid + 1;
+      } else {
+        hi = mid;
+      }
+    }
+    return lo;
+  }
+
+  private void sortByCurrentId(int[] order, int count, int[] position) {
+    // insertion sort, the order changes little between iterations
+    for (int i = 1; i < count; i++) {
+      int c = order[i];
+      int id = postingIds[position[c]];
+      int j = i - 1;
+      while (j >= 0 && postingIds[position[order[j]]] > id) {
+        order[j + 1] = order[j];
+        j--;
+      }
+      order[j + 1] = c;
+    }
+  }
+
+  private void buildPostings() {
+    int tokens = dictionary.size();
+    postingStart = new int[tokens + 1];
+    for (int t = 0; t < tokens; t++) {
+      postingStart[t + 1] = postingStart[t] + dictionary.getDocumentFrequency(t);
+    }
+    int total = postingStart[tokens];
+    postingIds = new int[total];
+    postingWeights = new float[total];
+    maxWeights = new float[tokens];
+
+    double[] idfs = new double[tokens];
+    for (int t = 0; t < tokens; t++) {
+      idfs[t] = idf(dictionary.getDocumentFrequency(t));
+    }
+
+    // entries are visited in id order, thus every posting list is sorted by id
+    int[] fill = Arrays.copyOf(postingStart, tokens);
+    for (int id = 0; id < size; id++) {
+      int from = entryStart[id];
+      int to = entryStart[id + 1];
+
+      double norm = 0;
+      if (cosine) {
+        for (int i = from; i < to; i++) {
+          double w = entryCounts[i] * idfs[entryTokens[i]];
+          norm += w * w;
+        }
+        norm = Math.sqrt(norm);
+      }
+
+      for (int i = from; i < to; i++) {
+        int t = entryTokens[i];
+        float w = (float) (cosine ? entryCounts[i] * idfs[t] / norm : 1.0 / (to - from));
+        int p = fill[t]++;
+        postingIds[p] = id;
+        postingWeights[p] = w;
+        maxWeights[t] = Math.max(maxWeights[t], w);
+      }
+    }
+    dirty = false;
+  }
+
+  // ===== Builder Pattern Methods =====
+
+  /**
+   * @return        {@link Builder}
+   * @see Builder
+   * @see InvertedIndex
+   */
+  public static Builder getBuilder() {
+    return new Builder();
+  }
+
+  // ===== Builder Class =====
+
+  /**
+   * InvertedIndex Builder Restriction: metric must be a CosineDistance or a MatchingCoefficient
+   * with 0 dimensions, a MatchingCoefficient must take the keyset. The postings hold the exact
+   * token counts, thus hashed dense vectors would score differently.
+   *
+   * <p>Usage:</br> InvertedIndex index = InvertedIndex.getBuilder()</br>
+   * .metric(CosineDistance.getInstance()).build();</p>
+   *
+   * @param metric CosineDistance or MatchingCoefficient, used for the tokenization and the score
+   * @param idf    weight the tokens of the cosine score by their inverse document frequency
+   *               (default: true)
+   * @author Adrien Favre-Bully
+   * @author Florian Froese
+   * @author Adrian Schmidmeister
+   * @since 1.1
+   */
+  public static class Builder {
+
+    private VectorSimilarity metric = null;
+    private boolean idf = DEFAULT_IDF;
+
+    public InvertedIndex build() {
+      // check constraints
+      if (!(metric instanceof CosineDistance) && !(metric instanceof MatchingCoefficient)) {
+        throw new IllegalArgumentException(
+            "metric must be a CosineDistance or a MatchingCoefficient!");
+      }
+      if (metric.getDimensions() != 0) {
+        throw new IllegalArgumentException(
+            "metric must compare exact tokens, dimensions must be 0!");
+      }
+      if (metric instanceof MatchingCoefficient && !metric.isTakeKeyset()) {
+        throw new IllegalArgumentException(
+            "metric must compare token sets, takeKeyset must be true!");
+      }
+
+      return new InvertedIndex(this);
+    }
+
+    public Builder metric(VectorSimilarity m) {
+      metric = m;
+      return this;
+    }
+
+    public Builder idf(boolean i) {
+      idf = i;
+      return this;
+    }
+  }
+}
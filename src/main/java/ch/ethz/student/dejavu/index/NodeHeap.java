@@ -0,0 +1,123 @@
+/*
+ * Copyright 2013 Adrien Favre-Bully, Florian Froese, Adrian Schmidmeister
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * 		http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+*/
+package ch.ethz.student.dejavu.index;
+
+import java.util.Arrays;
+
+/**
+ * Binary heap of (key, id) pairs on primitive arrays. With distances as keys a min heap returns
+ * the closest node first, a max heap the farthest. With scores as keys a bounded min heap keeps
+ * the top-k nodes. Of equal keys the node with the larger id is returned first.
+ *
+ * @author Adrien Favre-Bully
+ * @author Florian Froese
+ * @author Adrian Schmidmeister
+ * @since 1.1
+ */
+class NodeHeap {
+
+  // keys are stored negated in a max heap, thus the array is always a min heap
+  private final double sign;
+  private double[] keys;
+  private int[] ids;
+  private int size;
+
+  NodeHeap(boolean max, int capacity) {
+    this.sign = max ? -1 : 1;
+    this.keys = new double[Math.max(capacity, 1)];
+    this.ids = new int[Math.max(capacity, 1)];
+  }
+
+  void push(double key, int id) {
+    if (size == keys.length) {
+      keys = Arrays.copyOf(keys, size * 2);
+      ids = Arrays.copyOf(ids, size * 2);
+    }
+
+    double k = sign * key;
+    int i = size++;
+    while (i > 0) {
+      int parent = (i - 1) >>> 1;
+      if (!above(k, id, keys[parent], ids[parent])) {
+        break;
+      }
+      keys[i] = keys[parent];
+      ids[i] = ids[parent];
+      i = parent;
+    }
+    keys[i] = k;
+    ids[i] = id;
+  }
+
+  /**
+   * @return id of the top node, which is removed
+   */
+  int pop() {
+    int top = ids[0];
+    size--;
+    if (size > 0) {
+      double key = keys[size];
+      int id = ids[size];
+      int i = 0;
+      while (true) {
+        int child = 2 * i + 1;
+        if (child >= size) {
+          break;
+        }
+        if (child + 1 < size && above(keys[child + 1], ids[child + 1], keys[child], ids[child])) {
+          child++;
+        }
+        if (!above(keys[child], ids[child], key, id)) {
+          break;
+        }
+        keys[i] = keys[child];
+        ids[i] = ids[child];
+        i = child;
+      }
+      keys[i] = key;
+      ids[i] = id;
+    }
+    return top;
+  }
+
+  /**
+   * @return true iff the first node belongs above the second one, of equal keys the larger id is
+   * above and thus removed first
+   */
+  private static boolean above(double key1, int id1, double key2, int id2) {
+    return key1 < key2 || (key1 == key2 && id1 > id2);
+  }
+
+  double peekKey() {
+    return sign * keys[0];
+  }
+
+  int peekId() {
+    return ids[0];
+  }
+
+  int size() {
+    return size;
+  }
+
+  boolean isEmpty() {
+    return size == 0;
+  }
+
+  void clear() {
+    size = 0;
+  }
+
+}
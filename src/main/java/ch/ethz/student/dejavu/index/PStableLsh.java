@@ -0,0 +1,384 @@
+/*
+ * Copyright 2013 Adrien Favre-Bully, Florian Froese, Adrian Schmidmeister
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * 		http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+*/
+package ch.ethz.student.dejavu.index;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import ch.ethz.student.dejavu.DistanceMetric;
+import ch.ethz.student.dejavu.utilities.HashUtils;
+import ch.ethz.student.dejavu.utilities.LongIntHashMap;
+import ch.ethz.student.dejavu.vectors.L1Distance;
+import ch.ethz.student.dejavu.vectors.L2Distance;
+import ch.ethz.student.dejavu.vectors.VectorSimilarity;
+
+/**
+ * Locality sensitive hashing index for {@link L1Distance} and {@link L2Distance} based on p-stable
+ * distributions (Datar et al.). The strings are projected into hashed token vectors, see
+ * {@link VectorSimilarity#getHashedVector(String, float[])}, and every table hashes a vector v by
+ * k functions h(v) = floor((a * v + b) / width), where the entries of a are drawn from a Cauchy
+ * distribution for L1 and from a Gaussian distribution for L2 and b is uniform in [0, width).
+ *
+ * <p>Strings with the same k hash values in at least one of the tables are candidates. The
+ * candidates are verified with the exact metric, thus a query never reports a wrong result but may
+ * miss a near string. More tables increase the recall, more hashes per table reduce the number of
+ * candidates, the width should be in the order of the query radius.</p>
+ *
+ * <p>The index is not thread-safe.</p>
+ *
+ * @author Adrien Favre-Bully
+ * @author Florian Froese
+ * @author Adrian Schmidmeister
+ * @since 1.1
+ */
+public class PStableLsh {
+
+  public static final int DEFAULT_DIMENSIONS = 256;
+  public static final int DEFAULT_TABLES = 8;
+  public static final int DEFAULT_HASHES = 4;
+  public static final double DEFAULT_WIDTH = 4.0;
+  public static final long DEFAULT_SEED = 42;
+
+  private static final int INITIAL_CAPACITY = 16;
+
+  private VectorSimilarity metric;
+  private DistanceMetric distance;
+  private int dimensions;
+  private int tables;
+  private int hashes;
+  private double width;
+
+  // projection j of table t at [(t * hashes + j) * dimensions, ...)
+  private float[] projections;
+  private double[] offsets;
+
+  // bucket lists: heads map a bucket key to id + 1, next[t][id] is the next id + 1 or 0
+  private LongIntHashMap[] heads;
+  private int[][] next;
+
+  private String[] strings;
+  // entries without tokens, they are only compared to queries without tokens
+  private boolean[] empty;
+  private int size;
+
+  // buffers of a single operation
+  private float[] vector;
+  private int[] nonZero;
+  private int[] candidates;
+  private int[] visited;
+  private int visitTag;
+
+  private PStableLsh(Builder b) {
+    this.metric = b.metric;
+    this.distance = (DistanceMetric) b.metric;
+    this.dimensions = b.dimensions;
+    this.tables = b.tables;
+    this.hashes = b.hashes;
+    this.width = b.width;
+
+    Random rnd = new Random(b.seed);
+    boolean cauchy = b.metric instanceof L1Distance;
+    projections = new float[tables * hashes * dimensions];
+    for (int i = 0; i < projections.length; i++) {
+      projections[i] = (float) (cauchy ? Math.tan(Math.PI * (rnd.nextDouble() - 0.5))
+                                       : rnd.nextGaussian());
+    }
+    offsets = new double[tables * hashes];
+    for (int i = 0; i < offsets.length; i++) {
+      offsets[i] = rnd.nextDouble() * width;
+    }
+
+    heads = new LongIntHashMap[tables];
+    next = new int[tables][INITIAL_CAPACITY];
+    for (int t = 0; t < tables; t++) {
+      heads[t] = new LongIntHashMap();
+    }
+    strings = new String[INITIAL_CAPACITY];
+
+    vector = new float[dimensions];
+    nonZero = new int[dimensions];
+    candidates = new int[INITIAL_CAPACITY];
+    visited = new int[INITIAL_CAPACITY];
+    empty = new boolean[INITIAL_CAPACITY];
+  }
+
+  /**
+   * @param s string
+   * @return id of the new entry
+   */
+  public int add(String s) {
+    if (s == null) {
+      throw new IllegalArgumentException("Input string cannot be null!");
+    }
+
+    if (size == strings.length) {
+      int capacity = size * 2;
+      strings = Arrays.copyOf(strings, capacity);
+      visited = Arrays.copyOf(visited, capacity);
+      empty = Arrays.copyOf(empty, capacity);
+      for (int t = 0; t < tables; t++) {
+        next[t] = Arrays.copyOf(next[t], capacity);
+      }
+    }
+
+    int id = size++;
+    strings[id] = s;
+
+    int count = project(s);
+    empty[id] = count == 0;
+    for (int t = 0; t < tables; t++) {
+      long key = bucket(t, count);
+      int head = heads[t].get(key);
+      next[t][id] = head;
+      heads[t].put(key, id + 1);
+    }
+
+    return id;
+  }
+
+  /**
+   * @param s      query string
+   * @param radius maximal distance
+   * @return ids of the found entries within radius of s, in ascending order
+   */
+  public int[] query(String s, double radius) {
+    int count = collectCandidates(s);
+
+    int[] result = new int[INITIAL_CAPACITY];
+    int found = 0;
+    for (int i = 0; i < count; i++) {
+      int id = candidates[i];
+      if (distance.computeDistance(s, strings[id]) <= radius) {
+        if (found == result.length) {
+          result = Arrays.copyOf(result, found * 2);
+        }
+        result[found++] = id;
+      }
+    }
+
+    result = Arrays.copyOf(result, found);
+    Arrays.sort(result);
+    return result;
+  }
+
+  /**
+   * @param s query string
+   * @param k number of neighbors
+   * @return ids of the k nearest candidates by the exact metric, the nearest first; fewer if less
+   * candidates are found
+   */
+  public int[] query(String s, int k) {
+    if (k < 1) {
+      throw new IllegalArgumentException("k must be greater than 0!");
+    }
+    int count = collectCandidates(s);
+
+    NodeHeap heap = new NodeHeap(true, k + 1);
+    for (int i = 0; i < count; i++) {
+      int id = candidates[i];
+      float d = (float) distance.computeDistance(s, strings[id]);
+      if (heap.size() < k || d < heap.peekKey()) {
+        heap.push(d, id);
+        if (heap.size() > k) {
+          heap.pop();
+        }
+      }
+    }
+
+    int[] result = new int[heap.size()];
+    for (int i = result.length - 1; i >= 0; i--) {
+      result[i] = heap.pop();
+    }
+    return result;
+  }
+
+  public String getString(int id) {
+    if (id < 0 || id >= size) {
+      throw new IndexOutOfBoundsException("Invalid id " + id);
+    }
+    return strings[id];
+  }
+
+  public int size() {
+    return size;
+  }
+
+  /**
+   * Collects the distinct entries sharing a bucket with s in candidates.
+   *
+   * @return number of candidates
+   */
+  private int collectCandidates(String s) {
+    if (s == null) {
+      throw new IllegalArgumentException("Input string cannot be null!");
+    }
+
+    visitTag++;
+    if (visitTag == 0) {
+      Arrays.fill(visited, 0);
+      visitTag = 1;
+    }
+
+    int nonZeroCount = project(s);
+    boolean emptyQuery = nonZeroCount == 0;
+    int count = 0;
+    for (int t = 0; t < tables; t++) {
+      for (int id = heads[t].get(bucket(t, nonZeroCount)) - 1; id >= 0; id = next[t][id] - 1) {
+        if (visited[id] != visitTag && empty[id] == emptyQuery) {
+          visited[id] = visitTag;
+          if (count == candidates.length) {
+            candidates = Arrays.copyOf(candidates, count * 2);
+          }
+          candidates[count++] = id;
+        }
+      }
+    }
+    return count;
+  }
+
+  /**
+   * Writes the hashed vector of s to vector and the indexes of its non-zero entries to nonZero.
+   *
+   * @return number of non-zero entries
+   */
+  private int project(String s) {
+    metric.getHashedVector(s, vector);
+    int count = 0;
+    for (int i = 0; i < dimensions; i++) {
+      if (vector[i] != 0) {
+        nonZero[count++] = i;
+      }
+    }
+    return count;
+  }
+
+  /**
+   * Combines the k hash values of table t of the current vector into a bucket key.
+   */
+  private long bucket(int t, int nonZeroCount) {
+    long key = t;
+    for (int j = 0; j < hashes; j++) {
+      int h = t * hashes + j;
+      int offset = h * dimensions;
+
+      // the hashed vectors are sparse, thus only the non-zero entries are multiplied
+      double dot = 0;
+      for (int i = 0; i < nonZeroCount; i++) {
+        int d = nonZero[i];
+        dot += projections[offset + d] * vector[d];
+      }
+      long value = (long) Math.floor((dot + offsets[h]) / width);
+
+      key = HashUtils.mix64(key * 31 + value);
+    }
+    return key;
+  }
+
+  // ===== Builder Pattern Methods =====
+
+  /**
+   * @return        {@link Builder}
+   * @see Builder
+   * @see PStableLsh
+   */
+  public static Builder getBuilder() {
+    return new Builder();
+  }
+
+  // ===== Builder Class =====
+
+  /**
+   * PStableLsh Builder Restriction: metric must be an L1Distance or an L2Distance, dimensions,
+   * tables and hashes must be greater than 0, width must be positive.
+   *
+   * <p>Usage:</br> PStableLsh index = PStableLsh.getBuilder()</br>
+   * .metric(L2Distance.getInstance()).width(2).build();</p>
+   *
+   * @param metric     L1Distance (Cauchy) or L2Distance (Gaussian), used for the token vectors
+   *                   and the verification
+   * @param dimensions number of dimensions of the hashed token vectors (default: 256)
+   * @param tables     number of hash tables (default: 8)
+   * @param hashes     number of hash functions per table (default: 4)
+   * @param width      bucket width of a hash function (default: 4.0)
+   * @param seed       seed of the random projections (default: 42)
+   * @author Adrien Favre-Bully
+   * @author Florian Froese
+   * @author Adrian Schmidmeister
+   * @since 1.1
+   */
+  public static class Builder {
+
+    private VectorSimilarity metric = null;
+    private int dimensions = DEFAULT_DIMENSIONS;
+    private int tables = DEFAULT_TABLES;
+    private int hashes = DEFAULT_HASHES;
+    private double width = DEFAULT_WIDTH;
+    private long seed = DEFAULT_SEED;
+
+    public PStableLsh build() {
+      // check constraints
+      if (!(metric instanceof L1Distance) && !(metric instanceof L2Distance)) {
+        throw new IllegalArgumentException("metric must be an L1Distance or an L2Distance!");
+      }
+      if (dimensions < 1) {
+        throw new IllegalArgumentException("dimensions must be greater than 0!");
+      }
+      if (tables < 1 || hashes < 1) {
+        throw new IllegalArgumentException("tables and hashes must be greater than 0!");
+      }
+      if (!(width > 0)) {
+        throw new IllegalArgumentException("width must be positive!");
+      }
+
+      return new PStableLsh(this);
+    }
+
+    public Builder metric(VectorSimilarity m) {
+      metric = m;
+      return this;
+    }
+
+    public Builder dimensions(int d) {
+      dimensions = d;
+      return this;
+    }
+
+    public Builder tables(int t) {
+      tables = t;
+      return this;
+    }
+
+    public Builder hashes(int h) {
+      hashes = h;
+      return this;
+    }
+
+    /**
+     * Sets the bucket width. Vectors closer than the width are likely to share a bucket.
+     *
+     * @param w bucket width
+     * @return this builder object
+     */
+    public Builder width(double w) {
+      width = w;
+      return this;
+    }
+
+    public Builder seed(long s) {
+      seed = s;
+      return this;
+    }
+  }
+}
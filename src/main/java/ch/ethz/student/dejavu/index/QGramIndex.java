@@ -0,0 +1,488 @@
+/*
+ * Copyright 2013 Adrien Favre-Bully, Florian Froese, Adrian Schmidmeister
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * 		http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+*/
+package ch.ethz.student.dejavu.index;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.IntBuffer;
+import java.nio.LongBuffer;
+import java.util.Arrays;
+
+import ch.ethz.student.dejavu.DistanceMetric;
+import ch.ethz.student.dejavu.strings.LevenshteinDistance;
+import ch.ethz.student.dejavu.strings.OptimalStringAlignmentDistance;
+import ch.ethz.student.dejavu.tokenizer.NGramTokenizer;
+import ch.ethz.student.dejavu.tokenizer.TokenHashHandler;
+import ch.ethz.student.dejavu.utilities.LongIntHashMap;
+import ch.ethz.student.dejavu.utilities.PrimitiveSort;
+import ch.ethz.student.dejavu.utilities.Utilities;
+
+/**
+ * Positional q-gram index for edit distance search. Returns all stored strings within a given
+ * {@link LevenshteinDistance} or {@link OptimalStringAlignmentDistance} of a query.
+ *
+ * <p>The strings are split into padded q-grams as defined by {@link NGramTokenizer}, a string of
+ * length n has n + q - 1 of them. An edit operation destroys at most q q-grams and a transposition
+ * at most q + 1, thus two strings within distance k share at least max(|s|, |t|) + q - 1 - k * q
+ * (k * (q + 1) for OSA) q-grams (count filtering, Gravano et al., Approximate String Joins in a
+ * Database (Almost) for Free). A common q-gram has moved by at most k positions (position
+ * filtering) and the lengths of the strings differ by at most k (length filtering). The candidates
+ * passing all filters are verified with the metric, thus the result is exact. For edit weights
+ * below 1 the filters allow maxDistance divided by the smallest weight edit operations, which
+ * weakens them accordingly.</p>
+ *
+ * <p>The posting lists are {@link CompressedPostings} of the strings ordered by length, an entry
+ * encodes the rank of the string and the position of the q-gram as rank * stride + position.
+ * Thus the length range is a contiguous part of every list. The compressed lists cannot be
+ * extended in the middle, a new string shifts the ranks of all longer ones, so they are encoded
+ * again by the next query after {@link #add(String)}.</p>
+ *
+ * <p>{@link #write(File)} stores the compressed lists ordered by their q-gram hashes together with
+ * the length ranges in an {@link IndexFile}. {@link #open(File, DistanceMetric)} maps them without
+ * tokenizing a string, a query finds its q-grams by binary search over the mapped hashes and reads
+ * their lists in place. An opened index is read-only.</p>
+ *
+ * @author Adrien Favre-Bully
+ * @author Florian Froese
+ * @author Adrian Schmidmeister
+ * @since 1.1
+ */
+public class QGramIndex {
+
+  public static final int DEFAULT_Q = 3;
+
+  private static final int INITIAL_CAPACITY = 16;
+  private static final String TYPE = "QGramIndex";
+
+  private DistanceMetric metric;
+  private int q;
+  // number of q-grams destroyed by a single edit operation
+  private int gramsPerEdit;
+  // weight of the cheapest edit operation, at most 1 (the unweighted borders of OSA)
+  private double minEditWeight;
+  private NGramTokenizer tokenizer;
+
+  private StringTable strings = new StringTable();
+
+  // strings ordered by (length, id), lengthStart[l] is the number of strings shorter than l
+  private IntBuffer rankToId;
+  private IntBuffer lengthStart;
+  private int maxLength;
+  private int stride;
+
+  // lists of a built index by q-gram hash
+  private LongIntHashMap gramIds;
+  private CompressedPostings[] postings;
+  // ascending q-gram hashes and their lists of an opened index
+  private LongBuffer sortedGrams;
+  private CompressedPostings.Table postingsTable;
+  private boolean dirty;
+
+  // buffers of a single operation
+  private long[] grams = new long[INITIAL_CAPACITY];
+  private int gramCount;
+  private TokenHashHandler collector = new TokenHashHandler() {
+    @Override
+    public void token(long hash) {
+      if (gramCount == grams.length) {
+        grams = Arrays.copyOf(grams, gramCount * 2);
+      }
+      grams[gramCount++] = hash;
+    }
+  };
+  private int[] counts = new int[0];
+  private int[] touched = new int[0];
+
+  private QGramIndex(Builder b) {
+    this.metric = b.metric;
+    this.q = b.q;
+    this.gramsPerEdit = b.metric instanceof OptimalStringAlignmentDistance ? q + 1 : q;
+    this.minEditWeight = minEditWeight(b.metric);
+    this.tokenizer = new NGramTokenizer(q, true);
+  }
+
+  private QGramIndex(IndexFile file, DistanceMetric metric) throws IOException {
+    file.checkType(TYPE);
+    file.checkMetric(metric);
+    this.metric = metric;
+
+    IntBuffer header = file.getInts("header");
+    this.q = header.get(0);
+    this.maxLength = header.get(1);
+    if (q < 1 || maxLength < 0) {
+      throw new IOException("Corrupt " + TYPE + " file.");
+    }
+    this.gramsPerEdit = metric instanceof OptimalStringAlignmentDistance ? q + 1 : q;
+    this.minEditWeight = minEditWeight(metric);
+    this.tokenizer = new NGramTokenizer(q, true);
+
+    this.strings = new StringTable(file, "strings");
+    this.stride = maxLength + q - 1;
+    this.rankToId = file.getInts("rankToId", strings.size());
+    this.lengthStart = file.getInts("lengthStart", maxLength + 2);
+    this.sortedGrams = file.getLongs("grams");
+    this.postingsTable = new CompressedPostings.Table(file, "postings");
+    if (postingsTable.size() != sortedGrams.capacity()
+        || lengthStart.get(maxLength + 1) != strings.size()) {
+      throw new IOException("Corrupt " + TYPE + " file.");
+    }
+  }
+
+  /**
+   * Maps an index written with {@link #write(File)}. The q-grams are not extracted again, the
+   * compressed posting lists are read in place. The opened index is read-only.
+   *
+   * @param file   index file
+   * @param metric metric the index was built with, its class and weights are checked
+   * @return the index
+   * @throws IOException if the file cannot be read or is not a q-gram index
+   */
+  public static QGramIndex open(File file, DistanceMetric metric) throws IOException {
+    return new QGramIndex(IndexFile.open(file), metric);
+  }
+
+  /**
+   * Writes the index in the {@link IndexFile} format, pending posting lists are built first.
+   *
+   * @param file file to write, an existing file is replaced
+   * @throws IOException if the file cannot be written
+   */
+  public void write(File file) throws IOException {
+    if (dirty || rankToId == null) {
+      buildPostings();
+    }
+
+    IndexFile.Writer writer = new IndexFile.Writer(TYPE)
+        .metric(metric)
+        .ints("header", IntBuffer.wrap(new int[]{q, maxLength}), 2);
+    strings.write(writer, "strings");
+    writer.ints("rankToId", rankToId, strings.size())
+        .ints("lengthStart", lengthStart, maxLength + 2);
+    if (postingsTable != null) {
+      writer.longs("grams", sortedGrams, sortedGrams.capacity());
+      postingsTable.write(writer, "postings");
+    } else {
+      // the lists are written in the order of their hashes, which are binary searched when opened
+      long[] gramHashes = new long[postings.length];
+      int[] lists = new int[postings.length];
+      int count = 0;
+      for (int slot = 0; slot < gramIds.capacity(); slot++) {
+        if (gramIds.valueAt(slot) != 0) {
+          gramHashes[count] = gramIds.keyAt(slot);
+          lists[count++] = gramIds.valueAt(slot) - 1;
+        }
+      }
+      PrimitiveSort.sort(gramHashes, lists, 0, count);
+      CompressedPostings[] sorted = new CompressedPostings[count];
+      for (int i = 0; i < count; i++) {
+        sorted[i] = postings[lists[i]];
+      }
+      writer.longs("grams", LongBuffer.wrap(gramHashes), count);
+      CompressedPostings.write(writer, "postings", sorted, count);
+    }
+    writer.write(file);
+  }
+
+  /**
+   * @param s string
+   * @return id of the new entry
+   * @throws UnsupportedOperationException if the index is opened from a file
+   */
+  public int add(String s) {
+    if (s == null) {
+      throw new IllegalArgumentException("Input string cannot be null!");
+    }
+    if (strings.isReadOnly()) {
+      throw new UnsupportedOperationException("An opened index is read-only.");
+    }
+    dirty = true;
+    return strings.add(s);
+  }
+
+  /**
+   * @param s           query string
+   * @param maxDistance maximal edit distance
+   * @return ids of all entries within maxDistance of s, in ascending order
+   */
+  public int[] query(String s, int maxDistance) {
+    if (s == null) {
+      throw new IllegalArgumentException("Input string cannot be null!");
+    }
+    if (maxDistance < 0) {
+      throw new IllegalArgumentException("maxDistance must be greater or equal to 0!");
+    }
+    if (dirty) {
+      buildPostings();
+    }
+
+    int length = s.length();
+    // number of edit operations within maxDistance, more than length + maxLength are never needed
+    int edits = (int) Math.min(Math.floor(maxDistance / minEditWeight + 1e-9),
+                               (double) length + maxLength);
+    int minLength = Math.max(0, length - edits);
+    int maxValidLength = Math.min(maxLength, length + edits);
+    if (strings.size() == 0 || minLength > maxValidLength) {
+      return new int[0];
+    }
+    if (counts.length < strings.size()) {
+      counts = new int[strings.size()];
+      touched = new int[strings.size()];
+    }
+
+    // count the q-grams shared at positions at most maxDistance apart
+    int from = lengthStart.get(minLength) * stride;
+    int to = lengthStart.get(maxValidLength + 1) * stride;
+    int count = 0;
+    collectGrams(s);
+    for (int i = 0; i < gramCount; i++) {
+      CompressedPostings list = postingsOf(grams[i]);
+      if (list == null) {
+        continue;
+      }
+
+      CompressedPostings.Cursor cursor = list.cursor();
+      for (int entry = cursor.advance(from); entry != CompressedPostings.END && entry < to;
+           entry = cursor.next()) {
+        if (Math.abs(entry % stride - i) <= edits) {
+          int rank = entry / stride;
+          if (counts[rank]++ == 0) {
+            touched[count++] = rank;
+          }
+        }
+      }
+    }
+
+    int[] result = new int[INITIAL_CAPACITY];
+    int found = 0;
+    for (int i = 0; i < count; i++) {
+      int rank = touched[i];
+      int required = requiredGrams(length, lengthOf(rank), edits);
+      if (required > 0 && counts[rank] >= required) {
+        if (found == result.length) {
+          result = Arrays.copyOf(result, found * 2);
+        }
+        found = verify(s, rankToId.get(rank), maxDistance, result, found);
+      }
+      counts[rank] = 0;
+    }
+
+    // the count filter is void for short strings, they may share no q-gram at all
+    for (int l = minLength; l <= maxValidLength; l++) {
+      if (requiredGrams(length, l, edits) <= 0) {
+        for (int rank = lengthStart.get(l); rank < lengthStart.get(l + 1); rank++) {
+          if (found == result.length) {
+            result = Arrays.copyOf(result, found * 2);
+          }
+          found = verify(s, rankToId.get(rank), maxDistance, result, found);
+        }
+      }
+    }
+
+    result = Arrays.copyOf(result, found);
+    Arrays.sort(result);
+    return result;
+  }
+
+  public String getString(int id) {
+    return strings.get(id);
+  }
+
+  public int size() {
+    return strings.size();
+  }
+
+  public int getQ() {
+    return q;
+  }
+
+  private int requiredGrams(int length1, int length2, int edits) {
+    return Math.max(length1, length2) + q - 1 - edits * gramsPerEdit;
+  }
+
+  /**
+   * Weight of the cheapest edit operation of an edit distance, at most 1. A distance of d allows
+   * at most d divided by this weight operations. Shared with {@link SymSpellIndex}.
+   */
+  static double minEditWeight(DistanceMetric metric) {
+    if (metric instanceof LevenshteinDistance) {
+      LevenshteinDistance m = (LevenshteinDistance) metric;
+      return Utilities.min(1, m.getInsertionWeight(), m.getDeletionWeight(),
+                           m.getSubstitutionWeight());
+    }
+    if (metric instanceof OptimalStringAlignmentDistance) {
+      OptimalStringAlignmentDistance m = (OptimalStringAlignmentDistance) metric;
+      return Utilities.min(1, m.getInsertionWeight(), m.getDeletionWeight(),
+                           m.getSubstitutionWeight(), m.getTranspositionWeight());
+    }
+    // unweighted metrics such as DamerauLevenshteinDistance
+    return 1;
+  }
+
+  /**
+   * @return list of a q-gram hash, null if no string has the q-gram
+   */
+  private CompressedPostings postingsOf(long gram) {
+    if (postingsTable == null) {
+      int list = gramIds.get(gram) - 1;
+      return list < 0 ? null : postings[list];
+    }
+    int list = IndexFile.search(sortedGrams, gram);
+    return list < 0 ? null : postingsTable.get(list);
+  }
+
+  private int lengthOf(int rank) {
+    return strings.length(rankToId.get(rank));
+  }
+
+  private int verify(String s, int id, int maxDistance, int[] result, int found) {
+    if (metric.computeDistance(s, strings.get(id)) <= maxDistance) {
+      result[found++] = id;
+    }
+    return found;
+  }
+
+  private void collectGrams(String s) {
+    gramCount = 0;
+    tokenizer.tokenizeHashed(s, collector);
+  }
+
+  private void buildPostings() {
+    int size = strings.size();
+    maxLength = 0;
+    long[] keys = new long[size];
+    int[] ids = new int[size];
+    for (int id = 0; id < size; id++) {
+      maxLength = Math.max(maxLength, strings.length(id));
+      keys[id] = ((long) strings.length(id) << 32) | id;
+      ids[id] = id;
+    }
+    PrimitiveSort.sort(keys, ids, 0, size);
+    rankToId = IntBuffer.wrap(ids);
+
+    int[] starts = new int[maxLength + 2];
+    for (int id = 0; id < size; id++) {
+      starts[strings.length(id) + 1]++;
+    }
+    for (int l = 1; l < starts.length; l++) {
+      starts[l] += starts[l - 1];
+    }
+    lengthStart = IntBuffer.wrap(starts);
+
+    stride = maxLength + q - 1;
+    if ((long) size * stride > Integer.MAX_VALUE) {
+      throw new IllegalStateException("Too many q-gram positions for the posting format.");
+    }
+
+    // entries are appended in rank and position order, thus every list is sorted
+    gramIds = new LongIntHashMap();
+    int[][] lists = new int[INITIAL_CAPACITY][];
+    int[] listSizes = new int[INITIAL_CAPACITY];
+    int gramTotal = 0;
+    for (int rank = 0; rank < size; rank++) {
+      collectGrams(strings.get(ids[rank]));
+      for (int i = 0; i < gramCount; i++) {
+        int gram = gramIds.get(grams[i]) - 1;
+        if (gram < 0) {
+          gram = gramTotal++;
+          gramIds.put(grams[i], gram + 1);
+          if (gram == lists.length) {
+            lists = Arrays.copyOf(lists, gram * 2);
+            listSizes = Arrays.copyOf(listSizes, gram * 2);
+          }
+          lists[gram] = new int[4];
+        }
+        if (listSizes[gram] == lists[gram].length) {
+          lists[gram] = Arrays.copyOf(lists[gram], listSizes[gram] * 2);
+        }
+        lists[gram][listSizes[gram]++] = rank * stride + i;
+      }
+    }
+
+    postings = new CompressedPostings[gramTotal];
+    for (int gram = 0; gram < gramTotal; gram++) {
+      postings[gram] = CompressedPostings.encode(lists[gram], null, listSizes[gram]);
+      lists[gram] = null;
+    }
+
+    dirty = false;
+  }
+
+  // ===== Builder Pattern Methods =====
+
+  /**
+   * @return        {@link Builder}
+   * @see Builder
+   * @see QGramIndex
+   */
+  public static Builder getBuilder() {
+    return new Builder();
+  }
+
+  /**
+   * @return q-gram index with q = 3 for the LevenshteinDistance
+   * @see QGramIndex
+   */
+  public static QGramIndex getInstance() {
+    return new Builder().build();
+  }
+
+  // ===== Builder Class =====
+
+  /**
+   * QGramIndex Builder Restriction: metric must be a LevenshteinDistance or an
+   * OptimalStringAlignmentDistance, q must be greater than 0.
+   *
+   * <p>Usage:</br> QGramIndex index = QGramIndex.getBuilder()</br>
+   * .metric(OptimalStringAlignmentDistance.getInstance()).q(2).build();</p>
+   *
+   * @param metric LevenshteinDistance or OptimalStringAlignmentDistance used for the verification
+   *               (default: LevenshteinDistance)
+   * @param q      length of the q-grams (default: 3), short q-grams filter better for larger
+   *               distances
+   * @author Adrien Favre-Bully
+   * @author Florian Froese
+   * @author Adrian Schmidmeister
+   * @since 1.1
+   */
+  public static class Builder {
+
+    private DistanceMetric metric = LevenshteinDistance.getInstance();
+    private int q = DEFAULT_Q;
+
+    public QGramIndex build() {
+      // check constraints
+      if (!(metric instanceof LevenshteinDistance)
+          && !(metric instanceof OptimalStringAlignmentDistance)) {
+        throw new IllegalArgumentException(
+            "metric must be a LevenshteinDistance or an OptimalStringAlignmentDistance!");
+      }
+      if (q < 1) {
+        throw new IllegalArgumentException("q must be greater than 0!");
+      }
+
+      return new QGramIndex(this);
+    }
+
+    public Builder metric(DistanceMetric m) {
+      metric = m;
+      return this;
+    }
+
+    public Builder q(int n) {
+      q = n;
+      return this;
+    }
+  }
+}
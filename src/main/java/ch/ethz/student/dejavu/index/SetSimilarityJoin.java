@@ -0,0 +1,511 @@
+/*
+ * Copyright 2013 Adrien Favre-Bully, Florian Froese, Adrian Schmidmeister
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * 		http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+*/
+package ch.ethz.student.dejavu.index;
+
+import java.util.Arrays;
+import java.util.HashSet;
+
+import ch.ethz.student.dejavu.utilities.PrimitiveSort;
+import ch.ethz.student.dejavu.vectors.CosineDistance;
+import ch.ethz.student.dejavu.vectors.DiceCoefficient;
+import ch.ethz.student.dejavu.vectors.JaccardSimilarity;
+import ch.ethz.student.dejavu.vectors.OverlapCoefficient;
+import ch.ethz.student.dejavu.vectors.VectorSimilarity;
+
+/**
+ * Exact set similarity join. Reports every pair of strings whose token sets have a similarity of
+ * at least the given threshold, without comparing all pairs.
+ *
+ * <p>The implementation follows PPJoin (Xiao et al., Efficient Similarity Joins for Near Duplicate
+ * Detection): the tokens are ordered by increasing document frequency, only the prefixes of the
+ * ordered token sets are indexed and probed (prefix filtering), pairs with incompatible sizes are
+ * skipped (length filtering) and a candidate is dropped as soon as the positions of its common
+ * tokens prove that the required overlap cannot be reached (positional filtering). The surviving
+ * candidates are verified exactly, thus the result equals the one of a nested loop.</p>
+ *
+ * <p>Supported metrics are {@link JaccardSimilarity}, {@link DiceCoefficient}, {@link
+ * OverlapCoefficient} and {@link CosineDistance}, the tokenization of the metric is used. The join
+ * compares the sets of distinct tokens, for the cosine this is |A &#8745; B| / sqrt(|A| * |B|), the
+ * cosine of the binary token vectors. It equals the score of CosineDistance for strings without
+ * repeated tokens, the metric weights a repeated token by its frequency. The cosine bounds are
+ * |B| &gt;= t^2 * |A| and an overlap of at least t * sqrt(|A| * |B|). Strings without tokens are
+ * never reported.</p>
+ *
+ * <p>Usage:</br> SetSimilarityJoin join = SetSimilarityJoin.getBuilder()</br>
+ * .metric(JaccardSimilarity.getInstance()).threshold(0.8).build();</br> join.selfJoin(strings,
+ * handler);</p>
+ *
+ * @author Adrien Favre-Bully
+ * @author Florian Froese
+ * @author Adrian Schmidmeister
+ * @since 1.1
+ */
+public class SetSimilarityJoin {
+
+  public static final double DEFAULT_THRESHOLD = 0.8;
+
+  // tolerance for rounding errors of the bounds, a smaller bound is always safe
+  private static final double EPSILON = 1e-9;
+
+  private static final int PRUNED = -1;
+
+  private enum Measure {
+    JACCARD, DICE, COSINE, OVERLAP
+  }
+
+  private VectorSimilarity metric;
+  private Measure measure;
+  private double threshold;
+
+  private SetSimilarityJoin(Builder b) {
+    this.metric = b.metric;
+    this.measure = b.measure;
+    this.threshold = b.threshold;
+  }
+
+  /**
+   * Reports every pair (i, j), i &lt; j, of strings with a similarity of at least the threshold.
+   *
+   * @param strings strings to join
+   * @param handler receives the pairs
+   */
+  public void selfJoin(String[] strings, PairHandler handler) {
+    TokenDictionary dictionary = new TokenDictionary();
+    int[][] records = tokenize(strings, dictionary);
+    int[] ranks = dictionary.getFrequencyRanks();
+    int[] order = orderBySize(records, ranks);
+
+    Index index = new Index(dictionary.size(), records.length);
+    for (int x : order) {
+      int[] record = records[x];
+
+      probe(index, record, x, handler, true);
+
+      // later records are at least as large, thus the shorter index prefix suffices
+      index.add(x, record, prefixLength(record.length, indexOverlap(record.length)));
+    }
+  }
+
+  /**
+   * Reports every pair (i, j) of strings r[i] and s[j] with a similarity of at least the
+   * threshold.
+   *
+   * @param r       first collection
+   * @param s       second collection
+   * @param handler receives the pairs, i indexes r and j indexes s
+   */
+  public void join(String[] r, String[] s, PairHandler handler) {
+    TokenDictionary dictionary = new TokenDictionary();
+    int[][] rRecords = tokenize(r, dictionary);
+    int[][] sRecords = tokenize(s, dictionary);
+    int[] ranks = dictionary.getFrequencyRanks();
+    int[] rOrder = orderBySize(rRecords, ranks);
+    int[] sOrder = orderBySize(sRecords, ranks);
+
+    Index index = new Index(dictionary.size(), sRecords.length);
+    for (int y : sOrder) {
+      int[] record = sRecords[y];
+      index.add(y, record, prefixLength(record.length, probeOverlap(record.length)));
+    }
+
+    for (int x : rOrder) {
+      probe(index, rRecords[x], x, handler, false);
+    }
+  }
+
+  public double getThreshold() {
+    return threshold;
+  }
+
+  // ===== Join =====
+
+  private void probe(Index index, int[] x, int xId, PairHandler handler, boolean selfJoin) {
+    int sizeX = x.length;
+    int minSize = minSize(sizeX);
+    int maxSize = maxSize(sizeX);
+    int probeLength = prefixLength(sizeX, probeOverlap(sizeX));
+
+    int[] overlaps = index.overlaps;
+    int[] candidates = index.candidates;
+    int candidateCount = 0;
+
+    for (int i = 0; i < probeLength; i++) {
+      int token = x[i];
+      int[] postings = index.postings[token];
+      int end = index.postingSizes[token];
+
+      int p = index.skipSmaller(token, minSize);
+      for (; p < end; p += 2) {
+        int y = postings[p];
+        int sizeY = index.records[y].length;
+        if (sizeY > maxSize) {
+          break;
+        }
+        if (overlaps[y] == PRUNED) {
+          continue;
+        }
+
+        int j = postings[p + 1];
+        int required = requiredOverlap(sizeX, sizeY);
+        int upperBound = overlaps[y] + 1 + Math.min(sizeX - i - 1, sizeY - j - 1);
+        if (upperBound >= required) {
+          if (overlaps[y] == 0) {
+            candidates[candidateCount++] = y;
+          }
+          overlaps[y]++;
+        } else {
+          if (overlaps[y] == 0) {
+            candidates[candidateCount++] = y;
+          }
+          overlaps[y] = PRUNED;
+        }
+      }
+    }
+
+    for (int c = 0; c < candidateCount; c++) {
+      int y = candidates[c];
+      if (overlaps[y] != PRUNED) {
+        int[] record = index.records[y];
+        double similarity = similarity(intersect(x, record), sizeX, record.length);
+        if (similarity >= threshold) {
+          if (selfJoin) {
+            handler.pair(Math.min(xId, y), Math.max(xId, y), similarity);
+          } else {
+            handler.pair(xId, y, similarity);
+          }
+        }
+      }
+      overlaps[y] = 0;
+    }
+  }
+
+  private int[][] tokenize(String[] strings, TokenDictionary dictionary) {
+    int[][] records = new int[strings.length][];
+    for (int i = 0; i < strings.length; i++) {
+      HashSet<Object> tokens = metric.getTokenSet(strings[i]);
+      records[i] = dictionary.addDocument(tokens);
+    }
+    return records;
+  }
+
+  /**
+   * Replaces the token ids of all records by their frequency ranks, sorts the tokens of every
+   * record by rank and orders the non-empty records by size.
+   *
+   * @return indexes of the non-empty records in ascending order of size
+   */
+  private static int[] orderBySize(int[][] records, int[] ranks) {
+    long[] keys = new long[records.length];
+    int[] order = new int[records.length];
+    int n = 0;
+
+    for (int i = 0; i < records.length; i++) {
+      int[] record = records[i];
+      for (int k = 0; k < record.length; k++) {
+        record[k] = ranks[record[k]];
+      }
+      Arrays.sort(record);
+
+      if (record.length > 0) {
+        keys[n] = ((long) record.length << 32) | i;
+        order[n] = i;
+        n++;
+      }
+    }
+
+    PrimitiveSort.sort(keys, order, 0, n);
+    return Arrays.copyOf(order, n);
+  }
+
+  private static int intersect(int[] x, int[] y) {
+    int i = 0;
+    int j = 0;
+    int overlap = 0;
+    while (i < x.length && j < y.length) {
+      if (x[i] < y[j]) {
+        i++;
+      } else if (x[i] > y[j]) {
+        j++;
+      } else {
+        overlap++;
+        i++;
+        j++;
+      }
+    }
+    return overlap;
+  }
+
+  // ===== Bounds =====
+
+  private double similarity(int overlap, int sizeX, int sizeY) {
+    double i = overlap;
+    switch (measure) {
+      case JACCARD:
+        return i / (sizeX + sizeY - i);
+      case DICE:
+        return 2 * i / (sizeX + sizeY);
+      case COSINE:
+        return i / Math.sqrt((double) sizeX * sizeY);
+      default:
+        return i / Math.min(sizeX, sizeY);
+    }
+  }
+
+  /**
+   * Minimal overlap of two sets of the given sizes with a similarity of at least the threshold.
+   */
+  private int requiredOverlap(int sizeX, int sizeY) {
+    double t = threshold;
+    switch (measure) {
+      case JACCARD:
+        return ceil(t / (1 + t) * (sizeX + sizeY));
+      case DICE:
+        return ceil(t / 2 * (sizeX + sizeY));
+      case COSINE:
+        return ceil(t * Math.sqrt((double) sizeX * sizeY));
+      default:
+        return ceil(t * Math.min(sizeX, sizeY));
+    }
+  }
+
+  /**
+   * Minimal overlap of a set of the given size with any set it can be similar to.
+   */
+  private int probeOverlap(int size) {
+    double t = threshold;
+    switch (measure) {
+      case JACCARD:
+        return ceil(t * size);
+      case DICE:
+        return ceil(t * size / (2 - t));
+      case COSINE:
+        return ceil(t * t * size);
+      default:
+        return 1;
+    }
+  }
+
+  /**
+   * Minimal overlap of a set of the given size with any set of at least the same size it can be
+   * similar to.
+   */
+  private int indexOverlap(int size) {
+    return requiredOverlap(size, size);
+  }
+
+  private int minSize(int size) {
+    double t = threshold;
+    switch (measure) {
+      case JACCARD:
+        return ceil(t * size);
+      case DICE:
+        return ceil(t * size / (2 - t));
+      case COSINE:
+        return ceil(t * t * size);
+      default:
+        return 1;
+    }
+  }
+
+  private int maxSize(int size) {
+    double t = threshold;
+    switch (measure) {
+      case JACCARD:
+        return floor(size / t);
+      case DICE:
+        return floor(size * (2 - t) / t);
+      case COSINE:
+        return floor(size / (t * t));
+      default:
+        return Integer.MAX_VALUE;
+    }
+  }
+
+  /**
+   * A set of the given size shares at least one token of this prefix with every set it overlaps
+   * in at least requiredOverlap tokens.
+   */
+  private static int prefixLength(int size, int requiredOverlap) {
+    return Math.min(size, size - requiredOverlap + 1);
+  }
+
+  private static int ceil(double value) {
+    return Math.max(1, (int) Math.ceil(value - EPSILON));
+  }
+
+  private static int floor(double value) {
+    return value >= Integer.MAX_VALUE ? Integer.MAX_VALUE : (int) Math.floor(value + EPSILON);
+  }
+
+  // ===== Inverted Index =====
+
+  /**
+   * Inverted index over the prefix tokens. The postings of a token hold (record, position) pairs
+   * in the order the records were added, which is ascending in size. Probes must arrive in
+   * ascending size as well.
+   */
+  private static class Index {
+
+    private int[][] postings;
+    private int[] postingSizes;
+    private int[] postingStarts;
+
+    private int[][] records;
+    private int[] overlaps;
+    private int[] candidates;
+
+    Index(int tokens, int recordCount) {
+      this.postings = new int[tokens][];
+      this.postingSizes = new int[tokens];
+      this.postingStarts = new int[tokens];
+      this.records = new int[0][];
+      this.overlaps = new int[0];
+      this.candidates = new int[0];
+      ensureCapacity(recordCount);
+    }
+
+    void add(int id, int[] record, int prefixLength) {
+      ensureCapacity(id + 1);
+      records[id] = record;
+
+      for (int j = 0; j < prefixLength; j++) {
+        int token = record[j];
+        int[] list = postings[token];
+        int size = postingSizes[token];
+        if (list == null) {
+          list = new int[4];
+        } else if (size + 2 > list.length) {
+          list = Arrays.copyOf(list, list.length * 2);
+        }
+        list[size] = id;
+        list[size + 1] = j;
+        postings[token] = list;
+        postingSizes[token] = size + 2;
+      }
+    }
+
+    /**
+     * Skips the postings of records smaller than minSize. Probes arrive in ascending size, thus
+     * the skipped postings are never needed again.
+     */
+    int skipSmaller(int token, int minSize) {
+      int[] list = postings[token];
+      int start = postingStarts[token];
+      int end = postingSizes[token];
+
+      while (start < end && records[list[start]].length < minSize) {
+        start += 2;
+      }
+      postingStarts[token] = start;
+      return start;
+    }
+
+    private void ensureCapacity(int size) {
+      if (records.length < size) {
+        int capacity = Math.max(size, records.length * 2);
+        records = Arrays.copyOf(records, capacity);
+        overlaps = Arrays.copyOf(overlaps, capacity);
+        candidates = Arrays.copyOf(candidates, capacity);
+      }
+    }
+  }
+
+  // ===== Builder Pattern Methods =====
+
+  /**
+   * @return        {@link Builder}
+   * @see Builder
+   * @see SetSimilarityJoin
+   */
+  public static Builder getBuilder() {
+    return new Builder();
+  }
+
+  // ===== Builder Class =====
+
+  /**
+   * SetSimilarityJoin Builder Restriction: metric must be a JaccardSimilarity, DiceCoefficient,
+   * OverlapCoefficient or CosineDistance with 0 dimensions, the set metrics must take the keyset,
+   * threshold must lie within (0, 1].
+   *
+   * @param metric    metric defining the similarity and the tokenization (no default)
+   * @param threshold minimal similarity of reported pairs (default: 0.8)
+   * @author Adrien Favre-Bully
+   * @author Florian Froese
+   * @author Adrian Schmidmeister
+   * @since 1.1
+   */
+  public static class Builder {
+
+    private VectorSimilarity metric = null;
+    private Measure measure = null;
+    private double threshold = DEFAULT_THRESHOLD;
+
+    public SetSimilarityJoin build() {
+      // check constraints
+      if (metric == null) {
+        throw new IllegalArgumentException("metric must be set!");
+      }
+      if (metric instanceof JaccardSimilarity) {
+        measure = Measure.JACCARD;
+      } else if (metric instanceof DiceCoefficient) {
+        measure = Measure.DICE;
+      } else if (metric instanceof OverlapCoefficient) {
+        measure = Measure.OVERLAP;
+      } else if (metric instanceof CosineDistance) {
+        measure = Measure.COSINE;
+      } else {
+        throw new IllegalArgumentException("metric must be a JaccardSimilarity, DiceCoefficient, "
+                                           + "OverlapCoefficient or CosineDistance!");
+      }
+      // CosineDistance never takes the keyset, the join uses its set view
+      if (measure != Measure.COSINE && !metric.isTakeKeyset()) {
+        throw new IllegalArgumentException(
+            "metric must compare token sets, takeKeyset must be true!");
+      }
+      if (metric.getDimensions() != 0) {
+        throw new IllegalArgumentException(
+            "metric must compare exact tokens, dimensions must be 0!");
+      }
+      if (threshold <= 0 || threshold > 1) {
+        throw new IllegalArgumentException("threshold must lie within (0, 1]!");
+      }
+
+      return new SetSimilarityJoin(this);
+    }
+
+    /**
+     * Sets the metric. Its tokenization is used to split the strings into token sets.
+     *
+     * @param m JaccardSimilarity, DiceCoefficient, OverlapCoefficient or CosineDistance
+     * @return this builder object
+     */
+    public Builder metric(VectorSimilarity m) {
+      metric = m;
+      return this;
+    }
+
+    /**
+     * Sets the minimal similarity of reported pairs. Has to lie within (0, 1]!
+     *
+     * @param t threshold
+     * @return this builder object
+     */
+    public Builder threshold(double t) {
+      threshold = t;
+      return this;
+    }
+  }
+}
@@ -0,0 +1,307 @@
+/*
+ * Copyright 2013 Adrien Favre-Bully, Florian Froese, Adrian Schmidmeister
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * 		http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+*/
+package ch.ethz.student.dejavu.index;
+
+import java.util.Arrays;
+
+import ch.ethz.student.dejavu.utilities.PrimitiveSort;
+import ch.ethz.student.dejavu.vectors.SimHash;
+
+/**
+ * Near-duplicate index for {@link SimHash} fingerprints. Returns all fingerprints within a hamming
+ * distance of maxDistance of a query fingerprint.
+ *
+ * <p>The fingerprint bits are split into maxDistance + 1 bands. Two fingerprints that differ in at
+ * most maxDistance bits agree on at least one band completely. For every band a table of all
+ * fingerprints sorted by the band (the permuted table of Manku et al.) is kept, a query looks up
+ * its own band values by binary search and verifies the candidates.</p>
+ *
+ * <p>Inserting into a sorted table would move half of it, thus the tables are sorted again by the
+ * next query after {@link #add(long[])}.</p>
+ *
+ * @author Adrien Favre-Bully
+ * @author Florian Froese
+ * @author Adrian Schmidmeister
+ * @see SimHash
+ * @since 1.1
+ */
+public class SimHashIndex {
+
+  public static final int DEFAULT_BITS = SimHash.DEFAULT_BITS;
+  public static final int DEFAULT_MAX_DISTANCE = 3;
+
+  private static final int INITIAL_CAPACITY = 16;
+
+  private int bits;
+  private int words;
+  private int maxDistance;
+
+  private int[] bandStart;
+  private int[] bandLength;
+
+  // fingerprints of all entries, words consecutive longs per entry
+  private long[] fingerprints;
+  private int size;
+
+  // one permuted table per band, sorted by the band value
+  private long[][] tableKeys;
+  private int[][] tableIds;
+  private boolean dirty;
+
+  private SimHashIndex(Builder b) {
+    this.bits = b.bits;
+    this.words = b.bits / 64;
+    this.maxDistance = b.maxDistance;
+
+    // at least maxDistance + 1 bands of at most 64 bits each
+    int bands = Math.max(maxDistance + 1, words);
+    this.bandStart = new int[bands];
+    this.bandLength = new int[bands];
+    for (int i = 0, start = 0; i < bands; i++) {
+      int length = bits / bands + (i < bits % bands ? 1 : 0);
+      bandStart[i] = start;
+      bandLength[i] = length;
+      start += length;
+    }
+
+    this.fingerprints = new long[INITIAL_CAPACITY * words];
+    this.tableKeys = new long[bands][];
+    this.tableIds = new int[bands][];
+    this.dirty = true;
+  }
+
+  /**
+   * @param fingerprint fingerprint of bits / 64 words
+   * @return id of the new entry
+   */
+  public int add(long[] fingerprint) {
+    checkFingerprint(fingerprint);
+
+    if ((size + 1) * words > fingerprints.length) {
+      fingerprints = Arrays.copyOf(fingerprints, fingerprints.length * 2);
+    }
+    System.arraycopy(fingerprint, 0, fingerprints, size * words, words);
+    dirty = true;
+
+    return size++;
+  }
+
+  /**
+   * @param fingerprint query fingerprint of bits / 64 words
+   * @return ids of all entries within maxDistance of the query, in ascending order
+   */
+  public int[] query(long[] fingerprint) {
+    checkFingerprint(fingerprint);
+
+    if (dirty) {
+      buildTables();
+    }
+
+    int[] result = new int[INITIAL_CAPACITY];
+    int count = 0;
+
+    for (int band = 0; band < bandStart.length; band++) {
+      long key = band(fingerprint, 0, band);
+      long[] keys = tableKeys[band];
+      int[] ids = tableIds[band];
+
+      for (int i = lowerBound(keys, key); i < keys.length && keys[i] == key; i++) {
+        int id = ids[i];
+
+        // an entry agreeing on an earlier band was reported there already
+        if (agreesOnEarlierBand(fingerprint, id, band)) {
+          continue;
+        }
+        if (hammingDistance(fingerprint, id) <= maxDistance) {
+          if (count == result.length) {
+            result = Arrays.copyOf(result, count * 2);
+          }
+          result[count++] = id;
+        }
+      }
+    }
+
+    result = Arrays.copyOf(result, count);
+    Arrays.sort(result);
+    return result;
+  }
+
+  /**
+   * @param id entry id
+   * @return copy of the fingerprint of the entry
+   */
+  public long[] getFingerprint(int id) {
+    if (id < 0 || id >= size) {
+      throw new IndexOutOfBoundsException("Invalid id " + id);
+    }
+    return Arrays.copyOfRange(fingerprints, id * words, (id + 1) * words);
+  }
+
+  public int size() {
+    return size;
+  }
+
+  public int getBits() {
+    return bits;
+  }
+
+  public int getMaxDistance() {
+    return maxDistance;
+  }
+
+  private void buildTables() {
+    for (int band = 0; band < bandStart.length; band++) {
+      long[] keys = new long[size];
+      int[] ids = new int[size];
+      for (int id = 0; id < size; id++) {
+        keys[id] = band(fingerprints, id * words, band);
+        ids[id] = id;
+      }
+      PrimitiveSort.sort(keys, ids, 0, size);
+      tableKeys[band] = keys;
+      tableIds[band] = ids;
+    }
+    dirty = false;
+  }
+
+  private boolean agreesOnEarlierBand(long[] fingerprint, int id, int band) {
+    for (int b = 0; b < band; b++) {
+      if (band(fingerprint, 0, b) == band(fingerprints, id * words, b)) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  private int hammingDistance(long[] fingerprint, int id) {
+    int h = 0;
+    for (int w = 0, offset = id * words; w < words; w++) {
+      h += Long.bitCount(fingerprint[w] ^ fingerprints[offset + w]);
+    }
+    return h;
+  }
+
+  /**
+   * Extracts the bits of a band. Bands are at most 64 bits long but may span two words.
+   */
+  private long band(long[] fp, int offset, int band) {
+    int start = bandStart[band];
+    int length = bandLength[band];
+    int word = offset + (start >>> 6);
+    int shift = start & 63;
+
+    long value = fp[word] >>> shift;
+    if (shift + length > 64) {
+      value |= fp[word + 1] << (64 - shift);
+    }
+    return length == 64 ? value : value & ((1L << length) - 1);
+  }
+
+  private static int lowerBound(long[] keys, long key) {
+    int lo = 0;
+    int hi = keys.length;
+    while (lo < hi) {
+      int mid = (lo + hi) >>> 1;
+      if (keys[mid] < key) {
+        lo = mid + 1;
+      } else {
+        hi = mid;
+      }
+    }
+    return lo;
+  }
+
+  private void checkFingerprint(long[] fingerprint) {
+    if (fingerprint == null) {
+      throw new IllegalArgumentException("Fingerprint cannot be null!");
+    }
+    if (fingerprint.length != words) {
+      throw new IllegalArgumentException("Fingerprint must consist of " + words + " words");
+    }
+  }
+
+  // ===== Builder Pattern Methods =====
+
+  /**
+   * @return        {@link Builder}
+   * @see Builder
+   * @see SimHashIndex
+   */
+  public static Builder getBuilder() {
+    return new Builder();
+  }
+
+  /**
+   * @return empty index for 64 bit fingerprints and a maximal hamming distance of 3.
+   * @see SimHashIndex
+   */
+  public static SimHashIndex getInstance() {
+    return new Builder().build();
+  }
+
+  // ===== Builder Class =====
+
+  /**
+   * SimHashIndex Builder Restriction: bits must be either 64 or 128, maxDistance must lie within
+   * [0, bits).
+   *
+   * @param bits        fingerprint size (default: 64)
+   * @param maxDistance maximal hamming distance of reported fingerprints (default: 3)
+   * @author Adrien Favre-Bully
+   * @author Florian Froese
+   * @author Adrian Schmidmeister
+   * @since 1.1
+   */
+  public static class Builder {
+
+    private int bits = DEFAULT_BITS;
+    private int maxDistance = DEFAULT_MAX_DISTANCE;
+
+    public SimHashIndex build() {
+      // check constraints
+      if (bits != 64 && bits != 128) {
+        throw new IllegalArgumentException("bits must be either 64 or 128!");
+      }
+      if (maxDistance < 0 || maxDistance >= bits) {
+        throw new IllegalArgumentException("maxDistance must lie within [0, bits)!");
+      }
+
+      return new SimHashIndex(this);
+    }
+
+    /**
+     * Sets the fingerprint size. Has to match {@link SimHash#getBits()} of the fingerprints.
+     *
+     * @param b number of bits
+     * @return this builder object
+     */
+    public Builder bits(int b) {
+      bits = b;
+      return this;
+    }
+
+    /**
+     * Sets the maximal hamming distance of reported fingerprints. Larger distances produce more
+     * and shorter bands, thus more candidates per query.
+     *
+     * @param d maximal hamming distance
+     * @return this builder object
+     */
+    public Builder maxDistance(int d) {
+      maxDistance = d;
+      return this;
+    }
+  }
+}
@@ -0,0 +1,339 @@
+/*
+ * Copyright 2013 Adrien Favre-Bully, Florian Froese, Adrian Schmidmeister
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * 		http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+*/
+package ch.ethz.student.dejavu.index;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+import java.util.Arrays;
+
+/**
+ * Collection of strings packed into one contiguous buffer with an offsets array instead of one
+ * {@link String} object per entry. The strings are returned as {@link CharSequence} views of the
+ * buffer, which the metrics accepting a CharSequence read without materializing a String.
+ *
+ * <p>The characters are stored as UTF-16 or, for a quarter of the memory of String objects, as
+ * Latin-1 with one byte per character. The buffer lives on the heap, off the heap in a direct
+ * buffer, or in a file: a corpus written with {@link #write(File)} is opened with
+ * {@link #open(File)} in place from the mapped {@link IndexFile}. A corpus holds up to 2 GB of
+ * characters.</p>
+ *
+ * <p>A corpus is meant to be filled first and read afterwards, reading is thread-safe while
+ * adding is not. An opened corpus is read-only.</p>
+ *
+ * @author Adrien Favre-Bully
+ * @author Florian Froese
+ * @author Adrian Schmidmeister
+ * @since 1.1
+ */
+public class StringCorpus {
+
+  public enum Storage {
+    HEAP, DIRECT
+  }
+
+  public enum Encoding {
+    UTF16, LATIN1
+  }
+
+  private static final int INITIAL_CAPACITY = 16;
+  private static final String TYPE = "StringCorpus";
+
+  private final Storage storage;
+  private final boolean latin1;
+  private final boolean readOnly;
+  private ByteBuffer data;
+  // offsets[id] is the first character of a string, offsets[size] the end of the last one
+  private IntBuffer offsets;
+  private int size;
+
+  private StringCorpus(Builder b) {
+    this.storage = b.storage;
+    this.latin1 = b.encoding == Encoding.LATIN1;
+    this.readOnly = false;
+    this.data = allocate(Math.max(b.capacity, INITIAL_CAPACITY) * (latin1 ? 1 : 2));
+    this.offsets = IntBuffer.allocate(INITIAL_CAPACITY);
+  }
+
+  private StringCorpus(IndexFile file) throws IOException {
+    if (!TYPE.equals(file.getType())) {
+      throw new IOException("Not a " + TYPE + " file.");
+    }
+    IntBuffer header = file.getInts("header");
+    this.storage = null;
+    this.latin1 = header.get(0) != 0;
+    this.readOnly = true;
+    this.size = header.get(1);
+    this.data = file.getBytes("data");
+    this.offsets = file.getInts("offsets");
+    if (offsets.capacity() < size + 1 || offsets.get(size) * (latin1 ? 1 : 2) > data.capacity()) {
+      throw new IOException("Corrupt " + TYPE + " file.");
+    }
+  }
+
+  /**
+   * Maps a corpus written with {@link #write(File)}. The opened corpus is read-only.
+   *
+   * @param file corpus file
+   * @return corpus read in place
+   * @throws IOException if the file cannot be read or is not a corpus
+   */
+  public static StringCorpus open(File file) throws IOException {
+    return new StringCorpus(IndexFile.open(file));
+  }
+
+  /**
+   * Writes the corpus in the {@link IndexFile} format.
+   *
+   * @param file file to write, an existing file is replaced
+   * @throws IOException if the file cannot be written
+   */
+  public void write(File file) throws IOException {
+    new IndexFile.Writer(TYPE)
+        .ints("header", IntBuffer.wrap(new int[]{latin1 ? 1 : 0, size}), 2)
+        .bytes("data", data, offsets.get(size) * (latin1 ? 1 : 2))
+        .ints("offsets", offsets, size + 1)
+        .write(file);
+  }
+
+  /**
+   * @param s string
+   * @return id of the string
+   */
+  public int add(CharSequence s) {
+    if (s == null) {
+      throw new IllegalArgumentException("Input string cannot be null!");
+    }
+    if (readOnly) {
+      throw new UnsupportedOperationException("An opened corpus is read-only.");
+    }
+
+    int start = offsets.get(size);
+    long end = (long) start + s.length();
+    if (end * (latin1 ? 1 : 2) > Integer.MAX_VALUE) {
+      throw new IllegalStateException("The corpus is full.");
+    }
+    ensureCapacity((int) end);
+    if (latin1) {
+      for (int i = 0; i < s.length(); i++) {
+        char c = s.charAt(i);
+        if (c > 0xFF) {
+          throw new IllegalArgumentException("Input string must be Latin-1!");
+        }
+        data.put(start + i, (byte) c);
+      }
+    } else {
+      for (int i = 0; i < s.length(); i++) {
+        data.putChar(2 * (start + i), s.charAt(i));
+      }
+    }
+
+    if (size + 2 > offsets.capacity()) {
+      offsets = IntBuffer.wrap(Arrays.copyOf(offsets.array(), offsets.capacity() * 2));
+    }
+    offsets.put(++size, (int) end);
+    return size - 1;
+  }
+
+  /**
+   * @param id id of a string
+   * @return view of the string, valid as long as the corpus
+   */
+  public CharSequence get(int id) {
+    checkId(id);
+    return new View(offsets.get(id), offsets.get(id + 1));
+  }
+
+  /**
+   * @param id id of a string
+   * @return copy of the string
+   */
+  public String getString(int id) {
+    return get(id).toString();
+  }
+
+  public int length(int id) {
+    checkId(id);
+    return offsets.get(id + 1) - offsets.get(id);
+  }
+
+  public char charAt(int id, int index) {
+    checkId(id);
+    int start = offsets.get(id);
+    if (index < 0 || index >= offsets.get(id + 1) - start) {
+      throw new IndexOutOfBoundsException("Invalid index " + index);
+    }
+    return read(start + index);
+  }
+
+  public int size() {
+    return size;
+  }
+
+  /**
+   * @return number of bytes occupied by the characters
+   */
+  public long getDataSize() {
+    return (long) offsets.get(size) * (latin1 ? 1 : 2);
+  }
+
+  private char read(int position) {
+    return latin1 ? (char) (data.get(position) & 0xFF) : data.getChar(2 * position);
+  }
+
+  private void checkId(int id) {
+    if (id < 0 || id >= size) {
+      throw new IndexOutOfBoundsException("Invalid id " + id);
+    }
+  }
+
+  private void ensureCapacity(int chars) {
+    long bytes = (long) chars * (latin1 ? 1 : 2);
+    if (bytes <= data.capacity()) {
+      return;
+    }
+    int capacity = (int) Math.min(Integer.MAX_VALUE, Math.max(bytes, 2L * data.capacity()));
+    ByteBuffer grown = allocate(capacity);
+    ByteBuffer old = data.duplicate();
+    old.clear();
+    grown.put(old);
+    grown.clear();
+    data = grown;
+  }
+
+  private ByteBuffer allocate(int bytes) {
+    ByteBuffer buffer = storage == Storage.DIRECT ? ByteBuffer.allocateDirect(bytes)
+                                                  : ByteBuffer.allocate(bytes);
+    return buffer.order(ByteOrder.LITTLE_ENDIAN);
+  }
+
+  /**
+   * Characters start (inclusive) to end (exclusive) of the corpus.
+   */
+  private class View implements CharSequence {
+
+    private final int start;
+    private final int end;
+
+    View(int start, int end) {
+      this.start = start;
+      this.end = end;
+    }
+
+    @Override
+    public int length() {
+      return end - start;
+    }
+
+    @Override
+    public char charAt(int index) {
+      if (index < 0 || index >= end - start) {
+        throw new IndexOutOfBoundsException("Invalid index " + index);
+      }
+      return read(start + index);
+    }
+
+    @Override
+    public CharSequence subSequence(int from, int to) {
+      if (from < 0 || to > end - start || from > to) {
+        throw new IndexOutOfBoundsException("Invalid range " + from + " to " + to);
+      }
+      return new View(start + from, start + to);
+    }
+
+    @Override
+    public String toString() {
+      char[] chars = new char[end - start];
+      for (int i = 0; i < chars.length; i++) {
+        chars[i] = read(start + i);
+      }
+      return new String(chars);
+    }
+  }
+
+  // ===== Builder Pattern Methods =====
+
+  /**
+   * @return        {@link Builder}
+   * @see Builder
+   * @see StringCorpus
+   */
+  public static Builder getBuilder() {
+    return new Builder();
+  }
+
+  /**
+   * @return UTF-16 corpus on the heap
+   * @see StringCorpus
+   */
+  public static StringCorpus getInstance() {
+    return new Builder().build();
+  }
+
+  // ===== Builder Class =====
+
+  /**
+   * StringCorpus Builder Restriction: capacity must be greater or equal to 0.
+   *
+   * <p>Usage:</br> StringCorpus corpus = StringCorpus.getBuilder()</br>
+   * .storage(StringCorpus.Storage.DIRECT).encoding(StringCorpus.Encoding.LATIN1).build();</p>
+   *
+   * @param storage  buffer on the heap or off the heap (default: HEAP)
+   * @param encoding two bytes per character or one byte for Latin-1 strings (default: UTF16)
+   * @param capacity initial number of characters (default: 16)
+   * @author Adrien Favre-Bully
+   * @author Florian Froese
+   * @author Adrian Schmidmeister
+   * @since 1.1
+   */
+  public static class Builder {
+
+    private Storage storage = Storage.HEAP;
+    private Encoding encoding = Encoding.UTF16;
+    private int capacity = INITIAL_CAPACITY;
+
+    public StringCorpus build() {
+      // check constraints
+      if (storage == null) {
+        throw new IllegalArgumentException("storage cannot be null!");
+      }
+      if (encoding == null) {
+        throw new IllegalArgumentException("encoding cannot be null!");
+      }
+      if (capacity < 0 || (encoding == Encoding.UTF16 && capacity > Integer.MAX_VALUE / 2)) {
+        throw new IllegalArgumentException("capacity must be between 0 and the maximal size!");
+      }
+
+      return new StringCorpus(this);
+    }
+
+    public Builder storage(Storage s) {
+      storage = s;
+      return this;
+    }
+
+    public Builder encoding(Encoding e) {
+      encoding = e;
+      return this;
+    }
+
+    public Builder capacity(int c) {
+      capacity = c;
+      return this;
+    }
+  }
+}
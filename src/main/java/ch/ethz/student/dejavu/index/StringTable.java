@@ -0,0 +1,106 @@
+/*
+ * Copyright 2013 Adrien Favre-Bully, Florian Froese, Adrian Schmidmeister
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * 		http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+*/
+package ch.ethz.student.dejavu.index;
+
+import java.io.IOException;
+import java.nio.CharBuffer;
+import java.nio.IntBuffer;
+import java.util.Arrays;
+
+/**
+ * Strings of an index by id. A built index keeps them in an array, an opened index reads them in
+ * place from the sections written by {@link IndexFile.Writer#strings(String, String[], int)} and
+ * cannot add any.
+ *
+ * @author Adrien Favre-Bully
+ * @author Florian Froese
+ * @author Adrian Schmidmeister
+ * @since 1.1
+ */
+class StringTable {
+
+  private static final int INITIAL_CAPACITY = 16;
+
+  private String[] strings;
+  private int size;
+
+  // sections of an opened index, offsets[id] is the first character of a string
+  private CharBuffer chars;
+  private IntBuffer offsets;
+
+  StringTable() {
+    this.strings = new String[INITIAL_CAPACITY];
+  }
+
+  StringTable(IndexFile file, String name) throws IOException {
+    this.chars = file.getChars(name + "Chars");
+    this.offsets = file.getInts(name + "Offsets");
+    if (offsets.capacity() == 0 || offsets.get(offsets.capacity() - 1) > chars.capacity()) {
+      throw new IOException("Corrupt section " + name + "Offsets");
+    }
+    this.size = offsets.capacity() - 1;
+  }
+
+  void write(IndexFile.Writer writer, String name) {
+    if (strings != null) {
+      writer.strings(name, strings, size);
+    } else {
+      writer.chars(name + "Chars", chars, offsets.get(size));
+      writer.ints(name + "Offsets", offsets, size + 1);
+    }
+  }
+
+  /**
+   * @return id of the new string
+   * @throws UnsupportedOperationException if the table is read from a file
+   */
+  int add(String s) {
+    if (strings == null) {
+      throw new UnsupportedOperationException("An opened index is read-only.");
+    }
+    if (size == strings.length) {
+      strings = Arrays.copyOf(strings, size * 2);
+    }
+    strings[size] = s;
+    return size++;
+  }
+
+  String get(int id) {
+    checkId(id);
+    if (strings != null) {
+      return strings[id];
+    }
+    return chars.subSequence(offsets.get(id), offsets.get(id + 1)).toString();
+  }
+
+  int length(int id) {
+    checkId(id);
+    return strings != null ? strings[id].length() : offsets.get(id + 1) - offsets.get(id);
+  }
+
+  int size() {
+    return size;
+  }
+
+  boolean isReadOnly() {
+    return strings == null;
+  }
+
+  private void checkId(int id) {
+    if (id < 0 || id >= size) {
+      throw new IndexOutOfBoundsException("Invalid id " + id);
+    }
+  }
+}
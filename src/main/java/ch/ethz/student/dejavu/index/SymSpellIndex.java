@@ -0,0 +1,402 @@
+/*
+ * Copyright 2013 Adrien Favre-Bully, Florian Froese, Adrian Schmidmeister
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * 		http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+*/
+package ch.ethz.student.dejavu.index;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.CharBuffer;
+import java.nio.IntBuffer;
+import java.nio.LongBuffer;
+import java.util.Arrays;
+
+import ch.ethz.student.dejavu.BoundedDistanceMetric;
+import ch.ethz.student.dejavu.strings.DamerauLevenshteinDistance;
+import ch.ethz.student.dejavu.strings.LevenshteinDistance;
+import ch.ethz.student.dejavu.strings.OptimalStringAlignmentDistance;
+import ch.ethz.student.dejavu.utilities.HashUtils;
+import ch.ethz.student.dejavu.utilities.LongIntHashMap;
+import ch.ethz.student.dejavu.utilities.PrimitiveSort;
+
+/**
+ * Symmetric delete index (SymSpell) for dictionary lookups within a small edit distance.
+ *
+ * <p>Every term is stored under the hashes of all strings obtained by deleting up to maxDistance
+ * of its characters. Two strings within an edit distance of k, a substitution or a transposition
+ * counting as one edit, share such a delete variant with at most k deletions each. Thus a query
+ * generates its own delete variants, looks up their terms and verifies them with the bounded
+ * distance of the metric. No dynamic programming runs for terms without a common variant, which
+ * are almost all of them.</p>
+ *
+ * <p>The number of variants grows with the term length, therefore only the first prefixLength
+ * characters of terms and queries are used for the variants. A shorter prefix saves memory but
+ * may miss terms whose prefix differs by more edits than the whole term; without a cap
+ * (prefixLength 0) the lookup is exact. Hash collisions only add candidates, which are
+ * verified.</p>
+ *
+ * <p>For edit weights below 1 a distance of k allows more than k edit operations, thus the
+ * variants delete up to k divided by the smallest weight characters. Their number grows
+ * exponentially with the deletions, cheap weights are only practical for a small maxDistance.</p>
+ *
+ * <p>Variants are kept in a {@link LongIntHashMap} from hash to a linked list of term ids in
+ * primitive arrays. The index is not thread-safe.</p>
+ *
+ * <p>{@link #write(File)} stores the ascending variant hashes and the linked lists in an
+ * {@link IndexFile}. {@link #open(File, BoundedDistanceMetric)} maps them without generating a
+ * delete variant, a query finds its variants by binary search over the mapped hashes and follows
+ * the lists in place. An opened index is read-only.</p>
+ *
+ * @author Adrien Favre-Bully
+ * @author Florian Froese
+ * @author Adrian Schmidmeister
+ * @since 1.1
+ */
+public class SymSpellIndex {
+
+  public static final int DEFAULT_MAX_DISTANCE = 2;
+  public static final int DEFAULT_PREFIX_LENGTH = 7;
+
+  private static final int INITIAL_CAPACITY = 16;
+  private static final String TYPE = "SymSpellIndex";
+
+  private BoundedDistanceMetric metric;
+  private int maxDistance;
+  // weight of the cheapest edit operation, at most 1
+  private double minEditWeight;
+  private int prefixLength;
+
+  private StringTable terms = new StringTable();
+
+  // variant hash to first entry + 1 of a built index, an entry links a variant to a term
+  private LongIntHashMap heads = new LongIntHashMap();
+  // ascending variant hashes and their first entries + 1 of an opened index
+  private LongBuffer sortedVariants;
+  private IntBuffer firstEntries;
+  private IntBuffer next = IntBuffer.allocate(INITIAL_CAPACITY);
+  private IntBuffer entryTerm = IntBuffer.allocate(INITIAL_CAPACITY);
+  private int entries;
+
+  // buffers of a single operation
+  private long[] variants = new long[INITIAL_CAPACITY];
+  private int variantCount;
+  private LongIntHashMap seen = new LongIntHashMap();
+  private char[][] words;
+  private int[] visited = new int[INITIAL_CAPACITY];
+  private int visitTag;
+
+  private SymSpellIndex(Builder b) {
+    this.metric = b.metric;
+    this.maxDistance = b.maxDistance;
+    this.minEditWeight = QGramIndex.minEditWeight(b.metric);
+    this.prefixLength = b.prefixLength;
+    this.words = new char[deletions(maxDistance) + 1][];
+  }
+
+  private SymSpellIndex(IndexFile file, BoundedDistanceMetric metric) throws IOException {
+    file.checkType(TYPE);
+    file.checkMetric(metric);
+    this.metric = metric;
+
+    IntBuffer header = file.getInts("header");
+    this.maxDistance = header.get(0);
+    this.prefixLength = header.get(1);
+    this.entries = header.get(2);
+    if (maxDistance < 0 || prefixLength < 0 || entries < 0) {
+      throw new IOException("Corrupt " + TYPE + " file.");
+    }
+    this.minEditWeight = QGramIndex.minEditWeight(metric);
+    this.words = new char[deletions(maxDistance) + 1][];
+
+    this.terms = new StringTable(file, "terms");
+    this.next = file.getInts("next", entries);
+    this.entryTerm = file.getInts("entryTerm", entries);
+    this.sortedVariants = file.getLongs("variants");
+    this.firstEntries = file.getInts("heads", sortedVariants.capacity());
+  }
+
+  /**
+   * Maps an index written with {@link #write(File)}. The delete variants are not generated again,
+   * the linked lists of the terms are read in place. The opened index is read-only.
+   *
+   * @param file   index file
+   * @param metric metric the index was built with, its class and weights are checked
+   * @return the index
+   * @throws IOException if the file cannot be read or is not a symmetric delete index
+   */
+  public static SymSpellIndex open(File file, BoundedDistanceMetric metric) throws IOException {
+    return new SymSpellIndex(IndexFile.open(file), metric);
+  }
+
+  /**
+   * Writes the index in the {@link IndexFile} format.
+   *
+   * @param file file to write, an existing file is replaced
+   * @throws IOException if the file cannot be written
+   */
+  public void write(File file) throws IOException {
+    IndexFile.Writer writer = new IndexFile.Writer(TYPE)
+        .metric(metric)
+        .ints("header", IntBuffer.wrap(new int[]{maxDistance, prefixLength, entries}), 3);
+    terms.write(writer, "terms");
+    writer.ints("next", next, entries)
+        .ints("entryTerm", entryTerm, entries);
+    if (sortedVariants != null) {
+      writer.longs("variants", sortedVariants, sortedVariants.capacity())
+          .ints("heads", firstEntries, firstEntries.capacity());
+    } else {
+      // ascending hashes, an opened index finds a variant by binary search
+      long[] variantHashes = new long[heads.size()];
+      int[] first = new int[heads.size()];
+      int count = 0;
+      for (int slot = 0; slot < heads.capacity(); slot++) {
+        if (heads.valueAt(slot) != 0) {
+          variantHashes[count] = heads.keyAt(slot);
+          first[count++] = heads.valueAt(slot);
+        }
+      }
+      PrimitiveSort.sort(variantHashes, first, 0, count);
+      writer.longs("variants", LongBuffer.wrap(variantHashes), count)
+          .ints("heads", IntBuffer.wrap(first), count);
+    }
+    writer.write(file);
+  }
+
+  /**
+   * @param term term
+   * @return id of the new entry
+   * @throws UnsupportedOperationException if the index is opened from a file
+   */
+  public int add(String term) {
+    if (term == null) {
+      throw new IllegalArgumentException("Input string cannot be null!");
+    }
+    if (terms.isReadOnly()) {
+      throw new UnsupportedOperationException("An opened index is read-only.");
+    }
+
+    int id = terms.add(term);
+    computeVariants(term, deletions(maxDistance));
+    if (entries + variantCount > next.capacity()) {
+      int capacity = Math.max(entries + variantCount, next.capacity() * 2);
+      next = IntBuffer.wrap(Arrays.copyOf(next.array(), capacity));
+      entryTerm = IntBuffer.wrap(Arrays.copyOf(entryTerm.array(), capacity));
+    }
+    for (int i = 0; i < variantCount; i++) {
+      int entry = entries++;
+      entryTerm.put(entry, id);
+      next.put(entry, heads.get(variants[i]));
+      heads.put(variants[i], entry + 1);
+    }
+    return id;
+  }
+
+  /**
+   * @param s        query string
+   * @param distance maximal edit distance, at most the maxDistance of the index
+   * @return ids of the found terms within distance of s, in ascending order
+   */
+  public int[] query(String s, int distance) {
+    if (s == null) {
+      throw new IllegalArgumentException("Input string cannot be null!");
+    }
+    if (distance < 0 || distance > maxDistance) {
+      throw new IllegalArgumentException(
+          "distance must lie within 0 and the maxDistance of the index!");
+    }
+
+    if (visited.length < terms.size()) {
+      visited = Arrays.copyOf(visited, Math.max(terms.size(), visited.length * 2));
+    }
+    visitTag++;
+    if (visitTag == 0) {
+      Arrays.fill(visited, 0);
+      visitTag = 1;
+    }
+
+    int[] result = new int[INITIAL_CAPACITY];
+    int found = 0;
+    int deletions = deletions(distance);
+    computeVariants(s, deletions);
+    for (int i = 0; i < variantCount; i++) {
+      for (int entry = firstEntry(variants[i]) - 1; entry >= 0; entry = next.get(entry) - 1) {
+        int id = entryTerm.get(entry);
+        if (visited[id] == visitTag) {
+          continue;
+        }
+        visited[id] = visitTag;
+
+        if (Math.abs(terms.length(id) - s.length()) <= deletions
+            && metric.computeDistance(s, terms.get(id), distance) <= distance) {
+          if (found == result.length) {
+            result = Arrays.copyOf(result, found * 2);
+          }
+          result[found++] = id;
+        }
+      }
+    }
+
+    result = Arrays.copyOf(result, found);
+    Arrays.sort(result);
+    return result;
+  }
+
+  public String getTerm(int id) {
+    return terms.get(id);
+  }
+
+  public int size() {
+    return terms.size();
+  }
+
+  /**
+   * @return first entry + 1 of the terms of a variant hash, 0 if there is none
+   */
+  private int firstEntry(long variant) {
+    if (sortedVariants == null) {
+      return heads.get(variant);
+    }
+    int i = IndexFile.search(sortedVariants, variant);
+    return i < 0 ? 0 : firstEntries.get(i);
+  }
+
+  /**
+   * @return maximal number of edit operations within distance, each costs at least minEditWeight
+   */
+  private int deletions(int distance) {
+    return (int) Math.floor(distance / minEditWeight + 1e-9);
+  }
+
+  /**
+   * Stores the distinct hashes of the delete variants of the prefix of s in variants.
+   */
+  private void computeVariants(String s, int deletes) {
+    int length = prefixLength == 0 ? s.length() : Math.min(prefixLength, s.length());
+    for (int d = 0; d <= deletes; d++) {
+      if (words[d] == null || words[d].length < length) {
+        words[d] = new char[length];
+      }
+    }
+    s.getChars(0, length, words[0], 0);
+
+    variantCount = 0;
+    seen.clear();
+    collectVariants(0, length, 0, deletes);
+  }
+
+  /**
+   * Adds words[depth] and all its variants deleting characters at positions from or later.
+   */
+  private void collectVariants(int depth, int length, int from, int deletes) {
+    long hash = HashUtils.hash64(CharBuffer.wrap(words[depth], 0, length));
+    if (seen.get(hash) == 0) {
+      seen.put(hash, 1);
+      if (variantCount == variants.length) {
+        variants = Arrays.copyOf(variants, variantCount * 2);
+      }
+      variants[variantCount++] = hash;
+    }
+    if (depth == deletes) {
+      return;
+    }
+
+    char[] word = words[depth];
+    char[] shorter = words[depth + 1];
+    for (int i = from; i < length; i++) {
+      System.arraycopy(word, 0, shorter, 0, i);
+      System.arraycopy(word, i + 1, shorter, i, length - i - 1);
+      collectVariants(depth + 1, length - 1, i, deletes);
+    }
+  }
+
+  // ===== Builder Pattern Methods =====
+
+  /**
+   * @return        {@link Builder}
+   * @see Builder
+   * @see SymSpellIndex
+   */
+  public static Builder getBuilder() {
+    return new Builder();
+  }
+
+  /**
+   * @return symmetric delete index for the OptimalStringAlignmentDistance within 2 edits
+   * @see SymSpellIndex
+   */
+  public static SymSpellIndex getInstance() {
+    return new Builder().build();
+  }
+
+  // ===== Builder Class =====
+
+  /**
+   * SymSpellIndex Builder Restriction: metric must be a LevenshteinDistance, an
+   * OptimalStringAlignmentDistance or a DamerauLevenshteinDistance, maxDistance must be greater or
+   * equal to 0, prefixLength must be 0 or greater than maxDistance.
+   *
+   * <p>Usage:</br> SymSpellIndex index = SymSpellIndex.getBuilder()</br>
+   * .maxDistance(1).prefixLength(5).build();</p>
+   *
+   * @param metric       edit distance used for the verification (default:
+   *                     OptimalStringAlignmentDistance)
+   * @param maxDistance  maximal distance of a query (default: 2)
+   * @param prefixLength number of leading characters the variants are generated from, 0 for all
+   *                     (default: 7)
+   * @author Adrien Favre-Bully
+   * @author Florian Froese
+   * @author Adrian Schmidmeister
+   * @since 1.1
+   */
+  public static class Builder {
+
+    private BoundedDistanceMetric metric = OptimalStringAlignmentDistance.getInstance();
+    private int maxDistance = DEFAULT_MAX_DISTANCE;
+    private int prefixLength = DEFAULT_PREFIX_LENGTH;
+
+    public SymSpellIndex build() {
+      // check constraints
+      if (!(metric instanceof LevenshteinDistance)
+          && !(metric instanceof OptimalStringAlignmentDistance)
+          && !(metric instanceof DamerauLevenshteinDistance)) {
+        throw new IllegalArgumentException(
+            "metric must be a LevenshteinDistance, an OptimalStringAlignmentDistance or a "
+            + "DamerauLevenshteinDistance!");
+      }
+      if (maxDistance < 0) {
+        throw new IllegalArgumentException("maxDistance must be greater or equal to 0!");
+      }
+      if (prefixLength < 0 || prefixLength > 0 && prefixLength <= maxDistance) {
+        throw new IllegalArgumentException(
+            "prefixLength must be 0 or greater than maxDistance!");
+      }
+
+      return new SymSpellIndex(this);
+    }
+
+    public Builder metric(BoundedDistanceMetric m) {
+      metric = m;
+      return this;
+    }
+
+    public Builder maxDistance(int d) {
+      maxDistance = d;
+      return this;
+    }
+
+    public Builder prefixLength(int l) {
+      prefixLength = l;
+      return this;
+    }
+  }
+}
@@ -0,0 +1,125 @@
+/*
+ * Copyright 2013 Adrien Favre-Bully, Florian Froese, Adrian Schmidmeister
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * 		http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+*/
+package ch.ethz.student.dejavu.index;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+
+import ch.ethz.student.dejavu.utilities.PrimitiveSort;
+
+/**
+ * TokenDictionary
+ *
+ * Interns the tokens produced by the vector metrics into consecutive int ids and counts in how
+ * many documents every token occurs. Indexes work on the int ids only.
+ *
+ * @author Adrien Favre-Bully
+ * @author Florian Froese
+ * @author Adrian Schmidmeister
+ * @since 1.1
+ */
+public class TokenDictionary {
+
+  private HashMap<Object, Integer> ids = new HashMap<Object, Integer>();
+  private ArrayList<Object> tokens = new ArrayList<Object>();
+  private int[] documentFrequencies = new int[16];
+
+  /**
+   * @param token token
+   * @return id of the token, a new id is assigned if the token is unknown
+   */
+  public int intern(Object token) {
+    Integer id = ids.get(token);
+    if (id != null) {
+      return id;
+    }
+
+    int newId = tokens.size();
+    ids.put(token, newId);
+    tokens.add(token);
+    if (newId == documentFrequencies.length) {
+      documentFrequencies = Arrays.copyOf(documentFrequencies, newId * 2);
+    }
+    return newId;
+  }
+
+  /**
+   * Interns all tokens of a document and increments their document frequency.
+   *
+   * @param distinctTokens distinct tokens of the document
+   * @return ids of the tokens in ascending order
+   */
+  public int[] addDocument(Collection<?> distinctTokens) {
+    int[] result = new int[distinctTokens.size()];
+    int i = 0;
+    for (Object token : distinctTokens) {
+      int id = intern(token);
+      documentFrequencies[id]++;
+      result[i++] = id;
+    }
+    Arrays.sort(result);
+    return result;
+  }
+
+  /**
+   * @param token token
+   * @return id of the token or -1 if the token is unknown
+   */
+  public int getId(Object token) {
+    Integer id = ids.get(token);
+    return id == null ? -1 : id;
+  }
+
+  public Object getToken(int id) {
+    return tokens.get(id);
+  }
+
+  public int getDocumentFrequency(int id) {
+    if (id < 0 || id >= tokens.size()) {
+      throw new IndexOutOfBoundsException("Invalid id " + id);
+    }
+    return documentFrequencies[id];
+  }
+
+  public int size() {
+    return tokens.size();
+  }
+
+  /**
+   * Orders the tokens by increasing document frequency, ties are broken by id. Rare tokens come
+   * first, which keeps the prefixes used by prefix filtering short and selective.
+   *
+   * @return rank of every token id
+   */
+  public int[] getFrequencyRanks() {
+    int n = tokens.size();
+    long[] keys = new long[n];
+    int[] order = new int[n];
+    for (int id = 0; id < n; id++) {
+      keys[id] = ((long) documentFrequencies[id] << 32) | id;
+      order[id] = id;
+    }
+    PrimitiveSort.sort(keys, order, 0, n);
+
+    int[] ranks = new int[n];
+    for (int rank = 0; rank < n; rank++) {
+      ranks[order[rank]] = rank;
+    }
+    return ranks;
+  }
+
+}
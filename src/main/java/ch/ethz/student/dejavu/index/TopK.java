@@ -0,0 +1,158 @@
+/*
+ * Copyright 2013 Adrien Favre-Bully, Florian Froese, Adrian Schmidmeister
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * 		http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+*/
+package ch.ethz.student.dejavu.index;
+
+import java.util.Arrays;
+
+import ch.ethz.student.dejavu.BoundedDistanceMetric;
+import ch.ethz.student.dejavu.BoundedSimilarityMetric;
+import ch.ethz.student.dejavu.DistanceMetric;
+import ch.ethz.student.dejavu.SimilarityMetric;
+import ch.ethz.student.dejavu.utilities.Utilities;
+
+/**
+ * Exhaustive top-k search of a block of candidates. The k best candidates seen so far are kept in
+ * a bounded heap on primitive arrays, the score of the k-th best is the cut-off of every further
+ * candidate. A {@link BoundedDistanceMetric} or {@link BoundedSimilarityMetric} receives the
+ * cut-off and abandons a candidate that cannot beat it after a cheap bound or part of its
+ * computation, e.g. the banded {@link ch.ethz.student.dejavu.strings.LevenshteinDistance} or the
+ * length bounds of {@link ch.ethz.student.dejavu.strings.JaroMetric}.
+ *
+ * <p>The ids of the results are returned best first and their scores written to an array, a
+ * candidate that only ties with the k-th best does not replace it. Ties are ordered by id.</p>
+ *
+ * @author Adrien Favre-Bully
+ * @author Florian Froese
+ * @author Adrian Schmidmeister
+ * @since 1.1
+ */
+public class TopK {
+
+  private TopK() {
+  }
+
+  /**
+   * @param query      query string
+   * @param candidates candidate strings
+   * @param k          number of results
+   * @param metric     distance metric
+   * @param distances  distances of the results are written to, may be null
+   * @return ids of the min(k, candidates.length) closest candidates, closest first
+   */
+  public static int[] nearest(CharSequence query, CharSequence[] candidates, int k,
+                              DistanceMetric metric, double[] distances) {
+    check(query, candidates, k, metric, distances);
+
+    BoundedDistanceMetric bounded = metric instanceof BoundedDistanceMetric
+                                    ? (BoundedDistanceMetric) metric : null;
+    String q = query.toString();
+    // max heap, the top is the k-th closest candidate
+    NodeHeap heap = new NodeHeap(true, k);
+    for (int i = 0; i < candidates.length && k > 0; i++) {
+      String candidate = Utilities.toString(candidates[i]);
+      if (heap.size() < k) {
+        heap.push(metric.computeDistance(q, candidate), i);
+        continue;
+      }
+
+      double cutoff = heap.peekKey();
+      double d = bounded != null ? bounded.computeDistance(q, candidate, cutoff)
+                                 : metric.computeDistance(q, candidate);
+      if (d < cutoff) {
+        heap.pop();
+        heap.push(d, i);
+      }
+    }
+    return drain(heap, distances);
+  }
+
+  /**
+   * @param query        query string
+   * @param candidates   candidate strings
+   * @param k            number of results
+   * @param metric       similarity metric
+   * @param similarities similarities of the results are written to, may be null
+   * @return ids of the min(k, candidates.length) most similar candidates, most similar first
+   */
+  public static int[] best(CharSequence query, CharSequence[] candidates, int k,
+                           SimilarityMetric metric, double[] similarities) {
+    check(query, candidates, k, metric, similarities);
+
+    BoundedSimilarityMetric bounded = metric instanceof BoundedSimilarityMetric
+                                      ? (BoundedSimilarityMetric) metric : null;
+    String q = query.toString();
+    // min heap, the top is the k-th most similar candidate
+    NodeHeap heap = new NodeHeap(false, k);
+    for (int i = 0; i < candidates.length && k > 0; i++) {
+      String candidate = Utilities.toString(candidates[i]);
+      if (heap.size() < k) {
+        heap.push(metric.computeSimilarity(q, candidate), i);
+        continue;
+      }
+
+      double cutoff = heap.peekKey();
+      double s = bounded != null ? bounded.computeSimilarity(q, candidate, cutoff)
+                                 : metric.computeSimilarity(q, candidate);
+      if (s > cutoff) {
+        heap.pop();
+        heap.push(s, i);
+      }
+    }
+    return drain(heap, similarities);
+  }
+
+  private static void check(CharSequence query, CharSequence[] candidates, int k, Object metric,
+                            double[] scores) {
+    if (query == null || candidates == null) {
+      throw new IllegalArgumentException("Input strings cannot be null!");
+    }
+    if (metric == null) {
+      throw new IllegalArgumentException("metric cannot be null!");
+    }
+    if (k < 0) {
+      throw new IllegalArgumentException("k must be greater or equal to 0!");
+    }
+    if (scores != null && scores.length < Math.min(k, candidates.length)) {
+      throw new IllegalArgumentException("scores must hold k results!");
+    }
+  }
+
+  /**
+   * Empties the heap into the ids best first, ties by id.
+   */
+  private static int[] drain(NodeHeap heap, double[] scores) {
+    int[] ids = new int[heap.size()];
+    double[] keys = new double[heap.size()];
+    // the heap returns the worst result first
+    for (int r = ids.length - 1; r >= 0; r--) {
+      keys[r] = heap.peekKey();
+      ids[r] = heap.pop();
+    }
+
+    for (int from = 0; from < ids.length; ) {
+      int to = from + 1;
+      while (to < ids.length && keys[to] == keys[from]) {
+        to++;
+      }
+      Arrays.sort(ids, from, to);
+      from = to;
+    }
+
+    if (scores != null) {
+      System.arraycopy(keys, 0, scores, 0, keys.length);
+    }
+    return ids;
+  }
+}
@@ -0,0 +1,406 @@
+/*
+ * Copyright 2013 Adrien Favre-Bully, Florian Froese, Adrian Schmidmeister
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * 		http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+*/
+package ch.ethz.student.dejavu.index;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.CharBuffer;
+import java.nio.DoubleBuffer;
+import java.nio.IntBuffer;
+import java.util.Arrays;
+
+import ch.ethz.student.dejavu.DistanceMetric;
+import ch.ethz.student.dejavu.strings.LevenshteinDistance;
+import ch.ethz.student.dejavu.strings.OptimalStringAlignmentDistance;
+
+/**
+ * Dictionary of terms in a trie for fuzzy search with the {@link LevenshteinDistance} or the
+ * {@link OptimalStringAlignmentDistance}.
+ *
+ * <p>The dynamic programming table of a query and a term has a column per character of the term.
+ * Terms with a common prefix share the columns of the prefix, thus a search walks the trie once
+ * and computes one column per trie node from the column of its parent (and grandparent for the
+ * transpositions of OSA) instead of one table per term. The subtree of a node is skipped as soon
+ * as its column (for OSA its column and the one of its parent) exceeds the maximal distance
+ * everywhere, every alignment of a longer term passes through it. The result equals
+ * computeDistance(query, term) &lt;= maxDistance of the metric, including its weights.</p>
+ *
+ * <p>The nodes are stored in primitive buffers, the children of a node form a linked list. A
+ * dictionary written with {@link #write(File)} is opened with {@link #open(File)} in place: the
+ * buffers are views of the mapped {@link IndexFile}, nothing is deserialized and the opened
+ * dictionary is read-only and thread-safe. Otherwise the dictionary is not thread-safe.</p>
+ *
+ * @author Adrien Favre-Bully
+ * @author Florian Froese
+ * @author Adrian Schmidmeister
+ * @since 1.1
+ */
+public class TrieDictionary {
+
+  private static final int INITIAL_CAPACITY = 16;
+  private static final int NONE = -1;
+  private static final int ROOT = 0;
+  private static final String TYPE = "TrieDictionary";
+
+  private boolean transpositions;
+  private double insertionWeight;
+  private double deletionWeight;
+  private double substitutionWeight;
+  private double transpositionWeight;
+
+  // nodes, the root has no label
+  private CharBuffer label = CharBuffer.allocate(INITIAL_CAPACITY);
+  private IntBuffer firstChild = IntBuffer.allocate(INITIAL_CAPACITY);
+  private IntBuffer nextSibling = IntBuffer.allocate(INITIAL_CAPACITY);
+  private IntBuffer depth = IntBuffer.allocate(INITIAL_CAPACITY);
+  // id of the term ending at a node or NONE
+  private IntBuffer termId = IntBuffer.allocate(INITIAL_CAPACITY);
+  private int nodes;
+  private int maxDepth;
+
+  // terms of a built dictionary, an opened dictionary has their characters and offsets instead
+  private String[] terms = new String[INITIAL_CAPACITY];
+  private CharBuffer termChars;
+  private IntBuffer termOffsets;
+  private int size;
+
+  private TrieDictionary(Builder b) {
+    if (b.metric instanceof OptimalStringAlignmentDistance) {
+      OptimalStringAlignmentDistance osa = (OptimalStringAlignmentDistance) b.metric;
+      this.transpositions = true;
+      this.insertionWeight = osa.getInsertionWeight();
+      this.deletionWeight = osa.getDeletionWeight();
+      this.substitutionWeight = osa.getSubstitutionWeight();
+      this.transpositionWeight = osa.getTranspositionWeight();
+    } else {
+      LevenshteinDistance levenshtein = (LevenshteinDistance) b.metric;
+      this.insertionWeight = levenshtein.getInsertionWeight();
+      this.deletionWeight = levenshtein.getDeletionWeight();
+      this.substitutionWeight = levenshtein.getSubstitutionWeight();
+    }
+    newNode('\0', 0);
+  }
+
+  private TrieDictionary(IndexFile file) throws IOException {
+    if (!TYPE.equals(file.getType())) {
+      throw new IOException("Not a " + TYPE + " file.");
+    }
+    IntBuffer header = file.getInts("header");
+    this.transpositions = header.get(0) != 0;
+    this.nodes = header.get(1);
+    this.maxDepth = header.get(2);
+    this.size = header.get(3);
+    DoubleBuffer weights = file.getDoubles("weights");
+    this.insertionWeight = weights.get(0);
+    this.deletionWeight = weights.get(1);
+    this.substitutionWeight = weights.get(2);
+    this.transpositionWeight = weights.get(3);
+
+    this.label = file.getChars("label");
+    this.firstChild = file.getInts("firstChild");
+    this.nextSibling = file.getInts("nextSibling");
+    this.depth = file.getInts("depth");
+    this.termId = file.getInts("termId");
+    this.terms = null;
+    this.termChars = file.getChars("termChars");
+    this.termOffsets = file.getInts("termOffsets");
+    if (label.capacity() < nodes || termOffsets.capacity() < size + 1) {
+      throw new IOException("Corrupt " + TYPE + " file.");
+    }
+  }
+
+  /**
+   * Maps a dictionary written with {@link #write(File)}. The opened dictionary is read-only.
+   *
+   * @param file dictionary file
+   * @return dictionary queried in place
+   * @throws IOException if the file cannot be read or is not a dictionary
+   */
+  public static TrieDictionary open(File file) throws IOException {
+    return new TrieDictionary(IndexFile.open(file));
+  }
+
+  /**
+   * Writes the dictionary in the {@link IndexFile} format.
+   *
+   * @param file file to write, an existing file is replaced
+   * @throws IOException if the file cannot be written
+   */
+  public void write(File file) throws IOException {
+    CharBuffer chars = termChars;
+    IntBuffer offsets = termOffsets;
+    if (terms != null) {
+      int length = 0;
+      for (int id = 0; id < size; id++) {
+        length += terms[id].length();
+      }
+      chars = CharBuffer.allocate(length);
+      offsets = IntBuffer.allocate(size + 1);
+      for (int id = 0; id < size; id++) {
+        offsets.put(id, chars.position());
+        chars.put(terms[id]);
+      }
+      offsets.put(size, chars.position());
+    }
+
+    IndexFile.Writer writer = new IndexFile.Writer(TYPE);
+    writer.ints("header", IntBuffer.wrap(new int[]{transpositions ? 1 : 0, nodes, maxDepth, size}),
+                4);
+    writer.doubles("weights", DoubleBuffer.wrap(new double[]{insertionWeight, deletionWeight,
+                                                             substitutionWeight,
+                                                             transpositionWeight}), 4);
+    writer.chars("label", label, nodes);
+    writer.ints("firstChild", firstChild, nodes);
+    writer.ints("nextSibling", nextSibling, nodes);
+    writer.ints("depth", depth, nodes);
+    writer.ints("termId", termId, nodes);
+    writer.chars("termChars", chars, offsets.get(size));
+    writer.ints("termOffsets", offsets, size + 1);
+    writer.write(file);
+  }
+
+  /**
+   * @param term term
+   * @return id of the term, a term added twice keeps its first id
+   */
+  public int add(String term) {
+    if (term == null) {
+      throw new IllegalArgumentException("Input string cannot be null!");
+    }
+    if (terms == null) {
+      throw new UnsupportedOperationException("An opened dictionary is read-only.");
+    }
+
+    int node = ROOT;
+    for (int i = 0; i < term.length(); i++) {
+      char c = term.charAt(i);
+      int child = firstChild.get(node);
+      while (child != NONE && label.get(child) != c) {
+        child = nextSibling.get(child);
+      }
+      if (child == NONE) {
+        child = newNode(c, i + 1);
+        nextSibling.put(child, firstChild.get(node));
+        firstChild.put(node, child);
+      }
+      node = child;
+    }
+
+    if (termId.get(node) == NONE) {
+      if (size == terms.length) {
+        terms = Arrays.copyOf(terms, size * 2);
+      }
+      terms[size] = term;
+      termId.put(node, size++);
+      maxDepth = Math.max(maxDepth, term.length());
+    }
+    return termId.get(node);
+  }
+
+  /**
+   * @param term term
+   * @return id of the term or -1 if it is not contained
+   */
+  public int getId(String term) {
+    int node = ROOT;
+    for (int i = 0; i < term.length() && node != NONE; i++) {
+      int child = firstChild.get(node);
+      while (child != NONE && label.get(child) != term.charAt(i)) {
+        child = nextSibling.get(child);
+      }
+      node = child;
+    }
+    return node == NONE ? NONE : termId.get(node);
+  }
+
+  /**
+   * @param s           query string
+   * @param maxDistance maximal distance
+   * @return ids of all terms t with computeDistance(s, t) &lt;= maxDistance, in ascending order
+   */
+  public int[] query(String s, double maxDistance) {
+    if (s == null) {
+      throw new IllegalArgumentException("Input string cannot be null!");
+    }
+    if (!(maxDistance >= 0)) {
+      throw new IllegalArgumentException("maxDistance must be greater or equal to 0!");
+    }
+
+    int n = s.length();
+    // columns[d] is the column of the current node of depth d
+    double[][] columns = new double[maxDepth + 1][n + 1];
+    char[] path = new char[maxDepth + 1];
+    // row minimum of the columns
+    double[] minima = new double[maxDepth + 1];
+
+    int[] result = new int[INITIAL_CAPACITY];
+    int found = 0;
+
+    // the root, the borders of the tables are not weighted for an empty term
+    for (int i = 0; i <= n; i++) {
+      columns[0][i] = transpositions ? i : i * insertionWeight;
+    }
+    minima[0] = 0;
+    if (termId.get(ROOT) != NONE && n <= maxDistance) {
+      result[found++] = termId.get(ROOT);
+    }
+
+    int[] stack = new int[INITIAL_CAPACITY];
+    int top = 0;
+    for (int c = firstChild.get(ROOT); c != NONE; c = nextSibling.get(c)) {
+      stack = push(stack, top++, c);
+    }
+
+    while (top > 0) {
+      int node = stack[--top];
+      int d = depth.get(node);
+      char c = label.get(node);
+      path[d] = c;
+      double[] previous = columns[d - 1];
+      double[] current = columns[d];
+
+      // the first row of the table: an empty query is not weighted
+      current[0] = transpositions || n == 0 ? d : d * insertionWeight;
+      double min = current[0];
+      for (int i = 1; i <= n; i++) {
+        char q = s.charAt(i - 1);
+        double value = Math.min(Math.min(previous[i] + insertionWeight,
+                                         current[i - 1] + deletionWeight),
+                                previous[i - 1] + (q != c ? substitutionWeight : 0));
+        if (transpositions && i > 1 && d > 1 && q == path[d - 1] && s.charAt(i - 2) == c) {
+          value = Math.min(value, columns[d - 2][i - 2] + (q != c ? transpositionWeight : 0));
+        }
+        current[i] = value;
+        min = Math.min(min, value);
+      }
+      minima[d] = min;
+
+      if (termId.get(node) != NONE && current[n] <= maxDistance) {
+        if (found == result.length) {
+          result = Arrays.copyOf(result, found * 2);
+        }
+        result[found++] = termId.get(node);
+      }
+
+      // a transposition may skip a column, thus OSA prunes only if two columns exceed the bound
+      boolean prune = min > maxDistance && (!transpositions || minima[d - 1] > maxDistance);
+      if (!prune) {
+        for (int child = firstChild.get(node); child != NONE; child = nextSibling.get(child)) {
+          stack = push(stack, top++, child);
+        }
+      }
+    }
+
+    result = Arrays.copyOf(result, found);
+    Arrays.sort(result);
+    return result;
+  }
+
+  public String getTerm(int id) {
+    if (id < 0 || id >= size) {
+      throw new IndexOutOfBoundsException("Invalid id " + id);
+    }
+    if (terms != null) {
+      return terms[id];
+    }
+    return termChars.subSequence(termOffsets.get(id), termOffsets.get(id + 1)).toString();
+  }
+
+  public int size() {
+    return size;
+  }
+
+  private static int[] push(int[] stack, int top, int node) {
+    if (top == stack.length) {
+      stack = Arrays.copyOf(stack, top * 2);
+    }
+    stack[top] = node;
+    return stack;
+  }
+
+  private int newNode(char c, int d) {
+    if (nodes == label.capacity()) {
+      int capacity = nodes * 2;
+      label = CharBuffer.wrap(Arrays.copyOf(label.array(), capacity));
+      firstChild = IntBuffer.wrap(Arrays.copyOf(firstChild.array(), capacity));
+      nextSibling = IntBuffer.wrap(Arrays.copyOf(nextSibling.array(), capacity));
+      depth = IntBuffer.wrap(Arrays.copyOf(depth.array(), capacity));
+      termId = IntBuffer.wrap(Arrays.copyOf(termId.array(), capacity));
+    }
+    int node = nodes++;
+    label.put(node, c);
+    depth.put(node, d);
+    firstChild.put(node, NONE);
+    nextSibling.put(node, NONE);
+    termId.put(node, NONE);
+    return node;
+  }
+
+  // ===== Builder Pattern Methods =====
+
+  /**
+   * @return        {@link Builder}
+   * @see Builder
+   * @see TrieDictionary
+   */
+  public static Builder getBuilder() {
+    return new Builder();
+  }
+
+  /**
+   * @return trie dictionary for the LevenshteinDistance
+   * @see TrieDictionary
+   */
+  public static TrieDictionary getInstance() {
+    return new Builder().build();
+  }
+
+  // ===== Builder Class =====
+
+  /**
+   * TrieDictionary Builder Restriction: metric must be a LevenshteinDistance or an
+   * OptimalStringAlignmentDistance.
+   *
+   * <p>Usage:</br> TrieDictionary dictionary = TrieDictionary.getBuilder()</br>
+   * .metric(OptimalStringAlignmentDistance.getInstance()).build();</p>
+   *
+   * @param metric LevenshteinDistance or OptimalStringAlignmentDistance, its weights are used
+   *               (default: LevenshteinDistance)
+   * @author Adrien Favre-Bully
+   * @author Florian Froese
+   * @author Adrian Schmidmeister
+   * @since 1.1
+   */
+  public static class Builder {
+
+    private DistanceMetric metric = LevenshteinDistance.getInstance();
+
+    public TrieDictionary build() {
+      // check constraints
+      if (!(metric instanceof LevenshteinDistance)
+          && !(metric instanceof OptimalStringAlignmentDistance)) {
+        throw new IllegalArgumentException(
+            "metric must be a LevenshteinDistance or an OptimalStringAlignmentDistance!");
+      }
+
+      return new TrieDictionary(this);
+    }
+
+    public Builder metric(DistanceMetric m) {
+      metric = m;
+      return this;
+    }
+  }
+}
@@ -0,0 +1,581 @@
+/*
+ * Copyright 2013 Adrien Favre-Bully, Florian Froese, Adrian Schmidmeister
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * 		http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+*/
+package ch.ethz.student.dejavu.index;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.DoubleBuffer;
+import java.nio.IntBuffer;
+import java.nio.LongBuffer;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+import ch.ethz.student.dejavu.DistanceMetric;
+import ch.ethz.student.dejavu.utilities.HashUtils;
+
+/**
+ * Vantage-point tree for any {@link DistanceMetric} satisfying the triangle inequality, including
+ * metrics with real valued distances such as weighted edit distances or the L2Distance.
+ *
+ * <p>Every node picks a vantage point and splits the remaining strings at the median of their
+ * distances to it into an inner and an outer half. A node stores the largest distance of its inner
+ * and the smallest distance of its outer half, a query with distance d to the vantage point and
+ * radius r only descends into the inner half if d - r &lt;= innerMax and into the outer half if
+ * d + r &gt;= outerMin. Top-k queries visit the nearer half first and shrink the radius to the
+ * distance of the k-th best string found so far.</p>
+ *
+ * <p>The tree is stored implicitly in flat arrays: a node is a range of a permutation of the ids,
+ * its vantage point is the first id of the range followed by the inner and the outer half. Ranges
+ * of at most leafSize ids are scanned. The tree is rebuilt lazily by the first query after a call
+ * to {@link #add(String)}, optionally in parallel with fork-join, which requires a thread-safe
+ * metric. The metrics of the strings package are thread-safe, those of the vectors package are
+ * not. The tree itself is not thread-safe.</p>
+ *
+ * <p>{@link #write(File)} stores the permutation and the bounds of the nodes in an
+ * {@link IndexFile}, {@link #open(File, DistanceMetric)} maps them and queries the tree in place
+ * instead of selecting the vantage points and partitioning again. An opened tree is read-only and
+ * thread-safe.</p>
+ *
+ * @author Adrien Favre-Bully
+ * @author Florian Froese
+ * @author Adrian Schmidmeister
+ * @since 1.1
+ */
+public class VPTree {
+
+  /**
+   * Strategy selecting the vantage point of a node.
+   */
+  public enum Selection {
+    /**
+     * A random string of the node.
+     */
+    RANDOM,
+    /**
+     * The string of a small random sample with the largest spread of the distances to another
+     * sample (Yianilos), which splits better but costs additional distance computations.
+     */
+    MAX_SPREAD
+  }
+
+  public static final Selection DEFAULT_SELECTION = Selection.RANDOM;
+  public static final int DEFAULT_LEAF_SIZE = 8;
+  public static final boolean DEFAULT_PARALLEL = false;
+  public static final long DEFAULT_SEED = 42;
+
+  private static final int INITIAL_CAPACITY = 16;
+  // ranges below this size are built by the current task
+  private static final int PARALLEL_THRESHOLD = 2048;
+  private static final int SAMPLE_SIZE = 8;
+  private static final String TYPE = "VPTree";
+
+  private DistanceMetric metric;
+  private Selection selection;
+  private int leafSize;
+  private boolean parallel;
+  private long seed;
+
+  private StringTable strings = new StringTable();
+
+  // permutation of the ids, a node [lo, hi) has its vantage point at lo
+  private IntBuffer order = IntBuffer.allocate(0);
+  private DoubleBuffer innerMax = DoubleBuffer.allocate(0);
+  private DoubleBuffer outerMin = DoubleBuffer.allocate(0);
+  private boolean dirty;
+
+  private VPTree(Builder b) {
+    this.metric = b.metric;
+    this.selection = b.selection;
+    this.leafSize = b.leafSize;
+    this.parallel = b.parallel;
+    this.seed = b.seed;
+  }
+
+  private VPTree(IndexFile file, DistanceMetric metric) throws IOException {
+    file.checkType(TYPE);
+    file.checkMetric(metric);
+    this.metric = metric;
+
+    IntBuffer header = file.getInts("header");
+    if (header.get(0) < 0 || header.get(0) >= Selection.values().length) {
+      throw new IOException("Corrupt " + TYPE + " file.");
+    }
+    this.selection = Selection.values()[header.get(0)];
+    this.leafSize = header.get(1);
+    this.parallel = header.get(2) != 0;
+    this.seed = file.getLongs("seed").get(0);
+
+    this.strings = new StringTable(file, "strings");
+    int size = strings.size();
+    this.order = file.getInts("order", size);
+    this.innerMax = file.getDoubles("innerMax", size);
+    this.outerMin = file.getDoubles("outerMin", size);
+  }
+
+  /**
+   * Maps a tree written with {@link #write(File)}. The tree is not built again, no distance is
+   * computed, the strings and the nodes are read in place. The opened tree is read-only.
+   *
+   * @param file   tree file
+   * @param metric metric the tree was built with, its class and weights are checked
+   * @return the tree
+   * @throws IOException if the file cannot be read or is not a tree
+   */
+  public static VPTree open(File file, DistanceMetric metric) throws IOException {
+    return new VPTree(IndexFile.open(file), metric);
+  }
+
+  /**
+   * Writes the tree in the {@link IndexFile} format, a pending build is done first.
+   *
+   * @param file file to write, an existing file is replaced
+   * @throws IOException if the file cannot be written
+   */
+  public void write(File file) throws IOException {
+    if (dirty) {
+      build();
+    }
+
+    int size = strings.size();
+    IndexFile.Writer writer = new IndexFile.Writer(TYPE)
+        .metric(metric)
+        .ints("header", IntBuffer.wrap(new int[]{selection.ordinal(), leafSize, parallel ? 1 : 0}),
+              3)
+        .longs("seed", LongBuffer.wrap(new long[]{seed}), 1);
+    strings.write(writer, "strings");
+    writer.ints("order", order, size)
+        .doubles("innerMax", innerMax, size)
+        .doubles("outerMin", outerMin, size)
+        .write(file);
+  }
+
+  /**
+   * @param s string
+   * @return id of the new entry
+   * @throws UnsupportedOperationException if the tree is opened from a file
+   */
+  public int add(String s) {
+    if (s == null) {
+      throw new IllegalArgumentException("Input string cannot be null!");
+    }
+    if (strings.isReadOnly()) {
+      throw new UnsupportedOperationException("An opened tree is read-only.");
+    }
+    dirty = true;
+    return strings.add(s);
+  }
+
+  /**
+   * @param s      query string
+   * @param radius maximal distance
+   * @return ids of all entries within radius of s, in ascending order
+   */
+  public int[] query(String s, double radius) {
+    if (s == null) {
+      throw new IllegalArgumentException("Input string cannot be null!");
+    }
+    if (!(radius >= 0)) {
+      throw new IllegalArgumentException("radius must be greater or equal to 0!");
+    }
+    if (dirty) {
+      build();
+    }
+
+    int[] result = new int[INITIAL_CAPACITY];
+    int found = 0;
+    Stack stack = new Stack();
+    if (strings.size() > 0) {
+      stack.push(0, strings.size(), 0);
+    }
+    while (stack.top > 0) {
+      stack.top--;
+      int lo = stack.lo[stack.top];
+      int hi = stack.hi[stack.top];
+
+      if (hi - lo <= leafSize) {
+        for (int i = lo; i < hi; i++) {
+          int id = order.get(i);
+          if (metric.computeDistance(s, strings.get(id)) <= radius) {
+            if (found == result.length) {
+              result = Arrays.copyOf(result, found * 2);
+            }
+            result[found++] = id;
+          }
+        }
+        continue;
+      }
+
+      int vantagePoint = order.get(lo);
+      double d = metric.computeDistance(s, strings.get(vantagePoint));
+      if (d <= radius) {
+        if (found == result.length) {
+          result = Arrays.copyOf(result, found * 2);
+        }
+        result[found++] = vantagePoint;
+      }
+      int mid = middle(lo, hi);
+      if (d - radius <= innerMax.get(lo)) {
+        stack.push(lo + 1, mid, 0);
+      }
+      if (d + radius >= outerMin.get(lo)) {
+        stack.push(mid, hi, 0);
+      }
+    }
+
+    result = Arrays.copyOf(result, found);
+    Arrays.sort(result);
+    return result;
+  }
+
+  /**
+   * @param s query string
+   * @param k number of neighbors
+   * @return ids of the k nearest entries, the nearest first; ties are broken arbitrarily
+   */
+  public int[] query(String s, int k) {
+    if (s == null) {
+      throw new IllegalArgumentException("Input string cannot be null!");
+    }
+    if (k < 1) {
+      throw new IllegalArgumentException("k must be greater than 0!");
+    }
+    if (dirty) {
+      build();
+    }
+
+    NodeHeap heap = new NodeHeap(true, k + 1);
+    Stack stack = new Stack();
+    if (strings.size() > 0) {
+      stack.push(0, strings.size(), 0);
+    }
+    while (stack.top > 0) {
+      stack.top--;
+      int lo = stack.lo[stack.top];
+      int hi = stack.hi[stack.top];
+      // lower bound of the distances within the range
+      if (heap.size() == k && stack.bound[stack.top] >= heap.peekKey()) {
+        continue;
+      }
+
+      if (hi - lo <= leafSize) {
+        for (int i = lo; i < hi; i++) {
+          int id = order.get(i);
+          offer(heap, k, metric.computeDistance(s, strings.get(id)), id);
+        }
+        continue;
+      }
+
+      int vantagePoint = order.get(lo);
+      double d = metric.computeDistance(s, strings.get(vantagePoint));
+      offer(heap, k, d, vantagePoint);
+      int mid = middle(lo, hi);
+      double innerBound = Math.max(0, d - innerMax.get(lo));
+      double outerBound = Math.max(0, outerMin.get(lo) - d);
+      // the nearer half is pushed last, thus visited first
+      if (innerBound <= outerBound) {
+        stack.push(mid, hi, outerBound);
+        stack.push(lo + 1, mid, innerBound);
+      } else {
+        stack.push(lo + 1, mid, innerBound);
+        stack.push(mid, hi, outerBound);
+      }
+    }
+
+    int[] result = new int[heap.size()];
+    for (int i = result.length - 1; i >= 0; i--) {
+      result[i] = heap.pop();
+    }
+    return result;
+  }
+
+  public String getString(int id) {
+    return strings.get(id);
+  }
+
+  public int size() {
+    return strings.size();
+  }
+
+  private static void offer(NodeHeap heap, int k, double d, int id) {
+    if (heap.size() < k || d < heap.peekKey()) {
+      heap.push(d, id);
+      if (heap.size() > k) {
+        heap.pop();
+      }
+    }
+  }
+
+  /**
+   * @return first position of the outer half of the node [lo, hi)
+   */
+  private static int middle(int lo, int hi) {
+    return lo + 1 + (hi - lo - 1) / 2;
+  }
+
+  private void build() {
+    int size = strings.size();
+    order = IntBuffer.allocate(size);
+    for (int i = 0; i < size; i++) {
+      order.put(i, i);
+    }
+    innerMax = DoubleBuffer.allocate(size);
+    outerMin = DoubleBuffer.allocate(size);
+    double[] distances = new double[size];
+
+    BuildTask root = new BuildTask(0, size, distances);
+    if (parallel && size > PARALLEL_THRESHOLD) {
+      ForkJoinPool pool = new ForkJoinPool();
+      try {
+        pool.invoke(root);
+      } finally {
+        pool.shutdown();
+      }
+    } else {
+      root.compute();
+    }
+    dirty = false;
+  }
+
+  /**
+   * Builds the node [lo, hi) and its subtrees, the halves of large nodes are built in parallel.
+   */
+  private class BuildTask extends RecursiveAction {
+
+    private static final long serialVersionUID = 1L;
+
+    private final int lo;
+    private final int hi;
+    private final double[] distances;
+
+    private BuildTask(int lo, int hi, double[] distances) {
+      this.lo = lo;
+      this.hi = hi;
+      this.distances = distances;
+    }
+
+    @Override
+    protected void compute() {
+      if (hi - lo <= leafSize) {
+        return;
+      }
+
+      // deterministic per node, independent of the scheduling
+      Random rnd = new Random(HashUtils.mix64(seed + lo));
+      swap(lo, selectVantagePoint(rnd));
+      String vantagePoint = strings.get(order.get(lo));
+      for (int i = lo + 1; i < hi; i++) {
+        distances[i] = metric.computeDistance(vantagePoint, strings.get(order.get(i)));
+      }
+
+      int mid = middle(lo, hi);
+      select(lo + 1, hi, mid, rnd);
+      double max = Double.NEGATIVE_INFINITY;
+      for (int i = lo + 1; i < mid; i++) {
+        max = Math.max(max, distances[i]);
+      }
+      innerMax.put(lo, max);
+      // the selection leaves the smallest distance of the outer half at mid
+      outerMin.put(lo, distances[mid]);
+
+      BuildTask inner = new BuildTask(lo + 1, mid, distances);
+      BuildTask outer = new BuildTask(mid, hi, distances);
+      if (parallel && hi - lo > PARALLEL_THRESHOLD) {
+        invokeAll(inner, outer);
+      } else {
+        inner.compute();
+        outer.compute();
+      }
+    }
+
+    private int selectVantagePoint(Random rnd) {
+      int n = hi - lo;
+      if (selection == Selection.RANDOM) {
+        return lo + rnd.nextInt(n);
+      }
+
+      int best = lo;
+      double bestSpread = -1;
+      for (int c = 0; c < SAMPLE_SIZE; c++) {
+        int candidate = lo + rnd.nextInt(n);
+        // second moment of the distances to a sample around their mean
+        double sum = 0;
+        double sumOfSquares = 0;
+        for (int i = 0; i < SAMPLE_SIZE; i++) {
+          double d = metric.computeDistance(strings.get(order.get(candidate)),
+                                            strings.get(order.get(lo + rnd.nextInt(n))));
+          sum += d;
+          sumOfSquares += d * d;
+        }
+        double spread = sumOfSquares / SAMPLE_SIZE - (sum / SAMPLE_SIZE) * (sum / SAMPLE_SIZE);
+        if (spread > bestSpread) {
+          bestSpread = spread;
+          best = candidate;
+        }
+      }
+      return best;
+    }
+
+    /**
+     * Partially sorts [from, to) by distance such that position nth holds the distance it would
+     * hold if sorted, with no larger distance before and no smaller one after it. The partition is
+     * three-way: integer valued metrics give long runs of equal distances, which a two-way
+     * partition would split off one element at a time.
+     */
+    private void select(int from, int to, int nth, Random rnd) {
+      int left = from;
+      int right = to - 1;
+      while (left < right) {
+        double pivot = distances[left + rnd.nextInt(right - left + 1)];
+        // [left, lt) < pivot, [lt, i) == pivot, (gt, right] > pivot
+        int lt = left;
+        int gt = right;
+        int i = left;
+        while (i <= gt) {
+          if (distances[i] < pivot) {
+            swap(lt++, i++);
+          } else if (distances[i] > pivot) {
+            swap(i, gt--);
+          } else {
+            i++;
+          }
+        }
+
+        if (nth < lt) {
+          right = lt - 1;
+        } else if (nth > gt) {
+          left = gt + 1;
+        } else {
+          return;
+        }
+      }
+    }
+
+    private void swap(int i, int j) {
+      int id = order.get(i);
+      order.put(i, order.get(j));
+      order.put(j, id);
+      double d = distances[i];
+      distances[i] = distances[j];
+      distances[j] = d;
+    }
+  }
+
+  /**
+   * Ranges still to be visited by a query with a lower bound of their distances.
+   */
+  private static final class Stack {
+
+    private int[] lo = new int[INITIAL_CAPACITY];
+    private int[] hi = new int[INITIAL_CAPACITY];
+    private double[] bound = new double[INITIAL_CAPACITY];
+    private int top;
+
+    private void push(int l, int h, double b) {
+      if (l >= h) {
+        return;
+      }
+      if (top == lo.length) {
+        lo = Arrays.copyOf(lo, top * 2);
+        hi = Arrays.copyOf(hi, top * 2);
+        bound = Arrays.copyOf(bound, top * 2);
+      }
+      lo[top] = l;
+      hi[top] = h;
+      bound[top] = b;
+      top++;
+    }
+  }
+
+  // ===== Builder Pattern Methods =====
+
+  /**
+   * @return        {@link Builder}
+   * @see Builder
+   * @see VPTree
+   */
+  public static Builder getBuilder() {
+    return new Builder();
+  }
+
+  // ===== Builder Class =====
+
+  /**
+   * VPTree Builder Restriction: metric and selection must be set, leafSize must be greater than
+   * 0.
+   *
+   * <p>Usage:</br> VPTree tree = VPTree.getBuilder()</br>
+   * .metric(LevenshteinDistance.getInstance()).parallel(true).build();</p>
+   *
+   * @param metric    metric satisfying the triangle inequality
+   * @param selection vantage point selection strategy (default: RANDOM)
+   * @param leafSize  maximal number of strings scanned linearly (default: 8)
+   * @param parallel  build the tree with fork-join, requires a thread-safe metric (default: false)
+   * @param seed      seed of the vantage point selection (default: 42)
+   * @author Adrien Favre-Bully
+   * @author Florian Froese
+   * @author Adrian Schmidmeister
+   * @since 1.1
+   */
+  public static class Builder {
+
+    private DistanceMetric metric = null;
+    private Selection selection = DEFAULT_SELECTION;
+    private int leafSize = DEFAULT_LEAF_SIZE;
+    private boolean parallel = DEFAULT_PARALLEL;
+    private long seed = DEFAULT_SEED;
+
+    public VPTree build() {
+      // check constraints
+      if (metric == null) {
+        throw new IllegalArgumentException("metric must be set!");
+      }
+      if (selection == null) {
+        throw new IllegalArgumentException("selection must be set!");
+      }
+      if (leafSize < 1) {
+        throw new IllegalArgumentException("leafSize must be greater than 0!");
+      }
+
+      return new VPTree(this);
+    }
+
+    public Builder metric(DistanceMetric m) {
+      metric = m;
+      return this;
+    }
+
+    public Builder selection(Selection s) {
+      selection = s;
+      return this;
+    }
+
+    public Builder leafSize(int l) {
+      leafSize = l;
+      return this;
+    }
+
+    public Builder parallel(boolean p) {
+      parallel = p;
+      return this;
+    }
+
+    public Builder seed(long s) {
+      seed = s;
+      return this;
+    }
+  }
+}
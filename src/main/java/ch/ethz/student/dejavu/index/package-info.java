@@ -0,0 +1,25 @@
+/*
+ * Copyright 2013 Adrien Favre-Bully, Florian Froese, Adrian Schmidmeister
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * 		http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+*/
+/**
+ * Indexes and joins that search a collection of strings, vectors or fingerprints without comparing
+ * a query to every entry.
+ *
+ * <p>Unless a class states otherwise the indexes follow the same conventions: {@code add} returns
+ * the id of the new entry, ids are assigned consecutively starting from 0 in the order of the
+ * calls, and queries return ids. Indexes that derive their search structures from all entries
+ * update them on the first query after an {@code add}, thus they are meant to be filled first and
+ * queried afterwards. Indexes that can be modified are not thread-safe.</p>
+ */
+package ch.ethz.student.dejavu.index;
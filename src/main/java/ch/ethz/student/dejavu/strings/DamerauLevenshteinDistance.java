@@ -18,7 +18,7 @@ package ch.ethz.student.dejavu.strings;
 import java.util.SortedMap;
 import java.util.TreeMap;
 
-import ch.ethz.student.dejavu.DistanceMetric;
+import ch.ethz.student.dejavu.BoundedDistanceMetric;
 import ch.ethz.student.dejavu.SimilarityMetric;
 import ch.ethz.student.dejavu.utilities.Utilities;
 
@@ -37,7 +37,7 @@ import ch.ethz.student.dejavu.utilities.Utilities;
  * @author Adrian Schmidmeister
  * @since 1.0
  */
-public class DamerauLevenshteinDistance implements DistanceMetric, SimilarityMetric {
+public class DamerauLevenshteinDistance implements BoundedDistanceMetric, SimilarityMetric {
 
   private DamerauLevenshteinDistance() {
   }
@@ -114,6 +114,30 @@ public class DamerauLevenshteinDistance implements DistanceMetric, SimilarityMet
     return distance[s1.length() + 1][s2.length() + 1];
   }
 
+  /**
+   * Skips the computation if the lengths differ by more than maxDistance. The table of the
+   * unrestricted distance refers back to arbitrary earlier rows, thus it is computed completely
+   * otherwise.
+   *
+   * @param s1          String, first string
+   * @param s2          String, second string
+   * @param maxDistance double, bound of the distance
+   * @return double Damerau-Levenshtein distance between String s1 and s2 if it is at most
+   * maxDistance, otherwise a value greater than maxDistance
+   */
+  @Override
+  public double computeDistance(String s1, String s2, double maxDistance) {
+    if (!Utilities.checkInputs(s1, s2)) {
+      return Utilities.DISTANCE_EMPTY_EMPTY;
+    }
+
+    int lengthDifference = Math.abs(s1.length() - s2.length());
+    if (lengthDifference > maxDistance) {
+      return lengthDifference;
+    }
+    return computeDistance(s1, s2);
+  }
+
   // ===== Builder Methods =====
 
   /**
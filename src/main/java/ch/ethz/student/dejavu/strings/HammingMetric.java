@@ -15,7 +15,7 @@
 
 package ch.ethz.student.dejavu.strings;
 
-import ch.ethz.student.dejavu.DistanceMetric;
+import ch.ethz.student.dejavu.BoundedDistanceMetric;
 import ch.ethz.student.dejavu.SimilarityMetric;
 import ch.ethz.student.dejavu.utilities.Utilities;
 
@@ -36,12 +36,20 @@ import ch.ethz.student.dejavu.utilities.Utilities;
  * @author Adrian Schmidmeister
  * @since 1.0
  */
-public class HammingMetric implements DistanceMetric, SimilarityMetric {
+public class HammingMetric implements BoundedDistanceMetric, SimilarityMetric {
 
   // ===== Metric Methods =====
 
   @Override
   public double computeSimilarity(String s1, String s2) {
+    return computeSimilarity((CharSequence) s1, (CharSequence) s2);
+  }
+
+  /**
+   * Same as {@link #computeSimilarity(String, String)} for views such as the strings of a
+   * {@link ch.ethz.student.dejavu.index.StringCorpus}, which are not copied.
+   */
+  public double computeSimilarity(CharSequence s1, CharSequence s2) {
     if (!Utilities.checkInputs(s1, s2)) {
       return Utilities.SIMILARITY_EMPTY_EMPTY;
     }
@@ -53,6 +61,14 @@ public class HammingMetric implements DistanceMetric, SimilarityMetric {
 
   @Override
   public double computeDistance(String s1, String s2) {
+    return computeDistance((CharSequence) s1, (CharSequence) s2);
+  }
+
+  /**
+   * Same as {@link #computeDistance(String, String)} for views such as the strings of a
+   * {@link ch.ethz.student.dejavu.index.StringCorpus}, which are not copied.
+   */
+  public double computeDistance(CharSequence s1, CharSequence s2) {
     if (!Utilities.checkInputs(s1, s2)) {
       return Utilities.DISTANCE_EMPTY_EMPTY;
     }
@@ -63,11 +79,8 @@ public class HammingMetric implements DistanceMetric, SimilarityMetric {
       throw new IllegalArgumentException("Input strings must be of equal length");
     }
 
-    char[] c1 = s1.toCharArray();
-    char[] c2 = s2.toCharArray();
-
-    for (int i = 0; i < c1.length; i++) {
-      if (c1[i] != c2[i]) {
+    for (int i = 0; i < s1.length(); i++) {
+      if (s1.charAt(i) != s2.charAt(i)) {
         dist++;
       }
     }
@@ -75,6 +88,37 @@ public class HammingMetric implements DistanceMetric, SimilarityMetric {
     return dist;
   }
 
+  /**
+   * Stops counting as soon as more than maxDistance characters differ.
+   */
+  @Override
+  public double computeDistance(String s1, String s2, double maxDistance) {
+    return computeDistance((CharSequence) s1, (CharSequence) s2, maxDistance);
+  }
+
+  /**
+   * Same as {@link #computeDistance(String, String, double)} for views such as the strings of a
+   * {@link ch.ethz.student.dejavu.index.StringCorpus}, which are not copied.
+   */
+  public double computeDistance(CharSequence s1, CharSequence s2, double maxDistance) {
+    if (!Utilities.checkInputs(s1, s2)) {
+      return Utilities.DISTANCE_EMPTY_EMPTY;
+    }
+
+    if (s1.length() != s2.length()) {
+      throw new IllegalArgumentException("Input strings must be of equal length");
+    }
+
+    int dist = 0;
+    for (int i = 0; i < s1.length(); i++) {
+      if (s1.charAt(i) != s2.charAt(i) && ++dist > maxDistance) {
+        break;
+      }
+    }
+
+    return dist;
+  }
+
   // ===== Builder Pattern Methods =====
 
   private HammingMetric(Builder b) {
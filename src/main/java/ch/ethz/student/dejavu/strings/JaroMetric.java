@@ -15,7 +15,9 @@
 
 package ch.ethz.student.dejavu.strings;
 
-import ch.ethz.student.dejavu.SimilarityMetric;
+import java.util.Arrays;
+
+import ch.ethz.student.dejavu.BoundedSimilarityMetric;
 import ch.ethz.student.dejavu.utilities.Utilities;
 
 
@@ -34,25 +36,49 @@ import ch.ethz.student.dejavu.utilities.Utilities;
  * @author Adrian Schmidmeister
  * @since 1.0
  */
-public class JaroMetric implements SimilarityMetric {
+public class JaroMetric implements BoundedSimilarityMetric {
+
+  // slack of the bounds against rounding
+  private static final double BOUND_EPSILON = 1e-9;
 
   // ===== Metric Methods =====
 
   @Override
   public double computeSimilarity(String s1, String s2) {
+    return computeSimilarity(s1, s2, Double.NEGATIVE_INFINITY);
+  }
+
+  /**
+   * Bounds the similarity twice before it is computed: the number of matchings m is at most the
+   * length of the shorter string, and once the matchings of s1 in s2 are known the similarity is
+   * at most the one without transpositions, 1/3 * (m/|s1| + m/|s2| + 1). The matchings of s2 in
+   * s1 are only computed if the bounds reach minSimilarity.
+   */
+  @Override
+  public double computeSimilarity(String s1, String s2, double minSimilarity) {
     if (!Utilities.checkInputs(s1, s2)) {
       return Utilities.SIMILARITY_EMPTY_EMPTY;
     }
 
+    double bound = upperBound(Math.min(s1.length(), s2.length()), s1.length(), s2.length());
+    if (bound < minSimilarity - BOUND_EPSILON) {
+      return bound;
+    }
+
     int window = Math.max(Math.max(s1.length(), s2.length()) / 2 - 1, 0);
     StringBuilder matchings12 = getMatchings(s1, s2, window);
-    StringBuilder matchings21 = getMatchings(s2, s1, window);
 
     // if zero matchings return immediately
     if (matchings12.length() == 0) {
       return 0d;
     }
 
+    bound = upperBound(matchings12.length(), s1.length(), s2.length());
+    if (bound < minSimilarity - BOUND_EPSILON) {
+      return bound;
+    }
+    StringBuilder matchings21 = getMatchings(s2, s1, window);
+
     // else compute transpositions
     int t = 0;
     for (int i = 0; i < matchings12.length(); i++) {
@@ -67,6 +93,10 @@ public class JaroMetric implements SimilarityMetric {
                       + (double) (m - (double) t / 2) / (double) m);
   }
 
+  private static double upperBound(int m, int length1, int length2) {
+    return 1d / 3d * ((double) m / (double) length1 + (double) m / (double) length2 + 1);
+  }
+
   private StringBuilder getMatchings(String a, String b, int window) {
     StringBuilder matchings = new StringBuilder();
     boolean[] matched = new boolean[b.length()];
@@ -85,6 +115,151 @@ public class JaroMetric implements SimilarityMetric {
     return matchings;
   }
 
+  /**
+   * Prepares a profile of the query once for the whole block, see {@link Profile}.
+   */
+  @Override
+  public void computeSimilarities(CharSequence query, CharSequence[] candidates, double[] out) {
+    Utilities.checkBatch(query, candidates, out);
+
+    Profile profile = new Profile(query);
+    for (int k = 0; k < candidates.length; k++) {
+      out[k] = profile.computeSimilarity(candidates[k]);
+    }
+  }
+
+  /**
+   * Query of a block: its characters, the list of the positions of every character in the query
+   * to find the matches of a candidate character without scanning the whole window, and the
+   * buffers of the matchings, which are reused for every candidate.
+   */
+  static class Profile {
+
+    private final CharSequence query;
+    private final char[] q;
+    // first position of a char below 256 by char, of the others sorted by char
+    private final int[] latin = new int[256];
+    private char[] chars = new char[0];
+    private int[] heads = new int[0];
+    // next position of the same char or -1
+    private final int[] next;
+
+    private final boolean[] queryMatched;
+    private boolean[] candidateMatched = new boolean[0];
+    private final char[] matchings12;
+    private final char[] matchings21;
+
+    Profile(CharSequence query) {
+      this.query = query;
+      this.q = query.toString().toCharArray();
+      this.next = new int[q.length];
+      this.queryMatched = new boolean[q.length];
+      this.matchings12 = new char[q.length];
+      this.matchings21 = new char[q.length];
+
+      Arrays.fill(latin, -1);
+      for (int i = q.length - 1; i >= 0; i--) {
+        char c = q[i];
+        if (c < 256) {
+          next[i] = latin[c];
+          latin[c] = i;
+        } else {
+          int index = Arrays.binarySearch(chars, c);
+          if (index < 0) {
+            index = -index - 1;
+            chars = insert(chars, index, c);
+            heads = insert(heads, index, -1);
+          }
+          next[i] = heads[index];
+          heads[index] = i;
+        }
+      }
+    }
+
+    /**
+     * @return same as computeSimilarity(query, s)
+     */
+    double computeSimilarity(CharSequence s) {
+      if (!Utilities.checkInputs(query, s)) {
+        return Utilities.SIMILARITY_EMPTY_EMPTY;
+      }
+
+      int I = q.length;
+      int J = s.length();
+      int window = Math.max(Math.max(I, J) / 2 - 1, 0);
+
+      // matchings of the query in s
+      if (candidateMatched.length < J) {
+        candidateMatched = new boolean[Math.max(J, 2 * candidateMatched.length)];
+      }
+      Arrays.fill(candidateMatched, 0, J, false);
+      int m = 0;
+      for (int i = 0; i < I; i++) {
+        for (int j = Math.max(0, i - window); j < Math.min(J, i + window + 1); j++) {
+          if (q[i] == s.charAt(j) && !candidateMatched[j]) {
+            candidateMatched[j] = true;
+            matchings12[m++] = q[i];
+            break;
+          }
+        }
+      }
+
+      if (m == 0) {
+        return 0d;
+      }
+
+      // matchings of s in the query, the counts are equal
+      Arrays.fill(queryMatched, false);
+      int m21 = 0;
+      for (int j = 0; j < J; j++) {
+        char c = s.charAt(j);
+        int lo = Math.max(0, j - window);
+        int hi = Math.min(I, j + window + 1);
+        for (int i = head(c); i != -1 && i < hi; i = next[i]) {
+          if (i >= lo && !queryMatched[i]) {
+            queryMatched[i] = true;
+            matchings21[m21++] = c;
+            break;
+          }
+        }
+      }
+
+      int t = 0;
+      for (int i = 0; i < m; i++) {
+        if (matchings12[i] != matchings21[i]) {
+          t++;
+        }
+      }
+
+      return 1d / 3d * ((double) m / (double) I + (double) m / (double) J
+                        + (m - (double) t / 2) / (double) m);
+    }
+
+    private int head(char c) {
+      if (c < 256) {
+        return latin[c];
+      }
+      int index = Arrays.binarySearch(chars, c);
+      return index < 0 ? -1 : heads[index];
+    }
+
+    private static char[] insert(char[] a, int index, char c) {
+      char[] b = new char[a.length + 1];
+      System.arraycopy(a, 0, b, 0, index);
+      b[index] = c;
+      System.arraycopy(a, index, b, index + 1, a.length - index);
+      return b;
+    }
+
+    private static int[] insert(int[] a, int index, int v) {
+      int[] b = new int[a.length + 1];
+      System.arraycopy(a, 0, b, 0, index);
+      b[index] = v;
+      System.arraycopy(a, index, b, index + 1, a.length - index);
+      return b;
+    }
+  }
+
   // ===== Builder Pattern Methods =====
 
   private JaroMetric(Builder b) {
@@ -15,7 +15,7 @@
 
 package ch.ethz.student.dejavu.strings;
 
-import ch.ethz.student.dejavu.SimilarityMetric;
+import ch.ethz.student.dejavu.BoundedSimilarityMetric;
 import ch.ethz.student.dejavu.utilities.Utilities;
 
 /**
@@ -33,7 +33,7 @@ import ch.ethz.student.dejavu.utilities.Utilities;
  * @author Adrian Schmidmeister
  * @since 1.0
  */
-public class JaroWinklerMetric implements SimilarityMetric {
+public class JaroWinklerMetric implements BoundedSimilarityMetric {
 
   public static final double DEFAULT_SCALING_FACTOR = 0.1d;
   public static final double DEFAULT_PREFIX_LENGTH = 4;
@@ -45,6 +45,16 @@ public class JaroWinklerMetric implements SimilarityMetric {
 
   @Override
   public double computeSimilarity(String s1, String s2) {
+    return computeSimilarity(s1, s2, Double.NEGATIVE_INFINITY);
+  }
+
+  /**
+   * The common prefix is computed first. As the similarity grows with the Jaro similarity jd, it
+   * reaches minSimilarity only if jd reaches (minSimilarity - lp) / (1 - lp) for the prefix
+   * length l and the scaling factor p, which bounds the Jaro computation.
+   */
+  @Override
+  public double computeSimilarity(String s1, String s2, double minSimilarity) {
     if (!Utilities.checkInputs(s1, s2)) {
       return Utilities.SIMILARITY_EMPTY_EMPTY;
     }
@@ -60,11 +70,37 @@ public class JaroWinklerMetric implements SimilarityMetric {
 
     // compute Jaro-Winkler distance
     JaroMetric jdm = new JaroMetric.Builder().build();
-    double jd = jdm.computeSimilarity(s1, s2);
+    double lp = l * scalingFactor;
+    double jd = jdm.computeSimilarity(s1, s2, lp < 1 ? (minSimilarity - lp) / (1 - lp)
+                                                     : Double.NEGATIVE_INFINITY);
 
     return jd + (l * scalingFactor * (1 - jd));
   }
 
+  /**
+   * Computes the Jaro similarities of the block with a single profile of the query.
+   */
+  @Override
+  public void computeSimilarities(CharSequence query, CharSequence[] candidates, double[] out) {
+    Utilities.checkBatch(query, candidates, out);
+
+    JaroMetric.Profile profile = new JaroMetric.Profile(query);
+    for (int k = 0; k < candidates.length; k++) {
+      CharSequence s = candidates[k];
+      double jd = profile.computeSimilarity(s);
+
+      double l = 0;
+      int i = 0;
+      while (l < prefixLength && i < query.length() && i < s.length()
+             && query.charAt(i) == s.charAt(i)) {
+        i++;
+        l++;
+      }
+
+      out[k] = jd + (l * scalingFactor * (1 - jd));
+    }
+  }
+
   // ===== Builder Pattern Methods =====
 
   private JaroWinklerMetric(Builder b) {
@@ -15,8 +15,10 @@
 
 package ch.ethz.student.dejavu.strings;
 
-import ch.ethz.student.dejavu.DistanceMetric;
-import ch.ethz.student.dejavu.SimilarityMetric;
+import java.util.Arrays;
+
+import ch.ethz.student.dejavu.BoundedDistanceMetric;
+import ch.ethz.student.dejavu.BoundedSimilarityMetric;
 import ch.ethz.student.dejavu.utilities.Utilities;
 
 /**
@@ -33,11 +35,14 @@ import ch.ethz.student.dejavu.utilities.Utilities;
  * @author Adrian Schmidmeister
  * @since 1.0
  */
-public class LevenshteinDistance implements DistanceMetric, SimilarityMetric {
+public class LevenshteinDistance implements BoundedDistanceMetric, BoundedSimilarityMetric {
 
   private static final double DEFAULT_INSERTION_WEIGHT = 1.0;
   private static final double DEFAULT_DELETION_WEIGHT = 1.0;
   private static final double DEFAULT_SUBSTITUTION_WEIGHT = 1.0;
+  private static final int INITIAL_ROW_LENGTH = 16;
+  // slack of the bounds against rounding
+  private static final double BOUND_EPSILON = 1e-9;
 
   private double insertionWeight;
   private double deletionWeight;
@@ -50,6 +55,14 @@ public class LevenshteinDistance implements DistanceMetric, SimilarityMetric {
 
   @Override
   public double computeSimilarity(String s1, String s2) {
+    return computeSimilarity((CharSequence) s1, (CharSequence) s2);
+  }
+
+  /**
+   * Same as {@link #computeSimilarity(String, String)} for views such as the strings of a
+   * {@link ch.ethz.student.dejavu.index.StringCorpus}, which are not copied.
+   */
+  public double computeSimilarity(CharSequence s1, CharSequence s2) {
     if (!Utilities.checkInputs(s1, s2)) {
       return Utilities.SIMILARITY_EMPTY_EMPTY;
     }
@@ -60,6 +73,24 @@ public class LevenshteinDistance implements DistanceMetric, SimilarityMetric {
         .min(substitutionWeight, insertionWeight + deletionWeight));
   }
 
+  /**
+   * The similarity reaches minSimilarity iff the distance is at most (1 - minSimilarity) times
+   * the length of the longer string and the cheapest edit weight, which bounds the distance, see
+   * {@link #computeDistance(String, String, double)}.
+   */
+  @Override
+  public double computeSimilarity(String s1, String s2, double minSimilarity) {
+    if (!Utilities.checkInputs(s1, s2)) {
+      return Utilities.SIMILARITY_EMPTY_EMPTY;
+    }
+
+    double weight = Utilities.min(substitutionWeight, insertionWeight + deletionWeight);
+    double maxDistance = (1 - minSimilarity) * Math.max(s1.length(), s2.length()) * weight;
+    double dist = computeDistance(s1, s2, maxDistance + BOUND_EPSILON);
+
+    return 1 - (dist / Utilities.max(s1.length(), s2.length()) / weight);
+  }
+
   /**
    * @param s1 String, first string
    * @param s2 String, second string
@@ -67,6 +98,14 @@ public class LevenshteinDistance implements DistanceMetric, SimilarityMetric {
    */
   @Override
   public double computeDistance(String s1, String s2) {
+    return computeDistance((CharSequence) s1, (CharSequence) s2);
+  }
+
+  /**
+   * Same as {@link #computeDistance(String, String)} for views such as the strings of a
+   * {@link ch.ethz.student.dejavu.index.StringCorpus}, which are not copied.
+   */
+  public double computeDistance(CharSequence s1, CharSequence s2) {
     if (!Utilities.checkInputs(s1, s2)) {
       return Utilities.DISTANCE_EMPTY_EMPTY;
     }
@@ -109,6 +148,324 @@ public class LevenshteinDistance implements DistanceMetric, SimilarityMetric {
     return distance[I][J];
   }
 
+  /**
+   * Computes only the cells of the dynamic programming table within a diagonal band, as a cell
+   * off the diagonal by d costs at least d insertions or deletions. Stops as soon as a whole row
+   * exceeds maxDistance, every alignment passes through every row.
+   *
+   * @param s1          String, first string
+   * @param s2          String, second string
+   * @param maxDistance double, bound of the distance
+   * @return double Levenshtein Distance between String s1 and s2 if it is at most maxDistance,
+   * otherwise a value greater than maxDistance
+   */
+  @Override
+  public double computeDistance(String s1, String s2, double maxDistance) {
+    return computeDistance((CharSequence) s1, (CharSequence) s2, maxDistance);
+  }
+
+  /**
+   * Same as {@link #computeDistance(String, String, double)} for views such as the strings of a
+   * {@link ch.ethz.student.dejavu.index.StringCorpus}, which are not copied.
+   */
+  public double computeDistance(CharSequence s1, CharSequence s2, double maxDistance) {
+    if (!Utilities.checkInputs(s1, s2)) {
+      return Utilities.DISTANCE_EMPTY_EMPTY;
+    }
+
+    int I = s1.length();
+    int J = s2.length();
+
+    if (I == 0) {
+      return (double) J;
+    }
+    if (J == 0) {
+      return (double) I;
+    }
+
+    double minIndel = Math.min(insertionWeight, deletionWeight);
+    if (Math.abs(I - J) * minIndel > maxDistance) {
+      return Math.abs(I - J) * minIndel;
+    }
+    // width of the band
+    int w = (int) Math.max(0, Math.min(Math.max(I, J), Math.floor(maxDistance / minIndel)));
+
+    double[] previous = new double[J + 1];
+    double[] current = new double[J + 1];
+    Arrays.fill(previous, Double.POSITIVE_INFINITY);
+    Arrays.fill(current, Double.POSITIVE_INFINITY);
+    for (int j = 0; j <= Math.min(J, w); j++) {
+      previous[j] = j * insertionWeight;
+    }
+
+    for (int i = 1; i <= I; i++) {
+      int lo = Math.max(1, i - w);
+      int hi = Math.min(J, i + w);
+      current[lo - 1] = lo == 1 && i <= w ? i * insertionWeight : Double.POSITIVE_INFINITY;
+      double rowMin = current[lo - 1];
+
+      char c = s1.charAt(i - 1);
+      for (int j = lo; j <= hi; j++) {
+        double cost = (c != s2.charAt(j - 1)) ? substitutionWeight : 0;
+        double d = Math.min(Math.min(previous[j] + deletionWeight,
+                                     current[j - 1] + insertionWeight),
+                            previous[j - 1] + cost);
+        current[j] = d;
+        rowMin = Math.min(rowMin, d);
+      }
+      if (rowMin > maxDistance) {
+        return rowMin;
+      }
+
+      double[] tmp = previous;
+      previous = current;
+      current = tmp;
+    }
+    return previous[J];
+  }
+
+  /**
+   * Rejects by the lengths first and, for wide bands, by the character histograms, see
+   * {@link #isRejected(String, String, double)}. Surviving pairs are decided by the bounded
+   * distance.
+   */
+  @Override
+  public boolean isWithin(String s1, String s2, double maxDistance) {
+    if (isRejected(s1, s2, maxDistance)) {
+      return false;
+    }
+    return computeDistance(s1, s2, maxDistance) <= maxDistance;
+  }
+
+  /**
+   * Same filters as {@link #isWithin(String, String, double)} for the distance that the
+   * similarity bound corresponds to.
+   */
+  @Override
+  public boolean isAtLeast(String s1, String s2, double minSimilarity) {
+    if (Utilities.checkInputs(s1, s2)) {
+      double weight = Utilities.min(substitutionWeight, insertionWeight + deletionWeight);
+      double maxDistance = (1 - minSimilarity) * Math.max(s1.length(), s2.length()) * weight;
+      if (isRejected(s1, s2, maxDistance)) {
+        return false;
+      }
+    }
+    return computeSimilarity(s1, s2, minSimilarity) >= minSimilarity;
+  }
+
+  /**
+   * Every edit costs at least the cheaper of insertion and deletion per character of length
+   * difference. An insertion or deletion changes the L1 distance h of the character histograms by
+   * at most one, a substitution by at most two, so the distance is at least the cheaper of
+   * n * minIndel + (h - n) / 2 * substitution and h * minIndel for a length difference n. The
+   * histograms cost a sort of both strings and are only compared when the band of the bounded
+   * distance is wider than that.
+   *
+   * @return true if the distance of s1 and s2 is certainly greater than maxDistance
+   */
+  private boolean isRejected(String s1, String s2, double maxDistance) {
+    if (!Utilities.checkInputs(s1, s2)) {
+      return false;
+    }
+
+    int I = s1.length();
+    int J = s2.length();
+    if (I == 0 || J == 0) {
+      return false;
+    }
+
+    double minIndel = Math.min(insertionWeight, deletionWeight);
+    int n = Math.abs(I - J);
+    if (n * minIndel > maxDistance + BOUND_EPSILON) {
+      return true;
+    }
+
+    double w = Math.min(Math.max(I, J), Math.floor(maxDistance / minIndel));
+    if (I * (2 * w + 1) <= 4.0 * (I + J)) {
+      return false;
+    }
+    int h = Utilities.histogramDistance(s1, s2);
+    double lower = Math.min(n * minIndel + (h - n) / 2.0 * substitutionWeight, h * minIndel);
+    return lower > maxDistance + BOUND_EPSILON;
+  }
+
+  /**
+   * Prepares the query once for the whole block. With unit weights and a query of at most 64
+   * characters the distances are computed bit-parallel (Myers 1999, Hyyro 2001): a bit mask per
+   * character of its positions in the query (Peq) lets a single pass over a candidate update a
+   * whole column of the table in a few word operations. Otherwise the rows of the table are
+   * allocated once for the block.
+   */
+  @Override
+  public void computeDistances(CharSequence query, CharSequence[] candidates, double[] out) {
+    Utilities.checkBatch(query, candidates, out);
+
+    int I = query.length();
+    if (I > 0 && I <= 64 && insertionWeight == 1 && deletionWeight == 1
+        && substitutionWeight == 1) {
+      PatternMasks peq = new PatternMasks(query);
+      for (int k = 0; k < candidates.length; k++) {
+        CharSequence candidate = candidates[k];
+        if (!Utilities.checkInputs(query, candidate)) {
+          out[k] = Utilities.DISTANCE_EMPTY_EMPTY;
+        } else if (candidate.length() == 0) {
+          out[k] = I;
+        } else {
+          out[k] = peq.distance(candidate);
+        }
+      }
+      return;
+    }
+
+    char[] q = query.toString().toCharArray();
+    double[] previous = new double[INITIAL_ROW_LENGTH];
+    double[] current = new double[INITIAL_ROW_LENGTH];
+    for (int k = 0; k < candidates.length; k++) {
+      CharSequence candidate = candidates[k];
+      if (!Utilities.checkInputs(query, candidate)) {
+        out[k] = Utilities.DISTANCE_EMPTY_EMPTY;
+        continue;
+      }
+      int J = candidate.length();
+      if (I == 0) {
+        out[k] = J;
+        continue;
+      }
+      if (J == 0) {
+        out[k] = I;
+        continue;
+      }
+
+      if (previous.length <= J) {
+        previous = new double[2 * J];
+        current = new double[2 * J];
+      }
+      // the borders of the table as in computeDistance
+      for (int j = 0; j <= J; j++) {
+        previous[j] = j * insertionWeight;
+      }
+      for (int i = 1; i <= I; i++) {
+        current[0] = i * insertionWeight;
+        char c = q[i - 1];
+        for (int j = 1; j <= J; j++) {
+          double cost = (c != candidate.charAt(j - 1)) ? substitutionWeight : 0;
+          current[j] = Math.min(Math.min(previous[j] + deletionWeight,
+                                         current[j - 1] + insertionWeight),
+                                previous[j - 1] + cost);
+        }
+        double[] tmp = previous;
+        previous = current;
+        current = tmp;
+      }
+      out[k] = previous[J];
+    }
+  }
+
+  @Override
+  public void computeSimilarities(CharSequence query, CharSequence[] candidates, double[] out) {
+    computeDistances(query, candidates, out);
+
+    double weight = Utilities.min(substitutionWeight, insertionWeight + deletionWeight);
+    for (int k = 0; k < candidates.length; k++) {
+      int length = Math.max(query.length(), candidates[k].length());
+      out[k] = length == 0 ? Utilities.SIMILARITY_EMPTY_EMPTY : 1 - (out[k] / length / weight);
+    }
+  }
+
+  public double getInsertionWeight() {
+    return insertionWeight;
+  }
+
+  public double getDeletionWeight() {
+    return deletionWeight;
+  }
+
+  public double getSubstitutionWeight() {
+    return substitutionWeight;
+  }
+
+  /**
+   * Positions of every character in a query of 1 to 64 characters as bit masks.
+   */
+  private static class PatternMasks {
+
+    // masks of the chars below 256 by char, of the others sorted by char
+    private final long[] latin = new long[256];
+    private char[] chars = new char[0];
+    private long[] masks = new long[0];
+    private final int length;
+
+    PatternMasks(CharSequence query) {
+      length = query.length();
+      for (int i = 0; i < length; i++) {
+        char c = query.charAt(i);
+        if (c < 256) {
+          latin[c] |= 1L << i;
+        } else {
+          int index = Arrays.binarySearch(chars, c);
+          if (index < 0) {
+            index = -index - 1;
+            chars = insert(chars, index, c);
+            masks = insert(masks, index);
+          }
+          masks[index] |= 1L << i;
+        }
+      }
+    }
+
+    long get(char c) {
+      if (c < 256) {
+        return latin[c];
+      }
+      int index = Arrays.binarySearch(chars, c);
+      return index < 0 ? 0 : masks[index];
+    }
+
+    /**
+     * @return unit cost edit distance of the query and s, s is not empty
+     */
+    int distance(CharSequence s) {
+      // vertical deltas of the column: +1 (pv), -1 (mv) or 0
+      long pv = -1L;
+      long mv = 0;
+      long last = 1L << (length - 1);
+      int score = length;
+      for (int j = 0; j < s.length(); j++) {
+        long eq = get(s.charAt(j));
+        long xv = eq | mv;
+        long xh = (((eq & pv) + pv) ^ pv) | eq;
+        long ph = mv | ~(xh | pv);
+        long mh = pv & xh;
+        if ((ph & last) != 0) {
+          score++;
+        } else if ((mh & last) != 0) {
+          score--;
+        }
+        // the first row of the table grows by one per column
+        ph = (ph << 1) | 1;
+        mh <<= 1;
+        pv = mh | ~(xv | ph);
+        mv = ph & xv;
+      }
+      return score;
+    }
+
+    private static char[] insert(char[] a, int index, char c) {
+      char[] b = new char[a.length + 1];
+      System.arraycopy(a, 0, b, 0, index);
+      b[index] = c;
+      System.arraycopy(a, index, b, index + 1, a.length - index);
+      return b;
+    }
+
+    private static long[] insert(long[] a, int index) {
+      long[] b = new long[a.length + 1];
+      System.arraycopy(a, 0, b, 0, index);
+      System.arraycopy(a, index, b, index + 1, a.length - index);
+      return b;
+    }
+  }
+
   // ===== Builder Methods =====
 
 
@@ -15,7 +15,9 @@
 
 package ch.ethz.student.dejavu.strings;
 
-import ch.ethz.student.dejavu.DistanceMetric;
+import java.util.Arrays;
+
+import ch.ethz.student.dejavu.BoundedDistanceMetric;
 import ch.ethz.student.dejavu.SimilarityMetric;
 import ch.ethz.student.dejavu.utilities.Utilities;
 
@@ -35,7 +37,7 @@ import ch.ethz.student.dejavu.utilities.Utilities;
  * @author Adrian Schmidmeister
  * @since 1.0
  */
-public class OptimalStringAlignmentDistance implements DistanceMetric, SimilarityMetric {
+public class OptimalStringAlignmentDistance implements BoundedDistanceMetric, SimilarityMetric {
 
   private static final double DEFAULT_INSERTION_WEIGHT = 1.0;
   private static final double DEFAULT_DELETION_WEIGHT = 1.0;
@@ -59,6 +61,14 @@ public class OptimalStringAlignmentDistance implements DistanceMetric, Similarit
 
   @Override
   public double computeSimilarity(String s1, String s2) {
+    return computeSimilarity((CharSequence) s1, (CharSequence) s2);
+  }
+
+  /**
+   * Same as {@link #computeSimilarity(String, String)} for views such as the strings of a
+   * {@link ch.ethz.student.dejavu.index.StringCorpus}, which are not copied.
+   */
+  public double computeSimilarity(CharSequence s1, CharSequence s2) {
     if (!Utilities.checkInputs(s1, s2)) {
       return Utilities.SIMILARITY_EMPTY_EMPTY;
     }
@@ -75,6 +85,14 @@ public class OptimalStringAlignmentDistance implements DistanceMetric, Similarit
    */
   @Override
   public double computeDistance(String s1, String s2) {
+    return computeDistance((CharSequence) s1, (CharSequence) s2);
+  }
+
+  /**
+   * Same as {@link #computeDistance(String, String)} for views such as the strings of a
+   * {@link ch.ethz.student.dejavu.index.StringCorpus}, which are not copied.
+   */
+  public double computeDistance(CharSequence s1, CharSequence s2) {
     if (!Utilities.checkInputs(s1, s2)) {
       return Utilities.DISTANCE_EMPTY_EMPTY;
     }
@@ -112,6 +130,102 @@ public class OptimalStringAlignmentDistance implements DistanceMetric, Similarit
     return distance[s1.length()][s2.length()];
   }
 
+  /**
+   * Computes only the cells of the dynamic programming table within a diagonal band, as a cell
+   * off the diagonal by d costs at least d insertions or deletions. Stops as soon as two
+   * consecutive rows exceed maxDistance, a transposition skips at most one row.
+   *
+   * @param s1          String, first string
+   * @param s2          String, second string
+   * @param maxDistance double, bound of the distance
+   * @return double Optimal String Alignment Distance between String s1 and s2 if it is at most
+   * maxDistance, otherwise a value greater than maxDistance
+   */
+  @Override
+  public double computeDistance(String s1, String s2, double maxDistance) {
+    return computeDistance((CharSequence) s1, (CharSequence) s2, maxDistance);
+  }
+
+  /**
+   * Same as {@link #computeDistance(String, String, double)} for views such as the strings of a
+   * {@link ch.ethz.student.dejavu.index.StringCorpus}, which are not copied.
+   */
+  public double computeDistance(CharSequence s1, CharSequence s2, double maxDistance) {
+    if (!Utilities.checkInputs(s1, s2)) {
+      return Utilities.DISTANCE_EMPTY_EMPTY;
+    }
+
+    int I = s1.length();
+    int J = s2.length();
+
+    // the borders of the table cost 1 per character
+    double minIndel = Utilities.min(1.0, this.insertionWeight, this.deletionWeight);
+    if (Math.abs(I - J) * minIndel > maxDistance) {
+      return Math.abs(I - J) * minIndel;
+    }
+    // width of the band
+    int w = (int) Math.max(0, Math.min(Math.max(I, J), Math.floor(maxDistance / minIndel)));
+
+    double[] beforePrevious = new double[J + 1];
+    double[] previous = new double[J + 1];
+    double[] current = new double[J + 1];
+    Arrays.fill(beforePrevious, Double.POSITIVE_INFINITY);
+    Arrays.fill(previous, Double.POSITIVE_INFINITY);
+    Arrays.fill(current, Double.POSITIVE_INFINITY);
+    for (int j = 0; j <= Math.min(J, w); j++) {
+      previous[j] = j;
+    }
+    double previousMin = 0;
+
+    for (int i = 1; i <= I; i++) {
+      int lo = Math.max(1, i - w);
+      int hi = Math.min(J, i + w);
+      current[lo - 1] = lo == 1 && i <= w ? i : Double.POSITIVE_INFINITY;
+      double rowMin = current[lo - 1];
+
+      char c = s1.charAt(i - 1);
+      for (int j = lo; j <= hi; j++) {
+        char d = s2.charAt(j - 1);
+        double substitutionCost = (c != d) ? this.substitutionWeight : 0;
+        double value = Math.min(Math.min(previous[j] + this.deletionWeight,
+                                         current[j - 1] + this.insertionWeight),
+                                previous[j - 1] + substitutionCost);
+        if (i > 1 && j > 1 && c == s2.charAt(j - 2) && s1.charAt(i - 2) == d) {
+          double transpositionCost = (c != d) ? this.transpositionWeight : 0;
+          value = Math.min(value, beforePrevious[j - 2] + transpositionCost);
+        }
+        current[j] = value;
+        rowMin = Math.min(rowMin, value);
+      }
+      if (rowMin > maxDistance && previousMin > maxDistance) {
+        return Math.min(rowMin, previousMin);
+      }
+      previousMin = rowMin;
+
+      double[] tmp = beforePrevious;
+      beforePrevious = previous;
+      previous = current;
+      current = tmp;
+    }
+    return previous[J];
+  }
+
+  public double getInsertionWeight() {
+    return insertionWeight;
+  }
+
+  public double getDeletionWeight() {
+    return deletionWeight;
+  }
+
+  public double getSubstitutionWeight() {
+    return substitutionWeight;
+  }
+
+  public double getTranspositionWeight() {
+    return transpositionWeight;
+  }
+
   // ===== Builder Methods =====
 
   /**
@@ -36,4 +36,21 @@ public class CharTokenizer extends Tokenizer {
     return c;
   }
 
+  @Override
+  public void tokenize(CharSequence s, TokenHandler handler) {
+    for (int i = 0; i < s.length(); i++) {
+      handler.token(s, i, i + 1);
+    }
+  }
+
+  /**
+   * The hash of a character is its value, thus collision free.
+   */
+  @Override
+  public void tokenizeHashed(CharSequence s, TokenHashHandler handler) {
+    for (int i = 0; i < s.length(); i++) {
+      handler.token(s.charAt(i));
+    }
+  }
+
 }
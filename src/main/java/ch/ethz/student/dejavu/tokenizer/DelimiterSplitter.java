@@ -0,0 +1,116 @@
+/*
+ * Copyright 2013 Adrien Favre-Bully, Florian Froese, Adrian Schmidmeister
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * 		http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+*/
+package ch.ethz.student.dejavu.tokenizer;
+
+/**
+ * DelimiterSplitter
+ *
+ * Splits a character sequence at a set of delimiter characters with the semantics of
+ * {@link java.util.StringTokenizer}: delimiters are not part of a token and consecutive delimiters
+ * do not produce empty tokens.
+ *
+ * <p>The delimiters are stored in a bit set indexed by character, thus a character is classified
+ * with one array access instead of a search through the delimiter string.</p>
+ *
+ * @author Adrien Favre-Bully
+ * @author Florian Froese
+ * @author Adrian Schmidmeister
+ * @since 1.1
+ */
+public class DelimiterSplitter {
+
+  /**
+   * Delimiters of {@link java.util.StringTokenizer#StringTokenizer(String)}
+   */
+  public static final String WHITESPACE = " \t\n\r\f";
+
+  private final String delimiters;
+  private final long[] table;
+
+  /**
+   * @param delimiters every character of this string is a delimiter
+   */
+  public DelimiterSplitter(String delimiters) {
+    if (delimiters == null) {
+      throw new IllegalArgumentException("Delimiters cannot be null!");
+    }
+    this.delimiters = delimiters;
+
+    int max = 0;
+    for (int i = 0; i < delimiters.length(); i++) {
+      max = Math.max(max, delimiters.charAt(i));
+    }
+    table = new long[(max >>> 6) + 1];
+    for (int i = 0; i < delimiters.length(); i++) {
+      char c = delimiters.charAt(i);
+      table[c >>> 6] |= 1L << c;
+    }
+  }
+
+  public boolean isDelimiter(char c) {
+    int word = c >>> 6;
+    return word < table.length && (table[word] & (1L << c)) != 0;
+  }
+
+  /**
+   * @param s    character sequence
+   * @param from index to start at
+   * @return index of the first character at or after from that is not a delimiter, or s.length()
+   */
+  public int skipDelimiters(CharSequence s, int from) {
+    int length = s.length();
+    while (from < length && isDelimiter(s.charAt(from))) {
+      from++;
+    }
+    return from;
+  }
+
+  /**
+   * @param s    character sequence
+   * @param from index to start at
+   * @return index of the first delimiter at or after from, or s.length()
+   */
+  public int scanToken(CharSequence s, int from) {
+    int length = s.length();
+    while (from < length && !isDelimiter(s.charAt(from))) {
+      from++;
+    }
+    return from;
+  }
+
+  /**
+   * Reports all tokens of s to the handler.
+   *
+   * @param s       character sequence
+   * @param handler receives the offsets of the tokens
+   * @return number of tokens
+   */
+  public int split(CharSequence s, TokenHandler handler) {
+    int count = 0;
+    int start = skipDelimiters(s, 0);
+    while (start < s.length()) {
+      int end = scanToken(s, start);
+      handler.token(s, start, end);
+      count++;
+      start = skipDelimiters(s, end);
+    }
+    return count;
+  }
+
+  public String getDelimiters() {
+    return delimiters;
+  }
+
+}
@@ -5,7 +5,7 @@
  * You may obtain a copy of the License at
  *
  * 		http://www.apache.org/licenses/LICENSE-2.0
- * 
+ *
  * Unless required by applicable law or agreed to in writing, software
  * distributed under the License is distributed on an "AS IS" BASIS,
  * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
@@ -14,18 +14,57 @@
 */
 package ch.ethz.student.dejavu.tokenizer;
 
+import ch.ethz.student.dejavu.utilities.LongIntHashMap;
+
+/**
+ * Splits a string into overlapping ngrams of n characters. If padding is enabled the string is
+ * extended by n - 1 {@link #START_PADDING} characters in front and n - 1 {@link #END_PADDING}
+ * characters at the end, thus every character is part of exactly n ngrams.
+ *
+ * <p>{@link #tokenizeHashed(CharSequence, TokenHashHandler)} reports the ngrams by a 64 bit hash
+ * without creating a String per ngram. For n &lt;= 4 the characters are packed into the hash, which is
+ * collision free. For larger n a polynomial rolling hash is used.</p>
+ */
 public class NGramTokenizer extends Tokenizer {
 
+  public static final char START_PADDING = '\u0002';
+  public static final char END_PADDING = '\u0003';
+
+  // odd multiplier of the polynomial rolling hash
+  private static final long BASE = 0x100000001B3L;
+  private static final int MAX_PACKED_N = 4;
+
   private int n;
+  private boolean padding;
+  private long highestPower;
 
   public NGramTokenizer(int nGrams) {
+    this(nGrams, false);
+  }
+
+  public NGramTokenizer(int nGrams, boolean padding) {
     super();
-    this.n = nGrams;
+    init(nGrams, padding);
   }
 
   public NGramTokenizer(String s, int nGrams) {
-    super(s);
+    super();
+    init(nGrams, false);
+    reset(s);
+  }
+
+  private void init(int nGrams, boolean padding) {
+    if (nGrams < 1) {
+      throw new IllegalArgumentException("ngram must be positive");
+    }
     this.n = nGrams;
+    this.padding = padding;
+
+    long power = 1;
+    for (int i = 1; i < n; i++) {
+      power *= BASE;
+    }
+    this.highestPower = power;
   }
 
   @Override
@@ -37,10 +76,151 @@ public class NGramTokenizer extends Tokenizer {
   public String nextToken() {
     String token = null;
     if (currentPosition + n <= s.length()) {
-      token = s.substring(currentPosition, currentPosition + (n - 1));
+      token = s.substring(currentPosition, currentPosition + n);
       currentPosition++;
     }
     return token;
   }
 
+  @Override
+  public void reset(String s) {
+    if (padding && s != null) {
+      StringBuilder sb = new StringBuilder(s.length() + 2 * (n - 1));
+      for (int i = 1; i < n; i++) {
+        sb.append(START_PADDING);
+      }
+      sb.append(s);
+      for (int i = 1; i < n; i++) {
+        sb.append(END_PADDING);
+      }
+      s = sb.toString();
+    }
+    super.reset(s);
+  }
+
+  /**
+   * Reports the offsets of all ngrams of s. If padding is enabled the offsets refer to a view of
+   * the padded string, which is passed to the handler instead of s.
+   */
+  @Override
+  public void tokenize(CharSequence s, TokenHandler handler) {
+    CharSequence padded = padding ? new PaddedSequence(s, n - 1) : s;
+    for (int end = n; end <= padded.length(); end++) {
+      handler.token(padded, end - n, end);
+    }
+  }
+
+  /**
+   * Reports the hashes of all ngrams of s. The hashes of two ngrams are equal if the ngrams are
+   * equal, different ngrams collide only with negligible probability (never for n &lt;= 4).
+   */
+  @Override
+  public void tokenizeHashed(CharSequence s, TokenHashHandler handler) {
+    int pad = padding ? n - 1 : 0;
+    int length = s.length() + 2 * pad;
+
+    long hash = 0;
+    if (n <= MAX_PACKED_N) {
+      long mask = n == MAX_PACKED_N ? -1L : (1L << (16 * n)) - 1;
+      for (int i = 0; i < length; i++) {
+        hash = ((hash << 16) | charAt(s, i, pad)) & mask;
+        if (i >= n - 1) {
+          handler.token(hash);
+        }
+      }
+    } else {
+      for (int i = 0; i < length; i++) {
+        if (i >= n) {
+          hash -= charAt(s, i - n, pad) * highestPower;
+        }
+        hash = hash * BASE + charAt(s, i, pad);
+        if (i >= n - 1) {
+          handler.token(hash);
+        }
+      }
+    }
+  }
+
+  /**
+   * Counts the hashed ngrams of s, see {@link #tokenizeHashed(CharSequence, TokenHashHandler)}.
+   *
+   * @param s      string
+   * @param counts map the ngram counts are added to
+   * @return number of ngrams of s
+   */
+  public int hashNGrams(CharSequence s, final LongIntHashMap counts) {
+    int length = s.length() + (padding ? 2 * (n - 1) : 0);
+    if (length < n) {
+      return 0;
+    }
+
+    tokenizeHashed(s, new TokenHashHandler() {
+      @Override
+      public void token(long hash) {
+        counts.increment(hash);
+      }
+    });
+
+    return length - n + 1;
+  }
+
+  /**
+   * Character i of the padded string.
+   */
+  private static char charAt(CharSequence s, int i, int pad) {
+    if (i < pad) {
+      return START_PADDING;
+    }
+    if (i - pad >= s.length()) {
+      return END_PADDING;
+    }
+    return s.charAt(i - pad);
+  }
+
+  public int getN() {
+    return n;
+  }
+
+  public boolean isPadding() {
+    return padding;
+  }
+
+  /**
+   * View of a character sequence with pad padding characters at the start and the end.
+   */
+  private static class PaddedSequence implements CharSequence {
+
+    private final CharSequence s;
+    private final int pad;
+
+    PaddedSequence(CharSequence s, int pad) {
+      this.s = s;
+      this.pad = pad;
+    }
+
+    @Override
+    public int length() {
+      return s.length() + 2 * pad;
+    }
+
+    @Override
+    public char charAt(int index) {
+      return NGramTokenizer.charAt(s, index, pad);
+    }
+
+    @Override
+    public CharSequence subSequence(int start, int end) {
+      return toString().substring(start, end);
+    }
+
+    @Override
+    public String toString() {
+      StringBuilder sb = new StringBuilder(length());
+      for (int i = 0; i < length(); i++) {
+        sb.append(charAt(i));
+      }
+      return sb.toString();
+    }
+  }
+
 }
@@ -14,35 +14,64 @@
 */
 package ch.ethz.student.dejavu.tokenizer;
 
-import java.util.StringTokenizer;
+import ch.ethz.student.dejavu.utilities.HashUtils;
 
+/**
+ * Splits a string at every character of the delimiter string, like {@link
+ * java.util.StringTokenizer}. See {@link DelimiterSplitter}.
+ */
 public class SeparatorTokenizer extends Tokenizer {
 
-  private StringTokenizer sTokenizer;
-  private String delim;
+  private DelimiterSplitter splitter;
 
   public SeparatorTokenizer(String delim) {
-    this.delim = delim;
+    this.splitter = new DelimiterSplitter(delim);
   }
 
   public SeparatorTokenizer(String s, String delim) {
-    this.delim = delim;
-    this.sTokenizer = new StringTokenizer(s, delim);
+    this.splitter = new DelimiterSplitter(delim);
+    reset(s);
   }
 
   @Override
   public boolean hasMoreTokens() {
-    return sTokenizer.hasMoreTokens();
+    return currentPosition < s.length();
   }
 
   @Override
   public String nextToken() {
-    return sTokenizer.nextToken();
+    int end = splitter.scanToken(s, currentPosition);
+    String token = s.substring(currentPosition, end);
+    currentPosition = splitter.skipDelimiters(s, end);
+    return token;
   }
 
   @Override
   public void reset(String s) {
-    this.sTokenizer = new StringTokenizer(s, delim);
+    super.reset(s);
+    this.currentPosition = splitter.skipDelimiters(s, 0);
+  }
+
+  @Override
+  public void tokenize(CharSequence s, TokenHandler handler) {
+    splitter.split(s, handler);
+  }
+
+  /**
+   * The hash of a token is {@link HashUtils#hash64(CharSequence)} of its characters.
+   */
+  @Override
+  public void tokenizeHashed(CharSequence s, TokenHashHandler handler) {
+    int start = splitter.skipDelimiters(s, 0);
+    while (start < s.length()) {
+      int end = splitter.scanToken(s, start);
+      handler.token(HashUtils.hash64(s, start, end, HashUtils.DEFAULT_SEED));
+      start = splitter.skipDelimiters(s, end);
+    }
+  }
+
+  public String getDelimiters() {
+    return splitter.getDelimiters();
   }
 
 }
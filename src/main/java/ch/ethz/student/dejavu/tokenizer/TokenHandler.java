@@ -0,0 +1,35 @@
+/*
+ * Copyright 2013 Adrien Favre-Bully, Florian Froese, Adrian Schmidmeister
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * 		http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+*/
+package ch.ethz.student.dejavu.tokenizer;
+
+/**
+ * Receives the tokens of {@link Tokenizer#tokenize(CharSequence, TokenHandler)} as offsets into a
+ * character sequence, thus no token has to be materialized.
+ *
+ * @author Adrien Favre-Bully
+ * @author Florian Froese
+ * @author Adrian Schmidmeister
+ * @since 1.1
+ */
+public interface TokenHandler {
+
+  /**
+   * @param s     character sequence containing the token
+   * @param start index of the first character of the token (inclusive)
+   * @param end   index of the last character of the token (exclusive)
+   */
+  public void token(CharSequence s, int start, int end);
+
+}
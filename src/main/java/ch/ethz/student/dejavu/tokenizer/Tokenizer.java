@@ -14,7 +14,23 @@
 */
 package ch.ethz.student.dejavu.tokenizer;
 
+import ch.ethz.student.dejavu.utilities.HashUtils;
 
+/**
+ * Tokenizer
+ *
+ * A tokenizer can be used in two ways. The iterator methods {@link #reset(String)},
+ * {@link #hasMoreTokens()} and {@link #nextToken()} create an object per token.
+ * {@link #tokenize(CharSequence, TokenHandler)} and
+ * {@link #tokenizeHashed(CharSequence, TokenHashHandler)} report the tokens of any character
+ * sequence as offsets or 64 bit hashes and do not allocate a token. The tokenizers of this package
+ * implement them without changing the state of the iterator.
+ *
+ * <p>Subclasses that only implement the iterator keep the default implementations, which run the
+ * iterator over s: tokenize reports every token as its own character sequence and tokenizeHashed
+ * hashes the tokens. Both allocate the tokens, reset the iterator to s and leave it exhausted, so
+ * such a tokenizer must not be used for both at the same time.</p>
+ */
 public abstract class Tokenizer {
 
   protected int currentPosition;
@@ -39,4 +55,42 @@ public abstract class Tokenizer {
     this.s = s;
   }
 
+  /**
+   * Reports the offsets of all tokens of s to the handler.
+   *
+   * <p>The default implementation runs the iterator over s and reports each token as the whole of
+   * its string, thus the sequence passed to the handler is not s. Like
+   * {@link #tokenizeHashed(CharSequence, TokenHashHandler)} it calls {@link #reset(String)} and
+   * consumes all tokens. Subclasses override it to report offsets into s.</p>
+   *
+   * @param s       character sequence
+   * @param handler receives the tokens
+   * @since 1.1
+   */
+  public void tokenize(CharSequence s, TokenHandler handler) {
+    reset(s.toString());
+    while (hasMoreTokens()) {
+      String token = nextToken().toString();
+      handler.token(token, 0, token.length());
+    }
+  }
+
+  /**
+   * Reports the 64 bit hashes of all tokens of s to the handler. Equal tokens have equal hashes.
+   *
+   * <p>The default implementation runs the iterator over s: it calls {@link #reset(String)} and
+   * consumes all tokens, thus a previous iteration cannot be continued afterwards. Subclasses
+   * override it to leave the iterator untouched.</p>
+   *
+   * @param s       character sequence
+   * @param handler receives the hashes of the tokens
+   * @since 1.1
+   */
+  public void tokenizeHashed(CharSequence s, TokenHashHandler handler) {
+    reset(s.toString());
+    while (hasMoreTokens()) {
+      handler.token(HashUtils.hash64(nextToken()));
+    }
+  }
+
 }
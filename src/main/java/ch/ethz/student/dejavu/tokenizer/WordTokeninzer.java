@@ -14,32 +14,17 @@
 */
 package ch.ethz.student.dejavu.tokenizer;
 
-import java.util.StringTokenizer;
-
-public class WordTokeninzer extends Tokenizer {
-
-  private StringTokenizer sTokenizer;
+/**
+ * Splits a string at whitespace, see {@link DelimiterSplitter#WHITESPACE}.
+ */
+public class WordTokeninzer extends SeparatorTokenizer {
 
   public WordTokeninzer() {
+    super(DelimiterSplitter.WHITESPACE);
   }
 
   public WordTokeninzer(String s) {
-    super(s);
-    this.sTokenizer = new StringTokenizer(s);
-  }
-
-  @Override
-  public boolean hasMoreTokens() {
-    return sTokenizer.hasMoreTokens();
+    super(s, DelimiterSplitter.WHITESPACE);
   }
 
-  @Override
-  public String nextToken() {
-    return sTokenizer.nextToken();
-  }
-
-  @Override
-  public void reset(String s) {
-    this.sTokenizer = new StringTokenizer(s);
-  }
 }
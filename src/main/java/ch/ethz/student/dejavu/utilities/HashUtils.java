@@ -0,0 +1,89 @@
+/*
+ * Copyright 2013 Adrien Favre-Bully, Florian Froese, Adrian Schmidmeister
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * 		http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+*/
+package ch.ethz.student.dejavu.utilities;
+
+/**
+ * HashUtils
+ *
+ * 64 bit hash functions for tokens. All functions are deterministic across runs, thus hashes can be
+ * stored together with fingerprints or indexes.
+ *
+ * @author Adrien Favre-Bully
+ * @author Florian Froese
+ * @author Adrian Schmidmeister
+ * @since 1.1
+ */
+public class HashUtils {
+
+  public static final long DEFAULT_SEED = 0x9E3779B97F4A7C15L;
+
+  private static final long MULTIPLIER = 0xC6A4A7935BD1E995L;
+
+  /**
+   * Finalization step of MurmurHash3. Every input bit affects every output bit.
+   *
+   * @param z value to mix
+   * @return mixed value
+   */
+  public static long mix64(long z) {
+    z ^= z >>> 33;
+    z *= 0xFF51AFD7ED558CCDL;
+    z ^= z >>> 33;
+    z *= 0xC4CEB9FE1A85EC53L;
+    z ^= z >>> 33;
+    return z;
+  }
+
+  public static long hash64(CharSequence s) {
+    return hash64(s, 0, s.length(), DEFAULT_SEED);
+  }
+
+  /**
+   * @param s     character sequence
+   * @param start index of the first character (inclusive)
+   * @param end   index of the last character (exclusive)
+   * @param seed  seed, different seeds produce independent hashes
+   * @return 64 bit hash of the characters s[start..end)
+   */
+  public static long hash64(CharSequence s, int start, int end, long seed) {
+    long h = seed ^ ((end - start) * MULTIPLIER);
+    for (int i = start; i < end; i++) {
+      h = (h ^ s.charAt(i)) * MULTIPLIER;
+      h ^= h >>> 47;
+    }
+    return mix64(h);
+  }
+
+  public static long hash64(Object token) {
+    return hash64(token, DEFAULT_SEED);
+  }
+
+  /**
+   * Hashes an arbitrary token as produced by a {@link ch.ethz.student.dejavu.tokenizer.Tokenizer}.
+   * Character sequences are hashed by content, all other objects by their hashCode.
+   *
+   * @param token token
+   * @param seed  seed, different seeds produce independent hashes
+   * @return 64 bit hash of the token
+   */
+  public static long hash64(Object token, long seed) {
+    if (token instanceof CharSequence) {
+      CharSequence s = (CharSequence) token;
+      return hash64(s, 0, s.length(), seed);
+    }
+    return mix64(seed ^ (token.hashCode() * MULTIPLIER));
+  }
+
+}
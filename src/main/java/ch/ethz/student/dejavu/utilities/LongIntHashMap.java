@@ -0,0 +1,194 @@
+/*
+ * Copyright 2013 Adrien Favre-Bully, Florian Froese, Adrian Schmidmeister
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * 		http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+*/
+package ch.ethz.student.dejavu.utilities;
+
+import java.util.Arrays;
+
+/**
+ * LongIntHashMap
+ *
+ * Open addressing hash map from long keys to int values without boxing. A value of 0 denotes a
+ * missing key, thus 0 cannot be stored. This fits counts, which are always positive.
+ *
+ * <p>The entries can be iterated by slot: for (int slot = 0; slot &lt; map.capacity(); slot++) {
+ * if (map.valueAt(slot) != 0) { ... map.keyAt(slot) ... } }</p>
+ *
+ * @author Adrien Favre-Bully
+ * @author Florian Froese
+ * @author Adrian Schmidmeister
+ * @since 1.1
+ */
+public class LongIntHashMap {
+
+  private static final int DEFAULT_CAPACITY = 16;
+
+  private long[] keys;
+  private int[] values;
+  private int size;
+  private int mask;
+  private int resizeThreshold;
+
+  public LongIntHashMap() {
+    this(DEFAULT_CAPACITY);
+  }
+
+  /**
+   * @param expectedSize number of entries that fit without resizing
+   */
+  public LongIntHashMap(int expectedSize) {
+    int capacity = DEFAULT_CAPACITY;
+    while (capacity * 3 / 4 < expectedSize) {
+      capacity <<= 1;
+    }
+    allocate(capacity);
+  }
+
+  /**
+   * @param key key
+   * @return value of key or 0 if the key is missing
+   */
+  public int get(long key) {
+    int slot = slot(key);
+    while (values[slot] != 0) {
+      if (keys[slot] == key) {
+        return values[slot];
+      }
+      slot = (slot + 1) & mask;
+    }
+    return 0;
+  }
+
+  public boolean containsKey(long key) {
+    return get(key) != 0;
+  }
+
+  /**
+   * @param key   key
+   * @param value value, cannot be 0
+   */
+  public void put(long key, int value) {
+    if (value == 0) {
+      throw new IllegalArgumentException("Value cannot be 0");
+    }
+
+    int slot = find(key);
+    if (values[slot] == 0) {
+      keys[slot] = key;
+      values[slot] = value;
+      grow();
+    } else {
+      values[slot] = value;
+    }
+  }
+
+  /**
+   * Adds delta to the value of key, a missing key counts as 0. The result cannot be 0.
+   *
+   * @param key   key
+   * @param delta value to add
+   * @return new value of key
+   */
+  public int add(long key, int delta) {
+    int slot = find(key);
+    int value = values[slot] + delta;
+    if (value == 0) {
+      throw new IllegalArgumentException("Value cannot be 0");
+    }
+
+    if (values[slot] == 0) {
+      keys[slot] = key;
+      values[slot] = value;
+      grow();
+    } else {
+      values[slot] = value;
+    }
+    return value;
+  }
+
+  public int increment(long key) {
+    return add(key, 1);
+  }
+
+  public int size() {
+    return size;
+  }
+
+  public boolean isEmpty() {
+    return size == 0;
+  }
+
+  public void clear() {
+    if (size > 0) {
+      Arrays.fill(values, 0);
+      size = 0;
+    }
+  }
+
+  /**
+   * @return number of slots, see {@link #keyAt(int)} and {@link #valueAt(int)}
+   */
+  public int capacity() {
+    return values.length;
+  }
+
+  public long keyAt(int slot) {
+    return keys[slot];
+  }
+
+  /**
+   * @param slot slot
+   * @return value stored in the slot or 0 if the slot is empty
+   */
+  public int valueAt(int slot) {
+    return values[slot];
+  }
+
+  private int slot(long key) {
+    return (int) HashUtils.mix64(key) & mask;
+  }
+
+  private int find(long key) {
+    int slot = slot(key);
+    while (values[slot] != 0 && keys[slot] != key) {
+      slot = (slot + 1) & mask;
+    }
+    return slot;
+  }
+
+  private void grow() {
+    size++;
+    if (size > resizeThreshold) {
+      long[] oldKeys = keys;
+      int[] oldValues = values;
+      allocate(values.length * 2);
+
+      for (int i = 0; i < oldValues.length; i++) {
+        if (oldValues[i] != 0) {
+          int slot = find(oldKeys[i]);
+          keys[slot] = oldKeys[i];
+          values[slot] = oldValues[i];
+        }
+      }
+    }
+  }
+
+  private void allocate(int capacity) {
+    keys = new long[capacity];
+    values = new int[capacity];
+    mask = capacity - 1;
+    resizeThreshold = capacity * 3 / 4;
+  }
+
+}
@@ -0,0 +1,237 @@
+/*
+ * Copyright 2013 Adrien Favre-Bully, Florian Froese, Adrian Schmidmeister
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * 		http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+*/
+package ch.ethz.student.dejavu.utilities;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.function.Supplier;
+
+import ch.ethz.student.dejavu.DistanceMetric;
+import ch.ethz.student.dejavu.SimilarityMetric;
+
+/**
+ * Computes the {@link ScoreMatrix} of all pairs of a collection of strings in parallel.
+ *
+ * <p>The matrix is divided into tiles of blockSize rows and blockSize columns. A task computes a
+ * block of rows tile by tile: the candidates of a tile stay in the cache while every row of the
+ * block is compared to them with a single batch call, see
+ * {@link DistanceMetric#computeDistances(CharSequence, CharSequence[], double[])}. The blocks of
+ * rows are split on a {@link ForkJoinPool}.</p>
+ *
+ * <p>Most metrics keep buffers in their instances and are not thread-safe, thus the metric is
+ * given by a supplier and every task creates its own instance.</p>
+ *
+ * @author Adrien Favre-Bully
+ * @author Florian Froese
+ * @author Adrian Schmidmeister
+ * @since 1.1
+ */
+public class PairwiseMatrix {
+
+  private final Supplier<? extends DistanceMetric> distance;
+  private final Supplier<? extends SimilarityMetric> similarity;
+  private final boolean triangular;
+  private final boolean floats;
+  private final File file;
+  private final int blockSize;
+  private final ForkJoinPool pool;
+
+  private PairwiseMatrix(Builder b) {
+    this.distance = b.distance;
+    this.similarity = b.similarity;
+    this.triangular = b.triangular;
+    this.floats = b.floats;
+    this.file = b.file;
+    this.blockSize = b.blockSize;
+    this.pool = b.pool;
+  }
+
+  /**
+   * @param strings strings
+   * @return scores of all pairs of strings
+   * @throws IOException if the matrix cannot be written to its file
+   */
+  public ScoreMatrix compute(CharSequence[] strings) throws IOException {
+    if (strings == null) {
+      throw new IllegalArgumentException("Input strings cannot be null!");
+    }
+
+    int n = strings.length;
+    ScoreMatrix matrix = file == null ? ScoreMatrix.allocate(n, triangular, floats)
+                                      : ScoreMatrix.create(file, n, triangular, floats);
+    int blocks = (n + blockSize - 1) / blockSize;
+    if (blocks > 0) {
+      pool.invoke(new RowsTask(strings, matrix, 0, blocks));
+    }
+    matrix.flush();
+    return matrix;
+  }
+
+  /**
+   * Computes the rows of the blocks from (inclusive) to to (exclusive).
+   */
+  private class RowsTask extends RecursiveAction {
+
+    private static final long serialVersionUID = 1L;
+
+    private final CharSequence[] strings;
+    private final ScoreMatrix matrix;
+    private final int from;
+    private final int to;
+
+    RowsTask(CharSequence[] strings, ScoreMatrix matrix, int from, int to) {
+      this.strings = strings;
+      this.matrix = matrix;
+      this.from = from;
+      this.to = to;
+    }
+
+    @Override
+    protected void compute() {
+      if (to - from > 1) {
+        int mid = (from + to) >>> 1;
+        invokeAll(new RowsTask(strings, matrix, from, mid),
+                  new RowsTask(strings, matrix, mid, to));
+        return;
+      }
+
+      DistanceMetric distanceMetric = distance == null ? null : distance.get();
+      SimilarityMetric similarityMetric = similarity == null ? null : similarity.get();
+      int n = strings.length;
+      int rowStart = from * blockSize;
+      int rowEnd = Math.min(n, rowStart + blockSize);
+      double[] out = new double[blockSize];
+
+      // the tiles left of the diagonal are skipped for a triangular matrix
+      for (int columnStart = triangular ? rowStart : 0; columnStart < n;
+           columnStart += blockSize) {
+        int columnEnd = Math.min(n, columnStart + blockSize);
+        CharSequence[] tile = Arrays.copyOfRange(strings, columnStart, columnEnd);
+
+        for (int i = rowStart; i < rowEnd; i++) {
+          // the part of the diagonal tile right of the diagonal
+          int first = triangular ? Math.max(columnStart, i) : columnStart;
+          CharSequence[] candidates = first == columnStart ? tile
+              : Arrays.copyOfRange(tile, first - columnStart, tile.length);
+          if (distanceMetric != null) {
+            distanceMetric.computeDistances(strings[i], candidates, out);
+          } else {
+            similarityMetric.computeSimilarities(strings[i], candidates, out);
+          }
+          for (int j = first; j < columnEnd; j++) {
+            matrix.set(i, j, out[j - first]);
+          }
+        }
+      }
+    }
+  }
+
+  // ===== Builder Pattern Methods =====
+
+  /**
+   * @return        {@link Builder}
+   * @see Builder
+   * @see PairwiseMatrix
+   */
+  public static Builder getBuilder() {
+    return new Builder();
+  }
+
+  // ===== Builder Class =====
+
+  /**
+   * PairwiseMatrix Builder Restriction: either distance or similarity must be set, blockSize must
+   * be greater than 0.
+   *
+   * <p>Usage:</br> ScoreMatrix matrix = PairwiseMatrix.getBuilder()</br>
+   * .distance(LevenshteinDistance::getInstance).triangular(true).build().compute(strings);</p>
+   *
+   * @param distance   supplier of the distance metric, called once per task
+   * @param similarity supplier of the similarity metric, called once per task
+   * @param triangular only the upper triangle including the diagonal, for symmetric metrics
+   *                   (default: false)
+   * @param floats     floats instead of doubles (default: false)
+   * @param file       file the matrix is mapped from, null for the heap (default: null)
+   * @param blockSize  rows and columns of a tile (default: 256)
+   * @param pool       pool of the tasks (default: ForkJoinPool.commonPool())
+   * @author Adrien Favre-Bully
+   * @author Florian Froese
+   * @author Adrian Schmidmeister
+   * @since 1.1
+   */
+  public static class Builder {
+
+    private Supplier<? extends DistanceMetric> distance;
+    private Supplier<? extends SimilarityMetric> similarity;
+    private boolean triangular = false;
+    private boolean floats = false;
+    private File file;
+    private int blockSize = 256;
+    private ForkJoinPool pool = ForkJoinPool.commonPool();
+
+    public PairwiseMatrix build() {
+      // check constraints
+      if ((distance == null) == (similarity == null)) {
+        throw new IllegalArgumentException("Either distance or similarity must be set!");
+      }
+      if (blockSize <= 0) {
+        throw new IllegalArgumentException("blockSize must be greater than 0!");
+      }
+      if (pool == null) {
+        throw new IllegalArgumentException("pool cannot be null!");
+      }
+
+      return new PairwiseMatrix(this);
+    }
+
+    public Builder distance(Supplier<? extends DistanceMetric> d) {
+      distance = d;
+      return this;
+    }
+
+    public Builder similarity(Supplier<? extends SimilarityMetric> s) {
+      similarity = s;
+      return this;
+    }
+
+    public Builder triangular(boolean t) {
+      triangular = t;
+      return this;
+    }
+
+    public Builder floats(boolean f) {
+      floats = f;
+      return this;
+    }
+
+    public Builder file(File f) {
+      file = f;
+      return this;
+    }
+
+    public Builder blockSize(int b) {
+      blockSize = b;
+      return this;
+    }
+
+    public Builder pool(ForkJoinPool p) {
+      pool = p;
+      return this;
+    }
+  }
+}
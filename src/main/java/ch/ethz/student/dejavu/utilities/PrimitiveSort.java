@@ -0,0 +1,96 @@
+/*
+ * Copyright 2013 Adrien Favre-Bully, Florian Froese, Adrian Schmidmeister
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * 		http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+*/
+package ch.ethz.student.dejavu.utilities;
+
+/**
+ * PrimitiveSort
+ *
+ * Sorts primitive key arrays together with a parallel value array, which the JDK does not offer
+ * without boxing.
+ *
+ * @author Adrien Favre-Bully
+ * @author Florian Froese
+ * @author Adrian Schmidmeister
+ * @since 1.1
+ */
+public class PrimitiveSort {
+
+  private static final int INSERTION_SORT_THRESHOLD = 16;
+
+  /**
+   * Sorts keys[from..to) ascending (signed order) and applies the same permutation to values.
+   */
+  public static void sort(long[] keys, int[] values, int from, int to) {
+    while (to - from > INSERTION_SORT_THRESHOLD) {
+      int mid = (from + to) >>> 1;
+      long pivot = median(keys[from], keys[mid], keys[to - 1]);
+
+      int i = from;
+      int j = to - 1;
+      while (i <= j) {
+        while (keys[i] < pivot) {
+          i++;
+        }
+        while (keys[j] > pivot) {
+          j--;
+        }
+        if (i <= j) {
+          swap(keys, values, i, j);
+          i++;
+          j--;
+        }
+      }
+
+      // recurse into the smaller part to bound the stack depth
+      if (j - from < to - i) {
+        sort(keys, values, from, j + 1);
+        from = i;
+      } else {
+        sort(keys, values, i, to);
+        to = j + 1;
+      }
+    }
+
+    for (int i = from + 1; i < to; i++) {
+      long k = keys[i];
+      int v = values[i];
+      int j = i - 1;
+      while (j >= from && keys[j] > k) {
+        keys[j + 1] = keys[j];
+        values[j + 1] = values[j];
+        j--;
+      }
+      keys[j + 1] = k;
+      values[j + 1] = v;
+    }
+  }
+
+  private static long median(long a, long b, long c) {
+    if (a < b) {
+      return b < c ? b : (a < c ? c : a);
+    }
+    return a < c ? a : (b < c ? c : b);
+  }
+
+  private static void swap(long[] keys, int[] values, int i, int j) {
+    long k = keys[i];
+    keys[i] = keys[j];
+    keys[j] = k;
+    int v = values[i];
+    values[i] = values[j];
+    values[j] = v;
+  }
+
+}
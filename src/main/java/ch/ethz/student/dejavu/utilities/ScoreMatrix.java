@@ -0,0 +1,257 @@
+/*
+ * Copyright 2013 Adrien Favre-Bully, Florian Froese, Adrian Schmidmeister
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * 		http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+*/
+package ch.ethz.student.dejavu.utilities;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.DoubleBuffer;
+import java.nio.FloatBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * Scores of all pairs of n strings computed by {@link PairwiseMatrix}, either all n * n entries or
+ * the upper triangle including the diagonal for symmetric metrics. Entries are doubles or floats
+ * and are kept on the heap or in a memory-mapped file, which holds matrices larger than the heap.
+ *
+ * <p>The entries are stored row by row in chunks of 2^27 entries, one buffer per chunk, thus a
+ * matrix is not limited by the 2 GB of a single buffer. A file starts with a header of 64 bytes
+ * (magic, version, n, flags) followed by the entries, all values little endian.</p>
+ *
+ * @author Adrien Favre-Bully
+ * @author Florian Froese
+ * @author Adrian Schmidmeister
+ * @since 1.1
+ */
+public class ScoreMatrix {
+
+  public static final int MAGIC = 0x444A564D;
+  public static final int VERSION = 1;
+  public static final int HEADER_SIZE = 64;
+
+  private static final int CHUNK_BITS = 27;
+  private static final long CHUNK_MASK = (1L << CHUNK_BITS) - 1;
+  private static final int TRIANGULAR = 1;
+  private static final int FLOATS = 2;
+
+  private final int n;
+  private final boolean triangular;
+  private final boolean floats;
+  // one of them is used
+  private final DoubleBuffer[] doubleChunks;
+  private final FloatBuffer[] floatChunks;
+  private final MappedByteBuffer[] mappings;
+
+  private ScoreMatrix(int n, boolean triangular, boolean floats, MappedByteBuffer[] mappings) {
+    this.n = n;
+    this.triangular = triangular;
+    this.floats = floats;
+    this.mappings = mappings;
+
+    long entries = getEntryCount(n, triangular);
+    int chunks = (int) ((entries + CHUNK_MASK) >>> CHUNK_BITS);
+    doubleChunks = floats ? null : new DoubleBuffer[chunks];
+    floatChunks = floats ? new FloatBuffer[chunks] : null;
+    for (int c = 0; c < chunks; c++) {
+      int length = (int) Math.min(entries - ((long) c << CHUNK_BITS), 1L << CHUNK_BITS);
+      if (mappings == null) {
+        if (floats) {
+          floatChunks[c] = FloatBuffer.allocate(length);
+        } else {
+          doubleChunks[c] = DoubleBuffer.allocate(length);
+        }
+      } else if (floats) {
+        floatChunks[c] = mappings[c].asFloatBuffer();
+      } else {
+        doubleChunks[c] = mappings[c].asDoubleBuffer();
+      }
+    }
+  }
+
+  /**
+   * @param n          number of strings
+   * @param triangular upper triangle only
+   * @param floats     floats instead of doubles
+   * @return matrix on the heap
+   */
+  static ScoreMatrix allocate(int n, boolean triangular, boolean floats) {
+    return new ScoreMatrix(n, triangular, floats, null);
+  }
+
+  /**
+   * @param file       file to write, an existing file is replaced
+   * @param n          number of strings
+   * @param triangular upper triangle only
+   * @param floats     floats instead of doubles
+   * @return matrix mapped from the file
+   * @throws IOException if the file cannot be written
+   */
+  static ScoreMatrix create(File file, int n, boolean triangular, boolean floats)
+      throws IOException {
+    long bytes = getEntryCount(n, triangular) * (floats ? 4 : 8);
+    RandomAccessFile raf = new RandomAccessFile(file, "rw");
+    try {
+      raf.setLength(0);
+      raf.setLength(HEADER_SIZE + bytes);
+      FileChannel channel = raf.getChannel();
+      ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+      header.putInt(MAGIC).putInt(VERSION).putInt(n)
+          .putInt((triangular ? TRIANGULAR : 0) | (floats ? FLOATS : 0));
+      header.clear();
+      while (header.hasRemaining()) {
+        channel.write(header, header.position());
+      }
+      return new ScoreMatrix(n, triangular, floats,
+                             map(channel, FileChannel.MapMode.READ_WRITE, bytes, floats));
+    } finally {
+      raf.close();
+    }
+  }
+
+  /**
+   * Maps a matrix computed into a file. The opened matrix is read-only.
+   *
+   * @param file matrix file
+   * @return matrix mapped from the file
+   * @throws IOException if the file cannot be read or is not a matrix
+   */
+  public static ScoreMatrix open(File file) throws IOException {
+    RandomAccessFile raf = new RandomAccessFile(file, "r");
+    try {
+      FileChannel channel = raf.getChannel();
+      if (channel.size() < HEADER_SIZE) {
+        throw new IOException("Not a matrix file.");
+      }
+      ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+      while (header.hasRemaining()) {
+        channel.read(header, header.position());
+      }
+      header.flip();
+      if (header.getInt() != MAGIC) {
+        throw new IOException("Not a matrix file.");
+      }
+      int version = header.getInt();
+      if (version != VERSION) {
+        throw new IOException("Unsupported matrix file version " + version);
+      }
+      int n = header.getInt();
+      int flags = header.getInt();
+      boolean triangular = (flags & TRIANGULAR) != 0;
+      boolean floats = (flags & FLOATS) != 0;
+
+      long bytes = getEntryCount(n, triangular) * (floats ? 4 : 8);
+      if (n < 0 || channel.size() < HEADER_SIZE + bytes) {
+        throw new IOException("Corrupt matrix file.");
+      }
+      return new ScoreMatrix(n, triangular, floats,
+                             map(channel, FileChannel.MapMode.READ_ONLY, bytes, floats));
+    } finally {
+      raf.close();
+    }
+  }
+
+  private static MappedByteBuffer[] map(FileChannel channel, FileChannel.MapMode mode, long bytes,
+                                        boolean floats) throws IOException {
+    long chunkBytes = (1L << CHUNK_BITS) * (floats ? 4 : 8);
+    MappedByteBuffer[] mappings = new MappedByteBuffer[(int) ((bytes + chunkBytes - 1)
+                                                              / chunkBytes)];
+    for (int c = 0; c < mappings.length; c++) {
+      long offset = c * chunkBytes;
+      mappings[c] = channel.map(mode, HEADER_SIZE + offset, Math.min(chunkBytes, bytes - offset));
+      mappings[c].order(ByteOrder.LITTLE_ENDIAN);
+    }
+    return mappings;
+  }
+
+  /**
+   * @param n          number of strings
+   * @param triangular upper triangle only
+   * @return number of stored entries
+   */
+  public static long getEntryCount(int n, boolean triangular) {
+    return triangular ? (long) n * (n + 1) / 2 : (long) n * n;
+  }
+
+  /**
+   * @param i first string
+   * @param j second string
+   * @return score of the strings i and j, of j and i for j &lt; i of a triangular matrix
+   */
+  public double get(int i, int j) {
+    long index = index(i, j);
+    int chunk = (int) (index >>> CHUNK_BITS);
+    int offset = (int) (index & CHUNK_MASK);
+    return floats ? floatChunks[chunk].get(offset) : doubleChunks[chunk].get(offset);
+  }
+
+  /**
+   * Entries are written concurrently, every entry by a single thread.
+   */
+  void set(int i, int j, double score) {
+    long index = index(i, j);
+    int chunk = (int) (index >>> CHUNK_BITS);
+    int offset = (int) (index & CHUNK_MASK);
+    if (floats) {
+      floatChunks[chunk].put(offset, (float) score);
+    } else {
+      doubleChunks[chunk].put(offset, score);
+    }
+  }
+
+  /**
+   * Writes the entries of a mapped matrix to its file.
+   */
+  void flush() {
+    if (mappings != null) {
+      for (MappedByteBuffer mapping : mappings) {
+        mapping.force();
+      }
+    }
+  }
+
+  /**
+   * @return number of strings
+   */
+  public int size() {
+    return n;
+  }
+
+  public boolean isTriangular() {
+    return triangular;
+  }
+
+  public boolean isFloat() {
+    return floats;
+  }
+
+  private long index(int i, int j) {
+    if (i < 0 || i >= n || j < 0 || j >= n) {
+      throw new IndexOutOfBoundsException("Invalid entry " + i + ", " + j);
+    }
+    if (!triangular) {
+      return (long) i * n + j;
+    }
+    if (j < i) {
+      int tmp = i;
+      i = j;
+      j = tmp;
+    }
+    // rows 0..i-1 hold n, n-1, ..., n-i+1 entries
+    return (long) i * n - (long) i * (i - 1) / 2 + (j - i);
+  }
+}
@@ -14,17 +14,69 @@
 */
 package ch.ethz.student.dejavu.utilities;
 
+import java.util.Arrays;
+
 public class Utilities {
 
   public static final double DISTANCE_EMPTY_EMPTY = 0.0;
   public static final double SIMILARITY_EMPTY_EMPTY = 1.0;
 
-  static public boolean checkInputs(String s1, String s2) {
+  static public boolean checkInputs(CharSequence s1, CharSequence s2) {
     if (s1 == null || s2 == null) {
       throw new IllegalArgumentException("Input strings cannot be null!");
     }
 
-    return !(s1.isEmpty() && s2.isEmpty());
+    return !(s1.length() == 0 && s2.length() == 0);
+  }
+
+  /**
+   * Checks the arguments of a batch computation of one query and many candidates.
+   */
+  static public void checkBatch(CharSequence query, CharSequence[] candidates, double[] out) {
+    if (query == null) {
+      throw new IllegalArgumentException("Input strings cannot be null!");
+    }
+    if (candidates == null || out == null) {
+      throw new IllegalArgumentException("Candidates and output cannot be null!");
+    }
+    if (out.length < candidates.length) {
+      throw new IllegalArgumentException("Output must be at least as long as the candidates!");
+    }
+  }
+
+  /**
+   * @return s as a String or null for null
+   */
+  static public String toString(CharSequence s) {
+    return s == null ? null : s.toString();
+  }
+
+  /**
+   * L1 distance of the character histograms of two strings, the number of characters that are not
+   * shared by the strings. An insertion or deletion changes it by at most one, a substitution by at
+   * most two, a transposition not at all.
+   */
+  static public int histogramDistance(CharSequence s1, CharSequence s2) {
+    char[] a = s1.toString().toCharArray();
+    char[] b = s2.toString().toCharArray();
+    Arrays.sort(a);
+    Arrays.sort(b);
+
+    int common = 0;
+    int i = 0;
+    int j = 0;
+    while (i < a.length && j < b.length) {
+      if (a[i] == b[j]) {
+        common++;
+        i++;
+        j++;
+      } else if (a[i] < b[j]) {
+        i++;
+      } else {
+        j++;
+      }
+    }
+    return a.length + b.length - 2 * common;
   }
 
   static public double min(double... ds) {
@@ -0,0 +1,185 @@
+/*
+ * Copyright 2013 Adrien Favre-Bully, Florian Froese, Adrian Schmidmeister
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * 		http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+*/
+package ch.ethz.student.dejavu.vectors;
+
+import ch.ethz.student.dejavu.utilities.LongIntHashMap;
+
+/**
+ * CharHistogram
+ *
+ * Character frequency vector of a string. Latin-1 characters are counted in a dense int[256] array,
+ * thus the vector operations are plain array loops without boxing or hashing. Other characters are
+ * counted in a sparse {@link LongIntHashMap} that stays empty for Latin-1 input.
+ *
+ * <p>A histogram can be reused for many strings, see {@link #set(CharSequence)}.</p>
+ *
+ * @author Adrien Favre-Bully
+ * @author Florian Froese
+ * @author Adrian Schmidmeister
+ * @since 1.1
+ */
+public class CharHistogram {
+
+  public static final int DENSE_SIZE = 256;
+
+  private final int[] counts = new int[DENSE_SIZE];
+  private final LongIntHashMap sparse = new LongIntHashMap();
+
+  // distinct dense characters, used to clear the counts
+  private final char[] touched = new char[DENSE_SIZE];
+  private int touchedSize;
+
+  private int size;
+  private int length;
+
+  public CharHistogram() {
+  }
+
+  public CharHistogram(CharSequence s) {
+    set(s);
+  }
+
+  /**
+   * Replaces the content of this histogram by the characters of s.
+   *
+   * @param s character sequence
+   * @return this histogram
+   */
+  public CharHistogram set(CharSequence s) {
+    clear();
+
+    int length = s.length();
+    for (int i = 0; i < length; i++) {
+      char c = s.charAt(i);
+      if (c < DENSE_SIZE) {
+        if (counts[c]++ == 0) {
+          touched[touchedSize++] = c;
+        }
+      } else {
+        sparse.increment(c);
+      }
+    }
+
+    this.length = length;
+    this.size = touchedSize + sparse.size();
+    return this;
+  }
+
+  public void clear() {
+    for (int i = 0; i < touchedSize; i++) {
+      counts[touched[i]] = 0;
+    }
+    touchedSize = 0;
+    sparse.clear();
+    size = 0;
+    length = 0;
+  }
+
+  /**
+   * @param c character
+   * @return number of occurrences of c
+   */
+  public int count(char c) {
+    return c < DENSE_SIZE ? counts[c] : sparse.get(c);
+  }
+
+  /**
+   * @return number of distinct characters
+   */
+  public int size() {
+    return size;
+  }
+
+  /**
+   * @return number of characters, which is the sum of all counts
+   */
+  public int length() {
+    return length;
+  }
+
+  public boolean isEmpty() {
+    return length == 0;
+  }
+
+  /**
+   * @param other histogram
+   * @return number of distinct characters contained in both histograms
+   */
+  public int intersect(CharHistogram other) {
+    int[] a = counts;
+    int[] b = other.counts;
+    int intersect = 0;
+    for (int i = 0; i < DENSE_SIZE; i++) {
+      // 1 iff both counts are positive
+      intersect += (-a[i] & -b[i]) >>> 31;
+    }
+
+    if (!sparse.isEmpty() && !other.sparse.isEmpty()) {
+      intersect += (int) VectorUtils.intersect(sparse, other.sparse);
+    }
+    return intersect;
+  }
+
+  public double scalarProduct(CharHistogram other) {
+    int[] a = counts;
+    int[] b = other.counts;
+    long product = 0;
+    for (int i = 0; i < DENSE_SIZE; i++) {
+      product += (long) a[i] * b[i];
+    }
+
+    double res = product;
+    if (!sparse.isEmpty() && !other.sparse.isEmpty()) {
+      res += VectorUtils.scalarProduct(sparse, other.sparse);
+    }
+    return res;
+  }
+
+  public double euclideanNorm() {
+    return Math.sqrt(scalarProduct(this));
+  }
+
+  /**
+   * @param other histogram
+   * @return sum of the absolute differences of the counts
+   */
+  public double manhattenDistance(CharHistogram other) {
+    int[] a = counts;
+    int[] b = other.counts;
+    long distance = 0;
+    for (int i = 0; i < DENSE_SIZE; i++) {
+      distance += Math.abs(a[i] - b[i]);
+    }
+
+    return distance + VectorUtils.manhattenDistance(sparse, other.sparse);
+  }
+
+  /**
+   * @param other histogram
+   * @return sum of the squared differences of the counts
+   */
+  public double squaredEuclideanDistance(CharHistogram other) {
+    int[] a = counts;
+    int[] b = other.counts;
+    long distance = 0;
+    for (int i = 0; i < DENSE_SIZE; i++) {
+      int d = a[i] - b[i];
+      distance += (long) d * d;
+    }
+
+    return distance + VectorUtils.squaredEuclideanDistance(sparse, other.sparse);
+  }
+
+}
@@ -44,15 +44,33 @@ public class CosineDistance extends VectorSimilarity implements UnnormalizedSimi
       return Utilities.SIMILARITY_EMPTY_EMPTY;
     }
 
+    if (dimensions > 0) {
+      computeHashedVectors(s1, s2);
+      return VectorKernels.cosine(dense1, dense2);
+    }
+
     computeTokens(s1, s2);
 
     if (s1.length() == 0 && s2.length() == 0) {
       return 1.0;
     }
 
-    double dotProd = VectorUtils.scalarProduct(vec1, vec2);
-    double nVector1 = VectorUtils.euclideanNorm(vec1);
-    double nVector2 = VectorUtils.euclideanNorm(vec2);
+    double dotProd;
+    double nVector1;
+    double nVector2;
+    if (granularity.equals(Granularity.NGRAM_HASHED)) {
+      dotProd = VectorUtils.scalarProduct(hashedVec1, hashedVec2);
+      nVector1 = VectorUtils.euclideanNorm(hashedVec1);
+      nVector2 = VectorUtils.euclideanNorm(hashedVec2);
+    } else if (charHistogram) {
+      dotProd = hist1.scalarProduct(hist2);
+      nVector1 = hist1.euclideanNorm();
+      nVector2 = hist2.euclideanNorm();
+    } else {
+      dotProd = VectorUtils.scalarProduct(vec1, vec2);
+      nVector1 = VectorUtils.euclideanNorm(vec1);
+      nVector2 = VectorUtils.euclideanNorm(vec2);
+    }
 
     double cosineSimilarity = dotProd / (nVector1 * nVector2);                // ranges from -1 to 1
 
@@ -14,7 +14,7 @@
 */
 package ch.ethz.student.dejavu.vectors;
 
-import ch.ethz.student.dejavu.SimilarityMetric;
+import ch.ethz.student.dejavu.BoundedSimilarityMetric;
 import ch.ethz.student.dejavu.utilities.Utilities;
 
 /**
@@ -31,7 +31,7 @@ import ch.ethz.student.dejavu.utilities.Utilities;
  * @see VectorSimilarity
  * @since 1.0
  */
-public class DiceCoefficient extends VectorSimilarity implements SimilarityMetric {
+public class DiceCoefficient extends SetSimilarity implements BoundedSimilarityMetric {
 
   private DiceCoefficient(Builder builder) {
     super(builder);
@@ -48,20 +48,34 @@ public class DiceCoefficient extends VectorSimilarity implements SimilarityMetri
       return 1.0;
     }
 
-    double i = 0.0;
-    double size1 = 0.0;
-    double size2 = 0.0;
-
-    if (takeKeyset) {
-      i = VectorUtils.intersect(keys1, keys2);
-      size1 = VectorUtils.size(keys1);
-      size2 = VectorUtils.size(keys2);
-    } else {
-      i = VectorUtils.intersect(vec1, vec2);
-      size1 = VectorUtils.size(vec1);
-      size2 = VectorUtils.size(vec2);
+    return computeSimilarity(computeSetStatistics());
+  }
+
+  /**
+   * Bounds the dice coefficient by the sizes of the token sets before intersecting them, the
+   * intersection is at most the smaller set.
+   */
+  @Override
+  public double computeSimilarity(String s1, String s2, double minSimilarity) {
+    if (!Utilities.checkInputs(s1, s2)) {
+      return Utilities.SIMILARITY_EMPTY_EMPTY;
     }
 
+    computeTokens(s1, s2);
+
+    double bound = computeSimilarity(estimateSetStatistics());
+    if (bound < minSimilarity - BOUND_EPSILON) {
+      return bound;
+    }
+    return computeSimilarity(computeSetStatistics());
+  }
+
+  @Override
+  protected double computeSimilarity(SetStatistics statistics) {
+    double i = statistics.getIntersection();
+    double size1 = statistics.getSize1();
+    double size2 = statistics.getSize2();
+
     double diceCoefficient = 2 * i / (size1 + size2);
 
     return diceCoefficient;
@@ -34,5 +34,10 @@ public enum Granularity {
   /**
    * NGRAM_BASED String is split up into ngrams specified in ngram
    */
-  NGRAM_BASED;
+  NGRAM_BASED,
+  /**
+   * NGRAM_HASHED String is split up into ngrams specified in ngram, the ngrams are counted by a 64
+   * bit hash without creating a String per ngram
+   */
+  NGRAM_HASHED;
 }
\ No newline at end of file
@@ -14,7 +14,7 @@
 */
 package ch.ethz.student.dejavu.vectors;
 
-import ch.ethz.student.dejavu.SimilarityMetric;
+import ch.ethz.student.dejavu.BoundedSimilarityMetric;
 import ch.ethz.student.dejavu.utilities.Utilities;
 
 
@@ -31,7 +31,7 @@ import ch.ethz.student.dejavu.utilities.Utilities;
  * @see VectorSimilarity
  * @since 1.0
  */
-public class JaccardSimilarity extends VectorSimilarity implements SimilarityMetric {
+public class JaccardSimilarity extends SetSimilarity implements BoundedSimilarityMetric {
 
   private JaccardSimilarity(Builder builder) {
     super(builder);
@@ -49,17 +49,33 @@ public class JaccardSimilarity extends VectorSimilarity implements SimilarityMet
       return 1.0;
     }
 
-    double u = 0.0;
-    double i = 0.0;
+    return computeSimilarity(computeSetStatistics());
+  }
 
-    if (takeKeyset) {
-      u = VectorUtils.union(keys1, keys2);
-      i = VectorUtils.intersect(keys1, keys2);
-    } else {
-      u = VectorUtils.union(vec1, vec2);
-      i = VectorUtils.intersect(vec1, vec2);
+  /**
+   * Bounds the jaccard coefficient by the sizes of the token sets before intersecting them, the
+   * intersection is at most the smaller set.
+   */
+  @Override
+  public double computeSimilarity(String s1, String s2, double minSimilarity) {
+    if (!Utilities.checkInputs(s1, s2)) {
+      return Utilities.SIMILARITY_EMPTY_EMPTY;
     }
 
+    computeTokens(s1, s2);
+
+    double bound = computeSimilarity(estimateSetStatistics());
+    if (bound < minSimilarity - BOUND_EPSILON) {
+      return bound;
+    }
+    return computeSimilarity(computeSetStatistics());
+  }
+
+  @Override
+  protected double computeSimilarity(SetStatistics statistics) {
+    double u = statistics.getUnion();
+    double i = statistics.getIntersection();
+
     double jaccardDistance = i / u;        // Jaccard Coefficient
 
 //		double jaccardDistance = ( u - i ) / u;
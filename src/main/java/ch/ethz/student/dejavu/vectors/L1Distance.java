@@ -48,8 +48,19 @@ public class L1Distance extends VectorSimilarity implements DistanceMetric, Simi
       return Utilities.DISTANCE_EMPTY_EMPTY;
     }
 
+    if (dimensions > 0) {
+      computeHashedVectors(s1, s2);
+      return VectorKernels.l1Distance(dense1, dense2);
+    }
+
     computeTokens(s1, s2);
 
+    if (granularity.equals(Granularity.NGRAM_HASHED)) {
+      return VectorUtils.manhattenDistance(hashedVec1, hashedVec2);
+    } else if (charHistogram) {
+      return hist1.manhattenDistance(hist2);
+    }
+
     HashSet<Object> mergedSet = new HashSet<Object>(vec1.keySet());
     mergedSet.addAll(vec2.keySet());
 
@@ -46,8 +46,19 @@ public class L2Distance extends VectorSimilarity implements DistanceMetric, Simi
       return Utilities.DISTANCE_EMPTY_EMPTY;
     }
 
+    if (dimensions > 0) {
+      computeHashedVectors(s1, s2);
+      return Math.sqrt(VectorKernels.squaredL2Distance(dense1, dense2));
+    }
+
     computeTokens(s1, s2);
 
+    if (granularity.equals(Granularity.NGRAM_HASHED)) {
+      return Math.sqrt(VectorUtils.squaredEuclideanDistance(hashedVec1, hashedVec2));
+    } else if (charHistogram) {
+      return Math.sqrt(hist1.squaredEuclideanDistance(hist2));
+    }
+
     // l2 distance
     HashSet<Object> mergedSet = new HashSet<Object>(vec1.keySet());
     mergedSet.addAll(vec2.keySet());
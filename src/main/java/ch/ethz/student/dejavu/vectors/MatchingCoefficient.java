@@ -50,12 +50,7 @@ public class MatchingCoefficient extends VectorSimilarity
       return 1.0;
     }
 
-    double i = 0.0;
-    if (takeKeyset) {
-      i = VectorUtils.intersect(keys1, keys2);
-    } else {
-      i = VectorUtils.intersect(vec1, vec2);
-    }
+    double i = computeSetStatistics().getIntersection();
 
     double matchingCoefficient = i;
 
@@ -66,11 +61,7 @@ public class MatchingCoefficient extends VectorSimilarity
   public double computeSimilarity(String s1, String s2) {
     double unnormalized = computeUnnormalizedSimilarity(s1, s2);
 
-    if (takeKeyset) {
-      return unnormalized / Math.max(keys1.size(), keys2.size());
-    } else {
-      return unnormalized / Math.max(vec1.size(), vec2.size());
-    }
+    return unnormalized / Math.max(statistics.getSize1(), statistics.getSize2());
   }
 
   // ===== Builder Pattern Methods =====
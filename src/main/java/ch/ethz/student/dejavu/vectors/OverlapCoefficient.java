@@ -50,19 +50,10 @@ public class OverlapCoefficient extends VectorSimilarity implements SimilarityMe
       return 0.0;
     }
 
-    double i = 0.0;
-    double mVector1 = 0.0;
-    double mVector2 = 0.0;
-
-    if (takeKeyset) {
-      i = VectorUtils.intersect(keys1, keys2);
-      mVector1 = VectorUtils.size(keys1);
-      mVector2 = VectorUtils.size(keys2);
-    } else {
-      i = VectorUtils.intersect(vec1, vec2);
-      mVector1 = VectorUtils.size(vec1);
-      mVector2 = VectorUtils.size(vec2);
-    }
+    SetStatistics statistics = computeSetStatistics();
+    double i = statistics.getIntersection();
+    double mVector1 = statistics.getSize1();
+    double mVector2 = statistics.getSize2();
 
     double overlapCoefficient = i / Math.min(mVector1, mVector2);
 
@@ -0,0 +1,79 @@
+/*
+ * Copyright 2013 Adrien Favre-Bully, Florian Froese, Adrian Schmidmeister
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * 		http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+*/
+package ch.ethz.student.dejavu.vectors;
+
+import ch.ethz.student.dejavu.utilities.Utilities;
+
+/**
+ * SetSimilarity
+ *
+ * Base of the similarities that only depend on the sizes of two token sets A and B and of their
+ * intersection, see {@link SetStatistics}. A subclass maps these three numbers to a score in
+ * {@link #computeSimilarity(SetStatistics)}, the comparison of precomputed {@link TokenProfile}s
+ * is shared.
+ *
+ * @author Adrien Favre-Bully
+ * @author Florian Froese
+ * @author Adrian Schmidmeister
+ * @see VectorSimilarity
+ * @since 1.1
+ */
+public abstract class SetSimilarity extends VectorSimilarity {
+
+  protected SetSimilarity(VectorBuilder<?> builder) {
+    super(builder);
+  }
+
+  /**
+   * @param p1 profile of the first string, see {@link #getProfile(String)}
+   * @param p2 profile of the second string
+   * @return similarity of the strings
+   */
+  public double computeSimilarity(TokenProfile p1, TokenProfile p2) {
+    if (p1 != null && p2 != null && p1.isEmpty() && p2.isEmpty()) {
+      return Utilities.SIMILARITY_EMPTY_EMPTY;
+    }
+
+    return computeSimilarity(computeSetStatistics(p1, p2));
+  }
+
+  /**
+   * Decides whether the similarity of two profiles reaches a threshold. Most pairs below the
+   * threshold are rejected by the signatures without comparing the token sets: the similarity
+   * grows with the intersection, thus an upper bound of the intersection bounds the similarity.
+   *
+   * @param p1        profile of the first string, see {@link #getProfile(String)}
+   * @param p2        profile of the second string
+   * @param threshold minimal similarity
+   * @return true iff computeSimilarity(p1, p2) &gt;= threshold
+   */
+  public boolean isAtLeast(TokenProfile p1, TokenProfile p2, double threshold) {
+    if (p1 != null && p2 != null && p1.isEmpty() && p2.isEmpty()) {
+      return Utilities.SIMILARITY_EMPTY_EMPTY >= threshold;
+    }
+
+    if (computeSimilarity(estimateSetStatistics(p1, p2)) < threshold - BOUND_EPSILON) {
+      return false;
+    }
+    return computeSimilarity(p1, p2) >= threshold;
+  }
+
+  /**
+   * @param statistics sizes of the token sets and of their intersection
+   * @return similarity of the token sets, non-decreasing in the intersection
+   */
+  protected abstract double computeSimilarity(SetStatistics statistics);
+
+}
@@ -0,0 +1,100 @@
+/*
+ * Copyright 2013 Adrien Favre-Bully, Florian Froese, Adrian Schmidmeister
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * 		http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+*/
+package ch.ethz.student.dejavu.vectors;
+
+/**
+ * SetStatistics
+ *
+ * Sizes of two token sets A and B and of their intersection. The union and the relative
+ * complements follow from these three numbers, thus a set metric only needs a single walk over the
+ * smaller set, see {@link VectorSimilarity#computeSetStatistics()}.
+ *
+ * @author Adrien Favre-Bully
+ * @author Florian Froese
+ * @author Adrian Schmidmeister
+ * @since 1.1
+ */
+public class SetStatistics {
+
+  private int size1;
+  private int size2;
+  private int intersection;
+
+  public SetStatistics() {
+  }
+
+  public SetStatistics(int size1, int size2, int intersection) {
+    set(size1, size2, intersection);
+  }
+
+  public SetStatistics set(int size1, int size2, int intersection) {
+    if (intersection > Math.min(size1, size2) || intersection < 0) {
+      throw new IllegalArgumentException("intersection must be between 0 and min(size1, size2)!");
+    }
+    this.size1 = size1;
+    this.size2 = size2;
+    this.intersection = intersection;
+    return this;
+  }
+
+  /**
+   * @return |A|
+   */
+  public int getSize1() {
+    return size1;
+  }
+
+  /**
+   * @return |B|
+   */
+  public int getSize2() {
+    return size2;
+  }
+
+  /**
+   * @return |A &#8745; B|
+   */
+  public int getIntersection() {
+    return intersection;
+  }
+
+  /**
+   * @return |A &#8746; B|
+   */
+  public int getUnion() {
+    return size1 + size2 - intersection;
+  }
+
+  /**
+   * @return |A - B|
+   */
+  public int getComplement1() {
+    return size1 - intersection;
+  }
+
+  /**
+   * @return |B - A|
+   */
+  public int getComplement2() {
+    return size2 - intersection;
+  }
+
+  @Override
+  public String toString() {
+    return "SetStatistics [size1=" + size1 + ", size2=" + size2 + ", intersection=" + intersection
+           + "]";
+  }
+
+}
@@ -0,0 +1,295 @@
+/*
+ * Copyright 2013 Adrien Favre-Bully, Florian Froese, Adrian Schmidmeister
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * 		http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+*/
+package ch.ethz.student.dejavu.vectors;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+import ch.ethz.student.dejavu.SimilarityMetric;
+import ch.ethz.student.dejavu.utilities.HashUtils;
+import ch.ethz.student.dejavu.utilities.Utilities;
+
+/**
+ * SimHash fingerprints based on a vector model. Every token is hashed to a random hyperplane, the
+ * (optionally weighted) term frequency vector of a string is reduced to one bit per hyperplane.
+ * The cosine similarity of two strings is estimated from the hamming distance h of their
+ * fingerprints: cosineSimilarity ~ cos( PI * h / bits ).
+ *
+ * <p>A fingerprint is a long[] of 1 (64 bit) or 2 (128 bit) words, thus a whole corpus can be
+ * kept in memory. Fingerprints can be indexed with {@link ch.ethz.student.dejavu.index.SimHashIndex}
+ * for near-duplicate search.</p>
+ *
+ * <p>For creation please use default SimHash or the Builder {@link Builder} provided by the static
+ * methods.</p>
+ *
+ * <p>Wikipedia: <a href="http://en.wikipedia.org/wiki/SimHash">http://en.wikipedia.org/wiki/SimHash</a></p>
+ *
+ * @author Adrien Favre-Bully
+ * @author Florian Froese
+ * @author Adrian Schmidmeister
+ * @see VectorSimilarity
+ * @see CosineDistance
+ * @since 1.1
+ */
+public class SimHash extends VectorSimilarity implements SimilarityMetric {
+
+  public static final int DEFAULT_BITS = 64;
+  public static final double DEFAULT_WEIGHT = 1.0;
+
+  private int bits;
+  private Map<Object, Double> weights;
+  private double defaultWeight;
+
+  // Internal fields
+  private double[] accumulator;
+  private long[] fingerprint1;
+  private long[] fingerprint2;
+
+  private SimHash(Builder builder) {
+    super(builder);
+    this.bits = builder.bits;
+    this.weights = builder.weights;
+    this.defaultWeight = builder.defaultWeight;
+
+    this.accumulator = new double[bits];
+    this.fingerprint1 = new long[bits / 64];
+    this.fingerprint2 = new long[bits / 64];
+  }
+
+  /**
+   * Estimated cosine similarity of s1 and s2. Negative estimates are reported as 0, since term
+   * frequency vectors never have a negative cosine similarity.
+   */
+  @Override
+  public double computeSimilarity(String s1, String s2) {
+    if (!Utilities.checkInputs(s1, s2)) {
+      return Utilities.SIMILARITY_EMPTY_EMPTY;
+    }
+
+    tokens1Source = null;
+    vec1 = computeTokenVector(s1, vec1);
+    vec2 = computeTokenVector(s2, vec2);
+    if (vec1.isEmpty() || vec2.isEmpty()) {
+      throw new IllegalStateException("One of the strings has zero tokens. ");
+    }
+
+    fingerprint(vec1, fingerprint1);
+    fingerprint(vec2, fingerprint2);
+
+    return estimateCosine(fingerprint1, fingerprint2);
+  }
+
+  /**
+   * @param s string
+   * @return fingerprint of s, an array of bits / 64 words
+   */
+  public long[] fingerprint(String s) {
+    return fingerprint(s, new long[bits / 64]);
+  }
+
+  /**
+   * @param s           string
+   * @param fingerprint array of bits / 64 words the fingerprint is written to
+   * @return fingerprint
+   */
+  public long[] fingerprint(String s, long[] fingerprint) {
+    if (s == null) {
+      throw new IllegalArgumentException("Input string cannot be null!");
+    }
+    if (fingerprint.length != bits / 64) {
+      throw new IllegalArgumentException("Fingerprint must consist of " + (bits / 64) + " words");
+    }
+
+    tokens1Source = null;
+    vec1 = computeTokenVector(s, vec1);
+
+    return fingerprint(vec1, fingerprint);
+  }
+
+  private long[] fingerprint(HashMap<Object, Integer> vector, long[] fingerprint) {
+    double[] accumulator = this.accumulator;
+    Arrays.fill(accumulator, 0.0);
+
+    for (Map.Entry<Object, Integer> entry : vector.entrySet()) {
+      double weight = entry.getValue() * getWeight(entry.getKey());
+
+      for (int w = 0; w < fingerprint.length; w++) {
+        long hash = HashUtils.hash64(entry.getKey(), HashUtils.DEFAULT_SEED + w);
+        int offset = w * 64;
+        for (int b = 0; b < 64; b++) {
+          if (((hash >>> b) & 1L) != 0) {
+            accumulator[offset + b] += weight;
+          } else {
+            accumulator[offset + b] -= weight;
+          }
+        }
+      }
+    }
+
+    for (int w = 0; w < fingerprint.length; w++) {
+      long word = 0L;
+      int offset = w * 64;
+      for (int b = 0; b < 64; b++) {
+        if (accumulator[offset + b] > 0) {
+          word |= 1L << b;
+        }
+      }
+      fingerprint[w] = word;
+    }
+
+    return fingerprint;
+  }
+
+  private double getWeight(Object token) {
+    if (weights == null) {
+      return defaultWeight;
+    }
+    Double weight = weights.get(token);
+    return weight == null ? defaultWeight : weight;
+  }
+
+  /**
+   * @param fp1 first fingerprint
+   * @param fp2 second fingerprint
+   * @return number of differing bits
+   */
+  public static int hammingDistance(long[] fp1, long[] fp2) {
+    if (fp1.length != fp2.length) {
+      throw new IllegalArgumentException("Fingerprints must be of equal length");
+    }
+
+    int h = 0;
+    for (int i = 0; i < fp1.length; i++) {
+      h += Long.bitCount(fp1[i] ^ fp2[i]);
+    }
+    return h;
+  }
+
+  /**
+   * @param fp1 first fingerprint
+   * @param fp2 second fingerprint
+   * @return estimated cosine similarity in the range [0, 1]
+   */
+  public static double estimateCosine(long[] fp1, long[] fp2) {
+    int h = hammingDistance(fp1, fp2);
+    double cos = Math.cos(Math.PI * h / (fp1.length * 64));
+    return Math.max(0.0, cos);
+  }
+
+  public int getBits() {
+    return bits;
+  }
+
+  // ===== Builder Pattern Methods =====
+
+  /**
+   * @return        {@link Builder}
+   * @see Builder
+   * @see SimHash
+   */
+  public static Builder getBuilder() {
+    return new Builder();
+  }
+
+  /**
+   * @return standard 64 bit SimHash with unweighted tokens.
+   * @see SimHash
+   */
+  public static SimHash getInstance() {
+    return new Builder().build();
+  }
+
+  // ===== Builder Class =====
+
+  /**
+   * SimHash Builder Restriction: takeKeyset must be false since SimHash is based on term frequency,
+   * bits must be either 64 or 128.
+   *
+   * <p>For configuration and usage refer to {@link VectorBuilder}</p>
+   *
+   * @param bits          fingerprint size (default: 64)
+   * @param weights       optional token weights, e.g. inverse document frequencies (default: none)
+   * @param defaultWeight weight of tokens not contained in weights (default: 1.0)
+   * @author Adrien Favre-Bully
+   * @author Florian Froese
+   * @author Adrian Schmidmeister
+   * @see VectorBuilder
+   * @since 1.1
+   */
+  public static class Builder extends VectorBuilder<Builder> {
+
+    private int bits = DEFAULT_BITS;
+    private Map<Object, Double> weights = null;
+    private double defaultWeight = DEFAULT_WEIGHT;
+
+    public Builder() {
+      this.takeKeyset = false;
+    }
+
+    public SimHash build() {
+      // check constraints
+      if (takeKeyset) {
+        throw new IllegalArgumentException("Keyset cannot be set true");
+      }
+      if (bits != 64 && bits != 128) {
+        throw new IllegalArgumentException("bits must be either 64 or 128!");
+      }
+      if (defaultWeight < 0) {
+        throw new IllegalArgumentException("defaultWeight must be greater or equal to 0!");
+      }
+
+      // build object
+      SimHash d = new SimHash(this);
+
+      return d;
+    }
+
+    /**
+     * Sets the fingerprint size. Has to be 64 or 128!
+     *
+     * @param b number of bits
+     * @return this builder object
+     */
+    public Builder bits(int b) {
+      bits = b;
+      return this;
+    }
+
+    /**
+     * Sets the token weights, e.g. inverse document frequencies. The frequency of a token is
+     * multiplied by its weight.
+     *
+     * @param w map from token to weight
+     * @return this builder object
+     */
+    public Builder weights(Map<Object, Double> w) {
+      weights = w;
+      return this;
+    }
+
+    /**
+     * Sets the weight of tokens that have no entry in the weights map. Has to be greater or equal
+     * to 0!
+     *
+     * @param w default weight
+     * @return this builder object
+     */
+    public Builder defaultWeight(double w) {
+      defaultWeight = w;
+      return this;
+    }
+  }
+}
@@ -0,0 +1,162 @@
+/*
+ * Copyright 2013 Adrien Favre-Bully, Florian Froese, Adrian Schmidmeister
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * 		http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+*/
+package ch.ethz.student.dejavu.vectors;
+
+import java.util.Arrays;
+
+import ch.ethz.student.dejavu.tokenizer.TokenHashHandler;
+
+/**
+ * TokenIdSet
+ *
+ * Set of long token ids in two containers: ids in [0, 256), e.g. Latin-1 characters, are stored in
+ * a dense bit set of four words, all other ids, e.g. hashed ngrams, in a sorted array. The size of
+ * an intersection is the population count of the and-ed bit sets plus a merge of the sorted arrays.
+ *
+ * <p>The set receives the tokens of
+ * {@link ch.ethz.student.dejavu.tokenizer.Tokenizer#tokenizeHashed(CharSequence, TokenHashHandler)}
+ * directly and can be reused for many strings, see {@link #clear()}.</p>
+ *
+ * @author Adrien Favre-Bully
+ * @author Florian Froese
+ * @author Adrian Schmidmeister
+ * @since 1.1
+ */
+public class TokenIdSet implements TokenHashHandler {
+
+  public static final int DENSE_SIZE = 256;
+
+  private final long[] dense = new long[DENSE_SIZE / 64];
+
+  private long[] sparse = new long[16];
+  private int sparseSize;
+  // sparse[0..sparseSize) is sorted and free of duplicates
+  private boolean compact = true;
+
+  public TokenIdSet() {
+  }
+
+  public TokenIdSet(CharSequence s) {
+    addChars(s);
+  }
+
+  public void clear() {
+    Arrays.fill(dense, 0);
+    sparseSize = 0;
+    compact = true;
+  }
+
+  public void add(long id) {
+    if (id >= 0 && id < DENSE_SIZE) {
+      dense[(int) id >>> 6] |= 1L << id;
+    } else {
+      if (sparseSize == sparse.length) {
+        sparse = Arrays.copyOf(sparse, sparseSize * 2);
+      }
+      sparse[sparseSize++] = id;
+      compact = false;
+    }
+  }
+
+  /**
+   * Adds every character of s, the id of a character is its value.
+   *
+   * @param s character sequence
+   */
+  public void addChars(CharSequence s) {
+    for (int i = 0; i < s.length(); i++) {
+      add(s.charAt(i));
+    }
+  }
+
+  @Override
+  public void token(long hash) {
+    add(hash);
+  }
+
+  public boolean contains(long id) {
+    if (id >= 0 && id < DENSE_SIZE) {
+      return (dense[(int) id >>> 6] & (1L << id)) != 0;
+    }
+    compact();
+    return Arrays.binarySearch(sparse, 0, sparseSize, id) >= 0;
+  }
+
+  /**
+   * @return number of distinct ids
+   */
+  public int size() {
+    compact();
+    int size = sparseSize;
+    for (int i = 0; i < dense.length; i++) {
+      size += Long.bitCount(dense[i]);
+    }
+    return size;
+  }
+
+  public boolean isEmpty() {
+    return size() == 0;
+  }
+
+  /**
+   * @param other set
+   * @return number of ids contained in both sets
+   */
+  public int intersect(TokenIdSet other) {
+    int intersect = 0;
+    for (int i = 0; i < dense.length; i++) {
+      intersect += Long.bitCount(dense[i] & other.dense[i]);
+    }
+
+    compact();
+    other.compact();
+    long[] a = sparse;
+    long[] b = other.sparse;
+    int i = 0;
+    int j = 0;
+    while (i < sparseSize && j < other.sparseSize) {
+      if (a[i] < b[j]) {
+        i++;
+      } else if (a[i] > b[j]) {
+        j++;
+      } else {
+        intersect++;
+        i++;
+        j++;
+      }
+    }
+    return intersect;
+  }
+
+  /**
+   * Sorts the sparse ids and removes duplicates.
+   */
+  private void compact() {
+    if (compact) {
+      return;
+    }
+
+    Arrays.sort(sparse, 0, sparseSize);
+    int size = 0;
+    for (int i = 0; i < sparseSize; i++) {
+      if (size == 0 || sparse[i] != sparse[size - 1]) {
+        sparse[size++] = sparse[i];
+      }
+    }
+    sparseSize = size;
+    compact = true;
+  }
+
+}
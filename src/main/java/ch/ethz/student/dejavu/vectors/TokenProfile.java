@@ -0,0 +1,102 @@
+/*
+ * Copyright 2013 Adrien Favre-Bully, Florian Froese, Adrian Schmidmeister
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * 		http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+*/
+package ch.ethz.student.dejavu.vectors;
+
+import java.util.Set;
+
+import ch.ethz.student.dejavu.utilities.HashUtils;
+
+/**
+ * TokenProfile
+ *
+ * Token set of a string together with a 512 bit signature. Every token sets the bit given by its
+ * hash, thus the signature is a Bloom filter with a single hash function. Profiles are created by
+ * {@link VectorSimilarity#getProfile(String)} once per string and can be compared many times.
+ *
+ * <p>A bit set in one signature but not in the other marks at least one token that is missing in
+ * the other set. This gives the upper bound |A &#8745; B| &lt;= min(|A| - popcount(a &amp; ~b), |B|
+ * - popcount(b &amp; ~a)), see {@link #maxIntersect(TokenProfile)}. Note that popcount(a &amp; b)
+ * itself is no bound since common tokens can share a bit.</p>
+ *
+ * @author Adrien Favre-Bully
+ * @author Florian Froese
+ * @author Adrian Schmidmeister
+ * @since 1.1
+ */
+public class TokenProfile {
+
+  public static final int SIGNATURE_BITS = 512;
+
+  private final Set<Object> tokens;
+  private final long[] signature = new long[SIGNATURE_BITS / 64];
+
+  /**
+   * @param tokens token set, must not be modified afterwards
+   */
+  public TokenProfile(Set<Object> tokens) {
+    if (tokens == null) {
+      throw new IllegalArgumentException("Tokens cannot be null!");
+    }
+    this.tokens = tokens;
+
+    for (Object token : tokens) {
+      int bit = (int) HashUtils.hash64(token) & (SIGNATURE_BITS - 1);
+      signature[bit >>> 6] |= 1L << bit;
+    }
+  }
+
+  public Set<Object> getTokens() {
+    return tokens;
+  }
+
+  public long[] getSignature() {
+    return signature;
+  }
+
+  public int size() {
+    return tokens.size();
+  }
+
+  public boolean isEmpty() {
+    return tokens.isEmpty();
+  }
+
+  /**
+   * @param other profile
+   * @return exact number of common tokens
+   */
+  public int intersect(TokenProfile other) {
+    return (int) VectorUtils.intersect(tokens, other.tokens);
+  }
+
+  /**
+   * Upper bound of the number of common tokens computed from the signatures only.
+   *
+   * @param other profile
+   * @return upper bound of {@link #intersect(TokenProfile)}
+   */
+  public int maxIntersect(TokenProfile other) {
+    long[] a = signature;
+    long[] b = other.signature;
+    int missing1 = 0;
+    int missing2 = 0;
+    for (int i = 0; i < a.length; i++) {
+      missing1 += Long.bitCount(a[i] & ~b[i]);
+      missing2 += Long.bitCount(b[i] & ~a[i]);
+    }
+    return Math.min(size() - missing1, other.size() - missing2);
+  }
+
+}
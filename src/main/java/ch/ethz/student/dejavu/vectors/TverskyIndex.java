@@ -33,7 +33,7 @@ import ch.ethz.student.dejavu.utilities.Utilities;
  * @see VectorSimilarity
  * @since 1.0
  */
-public class TverskyIndex extends VectorSimilarity implements SimilarityMetric {
+public class TverskyIndex extends SetSimilarity implements SimilarityMetric {
   // alpha = beta = 1 -> Tanimoto coefficient
   // alpha = beta = 0.5 ->  Dice's coefficient
 
@@ -61,25 +61,34 @@ public class TverskyIndex extends VectorSimilarity implements SimilarityMetric {
       return 1.0;
     }
 
-    double i = 0.0;
-    double compv1v2 = 0.0;
-    double compv2v1 = 0.0;
-
-    if (takeKeyset) {
-      i = VectorUtils.intersect(keys1, keys2);
-      compv1v2 = VectorUtils.complement(keys1, keys2);
-      compv2v1 = VectorUtils.complement(keys2, keys1);
-    } else {
-      i = VectorUtils.intersect(vec1, vec2);
-      compv1v2 = VectorUtils.complement(vec1, vec2);
-      compv2v1 = VectorUtils.complement(vec2, vec1);
-    }
+    return computeSimilarity(computeSetStatistics());
+  }
+
+  @Override
+  protected double computeSimilarity(SetStatistics statistics) {
+    double i = statistics.getIntersection();
+    double compv1v2 = statistics.getComplement1();
+    double compv2v1 = statistics.getComplement2();
 
     double tverskyCoefficient = i / (i + alpha * compv1v2 + beta * compv2v1);
 
     return tverskyCoefficient;
   }
 
+  /**
+   * @return weight of the tokens only contained in the first string
+   */
+  public double getAlpha() {
+    return alpha;
+  }
+
+  /**
+   * @return weight of the tokens only contained in the second string
+   */
+  public double getBeta() {
+    return beta;
+  }
+
   // ===== Builder Pattern Methods =====
 
   /**
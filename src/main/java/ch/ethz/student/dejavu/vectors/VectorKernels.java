@@ -0,0 +1,224 @@
+/*
+ * Copyright 2013 Adrien Favre-Bully, Florian Froese, Adrian Schmidmeister
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * 		http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+*/
+package ch.ethz.student.dejavu.vectors;
+
+/**
+ * VectorKernels
+ *
+ * Kernels over dense float vectors, see {@link VectorSimilarity#getHashedVector(String, float[])}.
+ * The loops run over contiguous arrays with four independent accumulators, thus the JIT can unroll
+ * and vectorize them.
+ *
+ * <p>The batch kernels score a query against a block of count vectors stored row by row in one
+ * array, i.e. vector r occupies block[r * dim .. (r + 1) * dim) where dim = query.length.</p>
+ *
+ * @author Adrien Favre-Bully
+ * @author Florian Froese
+ * @author Adrian Schmidmeister
+ * @since 1.1
+ */
+public class VectorKernels {
+
+  public static double dot(float[] a, float[] b) {
+    checkLength(a, b);
+    return dot(a, b, 0);
+  }
+
+  public static double squaredNorm(float[] a) {
+    return dot(a, a, 0);
+  }
+
+  public static double cosine(float[] a, float[] b) {
+    checkLength(a, b);
+    return cosine(a, squaredNorm(a), b, 0);
+  }
+
+  /**
+   * @return sum of the absolute differences of the entries
+   */
+  public static double l1Distance(float[] a, float[] b) {
+    checkLength(a, b);
+    return l1Distance(a, b, 0);
+  }
+
+  /**
+   * @return sum of the squared differences of the entries
+   */
+  public static double squaredL2Distance(float[] a, float[] b) {
+    checkLength(a, b);
+    return squaredL2Distance(a, b, 0);
+  }
+
+  /**
+   * @param query query vector of dim entries
+   * @param block count vectors of dim entries, stored row by row
+   * @param count number of vectors in block
+   * @param out   receives the dot products, at least count entries
+   */
+  public static void dot(float[] query, float[] block, int count, double[] out) {
+    checkBlock(query, block, count, out);
+    for (int r = 0; r < count; r++) {
+      out[r] = dot(query, block, r * query.length);
+    }
+  }
+
+  /**
+   * @param query query vector of dim entries
+   * @param block count vectors of dim entries, stored row by row
+   * @param count number of vectors in block
+   * @param out   receives the cosine similarities, at least count entries
+   */
+  public static void cosine(float[] query, float[] block, int count, double[] out) {
+    checkBlock(query, block, count, out);
+    double queryNorm = squaredNorm(query);
+    for (int r = 0; r < count; r++) {
+      out[r] = cosine(query, queryNorm, block, r * query.length);
+    }
+  }
+
+  /**
+   * @param query query vector of dim entries
+   * @param block count vectors of dim entries, stored row by row
+   * @param count number of vectors in block
+   * @param out   receives the l1 distances, at least count entries
+   */
+  public static void l1Distance(float[] query, float[] block, int count, double[] out) {
+    checkBlock(query, block, count, out);
+    for (int r = 0; r < count; r++) {
+      out[r] = l1Distance(query, block, r * query.length);
+    }
+  }
+
+  /**
+   * @param query query vector of dim entries
+   * @param block count vectors of dim entries, stored row by row
+   * @param count number of vectors in block
+   * @param out   receives the squared l2 distances, at least count entries
+   */
+  public static void squaredL2Distance(float[] query, float[] block, int count, double[] out) {
+    checkBlock(query, block, count, out);
+    for (int r = 0; r < count; r++) {
+      out[r] = squaredL2Distance(query, block, r * query.length);
+    }
+  }
+
+  /*
+   * Kernels of a vector a against b[offset .. offset + a.length)
+   */
+
+  private static double cosine(float[] a, double aNorm, float[] b, int offset) {
+    double dot = 0;
+    double bNorm = 0;
+    float d0 = 0, d1 = 0, d2 = 0, d3 = 0;
+    float n0 = 0, n1 = 0, n2 = 0, n3 = 0;
+    int n = a.length;
+    int i = 0;
+    for (; i + 3 < n; i += 4) {
+      float b0 = b[offset + i];
+      float b1 = b[offset + i + 1];
+      float b2 = b[offset + i + 2];
+      float b3 = b[offset + i + 3];
+      d0 += a[i] * b0;
+      d1 += a[i + 1] * b1;
+      d2 += a[i + 2] * b2;
+      d3 += a[i + 3] * b3;
+      n0 += b0 * b0;
+      n1 += b1 * b1;
+      n2 += b2 * b2;
+      n3 += b3 * b3;
+    }
+    for (; i < n; i++) {
+      float bi = b[offset + i];
+      dot += a[i] * bi;
+      bNorm += bi * bi;
+    }
+    dot += (double) d0 + d1 + d2 + d3;
+    bNorm += (double) n0 + n1 + n2 + n3;
+
+    return dot / Math.sqrt(aNorm * bNorm);
+  }
+
+  private static double dot(float[] a, float[] b, int offset) {
+    float s0 = 0, s1 = 0, s2 = 0, s3 = 0;
+    int n = a.length;
+    int i = 0;
+    for (; i + 3 < n; i += 4) {
+      s0 += a[i] * b[offset + i];
+      s1 += a[i + 1] * b[offset + i + 1];
+      s2 += a[i + 2] * b[offset + i + 2];
+      s3 += a[i + 3] * b[offset + i + 3];
+    }
+    double res = (double) s0 + s1 + s2 + s3;
+    for (; i < n; i++) {
+      res += a[i] * b[offset + i];
+    }
+    return res;
+  }
+
+  private static double l1Distance(float[] a, float[] b, int offset) {
+    float s0 = 0, s1 = 0, s2 = 0, s3 = 0;
+    int n = a.length;
+    int i = 0;
+    for (; i + 3 < n; i += 4) {
+      s0 += Math.abs(a[i] - b[offset + i]);
+      s1 += Math.abs(a[i + 1] - b[offset + i + 1]);
+      s2 += Math.abs(a[i + 2] - b[offset + i + 2]);
+      s3 += Math.abs(a[i + 3] - b[offset + i + 3]);
+    }
+    double res = (double) s0 + s1 + s2 + s3;
+    for (; i < n; i++) {
+      res += Math.abs(a[i] - b[offset + i]);
+    }
+    return res;
+  }
+
+  private static double squaredL2Distance(float[] a, float[] b, int offset) {
+    float s0 = 0, s1 = 0, s2 = 0, s3 = 0;
+    int n = a.length;
+    int i = 0;
+    for (; i + 3 < n; i += 4) {
+      float d0 = a[i] - b[offset + i];
+      float d1 = a[i + 1] - b[offset + i + 1];
+      float d2 = a[i + 2] - b[offset + i + 2];
+      float d3 = a[i + 3] - b[offset + i + 3];
+      s0 += d0 * d0;
+      s1 += d1 * d1;
+      s2 += d2 * d2;
+      s3 += d3 * d3;
+    }
+    double res = (double) s0 + s1 + s2 + s3;
+    for (; i < n; i++) {
+      float d = a[i] - b[offset + i];
+      res += d * d;
+    }
+    return res;
+  }
+
+  private static void checkLength(float[] a, float[] b) {
+    if (a.length != b.length) {
+      throw new IllegalArgumentException("Vectors must have the same length!");
+    }
+  }
+
+  private static void checkBlock(float[] query, float[] block, int count, double[] out) {
+    if (count < 0 || (long) count * query.length > block.length) {
+      throw new IllegalArgumentException("Block must contain count vectors of the query length!");
+    }
+    if (out.length < count) {
+      throw new IllegalArgumentException("Output must have at least count entries!");
+    }
+  }
+
+}
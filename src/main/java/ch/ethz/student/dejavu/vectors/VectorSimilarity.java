@@ -14,6 +14,7 @@
 */
 package ch.ethz.student.dejavu.vectors;
 
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.StringTokenizer;
@@ -21,8 +22,11 @@ import java.util.StringTokenizer;
 import ch.ethz.student.dejavu.tokenizer.CharTokenizer;
 import ch.ethz.student.dejavu.tokenizer.NGramTokenizer;
 import ch.ethz.student.dejavu.tokenizer.SeparatorTokenizer;
+import ch.ethz.student.dejavu.tokenizer.TokenHashHandler;
 import ch.ethz.student.dejavu.tokenizer.Tokenizer;
 import ch.ethz.student.dejavu.tokenizer.WordTokeninzer;
+import ch.ethz.student.dejavu.utilities.HashUtils;
+import ch.ethz.student.dejavu.utilities.LongIntHashMap;
 
 /**
  * @param CHAR_BASED      String is separated characterwise
@@ -39,6 +43,11 @@ public abstract class VectorSimilarity {
   public static final Tokenizer DEFAULT_TOKENIZER = null;
   public static final boolean DEFAULT_TAKE_TOKENIZER = true;
   public static final boolean DEFAULT_TAKE_KEYSET = true;
+  public static final boolean DEFAULT_PADDING = false;
+  public static final int DEFAULT_DIMENSIONS = 0;
+
+  // tolerance of a bound against rounding errors of the similarity formula
+  protected static final double BOUND_EPSILON = 1e-9;
 
   protected VectorSimilarity(VectorBuilder<?> builder) {
     this.granularity = builder.granularity;
@@ -50,23 +59,36 @@ public abstract class VectorSimilarity {
         this.tokenizer = new WordTokeninzer();
       } else if (granularity.equals(Granularity.SEPARATOR_BASED)) {
         this.tokenizer = new SeparatorTokenizer(builder.delimiter);
-      } else if (granularity.equals(Granularity.NGRAM_BASED)) {
-        this.tokenizer = new NGramTokenizer(builder.ngram);
+      } else if (granularity.equals(Granularity.NGRAM_BASED)
+                 || granularity.equals(Granularity.NGRAM_HASHED)) {
+        this.tokenizer = new NGramTokenizer(builder.ngram, builder.padding);
       }
+    } else {
+      this.tokenizer = builder.tokenizer;
     }
 
     this.delimiter = builder.delimiter;
     this.ngram = builder.ngram;
+    this.padding = builder.padding;
     this.takeTokenizer = builder.takeTokenizer;
     this.takeKeyset = builder.takeKeyset;
+
+    if (builder.dimensions < 0) {
+      throw new IllegalArgumentException("dimensions must be greater or equal to 0!");
+    }
+    this.dimensions = builder.dimensions;
+    this.charHistogram = granularity.equals(Granularity.CHAR_BASED) && builder.tokenizer == null;
+    this.tokenIdSets = takeKeyset && (charHistogram || granularity.equals(Granularity.NGRAM_HASHED));
   }
 
   protected Granularity granularity;
   protected String delimiter;
   protected Tokenizer tokenizer;
   protected int ngram;
+  protected boolean padding = false;
   protected boolean takeTokenizer = false;
   protected boolean takeKeyset = false;
+  protected int dimensions = 0;
 
   // Internal fields
   protected HashMap<Object, Integer> vec1 = new HashMap<>();
@@ -75,24 +97,115 @@ public abstract class VectorSimilarity {
   protected HashSet<Object> keys1;
   protected HashSet<Object> keys2;
 
+  protected SetStatistics statistics = new SetStatistics();
+
+  // Internal fields for dimensions > 0
+  protected float[] dense1;
+  protected float[] dense2;
+
+  // Internal fields for Granularity.CHAR_BASED without a custom tokenizer
+  protected boolean charHistogram = false;
+  protected CharHistogram hist1 = new CharHistogram();
+  protected CharHistogram hist2 = new CharHistogram();
+
+  // Internal fields for takeKeyset with CHAR_BASED (see charHistogram) or NGRAM_HASHED
+  protected boolean tokenIdSets = false;
+  protected TokenIdSet idSet1 = new TokenIdSet();
+  protected TokenIdSet idSet2 = new TokenIdSet();
+
+  // Internal fields for Granularity.NGRAM_HASHED
+  protected LongIntHashMap hashedVec1 = new LongIntHashMap();
+  protected LongIntHashMap hashedVec2 = new LongIntHashMap();
+
+  // strings whose tokens are in the first slot, null if unknown
+  protected String tokens1Source;
+  private String dense1Source;
+  private int dense1Count;
+
   public void computeTokens(String s1, String s2) {
+    // the tokens of the first string are kept while it stays the same, e.g. a batch query
+    boolean first = s1 != tokens1Source;
+    if (first) {
+      tokens1Source = null;
+    }
+
+    if (tokenIdSets) {
+      if (first) {
+        idSet1.clear();
+      }
+      idSet2.clear();
+      if (charHistogram) {
+        if (first) {
+          idSet1.addChars(s1);
+        }
+        idSet2.addChars(s2);
+      } else {
+        if (first) {
+          tokenizer.tokenizeHashed(s1, idSet1);
+        }
+        tokenizer.tokenizeHashed(s2, idSet2);
+      }
+      tokens1Source = s1;
+
+      if (idSet1.isEmpty() || idSet2.isEmpty()) {
+        throw new IllegalStateException("One of the strings has zero tokens. ");
+      }
+      return;
+    }
+
+    if (granularity.equals(Granularity.NGRAM_HASHED)) {
+      if (first) {
+        hashedVec1 = getHashedTokenVector(s1, hashedVec1);
+      }
+      hashedVec2 = getHashedTokenVector(s2, hashedVec2);
+      tokens1Source = s1;
+
+      if (hashedVec1.isEmpty() || hashedVec2.isEmpty()) {
+        throw new IllegalStateException("One of the strings has zero tokens. ");
+      }
+      return;
+    }
+
+    if (charHistogram) {
+      if (first) {
+        hist1.set(s1);
+      }
+      hist2.set(s2);
+      tokens1Source = s1;
+
+      if (hist1.isEmpty() || hist2.isEmpty()) {
+        throw new IllegalStateException("One of the strings has zero tokens. ");
+      }
+      return;
+    }
+
     if (takeTokenizer) {
       if (takeKeyset) {
-        keys1 = getKeySetTokenizer(s1, keys1);
+        if (first) {
+          keys1 = getKeySetTokenizer(s1, keys1);
+        }
         keys2 = getKeySetTokenizer(s2, keys2);
       } else {
-        vec1 = getTokenVectorTokenizer(s1, vec1);
+        if (first) {
+          vec1 = getTokenVectorTokenizer(s1, vec1);
+        }
         vec2 = getTokenVectorTokenizer(s2, vec2);
       }
     } else {
       if (takeKeyset) {
-        keys1 = getKeySet(s1, keys1);
+        if (first) {
+          keys1 = getKeySet(s1, keys1);
+        }
         keys2 = getKeySet(s2, keys2);
       } else {
-        vec1 = getTokenVector(s1, vec1);
+        if (first) {
+          vec1 = getTokenVector(s1, vec1);
+        }
         vec2 = getTokenVector(s2, vec2);
       }
     }
+    tokens1Source = s1;
+
     if (takeKeyset) {
       if (keys1.isEmpty() || keys2.isEmpty()) {
         throw new IllegalStateException("One of the strings has zero tokens. ");
@@ -104,6 +217,235 @@ public abstract class VectorSimilarity {
     }
   }
 
+  /**
+   * Computes the sizes of the token sets of the strings passed to the last call of
+   * {@link #computeTokens(String, String)} and the size of their intersection in a single walk over
+   * the smaller set. Vectors are reduced to the set of their keys.
+   *
+   * @return statistics of the token sets, the object is reused by the next call
+   */
+  protected SetStatistics computeSetStatistics() {
+    int size1;
+    int size2;
+    int intersection;
+
+    if (tokenIdSets) {
+      size1 = idSet1.size();
+      size2 = idSet2.size();
+      intersection = idSet1.intersect(idSet2);
+    } else if (granularity.equals(Granularity.NGRAM_HASHED)) {
+      size1 = hashedVec1.size();
+      size2 = hashedVec2.size();
+      intersection = (int) VectorUtils.intersect(hashedVec1, hashedVec2);
+    } else if (charHistogram) {
+      size1 = hist1.size();
+      size2 = hist2.size();
+      intersection = hist1.intersect(hist2);
+    } else if (takeKeyset) {
+      size1 = keys1.size();
+      size2 = keys2.size();
+      intersection = (int) VectorUtils.intersect(keys1, keys2);
+    } else {
+      size1 = vec1.size();
+      size2 = vec2.size();
+      intersection = (int) VectorUtils.intersect(vec1, vec2);
+    }
+
+    return statistics.set(size1, size2, intersection);
+  }
+
+  /**
+   * Bounds the statistics of {@link #computeSetStatistics()} by the sizes of the token sets alone,
+   * the intersection is at most the smaller set.
+   *
+   * @return statistics with an upper bound of the intersection, the object is reused by the next
+   * call
+   */
+  protected SetStatistics estimateSetStatistics() {
+    int size1;
+    int size2;
+
+    if (tokenIdSets) {
+      size1 = idSet1.size();
+      size2 = idSet2.size();
+    } else if (granularity.equals(Granularity.NGRAM_HASHED)) {
+      size1 = hashedVec1.size();
+      size2 = hashedVec2.size();
+    } else if (charHistogram) {
+      size1 = hist1.size();
+      size2 = hist2.size();
+    } else if (takeKeyset) {
+      size1 = keys1.size();
+      size2 = keys2.size();
+    } else {
+      size1 = vec1.size();
+      size2 = vec2.size();
+    }
+
+    return statistics.set(size1, size2, Math.min(size1, size2));
+  }
+
+  /**
+   * Projects the token counts of s into a dense vector of out.length dimensions (hashing trick).
+   * Every token adds 1 to the dimension given by its hash, thus tokens that share a dimension are
+   * merged and metrics over the dense vectors approximate the metrics over the token vectors.
+   *
+   * @param s   string
+   * @param out vector the counts are written to, its length is the number of dimensions
+   * @return out
+   */
+  public float[] getHashedVector(String s, float[] out) {
+    if (s == null) {
+      throw new IllegalArgumentException("Input string cannot be null!");
+    }
+    if (out.length == 0) {
+      throw new IllegalArgumentException("Output vector cannot be empty!");
+    }
+
+    hashTokens(s, out);
+    return out;
+  }
+
+  /**
+   * @param s   string
+   * @param out vector the counts are written to
+   * @return number of tokens of s
+   */
+  protected int hashTokens(String s, final float[] out) {
+    Arrays.fill(out, 0f);
+
+    final int[] count = new int[1];
+    tokenizer.tokenizeHashed(s, new TokenHashHandler() {
+      @Override
+      public void token(long hash) {
+        out[(int) ((HashUtils.mix64(hash) >>> 1) % out.length)]++;
+        count[0]++;
+      }
+    });
+    return count[0];
+  }
+
+  /**
+   * Fills dense1 and dense2 with the hashed vectors of s1 and s2 of dimensions entries.
+   */
+  protected void computeHashedVectors(String s1, String s2) {
+    if (dense1 == null) {
+      dense1 = new float[dimensions];
+      dense2 = new float[dimensions];
+    }
+
+    if (s1 != dense1Source) {
+      dense1Source = null;
+      dense1Count = hashTokens(s1, dense1);
+      dense1Source = s1;
+    }
+    if (dense1Count == 0 || hashTokens(s2, dense2) == 0) {
+      throw new IllegalStateException("One of the strings has zero tokens. ");
+    }
+  }
+
+  /**
+   * @param s string
+   * @return profile of the token set of s, see {@link TokenProfile}
+   */
+  public TokenProfile getProfile(String s) {
+    return new TokenProfile(getTokenSet(s));
+  }
+
+  /**
+   * @param p1 profile of the first string
+   * @param p2 profile of the second string
+   * @return exact statistics of the token sets
+   */
+  protected SetStatistics computeSetStatistics(TokenProfile p1, TokenProfile p2) {
+    checkProfiles(p1, p2);
+    return new SetStatistics(p1.size(), p2.size(), p1.intersect(p2));
+  }
+
+  /**
+   * @param p1 profile of the first string
+   * @param p2 profile of the second string
+   * @return statistics with an upper bound of the intersection computed from the signatures
+   */
+  protected SetStatistics estimateSetStatistics(TokenProfile p1, TokenProfile p2) {
+    checkProfiles(p1, p2);
+    return new SetStatistics(p1.size(), p2.size(), p1.maxIntersect(p2));
+  }
+
+  private static void checkProfiles(TokenProfile p1, TokenProfile p2) {
+    if (p1 == null || p2 == null) {
+      throw new IllegalArgumentException("Input profiles cannot be null!");
+    }
+    if (p1.isEmpty() || p2.isEmpty()) {
+      throw new IllegalStateException("One of the strings has zero tokens. ");
+    }
+  }
+
+  /**
+   * Computes the token vector of a single string with the configured tokenization.
+   *
+   * @param s   string to tokenize
+   * @param vec vector to reuse, may be null
+   * @return token frequency vector of s
+   */
+  protected HashMap<Object, Integer> computeTokenVector(String s, HashMap<Object, Integer> vec) {
+    if (granularity.equals(Granularity.NGRAM_HASHED)) {
+      return toTokenVector(getHashedTokenVector(s, null), vec);
+    } else if (takeTokenizer) {
+      return getTokenVectorTokenizer(s, vec);
+    } else {
+      return getTokenVector(s, vec);
+    }
+  }
+
+  /**
+   * Computes the token frequencies of a single string with the configured tokenization.
+   *
+   * @param s string to tokenize
+   * @return new map from the tokens of s to their frequency
+   */
+  public HashMap<Object, Integer> getTokenCounts(String s) {
+    if (s == null) {
+      throw new IllegalArgumentException("Input string cannot be null!");
+    }
+    return computeTokenVector(s, null);
+  }
+
+  /**
+   * Computes the set of distinct tokens of a single string with the configured tokenization.
+   *
+   * @param s string to tokenize
+   * @return new set of the tokens of s
+   */
+  public HashSet<Object> getTokenSet(String s) {
+    if (s == null) {
+      throw new IllegalArgumentException("Input string cannot be null!");
+    }
+
+    if (granularity.equals(Granularity.NGRAM_HASHED)) {
+      return new HashSet<Object>(toTokenVector(getHashedTokenVector(s, null), null).keySet());
+    } else if (takeTokenizer) {
+      return getKeySetTokenizer(s, null);
+    } else {
+      return getKeySet(s, null);
+    }
+  }
+
+  /**
+   * @return true if only the distinct tokens are stored, see
+   * {@link VectorBuilder#takeKeyset(boolean)}
+   */
+  public boolean isTakeKeyset() {
+    return takeKeyset;
+  }
+
+  /**
+   * @return number of dimensions of the hashed dense vectors, 0 for exact token vectors
+   */
+  public int getDimensions() {
+    return dimensions;
+  }
+
   // ===== Builder Pattern Methods =====
 
   public static VectorBuilder<?> getBuilder() {
@@ -131,6 +473,8 @@ public abstract class VectorSimilarity {
 
     if (this.granularity.equals(Granularity.CHAR_BASED)) {
       vec = getCharacterTokenVector(s, vec);
+    } else if (this.granularity.equals(Granularity.NGRAM_BASED)) {
+      vec = getTokenVectorTokenizer(s, vec);
     } else {
       StringTokenizer tokenizer = null;
 
@@ -182,6 +526,8 @@ public abstract class VectorSimilarity {
         keys.add(token);
       }
 
+    } else if (this.granularity.equals(Granularity.NGRAM_BASED)) {
+      keys = getKeySetTokenizer(s, keys);
     } else {
       StringTokenizer tokenizer = null;
 
@@ -218,6 +564,45 @@ public abstract class VectorSimilarity {
     return keys;
   }
 
+  protected LongIntHashMap getHashedTokenVector(String s, LongIntHashMap vec) {
+    if (vec == null) {
+      vec = new LongIntHashMap();
+    } else {
+      vec.clear();
+    }
+
+    if (tokenizer instanceof NGramTokenizer) {
+      ((NGramTokenizer) tokenizer).hashNGrams(s, vec);
+    } else {
+      final LongIntHashMap counts = vec;
+      tokenizer.tokenizeHashed(s, new TokenHashHandler() {
+        @Override
+        public void token(long hash) {
+          counts.increment(hash);
+        }
+      });
+    }
+
+    return vec;
+  }
+
+  private static HashMap<Object, Integer> toTokenVector(LongIntHashMap hashed,
+                                                       HashMap<Object, Integer> vec) {
+    if (vec == null) {
+      vec = new HashMap<Object, Integer>();
+    } else {
+      vec.clear();
+    }
+
+    for (int slot = 0; slot < hashed.capacity(); slot++) {
+      if (hashed.valueAt(slot) != 0) {
+        vec.put(hashed.keyAt(slot), hashed.valueAt(slot));
+      }
+    }
+
+    return vec;
+  }
+
   private HashMap<Object, Integer> getCharacterTokenVector(String s, HashMap<Object, Integer> vec) {
 
     for (int i = 0; i < s.length(); i++) {
@@ -289,6 +674,9 @@ public abstract class VectorSimilarity {
    * @param granularity   determines the granularity of the tokenizer (default: CHAR_BASED)
    * @param delimiter     delimiter to be used if granularity is SEPARATOR_BASED (default: ",")
    * @param ngram         number of characters that should form an ngram (default: 3)
+   * @param padding       pad the string before it is split into ngrams (default: false)
+   * @param dimensions    number of dimensions of hashed dense vectors, 0 for exact token vectors
+   *                      (default: 0)
    * @param tokenizer     tokenizer to be used (default: CharTokenizer)
    * @param takeTokenizer internal tokenizing of string: If true a Subclass of Tokenizer is used,
    *                      otherwise an internal faster implementation is used
@@ -305,6 +693,8 @@ public abstract class VectorSimilarity {
     protected Tokenizer tokenizer = DEFAULT_TOKENIZER;
     protected boolean takeTokenizer = DEFAULT_TAKE_TOKENIZER;
     protected boolean takeKeyset = DEFAULT_TAKE_KEYSET;
+    protected boolean padding = DEFAULT_PADDING;
+    protected int dimensions = DEFAULT_DIMENSIONS;
 
     /**
      * Sets granularity of the builder. Possible values: {@link Granularity}
@@ -341,9 +731,39 @@ public abstract class VectorSimilarity {
       return (E) this;
     }
 
+    /**
+     * If this option is set to true the string is padded with nGram - 1 special characters at the
+     * start and the end before it is split into ngrams. Thus if nGram=2 the word "hi" is split
+     * into ["#h","hi","i$"] where # and $ stand for {@link NGramTokenizer#START_PADDING} and
+     * {@link NGramTokenizer#END_PADDING}.
+     *
+     * @param b boolean value true/false
+     * @return this builder object
+     */
+    public E padding(boolean b) {
+      padding = b;
+      return (E) this;
+    }
+
+    /**
+     * If dimensions is greater than 0, {@link CosineDistance}, {@link L1Distance} and
+     * {@link L2Distance} compare dense float vectors of this size into which the token counts are
+     * hashed, see {@link VectorSimilarity#getHashedVector(String, float[])}. This approximates the
+     * metric but costs the same for every pair of strings. 0 compares the exact token vectors.
+     *
+     * @param d number of dimensions, e.g. 256 to 1024
+     * @return this builder object
+     */
+    public E dimensions(int d) {
+      dimensions = d;
+      return (E) this;
+    }
+
     /**
      * Optional tokenizer that can be used. Here a tokenizer can be specified that must inherit the
-     * {@link Tokenizer} class.
+     * {@link Tokenizer} class. It replaces the tokenizer of the granularity, with
+     * {@link Granularity#NGRAM_HASHED} its tokens are counted by
+     * {@link Tokenizer#tokenizeHashed(CharSequence, TokenHashHandler)}.
      *
      * @param t tokenizer to be used
      * @return this builder object
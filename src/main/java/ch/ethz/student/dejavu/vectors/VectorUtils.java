@@ -19,6 +19,8 @@ import java.util.HashSet;
 import java.util.Iterator;
 import java.util.Set;
 
+import ch.ethz.student.dejavu.utilities.LongIntHashMap;
+
 /**
  * VectorUtils
  *
@@ -30,41 +32,44 @@ import java.util.Set;
 public class VectorUtils {
 
   public static double union(HashMap<Object, Integer> vector1, HashMap<Object, Integer> vector2) {
-    HashSet<Object> union = new HashSet<Object>(vector1.keySet());
-    union.addAll(vector2.keySet());
-    return union.size();
+    return union(vector1.keySet(), vector2.keySet());
   }
 
   public static double union(Set<Object> keys1, Set<Object> keys2) {
-    Set<Object> union = new HashSet<Object>(keys1);
-    union.addAll(keys2);
-    return union.size();
+    return keys1.size() + keys2.size() - intersect(keys1, keys2);
   }
 
   public static double intersect(HashMap<Object, Integer> vector1,
                                  HashMap<Object, Integer> vector2) {
-    HashSet<Object> intersect = new HashSet<Object>(vector1.keySet());
-    intersect.retainAll(vector2.keySet());
-    return intersect.size();
+    return intersect(vector1.keySet(), vector2.keySet());
   }
 
+  /**
+   * Counts the common keys by a walk over the smaller set, no set is copied.
+   */
   public static double intersect(Set<Object> keys1, Set<Object> keys2) {
-    Set<Object> intersect = new HashSet<Object>(keys1);
-    intersect.retainAll(keys2);
-    return intersect.size();
+    if (keys1.size() > keys2.size()) {
+      Set<Object> tmp = keys1;
+      keys1 = keys2;
+      keys2 = tmp;
+    }
+
+    int intersect = 0;
+    for (Object key : keys1) {
+      if (keys2.contains(key)) {
+        intersect++;
+      }
+    }
+    return intersect;
   }
 
   public static double complement(HashMap<Object, Integer> vector1,
                                   HashMap<Object, Integer> vector2) {
-    HashSet<Object> complement = new HashSet<Object>(vector1.keySet());
-    complement.removeAll(vector2.keySet());
-    return complement.size();
+    return complement(vector1.keySet(), vector2.keySet());
   }
 
   public static double complement(Set<Object> keys1, Set<Object> keys2) {
-    Set<Object> complement = new HashSet<Object>(keys1);
-    complement.removeAll(keys2);
-    return complement.size();
+    return keys1.size() - intersect(keys1, keys2);
   }
 
   public static double size(HashMap<Object, Integer> vector) {
@@ -112,4 +117,109 @@ public class VectorUtils {
 
     return res;
   }
+
+  /*
+   * Hashed vectors, see Granularity.NGRAM_HASHED
+   */
+
+  public static double union(LongIntHashMap vector1, LongIntHashMap vector2) {
+    return vector1.size() + vector2.size() - intersect(vector1, vector2);
+  }
+
+  public static double intersect(LongIntHashMap vector1, LongIntHashMap vector2) {
+    if (vector1.size() > vector2.size()) {
+      LongIntHashMap tmp = vector1;
+      vector1 = vector2;
+      vector2 = tmp;
+    }
+
+    int intersect = 0;
+    for (int slot = 0; slot < vector1.capacity(); slot++) {
+      if (vector1.valueAt(slot) != 0 && vector2.containsKey(vector1.keyAt(slot))) {
+        intersect++;
+      }
+    }
+    return intersect;
+  }
+
+  public static double complement(LongIntHashMap vector1, LongIntHashMap vector2) {
+    return vector1.size() - intersect(vector1, vector2);
+  }
+
+  public static double size(LongIntHashMap vector) {
+    return vector.size();
+  }
+
+  public static double euclideanNorm(LongIntHashMap vector) {
+    double res = 0;
+
+    for (int slot = 0; slot < vector.capacity(); slot++) {
+      double v = vector.valueAt(slot);
+      res += v * v;
+    }
+
+    return Math.sqrt(res);
+  }
+
+  public static double scalarProduct(LongIntHashMap vector1, LongIntHashMap vector2) {
+    if (vector1.size() > vector2.size()) {
+      LongIntHashMap tmp = vector1;
+      vector1 = vector2;
+      vector2 = tmp;
+    }
+
+    double res = 0;
+    for (int slot = 0; slot < vector1.capacity(); slot++) {
+      int v1 = vector1.valueAt(slot);
+      if (v1 != 0) {
+        res += (double) v1 * vector2.get(vector1.keyAt(slot));
+      }
+    }
+    return res;
+  }
+
+  /**
+   * @return sum of the absolute differences of the entries
+   */
+  public static double manhattenDistance(LongIntHashMap vector1, LongIntHashMap vector2) {
+    double res = 0;
+
+    for (int slot = 0; slot < vector1.capacity(); slot++) {
+      int v1 = vector1.valueAt(slot);
+      if (v1 != 0) {
+        res += Math.abs(v1 - vector2.get(vector1.keyAt(slot)));
+      }
+    }
+    for (int slot = 0; slot < vector2.capacity(); slot++) {
+      int v2 = vector2.valueAt(slot);
+      if (v2 != 0 && !vector1.containsKey(vector2.keyAt(slot))) {
+        res += Math.abs(v2);
+      }
+    }
+
+    return res;
+  }
+
+  /**
+   * @return sum of the squared differences of the entries
+   */
+  public static double squaredEuclideanDistance(LongIntHashMap vector1, LongIntHashMap vector2) {
+    double res = 0;
+
+    for (int slot = 0; slot < vector1.capacity(); slot++) {
+      int v1 = vector1.valueAt(slot);
+      if (v1 != 0) {
+        double d = v1 - vector2.get(vector1.keyAt(slot));
+        res += d * d;
+      }
+    }
+    for (int slot = 0; slot < vector2.capacity(); slot++) {
+      int v2 = vector2.valueAt(slot);
+      if (v2 != 0 && !vector1.containsKey(vector2.keyAt(slot))) {
+        res += (double) v2 * v2;
+      }
+    }
+
+    return res;
+  }
 }
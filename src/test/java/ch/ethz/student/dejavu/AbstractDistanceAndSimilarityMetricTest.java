@@ -72,6 +72,16 @@ public abstract class AbstractDistanceAndSimilarityMetricTest {
     distanceMetricTest.testRobustness();
   }
 
+  @Test
+  public void testDistanceBatch() {
+    distanceMetricTest.testBatch();
+  }
+
+  @Test
+  public void testDistancePredicate() {
+    distanceMetricTest.testPredicate();
+  }
+
   // ===== Similarity Metric Tests =====
 
   @Test
@@ -109,6 +119,16 @@ public abstract class AbstractDistanceAndSimilarityMetricTest {
     similarityMetricTest.testRobustness();
   }
 
+  @Test
+  public void testSimilarityBatch() {
+    similarityMetricTest.testBatch();
+  }
+
+  @Test
+  public void testSimilarityPredicate() {
+    similarityMetricTest.testPredicate();
+  }
+
   // ===== Helper Classes =====
 
   public static class TestInput {
@@ -14,6 +14,9 @@
 */
 package ch.ethz.student.dejavu;
 
+import java.util.ArrayList;
+import java.util.List;
+
 import org.junit.Assert;
 import org.junit.Test;
 
@@ -138,6 +141,69 @@ public abstract class AbstractDistanceMetricTest {
     }
   }
 
+  @Test
+  public void testBatch() {
+    List<String> strings = new ArrayList<String>();
+    for (TestInput ti : getTestInput()) {
+      strings.add(ti.s1);
+      strings.add(ti.s2);
+    }
+    for (int i = 0; i < 100; i++) {
+      strings.add(getValidRandomString());
+    }
+
+    for (String query : strings.subList(0, Math.min(strings.size(), 50))) {
+      // the pairs the metric accepts, e.g. strings of equal length
+      List<String> candidates = new ArrayList<String>();
+      List<Double> expected = new ArrayList<Double>();
+      for (String candidate : strings) {
+        try {
+          expected.add(getDistanceMetric().computeDistance(query, candidate));
+          candidates.add(candidate);
+        } catch (RuntimeException e) {
+          // not comparable
+        }
+      }
+
+      double[] out = new double[candidates.size() + 1];
+      getDistanceMetric().computeDistances(query, candidates.toArray(new CharSequence[0]), out);
+      for (int i = 0; i < candidates.size(); i++) {
+        Assert.assertEquals("'" + query + "' and '" + candidates.get(i) + "'", expected.get(i),
+                            out[i], TestUtils.DELTA);
+      }
+    }
+  }
+
+  @Test
+  public void testPredicate() {
+    List<String> strings = new ArrayList<String>();
+    for (TestInput ti : getTestInput()) {
+      strings.add(ti.s1);
+      strings.add(ti.s2);
+    }
+    for (int i = 0; i < 30; i++) {
+      strings.add(getValidRandomString());
+    }
+
+    for (String s1 : strings) {
+      for (String s2 : strings) {
+        double distance;
+        try {
+          distance = getDistanceMetric().computeDistance(s1, s2);
+        } catch (RuntimeException e) {
+          // not comparable
+          continue;
+        }
+        double[] bounds = {0, distance / 2, distance - 1, distance - 1e-6, distance + 1e-6,
+                           distance + 1, 2 * distance};
+        for (double bound : bounds) {
+          Assert.assertEquals("'" + s1 + "' and '" + s2 + "' within " + bound, distance <= bound,
+                              getDistanceMetric().isWithin(s1, s2, bound));
+        }
+      }
+    }
+  }
+
   // ====== Helper Metrics =====
 
   public static class TestInput {
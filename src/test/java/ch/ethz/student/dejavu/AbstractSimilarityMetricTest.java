@@ -14,6 +14,9 @@
 */
 package ch.ethz.student.dejavu;
 
+import java.util.ArrayList;
+import java.util.List;
+
 import org.junit.Assert;
 import org.junit.Test;
 
@@ -152,6 +155,70 @@ public abstract class AbstractSimilarityMetricTest {
     }
   }
 
+  @Test
+  public void testBatch() {
+    List<String> strings = new ArrayList<String>();
+    for (TestInput ti : getTestInput()) {
+      strings.add(ti.s1);
+      strings.add(ti.s2);
+    }
+    for (int i = 0; i < 100; i++) {
+      strings.add(getValidRandomString());
+    }
+
+    for (String query : strings.subList(0, Math.min(strings.size(), 50))) {
+      // the pairs the metric accepts, e.g. strings of equal length
+      List<String> candidates = new ArrayList<String>();
+      List<Double> expected = new ArrayList<Double>();
+      for (String candidate : strings) {
+        try {
+          expected.add(getSimilarityMetric().computeSimilarity(query, candidate));
+          candidates.add(candidate);
+        } catch (RuntimeException e) {
+          // not comparable
+        }
+      }
+
+      double[] out = new double[candidates.size() + 1];
+      getSimilarityMetric().computeSimilarities(query, candidates.toArray(new CharSequence[0]), out);
+      for (int i = 0; i < candidates.size(); i++) {
+        Assert.assertEquals("'" + query + "' and '" + candidates.get(i) + "'", expected.get(i),
+                            out[i], TestUtils.DELTA);
+      }
+    }
+  }
+
+  @Test
+  public void testPredicate() {
+    List<String> strings = new ArrayList<String>();
+    for (TestInput ti : getTestInput()) {
+      strings.add(ti.s1);
+      strings.add(ti.s2);
+    }
+    for (int i = 0; i < 30; i++) {
+      strings.add(getValidRandomString());
+    }
+
+    for (String s1 : strings) {
+      for (String s2 : strings) {
+        double similarity;
+        try {
+          similarity = getSimilarityMetric().computeSimilarity(s1, s2);
+        } catch (RuntimeException e) {
+          // not comparable
+          continue;
+        }
+        double[] bounds = {0, 0.5, 1, similarity - 0.1, similarity - 1e-6, similarity + 1e-6,
+                           similarity + 0.1};
+        for (double bound : bounds) {
+          Assert.assertEquals("'" + s1 + "' and '" + s2 + "' at least " + bound,
+                              similarity >= bound,
+                              getSimilarityMetric().isAtLeast(s1, s2, bound));
+        }
+      }
+    }
+  }
+
   // ===== Helper Class =====
 
   public static class TestInput {
@@ -26,6 +26,17 @@ public class TestUtils {
     return getRandomString(length, length);
   }
   
+  /**
+   * Reproducible random string over a small alphabet, small alphabets give close strings.
+   */
+  public static String getRandomString(Random rnd, int length, String alphabet) {
+    StringBuilder sb = new StringBuilder(length);
+    for (int i = 0; i < length; i++) {
+      sb.append(alphabet.charAt(rnd.nextInt(alphabet.length())));
+    }
+    return sb.toString();
+  }
+
   public static String getRandomString(int minLength, int maxLength) {
     if (minLength < 1 || maxLength < 1) throw new IllegalArgumentException("minLength and maxLength must both me positive");
     if (minLength > maxLength) throw new IllegalArgumentException("minLength cannot be smaller than maxLength");
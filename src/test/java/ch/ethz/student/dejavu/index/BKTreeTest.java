@@ -0,0 +1,159 @@
+package ch.ethz.student.dejavu.index;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Random;
+
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import ch.ethz.student.dejavu.BoundedDistanceMetric;
+import ch.ethz.student.dejavu.TestUtils;
+import ch.ethz.student.dejavu.strings.DamerauLevenshteinDistance;
+import ch.ethz.student.dejavu.strings.HammingMetric;
+import ch.ethz.student.dejavu.strings.LevenshteinDistance;
+import ch.ethz.student.dejavu.strings.OptimalStringAlignmentDistance;
+
+public class BKTreeTest {
+
+  private static final String ALPHABET = "abcde";
+
+  @Rule
+  public TemporaryFolder folder = new TemporaryFolder();
+
+  @Test
+  public void testLevenshtein() {
+    testTree(LevenshteinDistance.getInstance(), false, new Random(151));
+  }
+
+  @Test
+  public void testDamerauLevenshtein() {
+    testTree(DamerauLevenshteinDistance.getInstance(), false, new Random(157));
+  }
+
+  @Test
+  public void testHamming() {
+    testTree(HammingMetric.getInstance(), true, new Random(163));
+  }
+
+  @Test
+  public void testDuplicates() {
+    BKTree tree = BKTree.getInstance();
+    tree.add("abc");
+    tree.add("abc");
+    tree.add("abd");
+
+    Assert.assertArrayEquals(new int[]{0, 1}, tree.query("abc", 0.0));
+    Assert.assertEquals(3, tree.query("abc", 5).length);
+    Assert.assertEquals(0, BKTree.getInstance().query("abc", 1.0).length);
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testNonIntegralDistances() {
+    BKTree tree = BKTree.getBuilder()
+        .metric(LevenshteinDistance.getBuilder().substitutionScore(0.5).build()).build();
+    tree.add("a");
+    tree.add("b");
+  }
+
+  @Test
+  public void testOptimalStringAlignment() {
+    // the triangle inequality does not hold, pruning would drop results
+    OptimalStringAlignmentDistance osa = OptimalStringAlignmentDistance.getInstance();
+    Assert.assertTrue(osa.computeDistance("ca", "abc")
+                      > osa.computeDistance("ca", "ac") + osa.computeDistance("ac", "abc"));
+    try {
+      BKTree.getBuilder().metric(osa).build();
+      Assert.fail("OptimalStringAlignmentDistance is accepted");
+    } catch (IllegalArgumentException e) {
+      // expected
+    }
+  }
+
+  @Test
+  public void testWrite() throws IOException {
+    BKTree tree = BKTree.getInstance();
+    Random rnd = new Random(229);
+    for (int i = 0; i < 1000; i++) {
+      tree.add(TestUtils.getRandomString(rnd, 3 + rnd.nextInt(8), ALPHABET));
+    }
+    File file = folder.newFile();
+    tree.write(file);
+
+    BKTree opened = BKTree.open(file, LevenshteinDistance.getInstance());
+    Assert.assertEquals(tree.size(), opened.size());
+    for (int q = 0; q < 50; q++) {
+      String query = TestUtils.getRandomString(rnd, 3 + rnd.nextInt(8), ALPHABET);
+      for (double k = 0; k <= 3; k++) {
+        Assert.assertArrayEquals(tree.query(query, k), opened.query(query, k));
+      }
+      Assert.assertArrayEquals(tree.query(query, 5), opened.query(query, 5));
+    }
+
+    // an opened tree can be written again
+    File copy = folder.newFile();
+    opened.write(copy);
+    Assert.assertEquals(file.length(), copy.length());
+  }
+
+  @Test(expected = UnsupportedOperationException.class)
+  public void testOpenedIsReadOnly() throws IOException {
+    File file = folder.newFile();
+    BKTree.getInstance().write(file);
+    BKTree.open(file, LevenshteinDistance.getInstance()).add("abc");
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testOpenWithOtherMetric() throws IOException {
+    File file = folder.newFile();
+    BKTree.getInstance().write(file);
+    BKTree.open(file, HammingMetric.getInstance());
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testOpenWithOtherWeights() throws IOException {
+    File file = folder.newFile();
+    BKTree.getInstance().write(file);
+    BKTree.open(file, LevenshteinDistance.getBuilder().insertionScore(2).build());
+  }
+
+  private static void testTree(BoundedDistanceMetric metric, boolean equalLength, Random rnd) {
+    BKTree tree = BKTree.getBuilder().metric(metric).build();
+    String[] strings = new String[2000];
+    for (int i = 0; i < strings.length; i++) {
+      strings[i] = TestUtils.getRandomString(rnd, equalLength ? 8 : 3 + rnd.nextInt(8), ALPHABET);
+      Assert.assertEquals(i, tree.add(strings[i]));
+    }
+
+    for (int q = 0; q < 50; q++) {
+      String query = TestUtils.getRandomString(rnd, equalLength ? 8 : 3 + rnd.nextInt(8), ALPHABET);
+      double[] distances = new double[strings.length];
+      for (int i = 0; i < strings.length; i++) {
+        distances[i] = metric.computeDistance(query, strings[i]);
+      }
+
+      for (int r = 0; r <= 3; r++) {
+        int[] expected = new int[strings.length];
+        int count = 0;
+        for (int i = 0; i < strings.length; i++) {
+          if (distances[i] <= r) {
+            expected[count++] = i;
+          }
+        }
+        Assert.assertArrayEquals(Arrays.copyOf(expected, count), tree.query(query, (double) r));
+      }
+
+      // ties are broken arbitrarily, thus only the distances are compared
+      int[] nearest = tree.query(query, 10);
+      double[] sorted = distances.clone();
+      Arrays.sort(sorted);
+      Assert.assertEquals(10, nearest.length);
+      for (int i = 0; i < nearest.length; i++) {
+        Assert.assertEquals(sorted[i], distances[nearest[i]], 0);
+      }
+    }
+  }
+}
@@ -0,0 +1,161 @@
+package ch.ethz.student.dejavu.index;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Random;
+
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class CompressedPostingsTest {
+
+  @Rule
+  public TemporaryFolder folder = new TemporaryFolder();
+
+  @Test
+  public void testRoundTrip() {
+    Random rnd = new Random(83);
+    for (int count : new int[]{1, 127, 128, 129, 1000, 5000}) {
+      for (int maxGap : new int[]{1, 3, 1000, 1 << 18}) {
+        int[] ids = randomIds(rnd, count, maxGap);
+        int[] payloads = new int[count];
+        for (int i = 0; i < count; i++) {
+          payloads[i] = rnd.nextInt(1 + rnd.nextInt(1 << 16));
+        }
+        CompressedPostings postings = CompressedPostings.encode(ids, payloads, count);
+        Assert.assertEquals(count, postings.size());
+        Assert.assertTrue(postings.hasPayloads());
+
+        CompressedPostings.Cursor cursor = postings.cursor();
+        for (int i = 0; i < count; i++) {
+          Assert.assertEquals(ids[i], cursor.next());
+          Assert.assertEquals(payloads[i], cursor.payload());
+        }
+        Assert.assertEquals(CompressedPostings.END, cursor.next());
+        Assert.assertEquals(CompressedPostings.END, cursor.id());
+
+        int[] block = new int[CompressedPostings.BLOCK_SIZE];
+        int last = postings.getBlockCount() - 1;
+        int length = postings.decodeBlock(last, block, null);
+        Assert.assertArrayEquals(Arrays.copyOfRange(ids, last * CompressedPostings.BLOCK_SIZE,
+                                                    count), Arrays.copyOf(block, length));
+      }
+    }
+  }
+
+  @Test
+  public void testDenseListIsSmall() {
+    int[] ids = new int[100000];
+    for (int i = 0; i < ids.length; i++) {
+      ids[i] = i;
+    }
+    // one bit per id at most, plus the headers and skip pointers
+    Assert.assertTrue(CompressedPostings.encode(ids).getSizeInBytes() < ids.length / 8 * 2);
+  }
+
+  @Test
+  public void testAdvance() {
+    Random rnd = new Random(89);
+    int[] ids = randomIds(rnd, 3000, 50);
+    CompressedPostings postings = CompressedPostings.encode(ids);
+
+    CompressedPostings.Cursor cursor = postings.cursor();
+    int target = 0;
+    while (true) {
+      target += rnd.nextInt(400);
+      int expected = Arrays.binarySearch(ids, target);
+      expected = expected >= 0 ? expected : -expected - 1;
+      int id = cursor.advance(target);
+      if (expected == ids.length) {
+        Assert.assertEquals(CompressedPostings.END, id);
+        break;
+      }
+      Assert.assertEquals(ids[expected], id);
+      // advancing to a smaller target keeps the position
+      Assert.assertEquals(id, cursor.advance(target - 1));
+    }
+  }
+
+  @Test
+  public void testIntersect() {
+    Random rnd = new Random(97);
+    for (int round = 0; round < 50; round++) {
+      int[] a = randomIds(rnd, 1 + rnd.nextInt(50), 2000);
+      int[] b = randomIds(rnd, 1 + rnd.nextInt(5000), 1 + rnd.nextInt(30));
+
+      int[] expected = new int[a.length];
+      int count = 0;
+      for (int id : a) {
+        if (Arrays.binarySearch(b, id) >= 0) {
+          expected[count++] = id;
+        }
+      }
+
+      int[] out = new int[a.length];
+      int found = CompressedPostings.intersect(CompressedPostings.encode(a),
+                                               CompressedPostings.encode(b), out);
+      Assert.assertArrayEquals(Arrays.copyOf(expected, count), Arrays.copyOf(out, found));
+    }
+  }
+
+  @Test
+  public void testEmpty() {
+    CompressedPostings postings = CompressedPostings.encode(new int[0]);
+    Assert.assertEquals(0, postings.size());
+    Assert.assertEquals(CompressedPostings.END, postings.cursor().next());
+    Assert.assertEquals(CompressedPostings.END, postings.cursor().advance(5));
+  }
+
+  @Test
+  public void testWrite() throws IOException {
+    Random rnd = new Random(251);
+    int[][] ids = new int[6][];
+    int[][] payloads = new int[ids.length][];
+    CompressedPostings[] lists = new CompressedPostings[ids.length];
+    for (int i = 0; i < ids.length; i++) {
+      ids[i] = randomIds(rnd, i * 100, 1 + rnd.nextInt(1000));
+      payloads[i] = i % 2 == 0 ? null : randomIds(rnd, ids[i].length, 10);
+      lists[i] = CompressedPostings.encode(ids[i], payloads[i], ids[i].length);
+    }
+    File file = folder.newFile();
+    IndexFile.Writer writer = new IndexFile.Writer("test");
+    CompressedPostings.write(writer, "postings", lists, lists.length);
+    writer.write(file);
+
+    CompressedPostings.Table table = new CompressedPostings.Table(IndexFile.open(file),
+                                                                  "postings");
+    Assert.assertEquals(lists.length, table.size());
+    for (int i = 0; i < ids.length; i++) {
+      CompressedPostings list = table.get(i);
+      Assert.assertEquals(ids[i].length, list.size());
+      Assert.assertEquals(payloads[i] != null, list.hasPayloads());
+      Assert.assertEquals(lists[i].getSizeInBytes(), list.getSizeInBytes());
+      CompressedPostings.Cursor cursor = list.cursor();
+      for (int j = 0; j < ids[i].length; j++) {
+        Assert.assertEquals(ids[i][j], cursor.next());
+        if (payloads[i] != null) {
+          Assert.assertEquals(payloads[i][j], cursor.payload());
+        }
+      }
+      Assert.assertEquals(CompressedPostings.END, cursor.next());
+    }
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testUnsorted() {
+    CompressedPostings.encode(new int[]{1, 3, 3});
+  }
+
+  private static int[] randomIds(Random rnd, int count, int maxGap) {
+    int[] ids = new int[count];
+    int previous = -1;
+    for (int i = 0; i < count; i++) {
+      previous += 1 + rnd.nextInt(maxGap);
+      ids[i] = previous;
+    }
+    return ids;
+  }
+}
@@ -0,0 +1,112 @@
+package ch.ethz.student.dejavu.index;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import ch.ethz.student.dejavu.SimilarityMetric;
+import ch.ethz.student.dejavu.vectors.Granularity;
+import ch.ethz.student.dejavu.vectors.JaccardSimilarity;
+import ch.ethz.student.dejavu.vectors.OverlapCoefficient;
+import ch.ethz.student.dejavu.vectors.TverskyIndex;
+import ch.ethz.student.dejavu.vectors.VectorSimilarity;
+
+public class ContainmentIndexTest {
+
+  private static final double[] THRESHOLDS = {0.1, 0.5, 0.8, 1.0};
+
+  @Test
+  public void testOverlap() {
+    testIndex(OverlapCoefficient.getBuilder().granularity(Granularity.WORD_BASED).build(),
+              new Random(71));
+  }
+
+  @Test
+  public void testContainment() {
+    testIndex(TverskyIndex.getBuilder().alpha(1).beta(0).granularity(Granularity.WORD_BASED)
+                  .build(), new Random(73));
+  }
+
+  @Test
+  public void testAsymmetricTversky() {
+    testIndex(TverskyIndex.getBuilder().alpha(0.9).beta(0.1).granularity(Granularity.WORD_BASED)
+                  .build(), new Random(79));
+  }
+
+  @Test
+  public void testFragment() {
+    ContainmentIndex index = ContainmentIndex.getBuilder().metric(
+        TverskyIndex.getBuilder().alpha(1).beta(0).granularity(Granularity.WORD_BASED).build())
+        .build();
+    index.add("12 main street springfield");
+    index.add("main road shelbyville");
+    index.add("");
+
+    Assert.assertArrayEquals(new int[]{0}, index.query("main street", 1.0));
+    Assert.assertArrayEquals(new int[]{0, 1}, index.query("main street", 0.5));
+    Assert.assertEquals(0, index.query("", 0.5).length);
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testUnsupportedMetric() {
+    ContainmentIndex.getBuilder().metric(JaccardSimilarity.getInstance()).build();
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testMultiset() {
+    ContainmentIndex.getBuilder()
+        .metric(OverlapCoefficient.getBuilder().takeKeyset(false).build()).build();
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testHashedDimensions() {
+    ContainmentIndex.getBuilder().metric(TverskyIndex.getBuilder().dimensions(256).build()).build();
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testInvalidThreshold() {
+    ContainmentIndex.getBuilder().metric(OverlapCoefficient.getInstance()).build().query("a", 0);
+  }
+
+  private static void testIndex(VectorSimilarity metric, Random rnd) {
+    SimilarityMetric similarity = (SimilarityMetric) metric;
+    ContainmentIndex scanCount = ContainmentIndex.getBuilder().metric(metric)
+        .algorithm(ContainmentIndex.Algorithm.SCAN_COUNT).build();
+    ContainmentIndex mergeSkip = ContainmentIndex.getBuilder().metric(metric)
+        .algorithm(ContainmentIndex.Algorithm.MERGE_SKIP).build();
+
+    String[] strings = new String[1000];
+    for (int i = 0; i < strings.length; i++) {
+      strings[i] = randomWords(rnd, 1 + rnd.nextInt(12));
+      Assert.assertEquals(i, scanCount.add(strings[i]));
+      mergeSkip.add(strings[i]);
+    }
+
+    for (int q = 0; q < 50; q++) {
+      String query = randomWords(rnd, 1 + rnd.nextInt(5));
+      for (double t : THRESHOLDS) {
+        int[] expected = new int[strings.length];
+        int count = 0;
+        for (int i = 0; i < strings.length; i++) {
+          if (similarity.computeSimilarity(query, strings[i]) >= t) {
+            expected[count++] = i;
+          }
+        }
+        expected = Arrays.copyOf(expected, count);
+
+        Assert.assertArrayEquals(expected, scanCount.query(query, t));
+        Assert.assertArrayEquals(expected, mergeSkip.query(query, t));
+      }
+    }
+  }
+
+  private static String randomWords(Random rnd, int words) {
+    StringBuilder sb = new StringBuilder();
+    for (int w = 0; w < words; w++) {
+      sb.append('w').append(rnd.nextInt(20)).append(' ');
+    }
+    return sb.toString();
+  }
+}
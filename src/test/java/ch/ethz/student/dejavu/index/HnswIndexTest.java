@@ -0,0 +1,159 @@
+package ch.ethz.student.dejavu.index;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import ch.ethz.student.dejavu.TestUtils;
+import ch.ethz.student.dejavu.vectors.CosineDistance;
+
+public class HnswIndexTest {
+
+  private static final int DIMENSIONS = 24;
+  private static final int N = 2000;
+  private static final int K = 10;
+
+  @Test
+  public void testRecallL2() {
+    float[][] vectors = randomVectors(new Random(37), N);
+    HnswIndex index = HnswIndex.getBuilder().dimensions(DIMENSIONS).capacity(N)
+        .space(HnswIndex.Space.L2).build();
+    for (float[] v : vectors) {
+      index.add(v);
+    }
+
+    Assert.assertEquals(N, index.size());
+    Assert.assertTrue(recall(index, vectors, new Random(41)) >= 0.9);
+  }
+
+  @Test
+  public void testRecallCosine() {
+    float[][] vectors = randomVectors(new Random(43), N);
+    HnswIndex index = HnswIndex.getBuilder().dimensions(DIMENSIONS).capacity(N).build();
+    for (float[] v : vectors) {
+      index.add(v);
+    }
+
+    Assert.assertTrue(recall(index, vectors, new Random(47)) >= 0.9);
+  }
+
+  @Test
+  public void testConcurrentInserts() throws InterruptedException {
+    final float[][] vectors = randomVectors(new Random(53), N);
+    final HnswIndex index = HnswIndex.getBuilder().dimensions(DIMENSIONS).capacity(N)
+        .space(HnswIndex.Space.L2).build();
+    final int[] ids = new int[N];
+
+    List<Thread> threads = new ArrayList<Thread>();
+    for (int t = 0; t < 4; t++) {
+      final int first = t;
+      Thread thread = new Thread(new Runnable() {
+        @Override
+        public void run() {
+          for (int i = first; i < N; i += 4) {
+            ids[i] = index.add(vectors[i]);
+          }
+        }
+      });
+      threads.add(thread);
+      thread.start();
+    }
+    for (Thread thread : threads) {
+      thread.join();
+    }
+
+    Assert.assertEquals(N, index.size());
+    float[][] byId = new float[N][];
+    for (int i = 0; i < N; i++) {
+      Assert.assertNull(byId[ids[i]]);
+      byId[ids[i]] = vectors[i];
+    }
+    Assert.assertTrue(recall(index, byId, new Random(59)) >= 0.9);
+  }
+
+  @Test
+  public void testHashedStrings() {
+    CosineDistance metric = CosineDistance.getBuilder().dimensions(64).build();
+    String[] strings = new String[300];
+    HnswIndex index = HnswIndex.getBuilder().dimensions(64).capacity(strings.length).build();
+    for (int i = 0; i < strings.length; i++) {
+      strings[i] = TestUtils.getRandomString(5, 20);
+      index.add(metric.getHashedVector(strings[i], new float[64]));
+    }
+
+    for (int i = 0; i < strings.length; i++) {
+      int[] result = index.query(metric.getHashedVector(strings[i], new float[64]), 1);
+      Assert.assertEquals(1, result.length);
+      Assert.assertEquals(1, metric.computeUnnormalizedSimilarity(strings[i],
+                                                                 strings[result[0]]),
+                          TestUtils.DELTA);
+    }
+  }
+
+  @Test
+  public void testEmpty() {
+    Assert.assertEquals(0, HnswIndex.getInstance().query(new float[256], 5).length);
+  }
+
+  @Test(expected = IllegalStateException.class)
+  public void testFull() {
+    HnswIndex index = HnswIndex.getBuilder().dimensions(2).capacity(1).build();
+    index.add(new float[]{1, 0});
+    index.add(new float[]{0, 1});
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testWrongDimensions() {
+    HnswIndex.getInstance().add(new float[3]);
+  }
+
+  private static double recall(HnswIndex index, float[][] vectors, Random rnd) {
+    int found = 0;
+    int queries = 100;
+    for (int q = 0; q < queries; q++) {
+      float[] query = randomVectors(rnd, 1)[0];
+
+      Integer[] order = new Integer[vectors.length];
+      final double[] distances = new double[vectors.length];
+      for (int i = 0; i < vectors.length; i++) {
+        order[i] = i;
+        distances[i] = index.distance(query, i);
+      }
+      Arrays.sort(order, new Comparator<Integer>() {
+        @Override
+        public int compare(Integer a, Integer b) {
+          return Double.compare(distances[a], distances[b]);
+        }
+      });
+
+      int[] result = index.query(query, K);
+      Assert.assertEquals(K, result.length);
+      for (int i = 1; i < result.length; i++) {
+        Assert.assertTrue(distances[result[i - 1]] <= distances[result[i]] + 1e-6);
+      }
+      for (int r : result) {
+        for (int i = 0; i < K; i++) {
+          if (order[i] == r) {
+            found++;
+          }
+        }
+      }
+    }
+    return found / (double) (queries * K);
+  }
+
+  private static float[][] randomVectors(Random rnd, int n) {
+    float[][] vectors = new float[n][DIMENSIONS];
+    for (int i = 0; i < n; i++) {
+      for (int d = 0; d < DIMENSIONS; d++) {
+        vectors[i][d] = (float) rnd.nextGaussian();
+      }
+    }
+    return vectors;
+  }
+}
@@ -0,0 +1,115 @@
+package ch.ethz.student.dejavu.index;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.CharBuffer;
+import java.nio.DoubleBuffer;
+import java.nio.IntBuffer;
+import java.nio.LongBuffer;
+
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class IndexFileTest {
+
+  @Rule
+  public TemporaryFolder folder = new TemporaryFolder();
+
+  @Test
+  public void testSections() throws IOException {
+    File file = folder.newFile();
+    new IndexFile.Writer("test")
+        .ints("ints", IntBuffer.wrap(new int[]{1, -2, 3, 4}), 3)
+        .longs("longs", LongBuffer.wrap(new long[]{Long.MIN_VALUE, 5}), 2)
+        .doubles("doubles", DoubleBuffer.wrap(new double[]{0.5}), 1)
+        .chars("chars", CharBuffer.wrap("abc"), 3)
+        .ints("empty", IntBuffer.allocate(0), 0)
+        .write(file);
+
+    IndexFile index = IndexFile.open(file);
+    Assert.assertEquals("test", index.getType());
+    Assert.assertTrue(index.hasSection("ints"));
+    Assert.assertFalse(index.hasSection("other"));
+
+    IntBuffer ints = index.getInts("ints");
+    Assert.assertEquals(3, ints.capacity());
+    Assert.assertEquals(-2, ints.get(1));
+    Assert.assertEquals(3, ints.get(2));
+    LongBuffer longs = index.getLongs("longs");
+    Assert.assertEquals(Long.MIN_VALUE, longs.get(0));
+    Assert.assertEquals(5, longs.get(1));
+    Assert.assertEquals(0.5, index.getDoubles("doubles").get(0), 0);
+    Assert.assertEquals("abc", index.getChars("chars").toString());
+    Assert.assertEquals(0, index.getInts("empty").capacity());
+    Assert.assertTrue(index.getInts("ints").isReadOnly());
+  }
+
+  @Test
+  public void testStrings() throws IOException {
+    File file = folder.newFile();
+    String[] strings = {"house", "", "\u00e4\u03b1b", "horse", "unused"};
+    new IndexFile.Writer("test")
+        .strings("terms", strings, 4)
+        .string("name", "dejavu")
+        .write(file);
+
+    IndexFile index = IndexFile.open(file);
+    StringTable terms = new StringTable(index, "terms");
+    Assert.assertEquals(4, terms.size());
+    for (int i = 0; i < 4; i++) {
+      Assert.assertEquals(strings[i], terms.get(i));
+      Assert.assertEquals(strings[i].length(), terms.length(i));
+    }
+    Assert.assertTrue(terms.isReadOnly());
+    Assert.assertEquals("dejavu", index.getString("name"));
+    Assert.assertEquals("house\u00e4\u03b1bhorse", index.getChars("termsChars").toString());
+    Assert.assertEquals(13, index.getInts("termsOffsets").get(4));
+  }
+
+  @Test
+  public void testSearch() {
+    LongBuffer sorted = LongBuffer.wrap(new long[]{Long.MIN_VALUE, -3, 0, 7, Long.MAX_VALUE});
+    for (int i = 0; i < sorted.capacity(); i++) {
+      Assert.assertEquals(i, IndexFile.search(sorted, sorted.get(i)));
+    }
+    Assert.assertEquals(-1, IndexFile.search(sorted, 1));
+    Assert.assertEquals(-1, IndexFile.search(LongBuffer.allocate(0), 1));
+  }
+
+  @Test(expected = IOException.class)
+  public void testWrongSectionType() throws IOException {
+    File file = folder.newFile();
+    new IndexFile.Writer("test").ints("ints", IntBuffer.wrap(new int[]{1}), 1).write(file);
+    IndexFile.open(file).getLongs("ints");
+  }
+
+  @Test(expected = IOException.class)
+  public void testUnsupportedVersion() throws IOException {
+    File file = folder.newFile();
+    new IndexFile.Writer("test").write(file);
+    RandomAccessFile raf = new RandomAccessFile(file, "rw");
+    // the version follows the magic, little endian
+    raf.seek(4);
+    raf.write(IndexFile.VERSION + 1);
+    raf.close();
+    IndexFile.open(file);
+  }
+
+  @Test(expected = IOException.class)
+  public void testNotAnIndexFile() throws IOException {
+    File file = folder.newFile();
+    RandomAccessFile raf = new RandomAccessFile(file, "rw");
+    raf.writeBytes("not an index");
+    raf.close();
+    IndexFile.open(file);
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testDuplicateSection() {
+    new IndexFile.Writer("test").ints("a", IntBuffer.allocate(0), 0)
+        .ints("a", IntBuffer.allocate(0), 0);
+  }
+}
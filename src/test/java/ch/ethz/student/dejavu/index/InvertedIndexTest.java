@@ -0,0 +1,138 @@
+package ch.ethz.student.dejavu.index;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import ch.ethz.student.dejavu.vectors.CosineDistance;
+import ch.ethz.student.dejavu.vectors.Granularity;
+import ch.ethz.student.dejavu.vectors.JaccardSimilarity;
+import ch.ethz.student.dejavu.vectors.MatchingCoefficient;
+
+public class InvertedIndexTest {
+
+  // the posting weights are floats
+  private static final double DELTA = 1e-5;
+  private static final int K = 20;
+
+  @Test
+  public void testCosine() {
+    final CosineDistance metric = CosineDistance.getBuilder()
+        .granularity(Granularity.WORD_BASED).build();
+    InvertedIndex index = InvertedIndex.getBuilder().metric(metric).idf(false).build();
+    testTopK(index, new Scorer() {
+      @Override
+      public double score(String s1, String s2) {
+        return metric.computeUnnormalizedSimilarity(s1, s2);
+      }
+    }, new Random(61));
+  }
+
+  @Test
+  public void testMatching() {
+    final MatchingCoefficient metric = MatchingCoefficient.getBuilder()
+        .granularity(Granularity.WORD_BASED).build();
+    InvertedIndex index = InvertedIndex.getBuilder().metric(metric).build();
+    testTopK(index, new Scorer() {
+      @Override
+      public double score(String s1, String s2) {
+        return metric.computeSimilarity(s1, s2);
+      }
+    }, new Random(67));
+  }
+
+  @Test
+  public void testIdf() {
+    InvertedIndex index = InvertedIndex.getBuilder().metric(CosineDistance.getBuilder()
+        .granularity(Granularity.WORD_BASED).build()).build();
+    index.add("the red house");
+    index.add("the blue house");
+    index.add("the red car");
+    index.add("a red tree");
+
+    // house is rarer than red, thus it weighs more
+    double[] scores = new double[4];
+    int[] result = index.query("red house", 4, scores);
+    Assert.assertEquals(4, result.length);
+    Assert.assertEquals(0, result[0]);
+    Assert.assertEquals(1, result[1]);
+    Assert.assertTrue(scores[1] > scores[2]);
+
+    // a string is most similar to itself
+    Assert.assertArrayEquals(new int[]{3}, index.query("a red tree", 1, scores));
+    Assert.assertEquals(1.0, scores[0], DELTA);
+  }
+
+  @Test
+  public void testUnknownTokens() {
+    InvertedIndex index = InvertedIndex.getBuilder()
+        .metric(MatchingCoefficient.getInstance()).build();
+    index.add("abc");
+    index.add("");
+
+    Assert.assertEquals(0, index.query("xyz", 5).length);
+    Assert.assertEquals(0, index.query("", 5).length);
+    Assert.assertArrayEquals(new int[]{0}, index.query("abx", 5));
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testUnsupportedMetric() {
+    InvertedIndex.getBuilder().metric(JaccardSimilarity.getInstance()).build();
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testHashedDimensions() {
+    InvertedIndex.getBuilder().metric(CosineDistance.getBuilder().dimensions(256).build()).build();
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testMultiset() {
+    InvertedIndex.getBuilder()
+        .metric(MatchingCoefficient.getBuilder().takeKeyset(false).build()).build();
+  }
+
+  private interface Scorer {
+
+    double score(String s1, String s2);
+  }
+
+  private static void testTopK(InvertedIndex index, Scorer scorer, Random rnd) {
+    String[] strings = new String[2000];
+    for (int i = 0; i < strings.length; i++) {
+      strings[i] = randomWords(rnd);
+      Assert.assertEquals(i, index.add(strings[i]));
+    }
+
+    for (int q = 0; q < 100; q++) {
+      String query = randomWords(rnd);
+      double[] expected = new double[strings.length];
+      int matches = 0;
+      for (int i = 0; i < strings.length; i++) {
+        expected[i] = -scorer.score(query, strings[i]);
+        matches += expected[i] < 0 ? 1 : 0;
+      }
+      Arrays.sort(expected);
+
+      double[] scores = new double[K];
+      int[] result = index.query(query, K, scores);
+      Assert.assertEquals(Math.min(K, matches), result.length);
+      for (int i = 0; i < result.length; i++) {
+        // ties may be broken differently, thus only the scores are compared
+        Assert.assertEquals(-expected[i], scores[i], DELTA);
+        Assert.assertEquals(scorer.score(query, strings[result[i]]), scores[i], DELTA);
+      }
+    }
+  }
+
+  private static String randomWords(Random rnd) {
+    StringBuilder sb = new StringBuilder();
+    int words = 1 + rnd.nextInt(6);
+    for (int w = 0; w < words; w++) {
+      // skewed word frequencies
+      sb.append('w').append((int) Math.pow(rnd.nextInt(40), 2) / 10).append(' ');
+    }
+    return sb.toString();
+  }
+}
@@ -0,0 +1,82 @@
+package ch.ethz.student.dejavu.index;
+
+import java.util.Arrays;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import ch.ethz.student.dejavu.DistanceMetric;
+import ch.ethz.student.dejavu.TestUtils;
+import ch.ethz.student.dejavu.vectors.CosineDistance;
+import ch.ethz.student.dejavu.vectors.L1Distance;
+import ch.ethz.student.dejavu.vectors.L2Distance;
+import ch.ethz.student.dejavu.vectors.VectorSimilarity;
+
+public class PStableLshTest {
+
+  @Test
+  public void testL1() {
+    L1Distance metric = L1Distance.getInstance();
+    // the heavy tails of the Cauchy distribution need wider buckets
+    testIndex(metric, metric, 2.0, 8.0);
+  }
+
+  @Test
+  public void testL2() {
+    L2Distance metric = L2Distance.getInstance();
+    testIndex(metric, metric, 1.5, 4.0);
+  }
+
+  @Test
+  public void testEmptyStrings() {
+    PStableLsh index = PStableLsh.getBuilder().metric(L1Distance.getInstance()).build();
+    index.add("");
+    index.add("abc");
+
+    Assert.assertArrayEquals(new int[]{0}, index.query("", 1.0));
+    Assert.assertArrayEquals(new int[]{1}, index.query("abc", 1.0));
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testUnsupportedMetric() {
+    PStableLsh.getBuilder().metric(CosineDistance.getInstance()).build();
+  }
+
+  private static void testIndex(VectorSimilarity metric, DistanceMetric distance, double radius,
+                                double width) {
+    PStableLsh index = PStableLsh.getBuilder().metric(metric).tables(16).hashes(3).width(width)
+        .build();
+    String[] strings = new String[1000];
+    for (int i = 0; i < strings.length; i++) {
+      strings[i] = TestUtils.getRandomString(5, 20);
+      Assert.assertEquals(i, index.add(strings[i]));
+    }
+
+    int expected = 0;
+    int found = 0;
+    for (int q = 0; q < 100; q++) {
+      // a near duplicate of an indexed string
+      String query = strings[q].substring(1) + "x";
+      int[] result = index.query(query, radius);
+
+      for (int i = 0; i < strings.length; i++) {
+        boolean within = distance.computeDistance(query, strings[i]) <= radius;
+        boolean reported = Arrays.binarySearch(result, i) >= 0;
+        // no false positives
+        Assert.assertTrue(within || !reported);
+        expected += within ? 1 : 0;
+        found += reported ? 1 : 0;
+      }
+
+      int[] nearest = index.query(strings[q], 3);
+      Assert.assertTrue(nearest.length >= 1);
+      Assert.assertEquals(0, distance.computeDistance(strings[q], strings[nearest[0]]),
+                          TestUtils.DELTA);
+      for (int i = 1; i < nearest.length; i++) {
+        Assert.assertTrue(distance.computeDistance(strings[q], strings[nearest[i - 1]])
+                          <= distance.computeDistance(strings[q], strings[nearest[i]]));
+      }
+    }
+    Assert.assertTrue("recall " + found + "/" + expected, found >= 0.8 * expected);
+  }
+}
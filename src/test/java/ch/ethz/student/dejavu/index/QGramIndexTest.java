@@ -0,0 +1,173 @@
+package ch.ethz.student.dejavu.index;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Random;
+
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import ch.ethz.student.dejavu.DistanceMetric;
+import ch.ethz.student.dejavu.TestUtils;
+import ch.ethz.student.dejavu.strings.DamerauLevenshteinDistance;
+import ch.ethz.student.dejavu.strings.LevenshteinDistance;
+import ch.ethz.student.dejavu.strings.OptimalStringAlignmentDistance;
+
+public class QGramIndexTest {
+
+  private static final String ALPHABET = "abcd";
+
+  @Rule
+  public TemporaryFolder folder = new TemporaryFolder();
+
+  @Test
+  public void testLevenshtein() {
+    testIndex(LevenshteinDistance.getInstance(), 2, new Random(101));
+    testIndex(LevenshteinDistance.getInstance(), 3, new Random(103));
+  }
+
+  @Test
+  public void testOptimalStringAlignment() {
+    testIndex(OptimalStringAlignmentDistance.getInstance(), 2, new Random(107));
+    testIndex(OptimalStringAlignmentDistance.getInstance(), 4, new Random(109));
+  }
+
+  @Test
+  public void testWeighted() {
+    testIndex(LevenshteinDistance.getBuilder().substitutionScore(0.5).build(), 2,
+              new Random(211));
+    testIndex(LevenshteinDistance.getBuilder().insertionScore(0.7).deletionScore(2).build(), 3,
+              new Random(223));
+    testIndex(OptimalStringAlignmentDistance.getBuilder().transpositionWeight(0.5)
+                  .insertionWeight(1.5).build(), 2, new Random(227));
+
+    QGramIndex index = QGramIndex.getBuilder()
+        .metric(LevenshteinDistance.getBuilder().substitutionScore(0.5).build()).build();
+    index.add("abcdefgh");
+    Assert.assertArrayEquals(new int[]{0}, index.query("abxdefyh", 1));
+  }
+
+  @Test
+  public void testShortStrings() {
+    QGramIndex index = QGramIndex.getInstance();
+    index.add("");
+    index.add("a");
+    index.add("abcdef");
+
+    Assert.assertArrayEquals(new int[]{0, 1}, index.query("", 1));
+    Assert.assertArrayEquals(new int[]{0, 1}, index.query("b", 1));
+    Assert.assertArrayEquals(new int[]{2}, index.query("abdcef", 2));
+    Assert.assertEquals("abcdef", index.getString(2));
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testUnsupportedMetric() {
+    QGramIndex.getBuilder().metric(DamerauLevenshteinDistance.getInstance()).build();
+  }
+
+  @Test
+  public void testWrite() throws IOException {
+    OptimalStringAlignmentDistance metric = OptimalStringAlignmentDistance.getInstance();
+    QGramIndex index = QGramIndex.getBuilder().metric(metric).q(2).build();
+    Random rnd = new Random(239);
+    for (int i = 0; i < 1000; i++) {
+      index.add(TestUtils.getRandomString(rnd, rnd.nextInt(12), ALPHABET));
+    }
+    File file = folder.newFile();
+    index.write(file);
+
+    QGramIndex opened = QGramIndex.open(file, metric);
+    Assert.assertEquals(index.size(), opened.size());
+    Assert.assertEquals(2, opened.getQ());
+    for (int q = 0; q < 50; q++) {
+      String query = TestUtils.getRandomString(rnd, rnd.nextInt(12), ALPHABET);
+      for (int k = 0; k <= 3; k++) {
+        Assert.assertArrayEquals(index.query(query, k), opened.query(query, k));
+      }
+    }
+
+    // an opened index can be written again
+    File copy = folder.newFile();
+    opened.write(copy);
+    Assert.assertEquals(file.length(), copy.length());
+  }
+
+  @Test
+  public void testWriteEmpty() throws IOException {
+    File file = folder.newFile();
+    QGramIndex.getInstance().write(file);
+    QGramIndex opened = QGramIndex.open(file, LevenshteinDistance.getInstance());
+    Assert.assertEquals(0, opened.size());
+    Assert.assertEquals(0, opened.query("abc", 1).length);
+  }
+
+  @Test(expected = UnsupportedOperationException.class)
+  public void testOpenedIsReadOnly() throws IOException {
+    File file = folder.newFile();
+    QGramIndex.getInstance().write(file);
+    QGramIndex.open(file, LevenshteinDistance.getInstance()).add("abc");
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testOpenWithOtherWeights() throws IOException {
+    File file = folder.newFile();
+    QGramIndex.getInstance().write(file);
+    QGramIndex.open(file, LevenshteinDistance.getBuilder().deletionScore(0.5).build());
+  }
+
+  private static void testIndex(DistanceMetric metric, int q, Random rnd) {
+    QGramIndex index = QGramIndex.getBuilder().metric(metric).q(q).build();
+    String[] strings = new String[1000];
+    for (int i = 0; i < strings.length; i++) {
+      strings[i] = TestUtils.getRandomString(rnd, rnd.nextInt(12), ALPHABET);
+      Assert.assertEquals(i, index.add(strings[i]));
+    }
+
+    for (int n = 0; n < 50; n++) {
+      // a modified entry, thus some results are close
+      String query = mutate(rnd, strings[rnd.nextInt(strings.length)]);
+      for (int k = 0; k <= 3; k++) {
+        int[] expected = new int[strings.length];
+        int count = 0;
+        for (int i = 0; i < strings.length; i++) {
+          if (metric.computeDistance(query, strings[i]) <= k) {
+            expected[count++] = i;
+          }
+        }
+        Assert.assertArrayEquals(Arrays.copyOf(expected, count), index.query(query, k));
+      }
+    }
+  }
+
+  private static String mutate(Random rnd, String s) {
+    StringBuilder sb = new StringBuilder(s);
+    for (int e = rnd.nextInt(3); e >= 0; e--) {
+      int i = sb.length() == 0 ? 0 : rnd.nextInt(sb.length());
+      switch (rnd.nextInt(4)) {
+        case 0:
+          sb.insert(i, (char) ('a' + rnd.nextInt(4)));
+          break;
+        case 1:
+          if (sb.length() > 0) {
+            sb.deleteCharAt(i);
+          }
+          break;
+        case 2:
+          if (sb.length() > 0) {
+            sb.setCharAt(i, (char) ('a' + rnd.nextInt(4)));
+          }
+          break;
+        default:
+          if (i + 1 < sb.length()) {
+            char c = sb.charAt(i);
+            sb.setCharAt(i, sb.charAt(i + 1));
+            sb.setCharAt(i + 1, c);
+          }
+      }
+    }
+    return sb.toString();
+  }
+}
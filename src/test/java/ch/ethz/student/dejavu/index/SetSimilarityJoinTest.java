@@ -0,0 +1,195 @@
+package ch.ethz.student.dejavu.index;
+
+import java.util.HashSet;
+import java.util.Random;
+import java.util.Set;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import ch.ethz.student.dejavu.SimilarityMetric;
+import ch.ethz.student.dejavu.TestUtils;
+import ch.ethz.student.dejavu.vectors.CosineDistance;
+import ch.ethz.student.dejavu.vectors.DiceCoefficient;
+import ch.ethz.student.dejavu.vectors.Granularity;
+import ch.ethz.student.dejavu.vectors.JaccardSimilarity;
+import ch.ethz.student.dejavu.vectors.OverlapCoefficient;
+import ch.ethz.student.dejavu.vectors.TverskyIndex;
+import ch.ethz.student.dejavu.vectors.VectorSimilarity;
+
+public class SetSimilarityJoinTest {
+
+  private static final double[] THRESHOLDS = {0.3, 0.5, 0.8, 1.0};
+
+  @Test
+  public void testJaccard() {
+    JaccardSimilarity metric = JaccardSimilarity.getBuilder()
+        .granularity(Granularity.WORD_BASED).build();
+    testSelfJoin(metric, metric);
+    testJoin(metric, metric);
+  }
+
+  @Test
+  public void testDice() {
+    DiceCoefficient metric = DiceCoefficient.getBuilder()
+        .granularity(Granularity.WORD_BASED).build();
+    testSelfJoin(metric, metric);
+    testJoin(metric, metric);
+  }
+
+  @Test
+  public void testOverlap() {
+    OverlapCoefficient metric = OverlapCoefficient.getBuilder()
+        .granularity(Granularity.WORD_BASED).build();
+    testSelfJoin(metric, metric);
+    testJoin(metric, metric);
+  }
+
+  @Test
+  public void testCosine() {
+    final CosineDistance metric = CosineDistance.getBuilder()
+        .granularity(Granularity.WORD_BASED).build();
+    // the join compares the sets of distinct tokens
+    SimilarityMetric setCosine = new SimilarityMetric() {
+      @Override
+      public double computeSimilarity(String s1, String s2) {
+        Set<Object> tokens1 = metric.getTokenSet(s1);
+        Set<Object> tokens2 = metric.getTokenSet(s2);
+        double size = Math.sqrt((double) tokens1.size() * tokens2.size());
+        tokens1.retainAll(tokens2);
+        return tokens1.size() / size;
+      }
+    };
+    testSelfJoin(metric, setCosine);
+    testJoin(metric, setCosine);
+
+    // without repeated tokens the set cosine is the score of the metric
+    Random rnd = new Random(13);
+    String[] strings = new String[300];
+    for (int i = 0; i < strings.length; i++) {
+      Set<Integer> words = new HashSet<Integer>();
+      for (int w = rnd.nextInt(8); w > 0; w--) {
+        words.add((int) Math.abs(rnd.nextGaussian() * 6));
+      }
+      StringBuilder sb = new StringBuilder();
+      for (int word : words) {
+        sb.append('w').append(word).append(' ');
+      }
+      strings[i] = sb.toString().trim();
+    }
+    for (int i = 0; i < strings.length; i++) {
+      for (int j = i + 1; j < strings.length; j++) {
+        if (!strings[i].isEmpty() && !strings[j].isEmpty()) {
+          Assert.assertEquals(metric.computeUnnormalizedSimilarity(strings[i], strings[j]),
+                              setCosine.computeSimilarity(strings[i], strings[j]),
+                              TestUtils.DELTA);
+        }
+      }
+    }
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testHashedDimensions() {
+    SetSimilarityJoin.getBuilder().metric(CosineDistance.getBuilder().dimensions(256).build())
+        .build();
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testMultiset() {
+    SetSimilarityJoin.getBuilder().metric(JaccardSimilarity.getBuilder().takeKeyset(false).build())
+        .build();
+  }
+
+  @Test
+  public void testCharacters() {
+    JaccardSimilarity metric = JaccardSimilarity.getInstance();
+    String[] strings = new String[300];
+    for (int i = 0; i < strings.length; i++) {
+      strings[i] = TestUtils.getRandomString(5, 15);
+    }
+    testSelfJoin(metric, metric, strings, 0.5);
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testUnsupportedMetric() {
+    SetSimilarityJoin.getBuilder().metric(TverskyIndex.getInstance()).build();
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testInvalidThreshold() {
+    SetSimilarityJoin.getBuilder().metric(JaccardSimilarity.getInstance()).threshold(0).build();
+  }
+
+  private void testSelfJoin(VectorSimilarity metric, SimilarityMetric reference) {
+    String[] strings = randomRecords(new Random(7), 400);
+    for (double t : THRESHOLDS) {
+      testSelfJoin(metric, reference, strings, t);
+    }
+  }
+
+  private void testJoin(VectorSimilarity metric, SimilarityMetric reference) {
+    Random rnd = new Random(11);
+    String[] r = randomRecords(rnd, 200);
+    String[] s = randomRecords(rnd, 300);
+    for (double t : THRESHOLDS) {
+      SetSimilarityJoin join = SetSimilarityJoin.getBuilder().metric(metric).threshold(t).build();
+      Collector collector = new Collector(r.length, s.length);
+      join.join(r, s, collector);
+
+      for (int i = 0; i < r.length; i++) {
+        for (int j = 0; j < s.length; j++) {
+          boolean expected = !r[i].isEmpty() && !s[j].isEmpty()
+                             && reference.computeSimilarity(r[i], s[j]) >= t;
+          Assert.assertEquals("t=" + t + " '" + r[i] + "' '" + s[j] + "'", expected,
+                              collector.found[i][j]);
+        }
+      }
+    }
+  }
+
+  private void testSelfJoin(VectorSimilarity metric, SimilarityMetric reference, String[] strings,
+                            double t) {
+    SetSimilarityJoin join = SetSimilarityJoin.getBuilder().metric(metric).threshold(t).build();
+    Collector collector = new Collector(strings.length, strings.length);
+    join.selfJoin(strings, collector);
+
+    for (int i = 0; i < strings.length; i++) {
+      for (int j = i + 1; j < strings.length; j++) {
+        boolean expected = !strings[i].isEmpty() && !strings[j].isEmpty()
+                           && reference.computeSimilarity(strings[i], strings[j]) >= t;
+        Assert.assertEquals("t=" + t + " '" + strings[i] + "' '" + strings[j] + "'", expected,
+                            collector.found[i][j]);
+      }
+    }
+  }
+
+  private static String[] randomRecords(Random rnd, int n) {
+    String[] records = new String[n];
+    for (int i = 0; i < n; i++) {
+      StringBuilder sb = new StringBuilder();
+      int words = rnd.nextInt(8);
+      for (int w = 0; w < words; w++) {
+        // skewed vocabulary, thus frequent and rare tokens
+        int token = (int) Math.abs(rnd.nextGaussian() * 6);
+        sb.append('w').append(token).append(' ');
+      }
+      records[i] = sb.toString().trim();
+    }
+    return records;
+  }
+
+  private static class Collector implements PairHandler {
+
+    boolean[][] found;
+
+    Collector(int n, int m) {
+      found = new boolean[n][m];
+    }
+
+    @Override
+    public void pair(int i, int j, double similarity) {
+      Assert.assertFalse("pair reported twice", found[i][j]);
+      found[i][j] = true;
+    }
+  }
+}
@@ -0,0 +1,96 @@
+package ch.ethz.student.dejavu.index;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import ch.ethz.student.dejavu.vectors.SimHash;
+
+public class SimHashIndexTest {
+
+  private static final int N = 2000;
+
+  @Test
+  public void testQuery64() {
+    testQuery(64, 3);
+  }
+
+  @Test
+  public void testQuery128() {
+    testQuery(128, 6);
+  }
+
+  @Test
+  public void testExactMatch128() {
+    testQuery(128, 0);
+  }
+
+  @Test
+  public void testStrings() {
+    SimHash simHash = SimHash.getInstance();
+    SimHashIndex index = SimHashIndex.getInstance();
+
+    int id = index.add(simHash.fingerprint("MARTHA"));
+    index.add(simHash.fingerprint("0123456789"));
+
+    int[] result = index.query(simHash.fingerprint("MARHTA"));
+    Assert.assertArrayEquals(new int[]{id}, result);
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testInvalidFingerprint() {
+    SimHashIndex.getInstance().add(new long[2]);
+  }
+
+  private void testQuery(int bits, int maxDistance) {
+    Random rnd = new Random(42);
+    int words = bits / 64;
+    SimHashIndex index = SimHashIndex.getBuilder().bits(bits).maxDistance(maxDistance).build();
+
+    List<long[]> fingerprints = new ArrayList<long[]>();
+    long[] base = randomFingerprint(rnd, words);
+    for (int i = 0; i < N; i++) {
+      // half of the entries are close to base
+      long[] fp = i % 2 == 0 ? randomFingerprint(rnd, words) : flip(rnd, base, i % 10);
+      fingerprints.add(fp);
+      Assert.assertEquals(i, index.add(fp));
+    }
+
+    for (int q = 0; q < 50; q++) {
+      long[] query = q % 2 == 0 ? fingerprints.get(rnd.nextInt(N)) : flip(rnd, base, q % 5);
+
+      List<Integer> expected = new ArrayList<Integer>();
+      for (int i = 0; i < N; i++) {
+        if (SimHash.hammingDistance(query, fingerprints.get(i)) <= maxDistance) {
+          expected.add(i);
+        }
+      }
+
+      int[] result = index.query(query);
+      Assert.assertEquals(expected.size(), result.length);
+      for (int i = 0; i < result.length; i++) {
+        Assert.assertEquals((int) expected.get(i), result[i]);
+      }
+    }
+  }
+
+  private static long[] randomFingerprint(Random rnd, int words) {
+    long[] fp = new long[words];
+    for (int i = 0; i < words; i++) {
+      fp[i] = rnd.nextLong();
+    }
+    return fp;
+  }
+
+  private static long[] flip(Random rnd, long[] fp, int bits) {
+    long[] copy = fp.clone();
+    for (int i = 0; i < bits; i++) {
+      int bit = rnd.nextInt(copy.length * 64);
+      copy[bit >>> 6] ^= 1L << bit;
+    }
+    return copy;
+  }
+}
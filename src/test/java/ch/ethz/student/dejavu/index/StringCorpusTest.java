@@ -0,0 +1,112 @@
+package ch.ethz.student.dejavu.index;
+
+import java.io.File;
+import java.io.IOException;
+
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import ch.ethz.student.dejavu.TestUtils;
+import ch.ethz.student.dejavu.strings.HammingMetric;
+import ch.ethz.student.dejavu.strings.LevenshteinDistance;
+import ch.ethz.student.dejavu.strings.OptimalStringAlignmentDistance;
+
+public class StringCorpusTest {
+
+  @Rule
+  public TemporaryFolder folder = new TemporaryFolder();
+
+  @Test
+  public void testStorages() throws IOException {
+    for (StringCorpus.Storage storage : StringCorpus.Storage.values()) {
+      for (StringCorpus.Encoding encoding : StringCorpus.Encoding.values()) {
+        StringCorpus corpus = StringCorpus.getBuilder().storage(storage).encoding(encoding)
+            .capacity(0).build();
+        String[] strings = fill(corpus, 500);
+        assertStrings(strings, corpus);
+
+        File file = folder.newFile();
+        corpus.write(file);
+        assertStrings(strings, StringCorpus.open(file));
+      }
+    }
+  }
+
+  @Test
+  public void testViews() {
+    StringCorpus corpus = StringCorpus.getInstance();
+    corpus.add("");
+    corpus.add("k\u00e4se \u20ac");
+
+    Assert.assertEquals("", corpus.getString(0));
+    Assert.assertEquals(0, corpus.length(0));
+    CharSequence view = corpus.get(1);
+    Assert.assertEquals(6, view.length());
+    Assert.assertEquals('\u20ac', view.charAt(5));
+    Assert.assertEquals("\u00e4se", view.subSequence(1, 4).toString());
+    Assert.assertEquals("se", view.subSequence(1, 4).subSequence(1, 3).toString());
+    Assert.assertEquals('s', corpus.charAt(1, 2));
+    Assert.assertEquals(12, corpus.getDataSize());
+  }
+
+  @Test
+  public void testMetrics() {
+    LevenshteinDistance levenshtein = LevenshteinDistance.getInstance();
+    OptimalStringAlignmentDistance osa = OptimalStringAlignmentDistance.getInstance();
+    HammingMetric hamming = HammingMetric.getInstance();
+    StringCorpus corpus = StringCorpus.getBuilder().encoding(StringCorpus.Encoding.LATIN1)
+        .build();
+    String[] strings = fill(corpus, 100);
+
+    for (int i = 1; i < strings.length; i++) {
+      CharSequence a = corpus.get(i - 1);
+      CharSequence b = corpus.get(i);
+      String s = strings[i - 1];
+      String t = strings[i];
+      Assert.assertEquals(levenshtein.computeDistance(s, t), levenshtein.computeDistance(a, b),
+                          TestUtils.DELTA);
+      Assert.assertEquals(levenshtein.computeDistance(s, t, 3),
+                          levenshtein.computeDistance(a, b, 3), TestUtils.DELTA);
+      Assert.assertEquals(osa.computeSimilarity(s, t), osa.computeSimilarity(a, b),
+                          TestUtils.DELTA);
+      Assert.assertEquals(hamming.computeDistance(s, s), hamming.computeDistance(a, a),
+                          TestUtils.DELTA);
+    }
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testNotLatin1() {
+    StringCorpus.getBuilder().encoding(StringCorpus.Encoding.LATIN1).build().add("\u20ac");
+  }
+
+  @Test(expected = UnsupportedOperationException.class)
+  public void testOpenedIsReadOnly() throws IOException {
+    File file = folder.newFile();
+    StringCorpus.getInstance().write(file);
+    StringCorpus.open(file).add("abc");
+  }
+
+  @Test(expected = IndexOutOfBoundsException.class)
+  public void testInvalidId() {
+    StringCorpus.getInstance().get(0);
+  }
+
+  private static String[] fill(StringCorpus corpus, int n) {
+    String[] strings = new String[n];
+    for (int i = 0; i < n; i++) {
+      strings[i] = TestUtils.getRandomString(1, 20);
+      Assert.assertEquals(i, corpus.add(strings[i]));
+    }
+    return strings;
+  }
+
+  private static void assertStrings(String[] strings, StringCorpus corpus) {
+    Assert.assertEquals(strings.length, corpus.size());
+    for (int i = 0; i < strings.length; i++) {
+      Assert.assertEquals(strings[i], corpus.getString(i));
+      Assert.assertEquals(strings[i].length(), corpus.length(i));
+    }
+  }
+}
@@ -0,0 +1,152 @@
+package ch.ethz.student.dejavu.index;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Random;
+
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import ch.ethz.student.dejavu.BoundedDistanceMetric;
+import ch.ethz.student.dejavu.TestUtils;
+import ch.ethz.student.dejavu.strings.DamerauLevenshteinDistance;
+import ch.ethz.student.dejavu.strings.LevenshteinDistance;
+import ch.ethz.student.dejavu.strings.OptimalStringAlignmentDistance;
+
+public class SymSpellIndexTest {
+
+  private static final String ALPHABET = "abcd";
+
+  @Rule
+  public TemporaryFolder folder = new TemporaryFolder();
+
+  @Test
+  public void testOptimalStringAlignment() {
+    testIndex(OptimalStringAlignmentDistance.getInstance(), new Random(199));
+  }
+
+  @Test
+  public void testLevenshtein() {
+    testIndex(LevenshteinDistance.getInstance(), new Random(211));
+  }
+
+  @Test
+  public void testDamerauLevenshtein() {
+    testIndex(DamerauLevenshteinDistance.getInstance(), new Random(223));
+  }
+
+  @Test
+  public void testWeighted() {
+    testIndex(LevenshteinDistance.getBuilder().substitutionScore(0.5).build(), new Random(251));
+    testIndex(OptimalStringAlignmentDistance.getBuilder().transpositionWeight(0.5)
+                  .insertionWeight(1.5).build(), new Random(257));
+
+    SymSpellIndex index = SymSpellIndex.getBuilder()
+        .metric(LevenshteinDistance.getBuilder().substitutionScore(0.5).build()).maxDistance(1)
+        .prefixLength(0).build();
+    index.add("abcd");
+    Assert.assertArrayEquals(new int[]{0}, index.query("xycd", 1));
+  }
+
+  @Test
+  public void testPrefixLength() {
+    Random rnd = new Random(227);
+    SymSpellIndex exact = SymSpellIndex.getBuilder().prefixLength(0).build();
+    SymSpellIndex capped = SymSpellIndex.getBuilder().prefixLength(4).build();
+    String[] terms = new String[1000];
+    for (int i = 0; i < terms.length; i++) {
+      terms[i] = TestUtils.getRandomString(rnd, 3 + rnd.nextInt(10), ALPHABET);
+      exact.add(terms[i]);
+      capped.add(terms[i]);
+    }
+
+    for (int q = 0; q < 200; q++) {
+      String query = q % 2 == 0 ? terms[rnd.nextInt(terms.length)]
+                                : TestUtils.getRandomString(rnd, 3 + rnd.nextInt(10), ALPHABET);
+      int[] all = exact.query(query, 2);
+      // the capped index finds a subset, including the equal terms
+      for (int id : capped.query(query, 2)) {
+        Assert.assertTrue(Arrays.binarySearch(all, id) >= 0);
+      }
+      for (int id : exact.query(query, 0)) {
+        Assert.assertTrue(Arrays.binarySearch(capped.query(query, 0), id) >= 0);
+      }
+    }
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testDistanceTooLarge() {
+    SymSpellIndex.getBuilder().maxDistance(1).build().query("abc", 2);
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testPrefixTooShort() {
+    SymSpellIndex.getBuilder().maxDistance(2).prefixLength(2).build();
+  }
+
+  @Test
+  public void testWrite() throws IOException {
+    SymSpellIndex index = SymSpellIndex.getInstance();
+    Random rnd = new Random(241);
+    for (int i = 0; i < 1000; i++) {
+      index.add(TestUtils.getRandomString(rnd, 3 + rnd.nextInt(10), ALPHABET));
+    }
+    File file = folder.newFile();
+    index.write(file);
+
+    SymSpellIndex opened = SymSpellIndex.open(file, OptimalStringAlignmentDistance.getInstance());
+    Assert.assertEquals(index.size(), opened.size());
+    for (int q = 0; q < 100; q++) {
+      String query = TestUtils.getRandomString(rnd, 3 + rnd.nextInt(10), ALPHABET);
+      for (int k = 0; k <= 2; k++) {
+        Assert.assertArrayEquals(index.query(query, k), opened.query(query, k));
+      }
+    }
+
+    // an opened index can be written again
+    File copy = folder.newFile();
+    opened.write(copy);
+    Assert.assertEquals(file.length(), copy.length());
+  }
+
+  @Test(expected = UnsupportedOperationException.class)
+  public void testOpenedIsReadOnly() throws IOException {
+    File file = folder.newFile();
+    SymSpellIndex.getInstance().write(file);
+    SymSpellIndex.open(file, OptimalStringAlignmentDistance.getInstance()).add("abc");
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testOpenWithOtherWeights() throws IOException {
+    File file = folder.newFile();
+    SymSpellIndex.getInstance().write(file);
+    SymSpellIndex.open(file, OptimalStringAlignmentDistance.getBuilder().transpositionWeight(2)
+        .build());
+  }
+
+  private static void testIndex(BoundedDistanceMetric metric, Random rnd) {
+    SymSpellIndex index = SymSpellIndex.getBuilder().metric(metric).prefixLength(0).build();
+    String[] terms = new String[1000];
+    for (int i = 0; i < terms.length; i++) {
+      terms[i] = TestUtils.getRandomString(rnd, rnd.nextInt(8), ALPHABET);
+      Assert.assertEquals(i, index.add(terms[i]));
+    }
+
+    for (int q = 0; q < 100; q++) {
+      String query = TestUtils.getRandomString(rnd, rnd.nextInt(8), ALPHABET);
+      for (int k = 0; k <= 2; k++) {
+        int[] expected = new int[terms.length];
+        int count = 0;
+        for (int i = 0; i < terms.length; i++) {
+          if (metric.computeDistance(query, terms[i]) <= k) {
+            expected[count++] = i;
+          }
+        }
+        Assert.assertArrayEquals(Arrays.copyOf(expected, count), index.query(query, k));
+      }
+    }
+  }
+}
@@ -0,0 +1,121 @@
+package ch.ethz.student.dejavu.index;
+
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Random;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import ch.ethz.student.dejavu.DistanceMetric;
+import ch.ethz.student.dejavu.SimilarityMetric;
+import ch.ethz.student.dejavu.TestUtils;
+import ch.ethz.student.dejavu.strings.JaroWinklerMetric;
+import ch.ethz.student.dejavu.strings.LevenshteinDistance;
+import ch.ethz.student.dejavu.strings.SmithWatermanDistance;
+import ch.ethz.student.dejavu.vectors.JaccardSimilarity;
+
+public class TopKTest {
+
+  private static final String ALPHABET = "abcde";
+
+  @Test
+  public void testNearest() {
+    Random rnd = new Random(269);
+    String[] candidates = randomStrings(rnd, 2000);
+    for (int q = 0; q < 20; q++) {
+      String query = TestUtils.getRandomString(rnd, 1 + rnd.nextInt(10), ALPHABET);
+      for (int k : new int[]{1, 10, 50}) {
+        testNearest(LevenshteinDistance.getInstance(), query, candidates, k);
+        // without bounds
+        testNearest(SmithWatermanDistance.getInstance(), query, candidates, k);
+      }
+    }
+  }
+
+  @Test
+  public void testBest() {
+    Random rnd = new Random(271);
+    String[] candidates = randomStrings(rnd, 2000);
+    for (int q = 0; q < 20; q++) {
+      String query = TestUtils.getRandomString(rnd, 1 + rnd.nextInt(10), ALPHABET);
+      for (int k : new int[]{1, 10, 50}) {
+        testBest(LevenshteinDistance.getInstance(), query, candidates, k);
+        testBest(JaroWinklerMetric.getInstance(), query, candidates, k);
+        testBest(JaccardSimilarity.getInstance(), query, candidates, k);
+      }
+    }
+  }
+
+  @Test
+  public void testSmallBlocks() {
+    String[] candidates = {"house", "horse", "mouse"};
+    double[] distances = new double[3];
+    Assert.assertArrayEquals(new int[]{0, 1, 2},
+                             TopK.nearest("house", candidates, 5, LevenshteinDistance.getInstance(),
+                                          distances));
+    Assert.assertArrayEquals(new double[]{0, 1, 1}, distances, 0);
+    Assert.assertEquals(0, TopK.best("house", candidates, 0, JaroWinklerMetric.getInstance(),
+                                     null).length);
+    Assert.assertEquals(0, TopK.best("house", new String[0], 3,
+                                     JaroWinklerMetric.getInstance(), null).length);
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testNegativeK() {
+    TopK.nearest("a", new String[]{"b"}, -1, LevenshteinDistance.getInstance(), null);
+  }
+
+  private static void testNearest(final DistanceMetric metric, final String query,
+                                  String[] candidates, int k) {
+    double[] distances = new double[k];
+    int[] result = TopK.nearest(query, candidates, k, metric, distances);
+
+    final double[] expected = new double[candidates.length];
+    for (int i = 0; i < candidates.length; i++) {
+      expected[i] = metric.computeDistance(query, candidates[i]);
+    }
+    assertRanking(result, distances, expected, k, false);
+  }
+
+  private static void testBest(SimilarityMetric metric, String query, String[] candidates,
+                               int k) {
+    double[] similarities = new double[k];
+    int[] result = TopK.best(query, candidates, k, metric, similarities);
+
+    double[] expected = new double[candidates.length];
+    for (int i = 0; i < candidates.length; i++) {
+      expected[i] = metric.computeSimilarity(query, candidates[i]);
+    }
+    assertRanking(result, similarities, expected, k, true);
+  }
+
+  private static void assertRanking(int[] result, double[] scores, final double[] expected,
+                                    int k, final boolean descending) {
+    Integer[] order = new Integer[expected.length];
+    for (int i = 0; i < order.length; i++) {
+      order[i] = i;
+    }
+    Arrays.sort(order, new Comparator<Integer>() {
+      @Override
+      public int compare(Integer a, Integer b) {
+        int c = Double.compare(expected[a], expected[b]);
+        return c != 0 ? (descending ? -c : c) : a.compareTo(b);
+      }
+    });
+
+    Assert.assertEquals(k, result.length);
+    for (int r = 0; r < k; r++) {
+      Assert.assertEquals(order[r].intValue(), result[r]);
+      Assert.assertEquals(expected[result[r]], scores[r], 0);
+    }
+  }
+
+  private static String[] randomStrings(Random rnd, int n) {
+    String[] strings = new String[n];
+    for (int i = 0; i < n; i++) {
+      strings[i] = TestUtils.getRandomString(rnd, 1 + rnd.nextInt(12), ALPHABET);
+    }
+    return strings;
+  }
+}
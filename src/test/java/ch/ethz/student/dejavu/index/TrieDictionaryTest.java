@@ -0,0 +1,126 @@
+package ch.ethz.student.dejavu.index;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Random;
+
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import ch.ethz.student.dejavu.DistanceMetric;
+import ch.ethz.student.dejavu.TestUtils;
+import ch.ethz.student.dejavu.strings.DamerauLevenshteinDistance;
+import ch.ethz.student.dejavu.strings.LevenshteinDistance;
+import ch.ethz.student.dejavu.strings.OptimalStringAlignmentDistance;
+
+public class TrieDictionaryTest {
+
+  private static final String ALPHABET = "abcd";
+  private static final double[] DISTANCES = {0, 1, 1.5, 2, 3};
+
+  @Rule
+  public TemporaryFolder folder = new TemporaryFolder();
+
+  @Test
+  public void testLevenshtein() {
+    testDictionary(LevenshteinDistance.getInstance(), new Random(181));
+    testDictionary(LevenshteinDistance.getBuilder().insertionScore(1.5).deletionScore(0.5)
+                       .substitutionScore(2).build(), new Random(191));
+  }
+
+  @Test
+  public void testOptimalStringAlignment() {
+    testDictionary(OptimalStringAlignmentDistance.getInstance(), new Random(193));
+    testDictionary(OptimalStringAlignmentDistance.getBuilder().insertionWeight(0.5)
+                       .transpositionWeight(0.7).build(), new Random(197));
+  }
+
+  @Test
+  public void testTerms() {
+    TrieDictionary dictionary = TrieDictionary.getInstance();
+    Assert.assertEquals(0, dictionary.add("house"));
+    Assert.assertEquals(1, dictionary.add("horse"));
+    Assert.assertEquals(0, dictionary.add("house"));
+    Assert.assertEquals(2, dictionary.add(""));
+
+    Assert.assertEquals(3, dictionary.size());
+    Assert.assertEquals(1, dictionary.getId("horse"));
+    Assert.assertEquals(-1, dictionary.getId("hors"));
+    Assert.assertEquals("horse", dictionary.getTerm(1));
+    Assert.assertArrayEquals(new int[]{0, 1}, dictionary.query("hose", 1.0));
+    Assert.assertArrayEquals(new int[]{2}, dictionary.query("a", 1.0));
+  }
+
+  @Test
+  public void testOpen() throws IOException {
+    OptimalStringAlignmentDistance metric = OptimalStringAlignmentDistance.getBuilder()
+        .substitutionWeight(1.5).build();
+    TrieDictionary dictionary = TrieDictionary.getBuilder().metric(metric).build();
+    Random rnd = new Random(199);
+    for (int i = 0; i < 1000; i++) {
+      dictionary.add(TestUtils.getRandomString(rnd, rnd.nextInt(9), ALPHABET));
+    }
+    File file = folder.newFile();
+    dictionary.write(file);
+
+    TrieDictionary opened = TrieDictionary.open(file);
+    Assert.assertEquals(dictionary.size(), opened.size());
+    for (int id = 0; id < dictionary.size(); id++) {
+      Assert.assertEquals(dictionary.getTerm(id), opened.getTerm(id));
+      Assert.assertEquals(id, opened.getId(dictionary.getTerm(id)));
+    }
+    for (int q = 0; q < 100; q++) {
+      String query = TestUtils.getRandomString(rnd, rnd.nextInt(9), ALPHABET);
+      for (double k : DISTANCES) {
+        Assert.assertArrayEquals(dictionary.query(query, k), opened.query(query, k));
+      }
+    }
+
+    // an opened dictionary can be written again
+    File copy = folder.newFile();
+    opened.write(copy);
+    Assert.assertEquals(file.length(), copy.length());
+  }
+
+  @Test(expected = UnsupportedOperationException.class)
+  public void testOpenedIsReadOnly() throws IOException {
+    File file = folder.newFile();
+    TrieDictionary.getInstance().write(file);
+    TrieDictionary.open(file).add("house");
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testUnsupportedMetric() {
+    TrieDictionary.getBuilder().metric(DamerauLevenshteinDistance.getInstance()).build();
+  }
+
+  private static void testDictionary(DistanceMetric metric, Random rnd) {
+    TrieDictionary dictionary = TrieDictionary.getBuilder().metric(metric).build();
+    String[] terms = new String[1500];
+    int count = 0;
+    for (int i = 0; i < terms.length; i++) {
+      String term = TestUtils.getRandomString(rnd, rnd.nextInt(9), ALPHABET);
+      if (dictionary.add(term) == count) {
+        terms[count++] = term;
+      }
+    }
+    Assert.assertEquals(count, dictionary.size());
+
+    for (int q = 0; q < 100; q++) {
+      String query = TestUtils.getRandomString(rnd, rnd.nextInt(9), ALPHABET);
+      for (double k : DISTANCES) {
+        int[] expected = new int[count];
+        int found = 0;
+        for (int i = 0; i < count; i++) {
+          if (metric.computeDistance(query, terms[i]) <= k) {
+            expected[found++] = i;
+          }
+        }
+        Assert.assertArrayEquals(Arrays.copyOf(expected, found), dictionary.query(query, k));
+      }
+    }
+  }
+}
@@ -0,0 +1,163 @@
+package ch.ethz.student.dejavu.index;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Random;
+
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import ch.ethz.student.dejavu.DistanceMetric;
+import ch.ethz.student.dejavu.TestUtils;
+import ch.ethz.student.dejavu.strings.LevenshteinDistance;
+import ch.ethz.student.dejavu.vectors.L2Distance;
+
+public class VPTreeTest {
+
+  private static final String ALPHABET = "abcde";
+
+  @Rule
+  public TemporaryFolder folder = new TemporaryFolder();
+
+  @Test
+  public void testWeightedLevenshtein() {
+    DistanceMetric metric = LevenshteinDistance.getBuilder().insertionScore(1.5)
+        .deletionScore(1.5).substitutionScore(0.7).build();
+    testTree(VPTree.getBuilder().metric(metric).build(), metric, 2000, new double[]{0.7, 2, 3.5},
+             new Random(167));
+  }
+
+  @Test
+  public void testL2() {
+    DistanceMetric metric = L2Distance.getInstance();
+    testTree(VPTree.getBuilder().metric(metric).selection(VPTree.Selection.MAX_SPREAD).build(),
+             metric, 1000, new double[]{1, 2, 3}, new Random(173));
+  }
+
+  @Test
+  public void testParallelBuild() {
+    DistanceMetric metric = LevenshteinDistance.getInstance();
+    testTree(VPTree.getBuilder().metric(metric).parallel(true).leafSize(4).build(), metric, 6000,
+             new double[]{1, 2}, new Random(179));
+  }
+
+  @Test
+  public void testDuplicates() {
+    // few distinct strings give long runs of equal distances in every node
+    DistanceMetric metric = LevenshteinDistance.getInstance();
+    VPTree tree = VPTree.getBuilder().metric(metric).build();
+    Random rnd = new Random(239);
+    String[] distinct = {"abc", "abd", "bcd", "abcde"};
+    String[] strings = new String[40000];
+    for (int i = 0; i < strings.length; i++) {
+      strings[i] = i % 2 == 0 ? "abc" : distinct[rnd.nextInt(distinct.length)];
+      tree.add(strings[i]);
+    }
+
+    for (String query : new String[]{"abc", "bcd", "eee"}) {
+      for (double r : new double[]{0, 1, 2}) {
+        int[] expected = new int[strings.length];
+        int count = 0;
+        for (int i = 0; i < strings.length; i++) {
+          if (metric.computeDistance(query, strings[i]) <= r) {
+            expected[count++] = i;
+          }
+        }
+        Assert.assertArrayEquals(Arrays.copyOf(expected, count), tree.query(query, r));
+      }
+    }
+  }
+
+  @Test
+  public void testEmpty() {
+    VPTree tree = VPTree.getBuilder().metric(LevenshteinDistance.getInstance()).build();
+    Assert.assertEquals(0, tree.query("abc", 2.0).length);
+    Assert.assertEquals(0, tree.query("abc", 2).length);
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testMissingMetric() {
+    VPTree.getBuilder().build();
+  }
+
+  @Test
+  public void testWrite() throws IOException {
+    DistanceMetric metric = LevenshteinDistance.getBuilder().substitutionScore(0.7).build();
+    VPTree tree = VPTree.getBuilder().metric(metric).leafSize(4).build();
+    Random rnd = new Random(233);
+    for (int i = 0; i < 1000; i++) {
+      tree.add(TestUtils.getRandomString(rnd, 3 + rnd.nextInt(8), ALPHABET));
+    }
+    File file = folder.newFile();
+    tree.write(file);
+
+    VPTree opened = VPTree.open(file, metric);
+    Assert.assertEquals(tree.size(), opened.size());
+    for (int q = 0; q < 50; q++) {
+      String query = TestUtils.getRandomString(rnd, 3 + rnd.nextInt(8), ALPHABET);
+      for (double radius : new double[]{0.7, 2, 3.5}) {
+        Assert.assertArrayEquals(tree.query(query, radius), opened.query(query, radius));
+      }
+    }
+
+    // an opened tree can be written again
+    File copy = folder.newFile();
+    opened.write(copy);
+    Assert.assertEquals(file.length(), copy.length());
+  }
+
+  @Test(expected = UnsupportedOperationException.class)
+  public void testOpenedIsReadOnly() throws IOException {
+    File file = folder.newFile();
+    VPTree.getBuilder().metric(LevenshteinDistance.getInstance()).build().write(file);
+    VPTree.open(file, LevenshteinDistance.getInstance()).add("abc");
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testOpenWithOtherWeights() throws IOException {
+    File file = folder.newFile();
+    DistanceMetric metric = LevenshteinDistance.getBuilder().substitutionScore(0.7).build();
+    VPTree.getBuilder().metric(metric).build().write(file);
+    VPTree.open(file, LevenshteinDistance.getInstance());
+  }
+
+  private static void testTree(VPTree tree, DistanceMetric metric, int n, double[] radii,
+                               Random rnd) {
+    String[] strings = new String[n];
+    for (int i = 0; i < n; i++) {
+      strings[i] = TestUtils.getRandomString(rnd, 3 + rnd.nextInt(8), ALPHABET);
+      Assert.assertEquals(i, tree.add(strings[i]));
+    }
+
+    for (int q = 0; q < 30; q++) {
+      String query = TestUtils.getRandomString(rnd, 3 + rnd.nextInt(8), ALPHABET);
+      double[] distances = new double[n];
+      for (int i = 0; i < n; i++) {
+        distances[i] = metric.computeDistance(query, strings[i]);
+      }
+
+      for (double r : radii) {
+        int[] expected = new int[n];
+        int count = 0;
+        for (int i = 0; i < n; i++) {
+          if (distances[i] <= r) {
+            expected[count++] = i;
+          }
+        }
+        Assert.assertArrayEquals(Arrays.copyOf(expected, count), tree.query(query, r));
+      }
+
+      // ties are broken arbitrarily, thus only the distances are compared
+      int[] nearest = tree.query(query, 10);
+      double[] sorted = distances.clone();
+      Arrays.sort(sorted);
+      Assert.assertEquals(10, nearest.length);
+      for (int i = 0; i < nearest.length; i++) {
+        Assert.assertEquals(sorted[i], distances[nearest[i]], TestUtils.DELTA);
+      }
+    }
+  }
+}
@@ -0,0 +1,139 @@
+package ch.ethz.student.dejavu.strings;
+
+import java.util.Random;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import ch.ethz.student.dejavu.DistanceMetric;
+import ch.ethz.student.dejavu.SimilarityMetric;
+import ch.ethz.student.dejavu.TestUtils;
+import ch.ethz.student.dejavu.index.StringCorpus;
+import ch.ethz.student.dejavu.vectors.JaccardSimilarity;
+
+public class BatchMetricTest {
+
+  // a few chars above 255 exercise the sparse tables of the query profiles
+  private static final String ALPHABET = "abcd\u00e9\u0101\u20ac";
+
+  @Test
+  public void testLevenshtein() {
+    Random rnd = new Random(211);
+    LevenshteinDistance levenshtein = LevenshteinDistance.getInstance();
+    // queries up to 64 chars are bit-parallel, longer ones fall back to the table
+    for (int length : new int[]{0, 1, 5, 63, 64, 65, 150}) {
+      testDistances(levenshtein, TestUtils.getRandomString(rnd, length, ALPHABET), rnd);
+      testSimilarities(levenshtein, TestUtils.getRandomString(rnd, length, ALPHABET), rnd);
+    }
+
+    LevenshteinDistance weighted = LevenshteinDistance.getBuilder().insertionScore(1.5)
+        .deletionScore(0.5).substitutionScore(2).build();
+    for (int length : new int[]{0, 3, 20}) {
+      testDistances(weighted, TestUtils.getRandomString(rnd, length, ALPHABET), rnd);
+      testSimilarities(weighted, TestUtils.getRandomString(rnd, length, ALPHABET), rnd);
+    }
+  }
+
+  @Test
+  public void testJaro() {
+    Random rnd = new Random(223);
+    for (int length : new int[]{0, 1, 4, 12, 40}) {
+      testSimilarities(JaroMetric.getInstance(),
+                       TestUtils.getRandomString(rnd, length, ALPHABET), rnd);
+      testSimilarities(JaroWinklerMetric.getInstance(),
+                       TestUtils.getRandomString(rnd, length, ALPHABET), rnd);
+    }
+  }
+
+  @Test
+  public void testTokens() {
+    Random rnd = new Random(227);
+    JaccardSimilarity jaccard = JaccardSimilarity.getInstance();
+    for (int i = 0; i < 10; i++) {
+      String query = TestUtils.getRandomString(rnd, 1 + rnd.nextInt(20), ALPHABET);
+      String[] candidates = candidates(query, rnd);
+      // a string without tokens is rejected
+      candidates[1] = query;
+      double[] out = new double[candidates.length];
+      jaccard.computeSimilarities(query, candidates, out);
+      for (int k = 0; k < candidates.length; k++) {
+        Assert.assertEquals(jaccard.computeSimilarity(query, candidates[k]), out[k],
+                            TestUtils.DELTA);
+      }
+    }
+  }
+
+  @Test
+  public void testViews() {
+    Random rnd = new Random(229);
+    StringCorpus corpus = StringCorpus.getInstance();
+    CharSequence[] views = new CharSequence[100];
+    for (int i = 0; i < views.length; i++) {
+      corpus.add(TestUtils.getRandomString(rnd, rnd.nextInt(30), ALPHABET));
+      views[i] = corpus.get(i);
+    }
+    String query = TestUtils.getRandomString(rnd, 12, ALPHABET);
+
+    double[] distances = new double[views.length];
+    double[] similarities = new double[views.length];
+    LevenshteinDistance.getInstance().computeDistances(query, views, distances);
+    JaroWinklerMetric.getInstance().computeSimilarities(query, views, similarities);
+    for (int i = 0; i < views.length; i++) {
+      String s = corpus.getString(i);
+      Assert.assertEquals(LevenshteinDistance.getInstance().computeDistance(query, s),
+                          distances[i], TestUtils.DELTA);
+      Assert.assertEquals(JaroWinklerMetric.getInstance().computeSimilarity(query, s),
+                          similarities[i], TestUtils.DELTA);
+    }
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testShortOutput() {
+    LevenshteinDistance.getInstance().computeDistances("a", new CharSequence[]{"a", "b"},
+                                                       new double[1]);
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testNullCandidate() {
+    JaroMetric.getInstance().computeSimilarities("a", new CharSequence[]{"a", null},
+                                                 new double[2]);
+  }
+
+  private static void testDistances(DistanceMetric metric, String query, Random rnd) {
+    String[] candidates = candidates(query, rnd);
+    double[] out = new double[candidates.length];
+    metric.computeDistances(query, candidates, out);
+    for (int i = 0; i < candidates.length; i++) {
+      Assert.assertEquals("'" + query + "' and '" + candidates[i] + "'",
+                          metric.computeDistance(query, candidates[i]), out[i], TestUtils.DELTA);
+    }
+  }
+
+  private static void testSimilarities(SimilarityMetric metric, String query, Random rnd) {
+    String[] candidates = candidates(query, rnd);
+    double[] out = new double[candidates.length];
+    metric.computeSimilarities(query, candidates, out);
+    for (int i = 0; i < candidates.length; i++) {
+      Assert.assertEquals("'" + query + "' and '" + candidates[i] + "'",
+                          metric.computeSimilarity(query, candidates[i]), out[i],
+                          TestUtils.DELTA);
+    }
+  }
+
+  private static String[] candidates(String query, Random rnd) {
+    String[] candidates = new String[200];
+    for (int i = 0; i < candidates.length; i++) {
+      if (i % 4 == 0 && query.length() > 0) {
+        // near duplicates of the query
+        StringBuilder sb = new StringBuilder(query);
+        sb.setCharAt(rnd.nextInt(sb.length()), ALPHABET.charAt(rnd.nextInt(ALPHABET.length())));
+        candidates[i] = sb.toString();
+      } else {
+        int length = 1 + rnd.nextInt(query.length() + 10);
+        candidates[i] = TestUtils.getRandomString(rnd, length, ALPHABET);
+      }
+    }
+    candidates[1] = "";
+    return candidates;
+  }
+}
@@ -0,0 +1,56 @@
+package ch.ethz.student.dejavu.strings;
+
+import java.util.Random;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import ch.ethz.student.dejavu.BoundedDistanceMetric;
+import ch.ethz.student.dejavu.TestUtils;
+
+public class BoundedDistanceMetricTest {
+
+  private static final String ALPHABET = "abc";
+  private static final double[] BOUNDS = {0, 0.5, 1, 2, 3, 5, 100};
+
+  @Test
+  public void testLevenshtein() {
+    testBounds(LevenshteinDistance.getInstance(), false, new Random(113));
+    testBounds(LevenshteinDistance.getBuilder().insertionScore(2).deletionScore(1.5)
+                   .substitutionScore(0.5).build(), false, new Random(127));
+  }
+
+  @Test
+  public void testOptimalStringAlignment() {
+    testBounds(OptimalStringAlignmentDistance.getInstance(), false, new Random(131));
+    testBounds(OptimalStringAlignmentDistance.getBuilder().insertionWeight(0.5)
+                   .deletionWeight(2).transpositionWeight(1.5).build(), false, new Random(137));
+  }
+
+  @Test
+  public void testDamerauLevenshtein() {
+    testBounds(DamerauLevenshteinDistance.getInstance(), false, new Random(139));
+  }
+
+  @Test
+  public void testHamming() {
+    testBounds(HammingMetric.getInstance(), true, new Random(149));
+  }
+
+  private static void testBounds(BoundedDistanceMetric metric, boolean equalLength, Random rnd) {
+    for (int i = 0; i < 2000; i++) {
+      String s1 = TestUtils.getRandomString(rnd, rnd.nextInt(10), ALPHABET);
+      int length = equalLength ? s1.length() : rnd.nextInt(10);
+      String s2 = TestUtils.getRandomString(rnd, length, ALPHABET);
+      double distance = metric.computeDistance(s1, s2);
+      for (double bound : BOUNDS) {
+        double bounded = metric.computeDistance(s1, s2, bound);
+        if (distance <= bound) {
+          Assert.assertEquals(distance, bounded, 1e-9);
+        } else {
+          Assert.assertTrue(s1 + " " + s2 + " " + bound, bounded > bound);
+        }
+      }
+    }
+  }
+}
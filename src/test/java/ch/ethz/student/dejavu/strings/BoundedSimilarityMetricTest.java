@@ -0,0 +1,57 @@
+package ch.ethz.student.dejavu.strings;
+
+import java.util.Random;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import ch.ethz.student.dejavu.BoundedSimilarityMetric;
+import ch.ethz.student.dejavu.TestUtils;
+import ch.ethz.student.dejavu.vectors.DiceCoefficient;
+import ch.ethz.student.dejavu.vectors.JaccardSimilarity;
+
+public class BoundedSimilarityMetricTest {
+
+  private static final String ALPHABET = "abc";
+  private static final double[] BOUNDS = {-1, 0, 0.3, 0.5, 0.7, 0.9, 1};
+
+  @Test
+  public void testLevenshtein() {
+    testBounds(LevenshteinDistance.getInstance(), 0, new Random(233));
+    testBounds(LevenshteinDistance.getBuilder().insertionScore(2).deletionScore(1.5)
+                   .substitutionScore(0.5).build(), 0, new Random(239));
+  }
+
+  @Test
+  public void testJaro() {
+    testBounds(JaroMetric.getInstance(), 0, new Random(241));
+  }
+
+  @Test
+  public void testJaroWinkler() {
+    testBounds(JaroWinklerMetric.getInstance(), 0, new Random(251));
+  }
+
+  @Test
+  public void testSets() {
+    // the token based metrics reject strings without tokens
+    testBounds(JaccardSimilarity.getInstance(), 1, new Random(257));
+    testBounds(DiceCoefficient.getInstance(), 1, new Random(263));
+  }
+
+  private static void testBounds(BoundedSimilarityMetric metric, int minLength, Random rnd) {
+    for (int i = 0; i < 2000; i++) {
+      String s1 = TestUtils.getRandomString(rnd, minLength + rnd.nextInt(10), ALPHABET);
+      String s2 = TestUtils.getRandomString(rnd, minLength + rnd.nextInt(10), ALPHABET);
+      double similarity = metric.computeSimilarity(s1, s2);
+      for (double bound : BOUNDS) {
+        double bounded = metric.computeSimilarity(s1, s2, bound);
+        if (similarity >= bound) {
+          Assert.assertEquals(similarity, bounded, 1e-9);
+        } else {
+          Assert.assertTrue(s1 + " " + s2 + " " + bound, bounded < bound);
+        }
+      }
+    }
+  }
+}
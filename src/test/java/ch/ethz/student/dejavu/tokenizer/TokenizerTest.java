@@ -0,0 +1,189 @@
+package ch.ethz.student.dejavu.tokenizer;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.StringTokenizer;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import ch.ethz.student.dejavu.TestUtils;
+import ch.ethz.student.dejavu.utilities.HashUtils;
+import ch.ethz.student.dejavu.vectors.Granularity;
+import ch.ethz.student.dejavu.vectors.JaccardSimilarity;
+
+public class TokenizerTest {
+
+  private static final String ALPHABET = "ab ,\t\n;";
+
+  @Test
+  public void testSameAsStringTokenizer() {
+    Random rnd = new Random(3);
+    for (int i = 0; i < TestUtils.N; i++) {
+      String s = randomString(rnd);
+
+      List<String> expected = new ArrayList<String>();
+      StringTokenizer st = new StringTokenizer(s);
+      while (st.hasMoreTokens()) {
+        expected.add(st.nextToken());
+      }
+      assertTokens(expected, new WordTokeninzer(), s);
+
+      expected.clear();
+      st = new StringTokenizer(s, ",;");
+      while (st.hasMoreTokens()) {
+        expected.add(st.nextToken());
+      }
+      assertTokens(expected, new SeparatorTokenizer(",;"), s);
+    }
+  }
+
+  @Test
+  public void testNGrams() {
+    List<String> expected = new ArrayList<String>();
+    expected.add("hel");
+    expected.add("ell");
+    expected.add("llo");
+    assertTokens(expected, new NGramTokenizer(3), "hello");
+
+    expected.clear();
+    expected.add(NGramTokenizer.START_PADDING + "h");
+    expected.add("hi");
+    expected.add("i" + NGramTokenizer.END_PADDING);
+    assertTokens(expected, new NGramTokenizer(2, true), "hi");
+  }
+
+  @Test
+  public void testCharacters() {
+    List<String> expected = new ArrayList<String>();
+    expected.add("a");
+    expected.add("b");
+    expected.add("a");
+    assertTokens(expected, new CharTokenizer(), "aba");
+  }
+
+  @Test
+  public void testHashesOfEqualTokens() {
+    Tokenizer[] tokenizers = {new CharTokenizer(), new WordTokeninzer(),
+                              new SeparatorTokenizer(","), new NGramTokenizer(2),
+                              new NGramTokenizer(6, true)};
+    for (Tokenizer tokenizer : tokenizers) {
+      final List<Long> hashes = new ArrayList<Long>();
+      tokenizer.tokenizeHashed("abc,abc abc,abcabc", new TokenHashHandler() {
+        @Override
+        public void token(long hash) {
+          hashes.add(hash);
+        }
+      });
+
+      final List<String> tokens = new ArrayList<String>();
+      tokenizer.tokenize("abc,abc abc,abcabc", new TokenHandler() {
+        @Override
+        public void token(CharSequence s, int start, int end) {
+          tokens.add(s.subSequence(start, end).toString());
+        }
+      });
+
+      Assert.assertEquals(tokens.size(), hashes.size());
+      for (int i = 0; i < tokens.size(); i++) {
+        for (int j = 0; j < tokens.size(); j++) {
+          Assert.assertEquals(tokens.get(i).equals(tokens.get(j)),
+                              hashes.get(i).equals(hashes.get(j)));
+        }
+      }
+    }
+  }
+
+  @Test
+  public void testIteratorUnchanged() {
+    Tokenizer[] tokenizers = {new CharTokenizer(), new WordTokeninzer(),
+                              new SeparatorTokenizer(","), new NGramTokenizer(2)};
+    TokenHashHandler ignore = new TokenHashHandler() {
+      @Override
+      public void token(long hash) {
+      }
+    };
+    for (Tokenizer tokenizer : tokenizers) {
+      List<Object> expected = new ArrayList<Object>();
+      tokenizer.reset("ab,c d");
+      while (tokenizer.hasMoreTokens()) {
+        expected.add(tokenizer.nextToken());
+      }
+
+      List<Object> actual = new ArrayList<Object>();
+      tokenizer.reset("ab,c d");
+      actual.add(tokenizer.nextToken());
+      tokenizer.tokenizeHashed("xyz,uvw", ignore);
+      while (tokenizer.hasMoreTokens()) {
+        actual.add(tokenizer.nextToken());
+      }
+      Assert.assertEquals(expected, actual);
+    }
+  }
+
+  @Test
+  public void testDefaultImplementations() {
+    Tokenizer tokenizer = new Tokenizer() {
+      @Override
+      public boolean hasMoreTokens() {
+        return currentPosition < s.length();
+      }
+
+      @Override
+      public Object nextToken() {
+        return s.substring(currentPosition++, currentPosition);
+      }
+    };
+    final List<Long> hashes = new ArrayList<Long>();
+    tokenizer.tokenizeHashed("ab", new TokenHashHandler() {
+      @Override
+      public void token(long hash) {
+        hashes.add(hash);
+      }
+    });
+
+    Assert.assertEquals(2, hashes.size());
+    Assert.assertEquals(HashUtils.hash64("a"), (long) hashes.get(0));
+    Assert.assertEquals(HashUtils.hash64("b"), (long) hashes.get(1));
+
+    // the default tokenize reports the tokens of the iterator
+    List<String> expected = new ArrayList<String>();
+    expected.add("a");
+    expected.add("b");
+    assertTokens(expected, tokenizer, "ab");
+  }
+
+  @Test
+  public void testCustomTokenizer() {
+    JaccardSimilarity metric = JaccardSimilarity.getBuilder()
+        .tokenizer(new SeparatorTokenizer(";")).build();
+    Assert.assertEquals(1d / 3d, metric.computeSimilarity("ab;c", "ab;d"), TestUtils.DELTA);
+
+    metric = JaccardSimilarity.getBuilder().granularity(Granularity.NGRAM_HASHED)
+        .tokenizer(new SeparatorTokenizer(";")).build();
+    Assert.assertEquals(1d / 3d, metric.computeSimilarity("ab;c", "ab;d"), TestUtils.DELTA);
+  }
+
+  private static void assertTokens(final List<String> expected, Tokenizer tokenizer, String s) {
+    List<Object> actual = new ArrayList<Object>();
+    tokenizer.reset(s);
+    while (tokenizer.hasMoreTokens()) {
+      actual.add(tokenizer.nextToken().toString());
+    }
+    Assert.assertEquals(s, expected, actual);
+
+    final List<String> offsets = new ArrayList<String>();
+    tokenizer.tokenize(s, new TokenHandler() {
+      @Override
+      public void token(CharSequence s, int start, int end) {
+        offsets.add(s.subSequence(start, end).toString());
+      }
+    });
+    Assert.assertEquals(s, expected, offsets);
+  }
+
+  private static String randomString(Random rnd) {
+    return TestUtils.getRandomString(rnd, rnd.nextInt(12), ALPHABET);
+  }
+}
@@ -0,0 +1,106 @@
+package ch.ethz.student.dejavu.utilities;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.ForkJoinPool;
+
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import ch.ethz.student.dejavu.TestUtils;
+import ch.ethz.student.dejavu.strings.LevenshteinDistance;
+import ch.ethz.student.dejavu.vectors.JaccardSimilarity;
+import ch.ethz.student.dejavu.vectors.TverskyIndex;
+
+public class PairwiseMatrixTest {
+
+  @Rule
+  public TemporaryFolder folder = new TemporaryFolder();
+
+  @Test
+  public void testDistances() throws IOException {
+    String[] strings = randomStrings(203);
+    LevenshteinDistance metric = LevenshteinDistance.getInstance();
+    for (boolean triangular : new boolean[]{false, true}) {
+      for (int blockSize : new int[]{1, 16, 1000}) {
+        ScoreMatrix matrix = PairwiseMatrix.getBuilder().distance(LevenshteinDistance::getInstance)
+            .triangular(triangular).blockSize(blockSize).build().compute(strings);
+
+        Assert.assertEquals(strings.length, matrix.size());
+        Assert.assertEquals(triangular, matrix.isTriangular());
+        for (int i = 0; i < strings.length; i++) {
+          for (int j = 0; j < strings.length; j++) {
+            Assert.assertEquals(metric.computeDistance(strings[i], strings[j]),
+                                matrix.get(i, j), TestUtils.DELTA);
+          }
+        }
+      }
+    }
+  }
+
+  @Test
+  public void testAsymmetricSimilarities() throws IOException {
+    String[] strings = randomStrings(70);
+    TverskyIndex metric = TverskyIndex.getBuilder().alpha(0.2).beta(0.8).build();
+    ScoreMatrix matrix = PairwiseMatrix.getBuilder()
+        .similarity(() -> TverskyIndex.getBuilder().alpha(0.2).beta(0.8).build())
+        .blockSize(8).pool(new ForkJoinPool(3)).build().compute(strings);
+
+    for (int i = 0; i < strings.length; i++) {
+      for (int j = 0; j < strings.length; j++) {
+        Assert.assertEquals(metric.computeSimilarity(strings[i], strings[j]), matrix.get(i, j),
+                            TestUtils.DELTA);
+      }
+    }
+  }
+
+  @Test
+  public void testFile() throws IOException {
+    String[] strings = randomStrings(150);
+    File file = folder.newFile();
+    ScoreMatrix matrix = PairwiseMatrix.getBuilder().similarity(JaccardSimilarity::getInstance)
+        .triangular(true).floats(true).file(file).blockSize(32).build().compute(strings);
+    Assert.assertEquals(ScoreMatrix.HEADER_SIZE + 4 * ScoreMatrix.getEntryCount(150, true),
+                        file.length());
+
+    ScoreMatrix opened = ScoreMatrix.open(file);
+    Assert.assertEquals(strings.length, opened.size());
+    Assert.assertTrue(opened.isTriangular());
+    Assert.assertTrue(opened.isFloat());
+    JaccardSimilarity metric = JaccardSimilarity.getInstance();
+    for (int i = 0; i < strings.length; i++) {
+      for (int j = 0; j < strings.length; j++) {
+        double expected = (float) metric.computeSimilarity(strings[i], strings[j]);
+        Assert.assertEquals(expected, matrix.get(i, j), 0);
+        Assert.assertEquals(expected, opened.get(i, j), 0);
+      }
+    }
+  }
+
+  @Test
+  public void testEmpty() throws IOException {
+    ScoreMatrix matrix = PairwiseMatrix.getBuilder().distance(LevenshteinDistance::getInstance)
+        .build().compute(new String[0]);
+    Assert.assertEquals(0, matrix.size());
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testNoMetric() {
+    PairwiseMatrix.getBuilder().build();
+  }
+
+  @Test(expected = IOException.class)
+  public void testNotAMatrixFile() throws IOException {
+    ScoreMatrix.open(folder.newFile());
+  }
+
+  private static String[] randomStrings(int n) {
+    String[] strings = new String[n];
+    for (int i = 0; i < n; i++) {
+      strings[i] = TestUtils.getRandomString(3, 12);
+    }
+    return strings;
+  }
+}
@@ -0,0 +1,98 @@
+package ch.ethz.student.dejavu.vectors;
+
+import java.util.Random;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import ch.ethz.student.dejavu.DistanceMetric;
+import ch.ethz.student.dejavu.SimilarityMetric;
+import ch.ethz.student.dejavu.TestUtils;
+import ch.ethz.student.dejavu.tokenizer.CharTokenizer;
+
+public class CharHistogramTest {
+
+  // latin, latin-1 supplement and greek characters
+  private static final String ALPHABET = "abcdeABCäöüαβγ";
+
+  @Test
+  public void testCounts() {
+    CharHistogram histogram = new CharHistogram("abcaαα");
+
+    Assert.assertEquals(2, histogram.count('a'));
+    Assert.assertEquals(2, histogram.count('α'));
+    Assert.assertEquals(0, histogram.count('z'));
+    Assert.assertEquals(4, histogram.size());
+    Assert.assertEquals(6, histogram.length());
+
+    histogram.set("zz");
+    Assert.assertEquals(0, histogram.count('a'));
+    Assert.assertEquals(0, histogram.count('α'));
+    Assert.assertEquals(1, histogram.size());
+  }
+
+  @Test
+  public void testLargeCounts() {
+    StringBuilder sb = new StringBuilder();
+    for (int i = 0; i < 100000; i++) {
+      sb.append('a');
+    }
+    CharHistogram histogram = new CharHistogram(sb);
+
+    Assert.assertEquals(1e10, histogram.scalarProduct(histogram), 0);
+    Assert.assertEquals(1e10, histogram.squaredEuclideanDistance(new CharHistogram()), 0);
+  }
+
+  @Test
+  public void testSameAsTokenVectors() {
+    // a custom tokenizer disables the histogram
+    assertSameSimilarity(JaccardSimilarity.getInstance(),
+                         JaccardSimilarity.getBuilder().tokenizer(new CharTokenizer()).build());
+    assertSameSimilarity(DiceCoefficient.getInstance(),
+                         DiceCoefficient.getBuilder().tokenizer(new CharTokenizer()).build());
+    assertSameSimilarity(OverlapCoefficient.getInstance(),
+                         OverlapCoefficient.getBuilder().tokenizer(new CharTokenizer()).build());
+    assertSameSimilarity(TverskyIndex.getInstance(),
+                         TverskyIndex.getBuilder().tokenizer(new CharTokenizer()).build());
+    assertSameSimilarity(MatchingCoefficient.getInstance(),
+                         MatchingCoefficient.getBuilder().tokenizer(new CharTokenizer()).build());
+    assertSameDistance(L1Distance.getInstance(),
+                       L1Distance.getBuilder().tokenizer(new CharTokenizer()).build());
+    assertSameDistance(L2Distance.getInstance(),
+                       L2Distance.getBuilder().tokenizer(new CharTokenizer()).build());
+
+    CosineDistance cosine = CosineDistance.getInstance();
+    CosineDistance reference = CosineDistance.getBuilder().tokenizer(new CharTokenizer()).build();
+    Random rnd = new Random(5);
+    for (int i = 0; i < TestUtils.N; i++) {
+      String s1 = randomString(rnd);
+      String s2 = randomString(rnd);
+      Assert.assertEquals(reference.computeUnnormalizedSimilarity(s1, s2),
+                          cosine.computeUnnormalizedSimilarity(s1, s2), TestUtils.DELTA);
+    }
+  }
+
+  private static void assertSameSimilarity(SimilarityMetric metric, SimilarityMetric reference) {
+    Random rnd = new Random(5);
+    for (int i = 0; i < TestUtils.N; i++) {
+      String s1 = randomString(rnd);
+      String s2 = randomString(rnd);
+      Assert.assertEquals(s1 + " " + s2, reference.computeSimilarity(s1, s2),
+                          metric.computeSimilarity(s1, s2), TestUtils.DELTA);
+    }
+  }
+
+  private static void assertSameDistance(DistanceMetric metric, DistanceMetric reference) {
+    Random rnd = new Random(5);
+    for (int i = 0; i < TestUtils.N; i++) {
+      String s1 = randomString(rnd);
+      String s2 = randomString(rnd);
+      Assert.assertEquals(s1 + " " + s2, reference.computeDistance(s1, s2),
+                          metric.computeDistance(s1, s2), TestUtils.DELTA);
+    }
+  }
+
+  private static String randomString(Random rnd) {
+    return TestUtils.getRandomString(rnd, 1 + rnd.nextInt(15), ALPHABET);
+  }
+}
@@ -0,0 +1,101 @@
+package ch.ethz.student.dejavu.vectors;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import ch.ethz.student.dejavu.DistanceMetric;
+import ch.ethz.student.dejavu.SimilarityMetric;
+import ch.ethz.student.dejavu.TestUtils;
+import ch.ethz.student.dejavu.UnnormalizedSimilarityMetric;
+
+public class HashedNGramTest {
+
+  @Test
+  public void testNGramLength() {
+    JaccardSimilarity metric = JaccardSimilarity.getBuilder()
+        .granularity(Granularity.NGRAM_BASED).nGram(3).build();
+
+    Assert.assertEquals(3, metric.getTokenSet("hello").size());
+    Assert.assertTrue(metric.getTokenSet("hello").contains("hel"));
+  }
+
+  @Test
+  public void testPadding() {
+    JaccardSimilarity metric = JaccardSimilarity.getBuilder()
+        .granularity(Granularity.NGRAM_BASED).nGram(2).padding(true).build();
+
+    // "hi" is split into [#h, hi, i$]
+    Assert.assertEquals(3, metric.getTokenSet("hi").size());
+    Assert.assertEquals(1d, metric.computeSimilarity("a", "a"), TestUtils.DELTA);
+  }
+
+  @Test
+  public void testSameAsNGramBased() {
+    for (int n = 1; n <= 6; n++) {
+      for (boolean padding : new boolean[]{false, true}) {
+        assertSameSimilarity(JaccardSimilarity.getBuilder().nGram(n).padding(padding)
+                                 .granularity(Granularity.NGRAM_BASED).build(),
+                             JaccardSimilarity.getBuilder().nGram(n).padding(padding)
+                                 .granularity(Granularity.NGRAM_HASHED).build());
+        assertSameSimilarity(DiceCoefficient.getBuilder().nGram(n).padding(padding)
+                                 .granularity(Granularity.NGRAM_BASED).build(),
+                             DiceCoefficient.getBuilder().nGram(n).padding(padding)
+                                 .granularity(Granularity.NGRAM_HASHED).build());
+        assertSameSimilarity(TverskyIndex.getBuilder().nGram(n).padding(padding)
+                                 .granularity(Granularity.NGRAM_BASED).build(),
+                             TverskyIndex.getBuilder().nGram(n).padding(padding)
+                                 .granularity(Granularity.NGRAM_HASHED).build());
+        assertSameCosine(CosineDistance.getBuilder().nGram(n).padding(padding)
+                                 .granularity(Granularity.NGRAM_BASED).build(),
+                             CosineDistance.getBuilder().nGram(n).padding(padding)
+                                 .granularity(Granularity.NGRAM_HASHED).build());
+        assertSameDistance(L1Distance.getBuilder().nGram(n).padding(padding)
+                               .granularity(Granularity.NGRAM_BASED).build(),
+                           L1Distance.getBuilder().nGram(n).padding(padding)
+                               .granularity(Granularity.NGRAM_HASHED).build());
+        assertSameDistance(L2Distance.getBuilder().nGram(n).padding(padding)
+                               .granularity(Granularity.NGRAM_BASED).build(),
+                           L2Distance.getBuilder().nGram(n).padding(padding)
+                               .granularity(Granularity.NGRAM_HASHED).build());
+      }
+    }
+  }
+
+  @Test(expected = IllegalStateException.class)
+  public void testTooShort() {
+    JaccardSimilarity.getBuilder().granularity(Granularity.NGRAM_HASHED).nGram(3).build()
+        .computeSimilarity("ab", "abc");
+  }
+
+  private static void assertSameSimilarity(SimilarityMetric expected, SimilarityMetric actual) {
+    for (int i = 0; i < TestUtils.N; i++) {
+      // short alphabet, thus many shared ngrams
+      String s1 = TestUtils.getRandomString(6, 20).toLowerCase() + "aab";
+      String s2 = TestUtils.getRandomString(6, 20).toLowerCase() + "aab";
+
+      Assert.assertEquals(s1 + " " + s2, expected.computeSimilarity(s1, s2),
+                          actual.computeSimilarity(s1, s2), TestUtils.DELTA);
+    }
+  }
+
+  private static void assertSameCosine(UnnormalizedSimilarityMetric expected,
+                                       UnnormalizedSimilarityMetric actual) {
+    for (int i = 0; i < TestUtils.N; i++) {
+      String s1 = TestUtils.getRandomString(6, 20).toLowerCase() + "aab";
+      String s2 = TestUtils.getRandomString(6, 20).toLowerCase() + "aab";
+
+      Assert.assertEquals(s1 + " " + s2, expected.computeUnnormalizedSimilarity(s1, s2),
+                          actual.computeUnnormalizedSimilarity(s1, s2), TestUtils.DELTA);
+    }
+  }
+
+  private static void assertSameDistance(DistanceMetric expected, DistanceMetric actual) {
+    for (int i = 0; i < TestUtils.N; i++) {
+      String s1 = TestUtils.getRandomString(6, 20) + "aab";
+      String s2 = TestUtils.getRandomString(6, 20) + "aab";
+
+      Assert.assertEquals(s1 + " " + s2, expected.computeDistance(s1, s2),
+                          actual.computeDistance(s1, s2), TestUtils.DELTA);
+    }
+  }
+}
@@ -0,0 +1,44 @@
+package ch.ethz.student.dejavu.vectors;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import ch.ethz.student.dejavu.TestUtils;
+
+public class SetStatisticsTest {
+
+  @Test
+  public void testDerivedSizes() {
+    SetStatistics statistics = new SetStatistics(5, 3, 2);
+
+    Assert.assertEquals(6, statistics.getUnion());
+    Assert.assertEquals(3, statistics.getComplement1());
+    Assert.assertEquals(1, statistics.getComplement2());
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testInvalidIntersection() {
+    new SetStatistics(2, 3, 3);
+  }
+
+  @Test
+  public void testTanimotoEqualsJaccard() {
+    for (boolean keyset : new boolean[]{false, true}) {
+      for (Granularity granularity : new Granularity[]{Granularity.CHAR_BASED,
+                                                       Granularity.NGRAM_BASED,
+                                                       Granularity.NGRAM_HASHED}) {
+        TverskyIndex tanimoto = TverskyIndex.getBuilder().alpha(1).beta(1).takeKeyset(keyset)
+            .granularity(granularity).nGram(2).build();
+        JaccardSimilarity jaccard = JaccardSimilarity.getBuilder().takeKeyset(keyset)
+            .granularity(granularity).nGram(2).build();
+
+        for (int i = 0; i < TestUtils.N; i++) {
+          String s1 = TestUtils.getRandomString(2, 10);
+          String s2 = TestUtils.getRandomString(2, 10);
+          Assert.assertEquals(jaccard.computeSimilarity(s1, s2),
+                              tanimoto.computeSimilarity(s1, s2), TestUtils.DELTA);
+        }
+      }
+    }
+  }
+}
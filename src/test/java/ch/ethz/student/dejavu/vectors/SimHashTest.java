@@ -0,0 +1,105 @@
+package ch.ethz.student.dejavu.vectors;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import ch.ethz.student.dejavu.AbstractSimilarityMetricTest;
+import ch.ethz.student.dejavu.SimilarityMetric;
+import ch.ethz.student.dejavu.TestUtils;
+
+public class SimHashTest extends AbstractSimilarityMetricTest {
+
+  private static final SimHash metric = SimHash.getInstance();
+  private static final TestInput[] testInput = {
+      // equal directions of the frequency vectors give equal fingerprints
+      new TestInput("MARTHA", "MARHTA", 1d),
+      new TestInput("aa", "a", 1d),
+      new TestInput("AABB", "BA", 1d),
+      // otherwise the estimate of the fingerprints
+      new TestInput("DWAYNE", "DUANE", estimate("DWAYNE", "DUANE")),
+      new TestInput("DIXON", "DICKSONX", estimate("DIXON", "DICKSONX")),
+      new TestInput("aa", "bb", estimate("a", "b"))
+  };
+
+  @Override
+  protected TestInput[] getTestInput() {
+    return testInput;
+  }
+
+  @Override
+  protected SimilarityMetric getSimilarityMetric() {
+    return metric;
+  }
+
+  @Override
+  @Test(expected = IllegalStateException.class)
+  public void testEmptyArguments() {
+    super.testEmptyArguments();
+  }
+
+  @Test
+  public void testSameTokenVector() {
+    // permutations share the character frequency vector, thus the fingerprint
+    Assert.assertArrayEquals(metric.fingerprint("MARTHA"), metric.fingerprint("MARHTA"));
+  }
+
+  @Test
+  public void testEstimate() {
+    SimHash simHash = SimHash.getBuilder().bits(128).granularity(Granularity.WORD_BASED).build();
+    CosineDistance cosine = CosineDistance.getBuilder().granularity(Granularity.WORD_BASED).build();
+
+    StringBuilder sb1 = new StringBuilder();
+    StringBuilder sb2 = new StringBuilder();
+    for (int i = 0; i < 200; i++) {
+      sb1.append("w").append(i).append(' ');
+      sb2.append("w").append(i < 150 ? i : i + 1000).append(' ');
+    }
+    String s1 = sb1.toString();
+    String s2 = sb2.toString();
+
+    Assert.assertEquals(cosine.computeUnnormalizedSimilarity(s1, s2),
+                        simHash.computeSimilarity(s1, s2), 0.2);
+  }
+
+  @Test
+  public void testFingerprintSize() {
+    Assert.assertEquals(1, metric.fingerprint("hello").length);
+    Assert.assertEquals(2, SimHash.getBuilder().bits(128).build().fingerprint("hello").length);
+  }
+
+  @Test
+  public void testWeights() {
+    Map<Object, Double> weights = new HashMap<Object, Double>();
+    weights.put('a', 0.0);
+    SimHash weighted = SimHash.getBuilder().weights(weights).build();
+
+    // tokens with zero weight do not contribute to the fingerprint
+    Assert.assertArrayEquals(weighted.fingerprint("bcd"), weighted.fingerprint("abcda"));
+  }
+
+  @Test
+  public void testHammingDistance() {
+    Assert.assertEquals(0, SimHash.hammingDistance(new long[]{5L}, new long[]{5L}));
+    Assert.assertEquals(64, SimHash.hammingDistance(new long[]{0L}, new long[]{-1L}));
+    Assert.assertEquals(0d, SimHash.estimateCosine(new long[]{0L}, new long[]{-1L}),
+                        TestUtils.DELTA);
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testInvalidBits() {
+    SimHash.getBuilder().bits(32).build();
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testKeyset() {
+    SimHash.getBuilder().takeKeyset(true).build();
+  }
+
+  private static double estimate(String s1, String s2) {
+    return SimHash.estimateCosine(SimHash.getInstance().fingerprint(s1),
+                                  SimHash.getInstance().fingerprint(s2));
+  }
+}
@@ -0,0 +1,52 @@
+package ch.ethz.student.dejavu.vectors;
+
+import java.util.HashSet;
+import java.util.Random;
+import java.util.Set;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class TokenIdSetTest {
+
+  @Test
+  public void testChars() {
+    TokenIdSet a = new TokenIdSet("abcaαα");
+    TokenIdSet b = new TokenIdSet("bcdα");
+
+    Assert.assertEquals(4, a.size());
+    Assert.assertTrue(a.contains('α'));
+    Assert.assertFalse(a.contains('d'));
+    Assert.assertEquals(3, a.intersect(b));
+  }
+
+  @Test
+  public void testSameAsHashSet() {
+    Random rnd = new Random(13);
+    TokenIdSet a = new TokenIdSet();
+    TokenIdSet b = new TokenIdSet();
+    for (int round = 0; round < 200; round++) {
+      Set<Long> expectedA = new HashSet<Long>();
+      Set<Long> expectedB = new HashSet<Long>();
+      a.clear();
+      b.clear();
+      for (int i = 0; i < rnd.nextInt(100); i++) {
+        long id = rnd.nextInt(600) - 100;
+        a.add(id);
+        expectedA.add(id);
+      }
+      for (int i = 0; i < rnd.nextInt(100); i++) {
+        long id = rnd.nextInt(600) - 100;
+        b.add(id);
+        expectedB.add(id);
+      }
+
+      Set<Long> intersect = new HashSet<Long>(expectedA);
+      intersect.retainAll(expectedB);
+      Assert.assertEquals(expectedA.size(), a.size());
+      Assert.assertEquals(expectedB.size(), b.size());
+      Assert.assertEquals(intersect.size(), a.intersect(b));
+      Assert.assertEquals(intersect.size(), b.intersect(a));
+    }
+  }
+}
@@ -0,0 +1,100 @@
+package ch.ethz.student.dejavu.vectors;
+
+import java.util.Random;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import ch.ethz.student.dejavu.TestUtils;
+
+public class TokenProfileTest {
+
+  private static final double[] THRESHOLDS = {0.0, 0.2, 0.5, 0.8, 1.0};
+
+  @Test
+  public void testUpperBound() {
+    JaccardSimilarity metric = JaccardSimilarity.getBuilder()
+        .granularity(Granularity.NGRAM_BASED).nGram(2).build();
+    for (int i = 0; i < TestUtils.N; i++) {
+      // long strings, thus signature bits are shared by several tokens
+      TokenProfile p1 = metric.getProfile(TestUtils.getRandomString(2, 400));
+      TokenProfile p2 = metric.getProfile(TestUtils.getRandomString(2, 400));
+
+      Assert.assertTrue(p1.maxIntersect(p2) >= p1.intersect(p2));
+      Assert.assertTrue(p2.maxIntersect(p1) >= p1.intersect(p2));
+      Assert.assertEquals(p1.size(), p1.maxIntersect(p1));
+    }
+  }
+
+  @Test
+  public void testJaccard() {
+    JaccardSimilarity metric = JaccardSimilarity.getBuilder()
+        .granularity(Granularity.WORD_BASED).build();
+    Random rnd = new Random(17);
+    for (int i = 0; i < TestUtils.N; i++) {
+      String s1 = randomWords(rnd);
+      String s2 = randomWords(rnd);
+      TokenProfile p1 = metric.getProfile(s1);
+      TokenProfile p2 = metric.getProfile(s2);
+
+      double similarity = metric.computeSimilarity(s1, s2);
+      Assert.assertEquals(similarity, metric.computeSimilarity(p1, p2), TestUtils.DELTA);
+      for (double t : THRESHOLDS) {
+        Assert.assertEquals(similarity >= t, metric.isAtLeast(p1, p2, t));
+      }
+    }
+  }
+
+  @Test
+  public void testDice() {
+    DiceCoefficient metric = DiceCoefficient.getBuilder()
+        .granularity(Granularity.WORD_BASED).build();
+    Random rnd = new Random(19);
+    for (int i = 0; i < TestUtils.N; i++) {
+      String s1 = randomWords(rnd);
+      String s2 = randomWords(rnd);
+      TokenProfile p1 = metric.getProfile(s1);
+      TokenProfile p2 = metric.getProfile(s2);
+
+      double similarity = metric.computeSimilarity(s1, s2);
+      Assert.assertEquals(similarity, metric.computeSimilarity(p1, p2), TestUtils.DELTA);
+      for (double t : THRESHOLDS) {
+        Assert.assertEquals(similarity >= t, metric.isAtLeast(p1, p2, t));
+      }
+    }
+  }
+
+  @Test
+  public void testTversky() {
+    TverskyIndex metric = TverskyIndex.getBuilder().alpha(0.8).beta(0.2)
+        .granularity(Granularity.NGRAM_HASHED).nGram(3).build();
+    Random rnd = new Random(23);
+    for (int i = 0; i < TestUtils.N; i++) {
+      String s1 = randomWords(rnd) + "xyz";
+      String s2 = randomWords(rnd) + "xyz";
+      TokenProfile p1 = metric.getProfile(s1);
+      TokenProfile p2 = metric.getProfile(s2);
+
+      double similarity = metric.computeSimilarity(s1, s2);
+      Assert.assertEquals(similarity, metric.computeSimilarity(p1, p2), TestUtils.DELTA);
+      for (double t : THRESHOLDS) {
+        Assert.assertEquals(similarity >= t, metric.isAtLeast(p1, p2, t));
+      }
+    }
+  }
+
+  @Test(expected = IllegalStateException.class)
+  public void testEmptyProfile() {
+    JaccardSimilarity metric = JaccardSimilarity.getInstance();
+    metric.computeSimilarity(metric.getProfile(""), metric.getProfile("a"));
+  }
+
+  private static String randomWords(Random rnd) {
+    StringBuilder sb = new StringBuilder();
+    int words = 1 + rnd.nextInt(10);
+    for (int w = 0; w < words; w++) {
+      sb.append('w').append(rnd.nextInt(15)).append(' ');
+    }
+    return sb.toString();
+  }
+}
@@ -0,0 +1,112 @@
+package ch.ethz.student.dejavu.vectors;
+
+import java.util.Random;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import ch.ethz.student.dejavu.TestUtils;
+
+public class VectorKernelsTest {
+
+  @Test
+  public void testKernels() {
+    Random rnd = new Random(29);
+    for (int dim = 1; dim <= 19; dim++) {
+      float[] a = randomVector(rnd, dim);
+      float[] b = randomVector(rnd, dim);
+
+      double dot = 0;
+      double na = 0;
+      double nb = 0;
+      double l1 = 0;
+      double l2 = 0;
+      for (int i = 0; i < dim; i++) {
+        dot += a[i] * b[i];
+        na += a[i] * a[i];
+        nb += b[i] * b[i];
+        l1 += Math.abs(a[i] - b[i]);
+        l2 += (a[i] - b[i]) * (a[i] - b[i]);
+      }
+
+      Assert.assertEquals(dot, VectorKernels.dot(a, b), TestUtils.DELTA);
+      Assert.assertEquals(dot / Math.sqrt(na * nb), VectorKernels.cosine(a, b), TestUtils.DELTA);
+      Assert.assertEquals(l1, VectorKernels.l1Distance(a, b), TestUtils.DELTA);
+      Assert.assertEquals(l2, VectorKernels.squaredL2Distance(a, b), TestUtils.DELTA);
+    }
+  }
+
+  @Test
+  public void testBatch() {
+    Random rnd = new Random(31);
+    int dim = 37;
+    int count = 10;
+    float[] query = randomVector(rnd, dim);
+    float[] block = randomVector(rnd, dim * count);
+    double[] dot = new double[count];
+    double[] cosine = new double[count];
+    double[] l1 = new double[count];
+    double[] l2 = new double[count];
+    VectorKernels.dot(query, block, count, dot);
+    VectorKernels.cosine(query, block, count, cosine);
+    VectorKernels.l1Distance(query, block, count, l1);
+    VectorKernels.squaredL2Distance(query, block, count, l2);
+
+    for (int r = 0; r < count; r++) {
+      float[] row = new float[dim];
+      System.arraycopy(block, r * dim, row, 0, dim);
+      Assert.assertEquals(VectorKernels.dot(query, row), dot[r], TestUtils.DELTA);
+      Assert.assertEquals(VectorKernels.cosine(query, row), cosine[r], TestUtils.DELTA);
+      Assert.assertEquals(VectorKernels.l1Distance(query, row), l1[r], TestUtils.DELTA);
+      Assert.assertEquals(VectorKernels.squaredL2Distance(query, row), l2[r], TestUtils.DELTA);
+    }
+  }
+
+  @Test
+  public void testHashedMetrics() {
+    // without collisions the hashed vectors give the exact result
+    CosineDistance cosine = CosineDistance.getBuilder().dimensions(1 << 16).build();
+    L1Distance l1 = L1Distance.getBuilder().dimensions(1 << 16).build();
+    L2Distance l2 = L2Distance.getBuilder().dimensions(1 << 16).build();
+    CosineDistance exactCosine = CosineDistance.getInstance();
+    L1Distance exactL1 = L1Distance.getInstance();
+    L2Distance exactL2 = L2Distance.getInstance();
+
+    String[][] pairs = {{"MARTHA", "MARHTA"}, {"DWAYNE", "DUANE"}, {"aab", "abb"}, {"ab", "cd"}};
+    for (String[] pair : pairs) {
+      Assert.assertEquals(exactCosine.computeUnnormalizedSimilarity(pair[0], pair[1]),
+                          cosine.computeUnnormalizedSimilarity(pair[0], pair[1]),
+                          TestUtils.DELTA);
+      Assert.assertEquals(exactL1.computeDistance(pair[0], pair[1]),
+                          l1.computeDistance(pair[0], pair[1]), TestUtils.DELTA);
+      Assert.assertEquals(exactL2.computeDistance(pair[0], pair[1]),
+                          l2.computeDistance(pair[0], pair[1]), TestUtils.DELTA);
+    }
+  }
+
+  @Test
+  public void testHashedVector() {
+    float[] vector = CosineDistance.getInstance().getHashedVector("aab", new float[256]);
+    float sum = 0;
+    float max = 0;
+    for (float v : vector) {
+      sum += v;
+      max = Math.max(max, v);
+    }
+    Assert.assertEquals(3f, sum, 0f);
+    Assert.assertEquals(2f, max, 0f);
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testInvalidDimensions() {
+    L2Distance.getBuilder().dimensions(-1).build();
+  }
+
+  private static float[] randomVector(Random rnd, int dim) {
+    float[] v = new float[dim];
+    for (int i = 0; i < dim; i++) {
+      v[i] = rnd.nextFloat() * 4 - 2;
+    }
+    return v;
+  }
+}